@@ -65,6 +65,13 @@ public interface ClusterMateConstants
      */
     public final static String CUSTOM_HTTP_HEADER_LAST_CLUSTER_UPDATE = "X-CM-ClusterUpdate";
 
+    /**
+     * Name of custom HTTP header server nodes may use to indicate their
+     * current load, as number of entry requests being processed; clients
+     * may use this for routing requests to less loaded nodes.
+     */
+    public final static String CUSTOM_HTTP_HEADER_LOAD_HINT = "X-CM-Load";
+
     /**
      * In case of PUT that does not provide checksum as argument, server may
      * return checksum upon successful call. This can be used for further
@@ -89,6 +96,14 @@ public interface ClusterMateConstants
      */
     public final static String QUERY_PARAM_CHECKSUM = "checksum";
 
+    /**
+     * Query parameter used with PUT requests to indicate that checksum of
+     * content is not known when request is sent, and is instead appended
+     * after content, as the last 4 bytes (big-endian) of the request body.
+     * Only used for uncompressed content.
+     */
+    public final static String QUERY_PARAM_CHECKSUM_TRAILER = "checksumTrailer";
+
     /**
      * @deprecated Should promote this out of ClusterMate; not needed by all impls
      */
@@ -100,6 +115,8 @@ public interface ClusterMateConstants
     /**
      * Query parameter used for defining timestamp after which (inclusive) entries are
      * to be returned, as determine by their insertion time.
+     * Also used with cluster status requests, to indicate timestamp of the
+     * last cluster information update caller has seen.
      */
     public final static String QUERY_PARAM_SINCE = "since";
     
@@ -107,6 +124,13 @@ public interface ClusterMateConstants
 
     public final static String QUERY_PARAM_KEYRANGE_LENGTH = "keyRangeLength";
 
+    /**
+     * Query parameter used with hash tree (anti-entropy) requests, to indicate
+     * level of the tree to return: 0 for hashes of key range slots, 1 for
+     * hashes of leaves of a single slot.
+     */
+    public final static String QUERY_PARAM_TREE_LEVEL = "level";
+
     /**
      * Query parameter used to pass information about calling node.
      */
@@ -153,6 +177,23 @@ public interface ClusterMateConstants
      */
     public final static String QUERY_PARAM_RETRY_COUNT = "retry";
 
+    /**
+     * Query parameter used with POST requests to the entry end point,
+     * to indicate a multi-entry operation (one of <code>MULTI_OP_xxx</code>
+     * values) instead of regular single-entry PUT.
+     */
+    public final static String QUERY_PARAM_MULTI = "multi";
+
+    /**
+     * Value of {@link #QUERY_PARAM_MULTI} for multi-entry GET requests.
+     */
+    public final static String MULTI_OP_GET = "get";
+
+    /**
+     * Value of {@link #QUERY_PARAM_MULTI} for multi-entry PUT requests.
+     */
+    public final static String MULTI_OP_PUT = "put";
+
     /*
     /**********************************************************************
     /* Standard HTTP Response codes
@@ -163,6 +204,8 @@ public interface ClusterMateConstants
 
     public final static int HTTP_STATUS_OK_PARTIAL = 206;
 
+    public final static int HTTP_STATUS_NOT_MODIFIED = 304;
+
     public final static int HTTP_STATUS_NOT_FOUND = 404;
 
     public final static int HTTP_STATUS_ERROR_CONFLICT = 409;
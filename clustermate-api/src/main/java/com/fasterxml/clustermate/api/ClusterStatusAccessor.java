@@ -15,6 +15,19 @@ public abstract class ClusterStatusAccessor
 
     public abstract ClusterStatusMessage getClusterStatus(IpAndPort ip, long timeoutMsecs)
         throws IOException;
+
+    /**
+     * Conditional variant of {@link #getClusterStatus(IpAndPort, long)}: only
+     * returns status if cluster information of the node has been updated after
+     * given timestamp (as indicated by {@link ClusterStatusMessage#clusterLastUpdated}).
+     * 
+     * @return Cluster status, if it has changed; null if not (or if timeout is too
+     *    short to make the call)
+     */
+    public abstract ClusterStatusMessage getClusterStatusIfChanged(IpAndPort ip, long timeoutMsecs,
+            long lastUpdateSeen)
+        throws IOException;
+
     public abstract ClusterStatusMessage getRemoteStatus(IpAndPort ip, long timeoutMsecs)
         throws IOException;
 
@@ -14,7 +14,19 @@ public enum ContentType
      */
     TEXT("text/plain"),
     JSON("application/json"),
-    SMILE("application/x-jackson-smile")
+    SMILE("application/x-jackson-smile"),
+
+    /**
+     * Compact binary encoding used for Sync List responses, if requested
+     * by caller
+     */
+    SYNC_LIST("application/x-clustermate-sync-list"),
+
+    /**
+     * Sync Pull responses with entry headers in fixed binary format
+     * (instead of Smile), if requested by caller
+     */
+    SYNC_PULL("application/x-clustermate-sync-pull")
     ;
 
     private final String _primaryMime;
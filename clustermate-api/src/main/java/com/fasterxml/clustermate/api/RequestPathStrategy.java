@@ -56,6 +56,15 @@ public abstract class RequestPathStrategy<P extends Enum <P>>
 
     public abstract <B extends RequestPathBuilder<B>> B appendSyncPullPath(B basePath);
 
+    /**
+     * Method for building path for accessing hash trees used for anti-entropy.
+     * Not abstract, to keep strategies that do not support anti-entropy
+     * working as is.
+     */
+    public <B extends RequestPathBuilder<B>> B appendSyncTreePath(B basePath) {
+        throw new UnsupportedOperationException("Sync tree path not supported by "+getClass().getName());
+    }
+
     public abstract <B extends RequestPathBuilder<B>> B appendNodeMetricsPath(B basePath);
 
     public abstract <B extends RequestPathBuilder<B>> B appendNodeStatusPath(B basePath);
@@ -0,0 +1,149 @@
+package com.fasterxml.clustermate.api.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.ning.compress.DataHandler;
+import com.ning.compress.Uncompressor;
+import com.ning.compress.gzip.GZIPUncompressor;
+import com.ning.compress.lzf.LZFUncompressor;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.compress.Compressors;
+
+/**
+ * Base class for handlers of a single {@link Compression} type; used
+ * via {@link CompressionCodecs} by both server- and client-side code,
+ * instead of dispatching on compression type at each call site.
+ */
+public abstract class CompressionCodec
+{
+    protected final Compression _compression;
+
+    /**
+     * Value used with <code>Content-Encoding</code> header; also used as
+     * the key for codec registration.
+     */
+    protected final String _contentEncoding;
+
+    protected CompressionCodec(Compression comp) {
+        this(comp, comp.asContentEncoding());
+    }
+
+    /**
+     * Constructor for codecs that use a <code>Content-Encoding</code>
+     * other than the default one for given type; or, if <code>comp</code>
+     * is null, for codecs only used for transfer encoding (that is, for
+     * types not used by stored entries).
+     */
+    protected CompressionCodec(Compression comp, String contentEncoding) {
+        _compression = comp;
+        _contentEncoding = contentEncoding;
+    }
+
+    /*
+    /**********************************************************************
+    /* Accessors
+    /**********************************************************************
+     */
+
+    /**
+     * @return Compression type of stored entries this codec handles, if any;
+     *   null for codecs only used for transfer encoding
+     */
+    public Compression getCompression() {
+        return _compression;
+    }
+
+    /**
+     * Accessor for the value used with <code>Content-Encoding</code>
+     * (and <code>Accept-Compression</code>) header for this codec.
+     */
+    public String getContentEncoding() {
+        return _contentEncoding;
+    }
+
+    /*
+    /**********************************************************************
+    /* Abstract methods
+    /**********************************************************************
+     */
+
+    /**
+     * Method for constructing "push" style uncompressor, which is fed
+     * compressed content and passes uncompressed content to given handler.
+     */
+    public abstract Uncompressor createUncompressor(DataHandler handler);
+
+    public abstract InputStream uncompressingStream(InputStream in) throws IOException;
+
+    public abstract OutputStream compressingStream(OutputStream out) throws IOException;
+
+    public abstract ByteContainer uncompress(ByteContainer data, int origLength) throws IOException;
+
+    @Override
+    public String toString() {
+        return "[CompressionCodec: "+_contentEncoding+"]";
+    }
+
+    /*
+    /**********************************************************************
+    /* Standard implementations
+    /**********************************************************************
+     */
+
+    /**
+     * Base class for codecs implemented using {@link Compressors}
+     */
+    protected abstract static class StdCodec extends CompressionCodec
+    {
+        protected StdCodec(Compression comp) {
+            super(comp);
+        }
+
+        @Override
+        public InputStream uncompressingStream(InputStream in) throws IOException {
+            return Compressors.uncompressingStream(in, _compression);
+        }
+
+        @Override
+        public OutputStream compressingStream(OutputStream out) throws IOException {
+            return Compressors.compressingStream(out, _compression);
+        }
+
+        @Override
+        public ByteContainer uncompress(ByteContainer data, int origLength) throws IOException {
+            return Compressors.uncompress(data, _compression, origLength);
+        }
+    }
+
+    public final static class LZF extends StdCodec
+    {
+        public final static LZF instance = new LZF();
+
+        protected LZF() {
+            super(Compression.LZF);
+        }
+
+        @Override
+        public Uncompressor createUncompressor(DataHandler handler) {
+            return new LZFUncompressor(handler);
+        }
+    }
+
+    public final static class GZIP extends StdCodec
+    {
+        public final static GZIP instance = new GZIP();
+
+        protected GZIP() {
+            super(Compression.GZIP);
+        }
+
+        @Override
+        public Uncompressor createUncompressor(DataHandler handler) {
+            return new GZIPUncompressor(handler);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.fasterxml.clustermate.api.codec;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.storemate.shared.compress.Compression;
+
+/**
+ * Immutable registry of {@link CompressionCodec}s, used for resolving
+ * codec to use for given {@link Compression} type, or for given
+ * <code>Content-Encoding</code> value; as well as for negotiating
+ * compression to use via <code>Accept-Compression</code> header.
+ *<p>
+ * Codecs are registered using their <code>Content-Encoding</code> value,
+ * so registry is not limited to compression types stored entries may use:
+ * codecs for additional (transfer) encodings may be added as well, for
+ * decoding content. Since servers only return content using compression
+ * of stored entries, such codecs are not advertised as acceptable.
+ *<p>
+ * Standard registry, {@link #std()}, contains codecs for all compression
+ * types stored entries may use; alternate codec implementations may be
+ * registered using {@link #with}.
+ */
+public class CompressionCodecs
+{
+    private final static CompressionCodecs STD = new CompressionCodecs(new LinkedHashMap<String,CompressionCodec>())
+        .with(CompressionCodec.LZF.instance)
+        .with(CompressionCodec.GZIP.instance);
+
+    /**
+     * Codecs keyed by (lower-case) <code>Content-Encoding</code>, in order
+     * of preference for negotiation.
+     */
+    protected final Map<String,CompressionCodec> _codecs;
+
+    /**
+     * Value to send as <code>Accept-Compression</code> header, to indicate
+     * that all registered codecs for stored compression types are acceptable.
+     */
+    protected final String _acceptHeader;
+
+    protected CompressionCodecs(Map<String,CompressionCodec> codecs)
+    {
+        _codecs = codecs;
+        StringBuilder sb = new StringBuilder();
+        for (CompressionCodec codec : codecs.values()) {
+            // server can not negotiate other encodings, so no point advertising
+            if (codec.getCompression() != null) {
+                sb.append(codec.getContentEncoding()).append(", ");
+            }
+        }
+        sb.append(Compression.NONE.asContentEncoding());
+        _acceptHeader = sb.toString();
+    }
+
+    public static CompressionCodecs std() {
+        return STD;
+    }
+
+    /**
+     * "Mutant factory" method for constructing a registry that has
+     * given codec registered, replacing existing codec for the same
+     * <code>Content-Encoding</code>, if any.
+     */
+    public CompressionCodecs with(CompressionCodec codec)
+    {
+        Map<String,CompressionCodec> codecs = new LinkedHashMap<String,CompressionCodec>(_codecs);
+        codecs.put(_key(codec.getContentEncoding()), codec);
+        return new CompressionCodecs(codecs);
+    }
+
+    /*
+    /**********************************************************************
+    /* Lookups
+    /**********************************************************************
+     */
+
+    /**
+     * Method for finding codec for given compression type.
+     *
+     * @return Codec to use, if one is registered; null for null
+     *   or {@link Compression#NONE}, as well as for unregistered types
+     */
+    public CompressionCodec find(Compression comp)
+    {
+        if (comp == null || comp == Compression.NONE) {
+            return null;
+        }
+        return _codecs.get(_key(comp.asContentEncoding()));
+    }
+
+    /**
+     * Method for finding codec to use for content with given
+     * <code>Content-Encoding</code>, if any.
+     */
+    public CompressionCodec findForContentEncoding(String contentEncoding)
+    {
+        if (contentEncoding == null) {
+            return null;
+        }
+        contentEncoding = contentEncoding.trim();
+        if (contentEncoding.isEmpty()) {
+            return null;
+        }
+        return _codecs.get(_key(contentEncoding));
+    }
+
+    /**
+     * Method for checking whether content compressed with given compression
+     * type may be returned as-is for request with given
+     * <code>Accept-Compression</code> header value.
+     */
+    public boolean isAcceptable(Compression comp, String acceptHeader)
+    {
+        return (find(comp) != null) && comp.isAcceptable(acceptHeader);
+    }
+
+    /**
+     * Accessor for the value of <code>Accept-Compression</code> header to
+     * send, to allow use of any of registered codecs for stored compression
+     * types.
+     */
+    public String getAcceptHeader() {
+        return _acceptHeader;
+    }
+
+    private static String _key(String contentEncoding) {
+        return contentEncoding.toLowerCase(Locale.ENGLISH);
+    }
+}
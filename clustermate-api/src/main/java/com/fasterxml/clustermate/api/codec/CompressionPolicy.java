@@ -0,0 +1,67 @@
+package com.fasterxml.clustermate.api.codec;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable policy that determines which {@link CompressionCodec}, if any,
+ * is to be used for compressing content of given length before sending it:
+ * for example, to leave small entries uncompressed, use a fast codec for
+ * medium-sized ones, and a codec with higher compression ratio for big ones.
+ *<p>
+ * Policy consists of length thresholds, each with codec to use for content
+ * at least as long as threshold (but shorter than the next threshold).
+ * Default policy, {@link #none()}, never compresses, leaving compression to
+ * be decided by the server.
+ */
+public class CompressionPolicy
+{
+    private final static CompressionPolicy NONE = new CompressionPolicy(new TreeMap<Long,CompressionCodec>());
+
+    /**
+     * Codecs to use, keyed by minimum content length; null codec
+     * meaning that content is not to be compressed
+     */
+    protected final TreeMap<Long,CompressionCodec> _codecs;
+
+    protected CompressionPolicy(TreeMap<Long,CompressionCodec> codecs) {
+        _codecs = codecs;
+    }
+
+    public static CompressionPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * "Mutant factory" method for constructing a policy that uses given
+     * codec for content of at least <code>minLength</code> bytes,
+     * up to next threshold defined, if any.
+     *
+     * @param codec Codec to use; null to indicate that content in the range
+     *   is not to be compressed. Codec must be for a compression type stored
+     *   entries may use.
+     */
+    public CompressionPolicy withCodecFrom(long minLength, CompressionCodec codec)
+    {
+        if (minLength < 0L) {
+            throw new IllegalArgumentException("Invalid minimum length ("+minLength+"): can not be negative");
+        }
+        if (codec != null && codec.getCompression() == null) {
+            throw new IllegalArgumentException("Codec "+codec+" can not be used for stored entries");
+        }
+        TreeMap<Long,CompressionCodec> codecs = new TreeMap<Long,CompressionCodec>(_codecs);
+        codecs.put(minLength, codec);
+        return new CompressionPolicy(codecs);
+    }
+
+    /**
+     * Method for finding codec to use for content of given length.
+     *
+     * @return Codec to use, if content is to be compressed; null if not
+     */
+    public CompressionCodec codecFor(long length)
+    {
+        Map.Entry<Long,CompressionCodec> entry = _codecs.floorEntry(length);
+        return (entry == null) ? null : entry.getValue();
+    }
+}
@@ -0,0 +1,130 @@
+package com.fasterxml.clustermate.api.msg;
+
+import java.io.*;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.util.IOUtil;
+
+/**
+ * Metadata of a single entry included in response to a {@link MultiGetRequest}.
+ *<p>
+ * Responses consist of a sequence of metadata-payload pairs: Smile-encoded
+ * metadata is preceded by a 4-byte length indicator (2-byte length surrounded
+ * by sentinel bytes, same as with sync-pull responses), and followed by
+ * {@link #length} bytes of payload, if any. End of response is indicated
+ * by length marker of {@link #LENGTH_EOF}.
+ */
+public class MultiGetItem
+    extends ExtensibleType
+{
+    public final static int LENGTH_EOF = 0xFFFF;
+
+    public final static int MAX_HEADER_LENGTH = 0x7FFF;
+
+    private final static byte LENGTH_HEADER_BYTE = (byte) 0xFE;
+    private final static byte LENGTH_TRAILER_BYTE = (byte) 0xFD;
+
+    /**
+     * Key of the entry
+     */
+    public StorableKey key;
+
+    /**
+     * Status of the entry, using HTTP status codes: 200 for found entries,
+     * 204 or 404 for deleted and missing entries, and 500 for failures
+     * to access entry.
+     */
+    public int status;
+
+    /**
+     * Number of payload bytes that follow metadata; 0 for entries without
+     * content, and for metadata-only requests.
+     */
+    public long length;
+
+    /**
+     * Compression used for payload, if any.
+     */
+    public Compression compression;
+
+    /**
+     * Length of the entry content, after uncompression (if any).
+     */
+    public long contentLength;
+
+    /**
+     * Content hash of the entry, if known.
+     */
+    public int contentHash;
+
+    /**
+     * Optional error message, for failed entries.
+     */
+    public String message;
+
+    /**
+     * Uncompressed content of the entry, if any; only used on client side
+     * after reading payload.
+     */
+    @JsonIgnore
+    public byte[] content;
+
+    // only for deserialization:
+    protected MultiGetItem() { }
+
+    public MultiGetItem(StorableKey key, int status)
+    {
+        this.key = key;
+        this.status = status;
+    }
+
+    public MultiGetItem(StorableKey key, int status, String msg)
+    {
+        this.key = key;
+        this.status = status;
+        this.message = msg;
+    }
+
+    public boolean found() {
+        return (status == 200);
+    }
+
+    /*
+    /**********************************************************************
+    /* Framing helpers
+    /**********************************************************************
+     */
+
+    public static void writeLength(OutputStream out, int length) throws IOException
+    {
+        final byte[] buf = new byte[4];
+        buf[0] = LENGTH_HEADER_BYTE;
+        buf[1] = (byte) (length >> 8);
+        buf[2] = (byte) length;
+        buf[3] = LENGTH_TRAILER_BYTE;
+        out.write(buf, 0, 4);
+    }
+
+    /**
+     * @return Length of metadata that follows, or {@link #LENGTH_EOF} to
+     *   indicate end of response
+     */
+    public static int readLength(InputStream in) throws IOException
+    {
+        final byte[] buf = new byte[4];
+        int length = IOUtil.readFully(in, buf);
+        if (length < 4) {
+            throw new IOException("Unexpected end-of-stream when trying to read entry length (got "+length+"/4 bytes)");
+        }
+        if (buf[0] != LENGTH_HEADER_BYTE) {
+            throw new IOException("Invalid length start-marker: 0x"+Integer.toHexString(buf[0] & 0xFF));
+        }
+        if (buf[3] != LENGTH_TRAILER_BYTE) {
+            throw new IOException("Invalid length end-marker: 0x"+Integer.toHexString(buf[3] & 0xFF));
+        }
+        return ((buf[1] & 0xFF) << 8) + (buf[2] & 0xFF);
+    }
+}
@@ -0,0 +1,34 @@
+package com.fasterxml.clustermate.api.msg;
+
+import java.util.List;
+
+import com.fasterxml.storemate.shared.StorableKey;
+
+/**
+ * Request message sent to fetch contents (or just metadata) of
+ * multiple entries with a single call; response consists of a
+ * sequence of framed {@link MultiGetItem}s.
+ */
+public class MultiGetRequest
+    extends ExtensibleType
+{
+    /**
+     * Keys of entries to fetch, in order in which they are to be returned.
+     */
+    public List<StorableKey> keys;
+
+    /**
+     * Whether only metadata (as with HEAD requests) is to be returned,
+     * without entry contents.
+     */
+    public boolean metadataOnly;
+
+    // only for deserialization:
+    protected MultiGetRequest() { }
+
+    public MultiGetRequest(List<StorableKey> keys, boolean metadataOnly)
+    {
+        this.keys = keys;
+        this.metadataOnly = metadataOnly;
+    }
+}
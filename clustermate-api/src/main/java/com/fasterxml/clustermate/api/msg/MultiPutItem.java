@@ -0,0 +1,68 @@
+package com.fasterxml.clustermate.api.msg;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.compress.Compression;
+
+/**
+ * Metadata of a single entry included in a multi-entry PUT request.
+ *<p>
+ * Requests consist of a sequence of metadata-payload pairs, framed the same
+ * way as responses to multi-entry GET requests (see {@link MultiGetItem}):
+ * Smile-encoded metadata preceded by a length indicator, followed by
+ * {@link #length} bytes of payload; and end of request is indicated by
+ * length marker of {@link MultiGetItem#LENGTH_EOF}.
+ */
+public class MultiPutItem
+    extends ExtensibleType
+{
+    /**
+     * Key of the entry
+     */
+    public StorableKey key;
+
+    /**
+     * Content hash (checksum) of the entry, calculated over uncompressed
+     * content, if known; 0 if not.
+     */
+    public int contentHash;
+
+    /**
+     * Compression used for payload, if any.
+     */
+    public Compression compression;
+
+    /**
+     * Length of the entry content after uncompression; needed if
+     * payload is compressed.
+     */
+    public long uncompressedLength;
+
+    /**
+     * Optional minimum time-to-live since last access, in seconds;
+     * 0 to use defaults.
+     */
+    public int minTTLSinceAccessSecs;
+
+    /**
+     * Optional maximum time-to-live, in seconds; 0 to use defaults.
+     */
+    public int maxTTLSecs;
+
+    /**
+     * Number of payload bytes that follow metadata.
+     */
+    public long length;
+
+    // only for deserialization:
+    protected MultiPutItem() { }
+
+    public MultiPutItem(StorableKey key, int contentHash, Compression comp,
+            long uncompressedLength, long length)
+    {
+        this.key = key;
+        this.contentHash = contentHash;
+        this.compression = comp;
+        this.uncompressedLength = uncompressedLength;
+        this.length = length;
+    }
+}
@@ -0,0 +1,68 @@
+package com.fasterxml.clustermate.api.msg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.storemate.shared.StorableKey;
+
+/**
+ * Response message type for multi-entry PUT requests: contains one
+ * result for each entry included in the request, in order in which
+ * entries were sent.
+ */
+public class MultiPutResponse
+    extends ExtensibleType
+{
+    /**
+     * Error message for failed requests
+     */
+    public String message;
+
+    /**
+     * Results for individual entries of successful requests
+     */
+    public List<Result> results;
+
+    public MultiPutResponse() { }
+    public MultiPutResponse(String msg) { message = msg; }
+    public MultiPutResponse(List<Result> r) { results = r; }
+
+    public int size() {
+        return (results == null) ? 0 : results.size();
+    }
+
+    public MultiPutResponse add(Result r) {
+        if (results == null) {
+            results = new ArrayList<Result>();
+        }
+        results.add(r);
+        return this;
+    }
+
+    /**
+     * Result of PUT for a single entry, using HTTP status codes: 200 for
+     * successful insertion, 4xx for problems with entry (such as 409
+     * for conflicting content), and 500 for failures to store entry.
+     */
+    public static class Result
+    {
+        public StorableKey key;
+
+        public int status;
+
+        public String message;
+
+        // only for deserialization:
+        protected Result() { }
+
+        public Result(StorableKey key, int status, String msg) {
+            this.key = key;
+            this.status = status;
+            this.message = msg;
+        }
+
+        public boolean succeeded() {
+            return (status >= 200) && (status < 300);
+        }
+    }
+}
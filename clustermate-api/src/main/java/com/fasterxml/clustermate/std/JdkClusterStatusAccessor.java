@@ -40,6 +40,20 @@ public class JdkClusterStatusAccessor extends ClusterStatusAccessor
         return _getClusterStatus(pathBuilder.toString(), timeoutMsecs, true);
     }
 
+    @Override
+    public ClusterStatusMessage getClusterStatusIfChanged(IpAndPort ip, long timeoutMsecs,
+            long lastUpdateSeen)
+        throws IOException
+    {
+        JdkHttpClientPathBuilder pathBuilder = new JdkHttpClientPathBuilder(ip)
+            .addPathSegments(_basePath);
+        pathBuilder = _paths.appendNodeStatusPath(pathBuilder);
+        if (lastUpdateSeen > 0L) {
+            pathBuilder = pathBuilder.addParameter(ClusterMateConstants.QUERY_PARAM_SINCE, lastUpdateSeen);
+        }
+        return _getClusterStatus(pathBuilder.toString(), timeoutMsecs, true);
+    }
+
     @Override
     public ClusterStatusMessage getRemoteStatus(IpAndPort ip, long timeoutMsecs)
         throws IOException
@@ -78,6 +92,11 @@ public class JdkClusterStatusAccessor extends ClusterStatusAccessor
         conn.setConnectTimeout((int) timeoutMsecs);
         conn.setReadTimeout((int) timeoutMsecs);
         int status = conn.getResponseCode();
+        // only returned for conditional requests; nothing to read
+        if (status == ClusterMateConstants.HTTP_STATUS_NOT_MODIFIED) {
+            conn.disconnect();
+            return null;
+        }
         if (!IOUtil.isHTTPSuccess(status)) {
             // should we read the error message?
             throw new IOException("Failed to access Cluster state using '"+endpoint+"': response code "
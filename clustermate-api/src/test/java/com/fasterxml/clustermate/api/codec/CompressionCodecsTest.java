@@ -0,0 +1,202 @@
+package com.fasterxml.clustermate.api.codec;
+
+import java.io.*;
+
+import com.ning.compress.DataHandler;
+import com.ning.compress.Uncompressor;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.compress.Compressors;
+
+import com.fasterxml.clustermate.api.ApiTestBase;
+
+public class CompressionCodecsTest extends ApiTestBase
+{
+    private final static byte[] DATA = _data();
+
+    public void testStdLookups()
+    {
+        CompressionCodecs codecs = CompressionCodecs.std();
+        assertNull(codecs.find(null));
+        assertNull(codecs.find(Compression.NONE));
+        assertSame(CompressionCodec.LZF.instance, codecs.find(Compression.LZF));
+        assertSame(CompressionCodec.GZIP.instance, codecs.find(Compression.GZIP));
+
+        assertSame(CompressionCodec.GZIP.instance, codecs.findForContentEncoding("gzip"));
+        assertSame(CompressionCodec.LZF.instance, codecs.findForContentEncoding(" lzf"));
+        assertNull(codecs.findForContentEncoding("identity"));
+        assertNull(codecs.findForContentEncoding("br"));
+        assertNull(codecs.findForContentEncoding(""));
+
+        assertEquals("lzf, gzip, identity", codecs.getAcceptHeader());
+    }
+
+    public void testNegotiation()
+    {
+        CompressionCodecs codecs = CompressionCodecs.std();
+        assertTrue(codecs.isAcceptable(Compression.LZF, "lzf, gzip, identity"));
+        assertTrue(codecs.isAcceptable(Compression.GZIP, "gzip"));
+        assertFalse(codecs.isAcceptable(Compression.GZIP, "lzf"));
+        assertFalse(codecs.isAcceptable(Compression.NONE, "identity"));
+        assertFalse(codecs.isAcceptable(Compression.LZF, null));
+        assertFalse(codecs.isAcceptable(null, "lzf"));
+    }
+
+    public void testAlternateCodec()
+    {
+        CompressionCodec custom = new DelegatingCodec(Compression.GZIP, "gzip", CompressionCodec.GZIP.instance);
+        CompressionCodecs codecs = CompressionCodecs.std().with(custom);
+        assertSame(custom, codecs.find(Compression.GZIP));
+        assertSame(custom, codecs.findForContentEncoding("gzip"));
+        assertSame(CompressionCodec.LZF.instance, codecs.find(Compression.LZF));
+        assertEquals("lzf, gzip, identity", codecs.getAcceptHeader());
+        // original must not be modified
+        assertSame(CompressionCodec.GZIP.instance, CompressionCodecs.std().find(Compression.GZIP));
+    }
+
+    public void testAdditionalEncoding()
+    {
+        // encoding not used by stored entries, only for transfer
+        CompressionCodec custom = new DelegatingCodec(null, "x-gzip", CompressionCodec.GZIP.instance);
+        CompressionCodecs codecs = CompressionCodecs.std().with(custom);
+        assertSame(custom, codecs.findForContentEncoding("x-gzip"));
+        assertSame(custom, codecs.findForContentEncoding("X-GZIP "));
+        assertSame(CompressionCodec.GZIP.instance, codecs.find(Compression.GZIP));
+        // but since server only sends stored compression types, not advertised
+        assertEquals("lzf, gzip, identity", codecs.getAcceptHeader());
+        assertNull(CompressionCodecs.std().findForContentEncoding("x-gzip"));
+    }
+
+    public void testPolicy()
+    {
+        assertNull(CompressionPolicy.none().codecFor(0L));
+        assertNull(CompressionPolicy.none().codecFor(Long.MAX_VALUE));
+
+        CompressionPolicy policy = CompressionPolicy.none()
+                .withCodecFrom(200000L, CompressionCodec.GZIP.instance)
+                .withCodecFrom(1000L, CompressionCodec.LZF.instance);
+        assertNull(policy.codecFor(0L));
+        assertNull(policy.codecFor(999L));
+        assertSame(CompressionCodec.LZF.instance, policy.codecFor(1000L));
+        assertSame(CompressionCodec.LZF.instance, policy.codecFor(199999L));
+        assertSame(CompressionCodec.GZIP.instance, policy.codecFor(200000L));
+        // and ranges may be excluded as well
+        policy = policy.withCodecFrom(50000L, null);
+        assertSame(CompressionCodec.LZF.instance, policy.codecFor(49999L));
+        assertNull(policy.codecFor(50000L));
+        assertSame(CompressionCodec.GZIP.instance, policy.codecFor(300000L));
+
+        // but only for codecs of stored compression types
+        try {
+            policy.withCodecFrom(1L, new DelegatingCodec(null, "x-gzip", CompressionCodec.GZIP.instance));
+            fail("Should not allow transfer-only codec");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("x-gzip"));
+        }
+    }
+
+    public void testRoundTrips() throws Exception
+    {
+        for (Compression comp : new Compression[] { Compression.LZF, Compression.GZIP }) {
+            CompressionCodec codec = CompressionCodecs.std().find(comp);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            OutputStream out = codec.compressingStream(bytes);
+            out.write(DATA);
+            out.close();
+            byte[] compressed = bytes.toByteArray();
+            assertEquals(comp, Compressors.findCompression(compressed, 0, compressed.length));
+
+            // bulk
+            byte[] result = codec.uncompress(ByteContainer.simple(compressed), DATA.length).asBytes();
+            _verify(comp, result);
+
+            // streaming
+            InputStream in = codec.uncompressingStream(new ByteArrayInputStream(compressed));
+            bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1000];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+            in.close();
+            _verify(comp, bytes.toByteArray());
+
+            // push
+            final ByteArrayOutputStream pushed = new ByteArrayOutputStream();
+            Uncompressor uncomp = codec.createUncompressor(new DataHandler() {
+                @Override
+                public boolean handleData(byte[] buffer, int offset, int len) {
+                    pushed.write(buffer, offset, len);
+                    return true;
+                }
+
+                @Override
+                public void allDataHandled() { }
+            });
+            uncomp.feedCompressedData(compressed, 0, compressed.length);
+            uncomp.complete();
+            _verify(comp, pushed.toByteArray());
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods, classes
+    /**********************************************************************
+     */
+
+    private static class DelegatingCodec extends CompressionCodec
+    {
+        private final CompressionCodec _delegate;
+
+        public DelegatingCodec(Compression comp, String contentEncoding, CompressionCodec delegate) {
+            super(comp, contentEncoding);
+            _delegate = delegate;
+        }
+
+        @Override
+        public Uncompressor createUncompressor(DataHandler handler) {
+            return _delegate.createUncompressor(handler);
+        }
+
+        @Override
+        public InputStream uncompressingStream(InputStream in) throws IOException {
+            return _delegate.uncompressingStream(in);
+        }
+
+        @Override
+        public OutputStream compressingStream(OutputStream out) throws IOException {
+            return _delegate.compressingStream(out);
+        }
+
+        @Override
+        public ByteContainer uncompress(ByteContainer data, int origLength) throws IOException {
+            return _delegate.uncompress(data, origLength);
+        }
+    }
+
+    private void _verify(Compression comp, byte[] actual)
+    {
+        assertEquals("Length for "+comp, DATA.length, actual.length);
+        for (int i = 0; i < DATA.length; ++i) {
+            if (DATA[i] != actual[i]) {
+                fail("Content mismatch for "+comp+" at #"+i);
+            }
+        }
+    }
+
+    private static byte[] _data()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 100000; ++i) {
+            sb.append("Entry ").append(i).append(": some content to compress\n");
+        }
+        try {
+            return sb.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.fasterxml.clustermate.client.ahc;
 import java.io.*;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
 
 import com.fasterxml.clustermate.api.*;
+import com.fasterxml.clustermate.api.codec.CompressionCodecs;
 import com.fasterxml.clustermate.client.ClusterServerNode;
 import com.fasterxml.clustermate.client.Loggable;
 import com.fasterxml.clustermate.client.StoreClientConfig;
@@ -24,6 +27,18 @@ public abstract class AHCBasedAccessor<
 >
     extends Loggable
 {
+    /**
+     * Executor used for running completion listeners of asynchronous calls:
+     * listeners are run directly by the thread that completes the request,
+     * as they are expected not to block.
+     */
+    protected final static Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
     protected final AsyncHttpClient _httpClient;
 
     protected final ObjectMapper _mapper;
@@ -33,7 +48,9 @@ public abstract class AHCBasedAccessor<
     protected EntryKeyConverter<K> _keyConverter;
 
     protected final ClusterServerNode _server;
-    
+
+    protected final CompressionCodecs _compressionCodecs;
+
     protected AHCBasedAccessor(StoreClientConfig<K,?> storeConfig, AsyncHttpClient hc,
             ClusterServerNode server)
     {
@@ -43,6 +60,7 @@ public abstract class AHCBasedAccessor<
         _mapper = storeConfig.getJsonMapper();
         _pathFinder = storeConfig.getPathStrategy();
         _keyConverter = storeConfig.getKeyConverter();
+        _compressionCodecs = storeConfig.getCompressionCodecs();
     }
 
     /*
@@ -116,12 +134,20 @@ public abstract class AHCBasedAccessor<
             try {
                 long l = Long.parseLong(versionStr);
                 long responseTime = System.currentTimeMillis();
-                ((ClusterServerNodeImpl) server).updateLastClusterUpdateAvailable(l, requestTime, responseTime);
+                ((ClusterServerNodeImpl) server).updateLastClusterUpdateAvailable(requestTime, responseTime, l);
             } catch (Exception e) {
                 logWarn("Invalid Cluster version String '"+versionStr+"' received from "
                         +server.getAddress());
             }
         }
+        String loadStr = headers.getFirstValue(ClusterMateConstants.CUSTOM_HTTP_HEADER_LOAD_HINT);
+        if (loadStr != null && (loadStr = loadStr.trim()).length() > 0) {
+            try {
+                ((ClusterServerNodeImpl) server).updateLoadHint(Integer.parseInt(loadStr));
+            } catch (Exception e) {
+                logWarn("Invalid load hint '"+loadStr+"' received from "+server.getAddress());
+            }
+        }
     }
 
     protected ContentType findContentType(Response resp, ContentType defaultType)
@@ -146,7 +172,8 @@ public abstract class AHCBasedAccessor<
         if (t instanceof ConnectException) {
             return CallFailure.connectTimeout(_server, startTime, System.currentTimeMillis());
         }
-        if (t instanceof SocketTimeoutException) {
+        // per-request timeouts of asynchronous calls are reported as TimeoutExceptions
+        if (t instanceof SocketTimeoutException || t instanceof TimeoutException) {
             return CallFailure.timeout(_server, startTime, System.currentTimeMillis());
         }
         return CallFailure.clientInternal(_server, startTime, System.currentTimeMillis(), t);
@@ -14,7 +14,7 @@ import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
 
 public class AHCContentGetter<K extends EntryKey>
     extends AHCBasedAccessor<K>
-    implements ContentGetter<K>
+    implements ContentGetter<K>, AsyncContentGetter<K>
 {
     public AHCContentGetter(StoreClientConfig<K,?> storeConfig,
             AsyncHttpClient hc, ClusterServerNode server)
@@ -38,6 +38,71 @@ public class AHCContentGetter<K extends EntryKey>
         if (timeout < config.getMinimumTimeoutMsecs()) {
             return new AHCReadCallResult<T>(CallFailure.timeout(_server, startTime, startTime));
         }
+        UncompressingAsyncHandler<T> handler = new UncompressingAsyncHandler<T>(processor, _compressionCodecs);
+        
+        try {
+            T resp = null;
+            ListenableFuture<T> futurama = _httpClient.executeRequest(
+                    _buildRequest(params, contentId, processor, range, timeout), handler);
+            try {
+                resp = futurama.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return new AHCReadCallResult<T>(CallFailure.timeout(_server, startTime, System.currentTimeMillis()));
+            }
+            return _handleResponse(handler, resp, startTime);
+        } catch (Exception e) {
+            return new AHCReadCallResult<T>(failFromException(e, startTime));
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Non-blocking call implementation
+    /**********************************************************************
+     */
+
+    @Override
+    public <T> void tryGetAsync(CallConfig config, ReadCallParameters params,
+            long endOfTime, K contentId, GetContentProcessor<T> processor, ByteRange range,
+            final CallListener<ReadCallResult<T>> listener)
+    {
+        final long startTime = System.currentTimeMillis();
+        final long timeout = Math.min(endOfTime - startTime, config.getGetCallTimeoutMsecs());
+        if (timeout < config.getMinimumTimeoutMsecs()) {
+            listener.callCompleted(new AHCReadCallResult<T>(CallFailure.timeout(_server, startTime, startTime)));
+            return;
+        }
+        final UncompressingAsyncHandler<T> handler = new UncompressingAsyncHandler<T>(processor, _compressionCodecs);
+        final ListenableFuture<T> futurama;
+        try {
+            futurama = _httpClient.executeRequest(_buildRequest(params, contentId, processor, range, timeout), handler);
+        } catch (Exception e) {
+            listener.callCompleted(new AHCReadCallResult<T>(failFromException(e, startTime)));
+            return;
+        }
+        futurama.addListener(new Runnable() {
+            @Override
+            public void run() {
+                ReadCallResult<T> result;
+                try {
+                    result = _handleResponse(handler, futurama.get(), startTime);
+                } catch (Exception e) {
+                    result = new AHCReadCallResult<T>(failFromException(e, startTime));
+                }
+                listener.callCompleted(result);
+            }
+        }, DIRECT_EXECUTOR);
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods
+    /**********************************************************************
+     */
+
+    protected Request _buildRequest(ReadCallParameters params, K contentId,
+            GetContentProcessor<?> processor, ByteRange range, long timeout)
+    {
         AHCPathBuilder path = _server.rootPath();
         path = _pathFinder.appendStoreEntryPath(path);
         path = _keyConverter.appendToPath(path, contentId);
@@ -45,44 +110,45 @@ public class AHCContentGetter<K extends EntryKey>
             path = params.appendToPath(path, contentId);
         }
 
-        // plus, allow use of GZIP and LZF
+        // plus, allow use of all compression codecs we have
         path = path.setHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT_COMPRESSION,
-                "lzf, gzip, identity");
+                _compressionCodecs.getAcceptHeader());
         // and may use range as well
         if (range != null) {
             path = path.setHeader(ClusterMateConstants.HTTP_HEADER_RANGE_FOR_REQUEST,
                     range.asRequestHeader());
         }
+        // or make it conditional
+        String etag = processor.getIfNoneMatch();
+        if (etag != null) {
+            path = path.setHeader(ClusterMateConstants.HTTP_HEADER_ETAG_NO_MATCH, etag);
+        }
 
         BoundRequestBuilder reqBuilder = path.getRequest(_httpClient);
+        // to let timeouts work without blocking, need per-request timeout
+        reqBuilder = reqBuilder.setPerRequestConfig(new PerRequestConfig(null, (int) timeout));
+        return reqBuilder.build();
+    }
 
-        int statusCode = -1;
-        UncompressingAsyncHandler<T> handler = new UncompressingAsyncHandler<T>(processor);
-        
-        try {
-            T resp = null;
-            ListenableFuture<T> futurama = _httpClient.executeRequest(reqBuilder.build(), handler);
-            try {
-                resp = futurama.get(timeout, TimeUnit.MILLISECONDS);
-            } catch (TimeoutException e) {
-                return new AHCReadCallResult<T>(CallFailure.timeout(_server, startTime, System.currentTimeMillis()));
-            }
-            statusCode = handler.getStatus();
+    protected <T> ReadCallResult<T> _handleResponse(UncompressingAsyncHandler<T> handler, T resp,
+            long startTime)
+    {
+        int statusCode = handler.getStatus();
 
-            handleHeaders(_server, handler.getHeaders(), startTime);
-            if (handler.isFailed()) {
-                if (statusCode == ClusterMateConstants.HTTP_STATUS_NOT_FOUND) { // is this a fail or success? For now it's actually success...
-                    return AHCReadCallResult.notFound(_server);
-                }
-                // then the default fallback
-                String excerpt = handler.getExcerpt();
-                return new AHCReadCallResult<T>(CallFailure.general(_server, statusCode, startTime,
-                        System.currentTimeMillis(), excerpt));
+        handleHeaders(_server, handler.getHeaders(), startTime);
+        if (handler.isFailed()) {
+            if (statusCode == ClusterMateConstants.HTTP_STATUS_NOT_FOUND) { // is this a fail or success? For now it's actually success...
+                return AHCReadCallResult.notFound(_server);
             }
-            return new AHCReadCallResult<T>(_server, resp);
-        } catch (Exception e) {
-            return new AHCReadCallResult<T>(failFromException(e, startTime));
+            // then the default fallback
+            String excerpt = handler.getExcerpt();
+            return new AHCReadCallResult<T>(CallFailure.general(_server, statusCode, startTime,
+                    System.currentTimeMillis(), excerpt));
         }
+        AHCReadCallResult<T> result = new AHCReadCallResult<T>(_server, resp);
+        // callers may need to verify content version (ETag), for example
+        result.setHeaders(handler.getHeaders());
+        return result;
     }
 }
 
@@ -12,8 +12,10 @@ import com.fasterxml.clustermate.api.EntryKeyConverter;
 import com.fasterxml.clustermate.client.ClusterServerNode;
 import com.fasterxml.clustermate.client.StoreClientConfig;
 import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.util.ChecksumAppendingInputStream;
 import com.fasterxml.storemate.shared.ByteContainer;
 import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.hash.HashConstants;
 import com.fasterxml.storemate.shared.util.IOUtil;
 import com.fasterxml.storemate.shared.util.WithBytesCallback;
 import com.ning.http.client.AsyncHttpClient;
@@ -21,6 +23,8 @@ import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
 import com.ning.http.client.Body;
 import com.ning.http.client.BodyGenerator;
 import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.PerRequestConfig;
+import com.ning.http.client.Request;
 import com.ning.http.client.Response;
 
 /*
@@ -38,7 +42,7 @@ import org.apache.http.util.EntityUtils;
  */
 public class AHCContentPutter<K extends EntryKey>
     extends AHCBasedAccessor<K>
-    implements ContentPutter<K>
+    implements ContentPutter<K>, AsyncContentPutter<K>
 {
     public AHCContentPutter(StoreClientConfig<K,?> storeConfig,
             AsyncHttpClient asyncHC, ClusterServerNode server)
@@ -136,6 +140,66 @@ public class AHCContentPutter<K extends EntryKey>
             K contentId, PutContentProvider content,
             final long startTime, final long timeout)
         throws IOException, ExecutionException, InterruptedException
+    {
+        ListenableFuture<Response> futurama = _httpClient.executeRequest(
+                _buildRequest(params, contentId, content, timeout));
+
+        // First, see if we can get the answer without time out...
+        Response resp;
+        try {
+            resp = futurama.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return CallFailure.timeout(_server, startTime, System.currentTimeMillis());
+        }
+        return _handleResponse(config, resp, startTime);
+    }
+
+    /*
+    /**********************************************************************
+    /* Non-blocking call implementation
+    /**********************************************************************
+     */
+
+    @Override
+    public void tryPutAsync(final CallConfig config, PutCallParameters params,
+            long endOfTime, K contentId, PutContentProvider content,
+            final CallListener<CallFailure> listener)
+    {
+        final long startTime = System.currentTimeMillis();
+        final long timeout = Math.min(endOfTime - startTime, config.getPutCallTimeoutMsecs());
+        if (timeout < config.getMinimumTimeoutMsecs()) {
+            listener.callCompleted(CallFailure.timeout(_server, startTime, startTime));
+            return;
+        }
+        final ListenableFuture<Response> futurama;
+        try {
+            futurama = _httpClient.executeRequest(_buildRequest(params, contentId, content, timeout));
+        } catch (Exception e) {
+            listener.callCompleted(failFromException(e, startTime));
+            return;
+        }
+        futurama.addListener(new Runnable() {
+            @Override
+            public void run() {
+                CallFailure fail;
+                try {
+                    fail = _handleResponse(config, futurama.get(), startTime);
+                } catch (Exception e) {
+                    fail = failFromException(e, startTime);
+                }
+                listener.callCompleted(fail);
+            }
+        }, DIRECT_EXECUTOR);
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods
+    /**********************************************************************
+     */
+
+    protected Request _buildRequest(PutCallParameters params, K contentId,
+            PutContentProvider content, long timeout)
     {
         AHCPathBuilder path = _server.rootPath();
         path = _pathFinder.appendStoreEntryPath(path);
@@ -150,22 +214,23 @@ public class AHCContentPutter<K extends EntryKey>
             path = path.addCompression(comp, content.uncompressedLength());
         }
         Generator<K> gen = new Generator<K>(content, _keyConverter);
-        int checksum = gen.getChecksum();
-        path = path.addParameter(ClusterMateConstants.QUERY_PARAM_CHECKSUM,
-                (checksum == 0) ? "0" : String.valueOf(checksum));
+        if (gen.usesChecksumTrailer()) {
+            path = path.addParameter(ClusterMateConstants.QUERY_PARAM_CHECKSUM_TRAILER, "true");
+        } else {
+            int checksum = gen.getChecksum();
+            path = path.addParameter(ClusterMateConstants.QUERY_PARAM_CHECKSUM,
+                    (checksum == 0) ? "0" : String.valueOf(checksum));
+        }
 
         BoundRequestBuilder reqBuilder = path.putRequest(_httpClient);
         reqBuilder = reqBuilder.setBody(gen);
-        ListenableFuture<Response> futurama = _httpClient.executeRequest(reqBuilder.build());
-
-        // First, see if we can get the answer without time out...
-        Response resp;
-        try {
-            resp = futurama.get(timeout, TimeUnit.MILLISECONDS);
-        } catch (TimeoutException e) {
-            return CallFailure.timeout(_server, startTime, System.currentTimeMillis());
-        }
+        // to let timeouts work without blocking, need per-request timeout
+        reqBuilder = reqBuilder.setPerRequestConfig(new PerRequestConfig(null, (int) timeout));
+        return reqBuilder.build();
+    }
 
+    protected CallFailure _handleResponse(CallConfig config, Response resp, long startTime)
+    {
         // and if so, is it successful?
         int statusCode = resp.getStatusCode();
 
@@ -197,22 +262,37 @@ public class AHCContentPutter<K extends EntryKey>
 
         protected final AtomicInteger _checksum;
 
+        /**
+         * Whether content is of unknown length and checksum, so that checksum
+         * is to be calculated while sending, and passed after content.
+         */
+        protected final boolean _checksumTrailer;
+
         public Generator(PutContentProvider content, EntryKeyConverter<K> keyConverter)
         {
             _content = content;
             _keyConverter = keyConverter;
-            // Let's see if we can calculate content checksum early, for even the first request
-            int checksum = 0;
+            // Let's see if we can calculate content checksum early, for even the first request;
+            // but if provider already has one, must use it, since content may be compressed
+            int checksum = _content.getContentHash();
             ByteContainer bytes = _content.contentAsBytes();
-            if (bytes != null) {
+            if (bytes != null && checksum == HashConstants.NO_CHECKSUM) {
                 checksum = _keyConverter.contentHashFor(bytes);
             }
             _checksum = new AtomicInteger(checksum);
+            Compression comp = _content.getExistingCompression();
+            _checksumTrailer = (bytes == null) && (checksum == HashConstants.NO_CHECKSUM)
+                    && (_content.length() < 0L)
+                    && (comp == null || comp == Compression.NONE);
         }
 
         public int getChecksum() {
             return _checksum.get();
         }
+
+        public boolean usesChecksumTrailer() {
+            return _checksumTrailer;
+        }
         
         @Override
         public Body createBody() throws IOException
@@ -235,6 +315,14 @@ public class AHCContentPutter<K extends EntryKey>
                             +ie.getMessage(), ie);
                 }
             }
+            // Content of unknown length; checksum either known up-front, or sent after content
+            InputStream in = _content.contentAsStream();
+            if (in != null) {
+                if (_checksumTrailer) {
+                    in = new ChecksumAppendingInputStream(in, _keyConverter.createStreamingContentHasher());
+                }
+                return new BodyInputStreamBacked(in);
+            }
             // sanity check; we'll never get here:
             throw new IOException("No suitable body generation method found");
         }
@@ -10,6 +10,8 @@ import com.fasterxml.clustermate.client.call.ContentHeader;
 import com.fasterxml.clustermate.client.call.ContentPutter;
 import com.fasterxml.clustermate.client.call.EntryInspector;
 import com.fasterxml.clustermate.client.call.EntryLister;
+import com.fasterxml.clustermate.client.call.MultiContentGetter;
+import com.fasterxml.clustermate.client.call.MultiContentPutter;
 import com.ning.http.client.AsyncHttpClient;
 
 public class AHCEntryAccessors<K extends EntryKey>
@@ -54,4 +56,14 @@ public class AHCEntryAccessors<K extends EntryKey>
     public EntryInspector<K> entryInspector(ClusterServerNode server) {
         return new AHCEntryInspector<K>(_storeConfig, _ahc, server);
     }
+
+    @Override
+    public MultiContentGetter<K> multiEntryGetter(ClusterServerNode server) {
+        return new AHCMultiContentGetter<K>(_storeConfig, _ahc, server);
+    }
+
+    @Override
+    public MultiContentPutter<K> multiEntryPutter(ClusterServerNode server) {
+        return new AHCMultiContentPutter<K>(_storeConfig, _ahc, server);
+    }
 }
@@ -0,0 +1,108 @@
+package com.fasterxml.clustermate.client.ahc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.ContentType;
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+import com.fasterxml.clustermate.api.msg.MultiGetRequest;
+import com.fasterxml.clustermate.client.ClusterServerNode;
+import com.fasterxml.clustermate.client.StoreClientConfig;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.util.MultiGetResponseReader;
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.util.IOUtil;
+import com.ning.http.client.*;
+import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
+
+/**
+ * Accessor used for fetching multiple entries from a single server node
+ * using a single POST request.
+ */
+public class AHCMultiContentGetter<K extends EntryKey>
+    extends AHCBasedAccessor<K>
+    implements MultiContentGetter<K>
+{
+    protected final MultiGetResponseReader _responseReader;
+
+    public AHCMultiContentGetter(StoreClientConfig<K,?> storeConfig,
+            AsyncHttpClient hc, ClusterServerNode server)
+    {
+        super(storeConfig, hc, server);
+        _responseReader = new MultiGetResponseReader(_mapper, _compressionCodecs);
+    }
+
+    /*
+    /**********************************************************************
+    /* Call implementation
+    /**********************************************************************
+     */
+
+    @Override
+    public ReadCallResult<List<MultiGetItem>> tryGetMulti(CallConfig config,
+            ReadCallParameters params, long endOfTime,
+            List<K> keys, boolean metadataOnly)
+    {
+        // first: if we can't spend at least 10 msecs, let's give up:
+        final long startTime = System.currentTimeMillis();
+        final long timeout = Math.min(endOfTime - startTime, config.getGetCallTimeoutMsecs());
+        if (timeout < config.getMinimumTimeoutMsecs()) {
+            return failed(CallFailure.timeout(_server, startTime, startTime));
+        }
+        List<StorableKey> rawKeys = new ArrayList<StorableKey>(keys.size());
+        for (K key : keys) {
+            rawKeys.add(key.asStorableKey());
+        }
+        AHCPathBuilder path = _server.rootPath();
+        path = _pathFinder.appendStoreEntryPath(path);
+        path = path.addParameter(ClusterMateConstants.QUERY_PARAM_MULTI,
+                ClusterMateConstants.MULTI_OP_GET);
+        path = path.setContentType(ContentType.JSON.toString());
+        if (params != null) {
+            path = params.appendToPath(path, null);
+        }
+        InputStream in = null;
+        try {
+            BoundRequestBuilder reqBuilder = path
+                    .postRequest(_httpClient)
+                    .setBody(_mapper.writeValueAsBytes(new MultiGetRequest(rawKeys, metadataOnly)))
+                    ;
+            Future<Response> futurama = _httpClient.executeRequest(reqBuilder.build());
+            Response resp;
+            try {
+                resp = futurama.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return failed(CallFailure.timeout(_server, startTime, System.currentTimeMillis()));
+            }
+            int statusCode = resp.getStatusCode();
+            handleHeaders(_server, resp, startTime);
+
+            if (!IOUtil.isHTTPSuccess(statusCode)) {
+                String msg = getExcerpt(resp, config.getMaxExcerptLength());
+                return failed(CallFailure.general(_server, statusCode, startTime, System.currentTimeMillis(), msg));
+            }
+            in = resp.getResponseBodyAsStream();
+            List<MultiGetItem> items = _responseReader.readItems(in);
+            return new AHCReadCallResult<List<MultiGetItem>>(_server, items);
+        } catch (Exception e) {
+            return failed(failFromException(e, startTime));
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e2) { }
+            }
+        }
+    }
+
+    protected ReadCallResult<List<MultiGetItem>> failed(CallFailure fail) {
+        return new AHCReadCallResult<List<MultiGetItem>>(fail);
+    }
+}
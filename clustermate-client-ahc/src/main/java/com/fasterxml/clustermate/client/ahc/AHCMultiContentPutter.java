@@ -0,0 +1,99 @@
+package com.fasterxml.clustermate.client.ahc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.msg.MultiPutResponse;
+import com.fasterxml.clustermate.client.ClusterServerNode;
+import com.fasterxml.clustermate.client.StoreClientConfig;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.util.MultiPutRequestWriter;
+import com.fasterxml.storemate.shared.util.IOUtil;
+import com.ning.http.client.*;
+import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
+
+/**
+ * Accessor used for storing multiple entries in a single server node
+ * using a single POST request.
+ */
+public class AHCMultiContentPutter<K extends EntryKey>
+    extends AHCBasedAccessor<K>
+    implements MultiContentPutter<K>
+{
+    protected final MultiPutRequestWriter<K> _requestWriter;
+
+    public AHCMultiContentPutter(StoreClientConfig<K,?> storeConfig,
+            AsyncHttpClient hc, ClusterServerNode server)
+    {
+        super(storeConfig, hc, server);
+        _requestWriter = new MultiPutRequestWriter<K>(_mapper, _keyConverter);
+    }
+
+    /*
+    /**********************************************************************
+    /* Call implementation
+    /**********************************************************************
+     */
+
+    @Override
+    public ReadCallResult<MultiPutResponse> tryPutMulti(CallConfig config,
+            PutCallParameters params, long endOfTime,
+            List<K> keys, List<PutContentProvider> contents)
+    {
+        final long startTime = System.currentTimeMillis();
+        final long timeout = Math.min(endOfTime - startTime, config.getPutCallTimeoutMsecs());
+        if (timeout < config.getMinimumTimeoutMsecs()) {
+            return failed(CallFailure.timeout(_server, startTime, startTime));
+        }
+        AHCPathBuilder path = _server.rootPath();
+        path = _pathFinder.appendStoreEntryPath(path);
+        path = path.addParameter(ClusterMateConstants.QUERY_PARAM_MULTI,
+                ClusterMateConstants.MULTI_OP_PUT);
+        path = path.setContentType(ClusterMateConstants.HTTP_CONTENT_BINARY);
+        if (params != null) {
+            path = params.appendToPath(path, null);
+        }
+        InputStream in = null;
+        try {
+            BoundRequestBuilder reqBuilder = path
+                    .postRequest(_httpClient)
+                    .setBody(_requestWriter.write(keys, contents))
+                    ;
+            Future<Response> futurama = _httpClient.executeRequest(reqBuilder.build());
+            Response resp;
+            try {
+                resp = futurama.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return failed(CallFailure.timeout(_server, startTime, System.currentTimeMillis()));
+            }
+            int statusCode = resp.getStatusCode();
+            handleHeaders(_server, resp, startTime);
+
+            if (!IOUtil.isHTTPSuccess(statusCode)) {
+                String msg = getExcerpt(resp, config.getMaxExcerptLength());
+                return failed(CallFailure.general(_server, statusCode, startTime, System.currentTimeMillis(), msg));
+            }
+            in = resp.getResponseBodyAsStream();
+            MultiPutResponse result = _mapper.readValue(in, MultiPutResponse.class);
+            return new AHCReadCallResult<MultiPutResponse>(_server, result);
+        } catch (Exception e) {
+            return failed(failFromException(e, startTime));
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e2) { }
+            }
+        }
+    }
+
+    protected ReadCallResult<MultiPutResponse> failed(CallFailure fail) {
+        return new AHCReadCallResult<MultiPutResponse>(fail);
+    }
+}
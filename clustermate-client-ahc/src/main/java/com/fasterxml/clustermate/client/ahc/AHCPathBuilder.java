@@ -128,6 +128,10 @@ public class AHCPathBuilder
         return _addParamsAndHeaders(ahc.preparePut(_url(false)));
     }
 
+    public BoundRequestBuilder postRequest(AsyncHttpClient ahc) {
+        return _addParamsAndHeaders(ahc.preparePost(_url(false)));
+    }
+
     public BoundRequestBuilder getRequest(AsyncHttpClient ahc) {
         return _addParamsAndHeaders(ahc.prepareGet(_url(false)));
     }
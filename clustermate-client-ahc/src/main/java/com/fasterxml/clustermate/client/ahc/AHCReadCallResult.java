@@ -4,6 +4,7 @@ import com.fasterxml.clustermate.api.ClusterMateConstants;
 import com.fasterxml.clustermate.client.ClusterServerNode;
 import com.fasterxml.clustermate.client.call.CallFailure;
 import com.fasterxml.clustermate.client.call.ReadCallResult;
+import com.ning.http.client.FluentCaseInsensitiveStringsMap;
 import com.ning.http.client.HttpResponseHeaders;
 
 /**
@@ -15,7 +16,7 @@ import com.ning.http.client.HttpResponseHeaders;
  */
 public final class AHCReadCallResult<T> extends ReadCallResult<T>
 {
-    protected HttpResponseHeaders _headers;
+    protected FluentCaseInsensitiveStringsMap _headers;
 
     /*
     /**********************************************************************
@@ -40,6 +41,10 @@ public final class AHCReadCallResult<T> extends ReadCallResult<T>
     }
 
     public void setHeaders(HttpResponseHeaders h) {
+        _headers = (h == null) ? null : h.getHeaders();
+    }
+
+    public void setHeaders(FluentCaseInsensitiveStringsMap h) {
         _headers = h;
     }
 
@@ -52,7 +57,7 @@ public final class AHCReadCallResult<T> extends ReadCallResult<T>
     @Override
     public String getHeaderValue(String key)
     {
-        HttpResponseHeaders h = _headers;
-        return (h == null) ? null : h.getHeaders().getFirstValue(key);
+        FluentCaseInsensitiveStringsMap h = _headers;
+        return (h == null) ? null : h.getFirstValue(key);
     }
 }
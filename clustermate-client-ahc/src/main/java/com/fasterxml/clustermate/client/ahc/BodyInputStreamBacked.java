@@ -0,0 +1,21 @@
+package com.fasterxml.clustermate.client.ahc;
+
+import java.io.InputStream;
+
+/**
+ * Implementation that reads content of unknown length from an
+ * {@link InputStream}, using chunked transfer encoding.
+ * Content checksum is not calculated, since caller is expected
+ * to take care of that.
+ */
+public class BodyInputStreamBacked extends BodyStreamBacked
+{
+    public BodyInputStreamBacked(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1L;
+    }
+}
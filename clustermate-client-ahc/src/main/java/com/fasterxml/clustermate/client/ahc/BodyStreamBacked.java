@@ -31,6 +31,19 @@ public abstract class BodyStreamBacked extends BodyBase
 
     private byte[] _buffer;
     
+    /**
+     * Constructor used when no checksum is to be calculated, either
+     * because it is already known, or because caller calculates it.
+     */
+    public BodyStreamBacked(InputStream in)
+    {
+        super();
+        _checksum = null;
+        _cheksumCalculator = null;
+        _bufferHolder = _bufferRecycler.getHolder();
+        _input = in;
+    }
+
     public BodyStreamBacked(InputStream in, AtomicInteger cs)
     {
         super();
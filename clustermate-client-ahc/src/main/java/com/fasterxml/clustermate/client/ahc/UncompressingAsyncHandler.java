@@ -7,8 +7,6 @@ import java.io.UnsupportedEncodingException;
 import com.ning.compress.DataHandler;
 import com.ning.compress.Uncompressor;
 import com.ning.compress.UncompressorOutputStream;
-import com.ning.compress.gzip.GZIPUncompressor;
-import com.ning.compress.lzf.LZFUncompressor;
 
 import com.ning.http.client.AsyncHandler;
 import com.ning.http.client.FluentCaseInsensitiveStringsMap;
@@ -17,6 +15,8 @@ import com.ning.http.client.HttpResponseHeaders;
 import com.ning.http.client.HttpResponseStatus;
 
 import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.codec.CompressionCodec;
+import com.fasterxml.clustermate.api.codec.CompressionCodecs;
 import com.fasterxml.clustermate.client.call.GetContentProcessor;
 import com.fasterxml.storemate.shared.compress.Compression;
 import com.fasterxml.storemate.shared.util.ByteAggregator;
@@ -41,6 +41,11 @@ public class UncompressingAsyncHandler<T>
      */
     protected final GetContentProcessor.Handler<T> _handler;
 
+    /**
+     * Codecs used for uncompressing content
+     */
+    protected final CompressionCodecs _codecs;
+
     /**
      * Stream wrapper used for passing content; wraps either uncompressor
      * or handler.
@@ -78,11 +83,20 @@ public class UncompressingAsyncHandler<T>
      */
     
     public UncompressingAsyncHandler(GetContentProcessor<T> proc) {
-        _handler = proc.createHandler();
+        this(proc.createHandler(), CompressionCodecs.std());
+    }
+
+    public UncompressingAsyncHandler(GetContentProcessor<T> proc, CompressionCodecs codecs) {
+        this(proc.createHandler(), codecs);
     }
 
     public UncompressingAsyncHandler(GetContentProcessor.Handler<T> h) {
+        this(h, CompressionCodecs.std());
+    }
+
+    public UncompressingAsyncHandler(GetContentProcessor.Handler<T> h, CompressionCodecs codecs) {
         _handler = h;
+        _codecs = codecs;
     }
 
     /*
@@ -157,18 +171,12 @@ public class UncompressingAsyncHandler<T>
         FluentCaseInsensitiveStringsMap headers = (h == null) ? null : h.getHeaders();
         _headers = headers;
         String comps = (headers == null) ? null : headers.getFirstValue(ClusterMateConstants.HTTP_HEADER_COMPRESSION);
-        if (comps != null && !comps.isEmpty()) {
-            Uncompressor uncomp = null;
-            Compression c = Compression.from(comps);
-            if (c == Compression.LZF) {
-                uncomp = new LZFUncompressor(this);
-            } else if (c == Compression.GZIP) {
-                uncomp = new GZIPUncompressor(this);
-            } else if (c == Compression.NONE) {
-                ; // not compressed, fine as is
-            } else {
-                throw new IOException("Unrecognized/unsupported compression type '"+comps+"': only 'gzip' and 'lzf' supported");
+        if (comps != null && !comps.isEmpty() && Compression.from(comps) != Compression.NONE) {
+            CompressionCodec codec = _codecs.findForContentEncoding(comps);
+            if (codec == null) {
+                throw new IOException("Unrecognized/unsupported compression type '"+comps+"'");
             }
+            Uncompressor uncomp = codec.createUncompressor(this);
             // adapter wraps uncompressor as OutputStream; uncompressor calls "handleData"
             // on this handler... a few layers of abstraction.
             _streamAdapter = new UncompressorOutputStream(uncomp);
@@ -189,7 +197,9 @@ public class UncompressingAsyncHandler<T>
         throws Exception
     {
         _status = status.getStatusCode();
-        boolean fail = !IOUtil.isHTTPSuccess(_status);
+        // 304 is only returned for conditional GETs, in which case it is not a failure
+        boolean fail = !IOUtil.isHTTPSuccess(_status)
+                && (_status != ClusterMateConstants.HTTP_STATUS_NOT_MODIFIED);
         _failed = fail;
         if (fail) {
             _failExcerpt = new ByteAggregator(MAX_EXCERPT_LENGTH);
@@ -8,6 +8,7 @@ import java.net.SocketTimeoutException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.storemate.shared.util.BufferRecycler;
 import com.fasterxml.clustermate.api.*;
+import com.fasterxml.clustermate.api.codec.CompressionCodecs;
 import com.fasterxml.clustermate.client.*;
 import com.fasterxml.clustermate.client.call.CallFailure;
 import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
@@ -40,7 +41,9 @@ public abstract class BaseJdkHttpAccessor<
     protected EntryKeyConverter<K> _keyConverter;
 
     protected final ClusterServerNode _server;
-    
+
+    protected final CompressionCodecs _compressionCodecs;
+
     protected BaseJdkHttpAccessor(StoreClientConfig<K,?> storeConfig, ClusterServerNode server)
     {
         super();
@@ -48,6 +51,7 @@ public abstract class BaseJdkHttpAccessor<
         _mapper = storeConfig.getJsonMapper();
         _pathFinder = storeConfig.getPathStrategy();
         _keyConverter = storeConfig.getKeyConverter();
+        _compressionCodecs = storeConfig.getCompressionCodecs();
     }
 
     /*
@@ -127,12 +131,20 @@ public abstract class BaseJdkHttpAccessor<
             try {
                 long l = Long.parseLong(versionStr);
                 long responseTime = System.currentTimeMillis();
-                ((ClusterServerNodeImpl) server).updateLastClusterUpdateAvailable(l, requestTime, responseTime);
+                ((ClusterServerNodeImpl) server).updateLastClusterUpdateAvailable(requestTime, responseTime, l);
             } catch (Exception e) {
                 logWarn("Invalid Cluster version String '"+versionStr+"' received from "
                         +server.getAddress());
             }
         }
+        String loadStr = conn.getHeaderField(ClusterMateConstants.CUSTOM_HTTP_HEADER_LOAD_HINT);
+        if (loadStr != null && (loadStr = loadStr.trim()).length() > 0) {
+            try {
+                ((ClusterServerNodeImpl) server).updateLoadHint(Integer.parseInt(loadStr));
+            } catch (Exception e) {
+                logWarn("Invalid load hint '"+loadStr+"' received from "+server.getAddress());
+            }
+        }
     }
 
     protected ContentType findContentType(HttpURLConnection conn, ContentType defaultType)
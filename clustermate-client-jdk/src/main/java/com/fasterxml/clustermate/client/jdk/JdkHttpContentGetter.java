@@ -5,11 +5,10 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 
 import com.fasterxml.storemate.shared.ByteRange;
-import com.fasterxml.storemate.shared.compress.Compression;
-import com.fasterxml.storemate.shared.compress.Compressors;
 import com.fasterxml.storemate.shared.util.IOUtil;
 import com.fasterxml.clustermate.api.ClusterMateConstants;
 import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.codec.CompressionCodec;
 import com.fasterxml.clustermate.client.*;
 import com.fasterxml.clustermate.client.call.*;
 import com.fasterxml.clustermate.client.call.GetContentProcessor.Handler;
@@ -50,19 +49,29 @@ public class JdkHttpContentGetter<K extends EntryKey>
             }
             URL url = path.asURL();
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            // plus, allow use of GZIP and LZF
+            // plus, allow use of all compression codecs we have
             path = path.setHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT_COMPRESSION,
-                    "lzf, gzip, identity");
+                    _compressionCodecs.getAcceptHeader());
             // and may use range as well
             if (range != null) {
                 path = path.setHeader(ClusterMateConstants.HTTP_HEADER_RANGE_FOR_REQUEST,
                         range.asRequestHeader());
             }
+            // or make it conditional
+            final String etag = processor.getIfNoneMatch();
+            if (etag != null) {
+                path = path.setHeader(ClusterMateConstants.HTTP_HEADER_ETAG_NO_MATCH, etag);
+            }
             int statusCode = sendRequest("GET", conn, path, timeoutMsecs);
 
             // one thing first: handle standard headers, if any?
             handleHeaders(_server, conn, startTime);
 
+            if (etag != null && statusCode == ClusterMateConstants.HTTP_STATUS_NOT_MODIFIED) {
+                Handler<T> h = processor.createHandler();
+                h.startContent(statusCode, null);
+                return new JdkHttpReadCallResult<T>(conn, _server, statusCode, h.completeContentProcessing());
+            }
             if (!IOUtil.isHTTPSuccess(statusCode)) {
                 if (statusCode == ClusterMateConstants.HTTP_STATUS_NOT_FOUND) { // is this a fail or success? For now it's actually success...
                     return JdkHttpReadCallResult.notFound(_server);
@@ -76,9 +85,9 @@ public class JdkHttpContentGetter<K extends EntryKey>
             // Then, anything to uncompress?
             String comps = conn.getHeaderField(ClusterMateConstants.HTTP_HEADER_COMPRESSION);
             if (comps != null && !comps.isEmpty()) {
-                Compression comp = Compression.from(comps);
-                if (comp != null) {
-                    in = Compressors.uncompressingStream(in, comp);
+                CompressionCodec codec = _compressionCodecs.findForContentEncoding(comps);
+                if (codec != null) {
+                    in = codec.uncompressingStream(in);
                 }
             }
             Handler<T> h = processor.createHandler();
@@ -14,6 +14,7 @@ import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.client.ClusterServerNode;
 import com.fasterxml.clustermate.client.StoreClientConfig;
 import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.util.ChecksumAppendingInputStream;
 import com.fasterxml.clustermate.std.JdkHttpClientPathBuilder;
 
 /**
@@ -103,6 +104,13 @@ public class JdkHttpContentPutter<K extends EntryKey>
                     in = new FileInputStream(f);
                 } else {
                     in = content.contentAsStream();
+                    // if checksum not known, calculate while sending, pass after content
+                    if (hash == HashConstants.NO_CHECKSUM
+                            && (comp == null || comp == Compression.NONE)) {
+                        in = new ChecksumAppendingInputStream(in,
+                                _keyConverter.createStreamingContentHasher());
+                        path = path.addParameter(ClusterMateConstants.QUERY_PARAM_CHECKSUM_TRAILER, "true");
+                    }
                 }
                 if (hash != HashConstants.NO_CHECKSUM) {
                     path = addChecksum(path, hash);
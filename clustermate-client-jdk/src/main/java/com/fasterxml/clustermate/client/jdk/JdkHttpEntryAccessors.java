@@ -43,4 +43,14 @@ public class JdkHttpEntryAccessors<K extends EntryKey>
     public EntryLister<K> entryLister(ClusterServerNode server) {
         return new JdkHttpEntryLister<K>(_storeConfig, server);
     }
+
+    @Override
+    public MultiContentGetter<K> multiEntryGetter(ClusterServerNode server) {
+        return new JdkHttpMultiContentGetter<K>(_storeConfig, server);
+    }
+
+    @Override
+    public MultiContentPutter<K> multiEntryPutter(ClusterServerNode server) {
+        return new JdkHttpMultiContentPutter<K>(_storeConfig, server);
+    }
 }
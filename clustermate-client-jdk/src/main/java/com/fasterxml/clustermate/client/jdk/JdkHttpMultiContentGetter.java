@@ -0,0 +1,111 @@
+package com.fasterxml.clustermate.client.jdk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.util.IOUtil;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.ContentType;
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+import com.fasterxml.clustermate.api.msg.MultiGetRequest;
+import com.fasterxml.clustermate.client.ClusterServerNode;
+import com.fasterxml.clustermate.client.StoreClientConfig;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.util.MultiGetResponseReader;
+import com.fasterxml.clustermate.std.JdkHttpClientPathBuilder;
+
+/**
+ * Accessor used for fetching multiple entries from a single server node
+ * using a single POST request, implemented using JDK HTTP client.
+ */
+public class JdkHttpMultiContentGetter<K extends EntryKey>
+    extends BaseJdkHttpAccessor<K>
+    implements MultiContentGetter<K>
+{
+    protected final MultiGetResponseReader _responseReader;
+
+    public JdkHttpMultiContentGetter(StoreClientConfig<K,?> storeConfig,
+            ClusterServerNode server)
+    {
+        super(storeConfig, server);
+        _responseReader = new MultiGetResponseReader(_mapper, _compressionCodecs);
+    }
+
+    /*
+    /**********************************************************************
+    /* Call implementation
+    /**********************************************************************
+     */
+
+    @Override
+    public ReadCallResult<List<MultiGetItem>> tryGetMulti(CallConfig config,
+            ReadCallParameters params, long endOfTime,
+            List<K> keys, boolean metadataOnly)
+    {
+        // first: if we can't spend at least 10 msecs, let's give up:
+        final long startTime = System.currentTimeMillis();
+        final long timeoutMsecs = Math.min(endOfTime - startTime, config.getGetCallTimeoutMsecs());
+        if (timeoutMsecs < config.getMinimumTimeoutMsecs()) {
+            return failed(CallFailure.timeout(_server, startTime, startTime));
+        }
+        List<StorableKey> rawKeys = new ArrayList<StorableKey>(keys.size());
+        for (K key : keys) {
+            rawKeys.add(key.asStorableKey());
+        }
+        HttpURLConnection conn = null;
+        InputStream in = null;
+
+        try {
+            JdkHttpClientPathBuilder path = _server.rootPath();
+            path = _pathFinder.appendStoreEntryPath(path);
+            path = path.addParameter(ClusterMateConstants.QUERY_PARAM_MULTI,
+                    ClusterMateConstants.MULTI_OP_GET);
+            path = path.setContentType(ContentType.JSON.toString());
+            if (params != null) {
+                path = params.appendToPath(path, null);
+            }
+            byte[] body = _mapper.writeValueAsBytes(new MultiGetRequest(rawKeys, metadataOnly));
+            URL url = path.asURL();
+            conn = (HttpURLConnection) url.openConnection();
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(body.length);
+            conn = initRequest("POST", conn, path, timeoutMsecs);
+            OutputStream out = conn.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+            int statusCode = conn.getResponseCode();
+            handleHeaders(_server, conn, startTime);
+
+            if (!IOUtil.isHTTPSuccess(statusCode)) {
+                String msg = getExcerpt(conn, statusCode, config.getMaxExcerptLength());
+                return failed(CallFailure.general(_server, statusCode, startTime, System.currentTimeMillis(), msg));
+            }
+            in = conn.getInputStream();
+            List<MultiGetItem> items = _responseReader.readItems(in);
+            return new JdkHttpReadCallResult<List<MultiGetItem>>(conn, _server, items);
+        } catch (Exception e) {
+            return failed(failFromException(e, startTime));
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e2) { }
+            }
+        }
+    }
+
+    protected ReadCallResult<List<MultiGetItem>> failed(CallFailure fail) {
+        return new JdkHttpReadCallResult<List<MultiGetItem>>(null, fail);
+    }
+}
@@ -0,0 +1,102 @@
+package com.fasterxml.clustermate.client.jdk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+import com.fasterxml.storemate.shared.util.IOUtil;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.msg.MultiPutResponse;
+import com.fasterxml.clustermate.client.ClusterServerNode;
+import com.fasterxml.clustermate.client.StoreClientConfig;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.util.MultiPutRequestWriter;
+import com.fasterxml.clustermate.std.JdkHttpClientPathBuilder;
+
+/**
+ * Accessor used for storing multiple entries in a single server node
+ * using a single POST request, implemented using JDK HTTP client.
+ */
+public class JdkHttpMultiContentPutter<K extends EntryKey>
+    extends BaseJdkHttpAccessor<K>
+    implements MultiContentPutter<K>
+{
+    protected final MultiPutRequestWriter<K> _requestWriter;
+
+    public JdkHttpMultiContentPutter(StoreClientConfig<K,?> storeConfig,
+            ClusterServerNode server)
+    {
+        super(storeConfig, server);
+        _requestWriter = new MultiPutRequestWriter<K>(_mapper, _keyConverter);
+    }
+
+    /*
+    /**********************************************************************
+    /* Call implementation
+    /**********************************************************************
+     */
+
+    @Override
+    public ReadCallResult<MultiPutResponse> tryPutMulti(CallConfig config,
+            PutCallParameters params, long endOfTime,
+            List<K> keys, List<PutContentProvider> contents)
+    {
+        final long startTime = System.currentTimeMillis();
+        final long timeoutMsecs = Math.min(endOfTime - startTime, config.getPutCallTimeoutMsecs());
+        if (timeoutMsecs < config.getMinimumTimeoutMsecs()) {
+            return failed(CallFailure.timeout(_server, startTime, startTime));
+        }
+        HttpURLConnection conn = null;
+        InputStream in = null;
+
+        try {
+            JdkHttpClientPathBuilder path = _server.rootPath();
+            path = _pathFinder.appendStoreEntryPath(path);
+            path = path.addParameter(ClusterMateConstants.QUERY_PARAM_MULTI,
+                    ClusterMateConstants.MULTI_OP_PUT);
+            path = path.setContentType(ClusterMateConstants.HTTP_CONTENT_BINARY);
+            if (params != null) {
+                path = params.appendToPath(path, null);
+            }
+            byte[] body = _requestWriter.write(keys, contents);
+            URL url = path.asURL();
+            conn = (HttpURLConnection) url.openConnection();
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(body.length);
+            conn = initRequest("POST", conn, path, timeoutMsecs);
+            OutputStream out = conn.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+            int statusCode = conn.getResponseCode();
+            handleHeaders(_server, conn, startTime);
+
+            if (!IOUtil.isHTTPSuccess(statusCode)) {
+                String msg = getExcerpt(conn, statusCode, config.getMaxExcerptLength());
+                return failed(CallFailure.general(_server, statusCode, startTime, System.currentTimeMillis(), msg));
+            }
+            in = conn.getInputStream();
+            MultiPutResponse resp = _mapper.readValue(in, MultiPutResponse.class);
+            return new JdkHttpReadCallResult<MultiPutResponse>(conn, _server, resp);
+        } catch (Exception e) {
+            return failed(failFromException(e, startTime));
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e2) { }
+            }
+        }
+    }
+
+    protected ReadCallResult<MultiPutResponse> failed(CallFailure fail) {
+        return new JdkHttpReadCallResult<MultiPutResponse>(null, fail);
+    }
+}
@@ -9,6 +9,8 @@ import com.fasterxml.clustermate.client.call.ContentHeader;
 import com.fasterxml.clustermate.client.call.ContentPutter;
 import com.fasterxml.clustermate.client.call.EntryInspector;
 import com.fasterxml.clustermate.client.call.EntryLister;
+import com.fasterxml.clustermate.client.call.MultiContentGetter;
+import com.fasterxml.clustermate.client.call.MultiContentPutter;
 
 /**
  * Representation of a server node that is part of a cluster, including
@@ -98,4 +100,8 @@ public interface ClusterServerNode
     public abstract <K extends EntryKey> EntryInspector<K> entryInspector();
     
     public abstract <K extends EntryKey> EntryLister<K> entryLister();
+
+    public abstract <K extends EntryKey> MultiContentGetter<K> multiEntryGetter();
+
+    public abstract <K extends EntryKey> MultiContentPutter<K> multiEntryPutter();
 }
@@ -21,4 +21,8 @@ public interface EntryAccessors<K extends EntryKey>
     public abstract EntryLister<K> entryLister(ClusterServerNode server);
 
     public abstract EntryInspector<K> entryInspector(ClusterServerNode server);
+
+    public abstract MultiContentGetter<K> multiEntryGetter(ClusterServerNode server);
+
+    public abstract MultiContentPutter<K> multiEntryPutter(ClusterServerNode server);
 }
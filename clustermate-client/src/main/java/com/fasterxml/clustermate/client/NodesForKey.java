@@ -31,6 +31,22 @@ public class NodesForKey implements Iterable<ClusterServerNode>
         return new NodesForKey(version, NO_NODES);
     }
     
+    /**
+     * Method for constructing an instance with same nodes, except that node
+     * at specified index is moved to be the first one.
+     */
+    public NodesForKey withFirst(int index)
+    {
+        if (index == 0) {
+            return this;
+        }
+        ClusterServerNode[] nodes = new ClusterServerNode[_nodes.length];
+        nodes[0] = _nodes[index];
+        System.arraycopy(_nodes, 0, nodes, 1, index);
+        System.arraycopy(_nodes, index+1, nodes, index+1, _nodes.length - index - 1);
+        return new NodesForKey(_version, nodes);
+    }
+
     /*
     /**********************************************************************
     /* Accessors
@@ -1,20 +1,45 @@
 package com.fasterxml.clustermate.client;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.fasterxml.clustermate.api.*;
+import com.fasterxml.clustermate.api.codec.CompressionCodec;
+import com.fasterxml.clustermate.api.codec.CompressionPolicy;
+import com.fasterxml.clustermate.api.msg.ClusterStatusMessage;
 import com.fasterxml.clustermate.api.msg.ItemInfo;
 import com.fasterxml.clustermate.api.msg.ListItem;
 import com.fasterxml.clustermate.api.msg.ListResponse;
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+import com.fasterxml.clustermate.api.msg.MultiPutResponse;
+import com.fasterxml.clustermate.client.cache.ConditionalBytesProcessor;
+import com.fasterxml.clustermate.client.cache.NearCache;
+import com.fasterxml.clustermate.client.cache.NearCacheConfig;
 import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
+import com.fasterxml.clustermate.client.cluster.ClusterViewByClientImpl;
 import com.fasterxml.clustermate.client.operation.*;
 import com.fasterxml.clustermate.client.util.ContentConverter;
 import com.fasterxml.clustermate.client.util.GenericContentConverter;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.storemate.shared.ByteContainer;
 import com.fasterxml.storemate.shared.ByteRange;
+import com.fasterxml.storemate.shared.hash.HashConstants;
 import com.fasterxml.storemate.shared.util.ByteAggregator;
 
 /**
@@ -32,6 +57,18 @@ public abstract class StoreClient<K extends EntryKey,
      */
     protected final static long MIN_LENGTH_FOR_CHUNKED = 64 * 1024;
 
+    /**
+     * Maximum number of keys to include in a single multi-entry GET call;
+     * needs to be no higher than limit enforced by the server.
+     */
+    protected final static int MAX_KEYS_PER_MULTI_GET = 1000;
+
+    /**
+     * Maximum number of entries to include in a single multi-entry PUT call;
+     * needs to be no higher than limit enforced by the server.
+     */
+    protected final static int MAX_KEYS_PER_MULTI_PUT = 1000;
+
     /*
     /**********************************************************************
     /* Configuration
@@ -56,6 +93,31 @@ public abstract class StoreClient<K extends EntryKey,
 
     protected final ContentConverter<I> _infoConverter;
 
+    /**
+     * Executor used for making concurrent calls, for operations that
+     * are configured to use them (like parallel PUTs). Threads are
+     * only created as needed.
+     */
+    protected final ExecutorService _callExecutor;
+
+    /**
+     * Helper object used for sending hedged GETs, if enabled; also
+     * keeps track of hedging statistics.
+     */
+    protected final GetHedger _getHedger;
+
+    /**
+     * Timer used by asynchronous operations for scheduling retry rounds,
+     * instead of blocking threads for delays.
+     */
+    protected final ScheduledExecutorService _timer;
+
+    /**
+     * Client-side cache for entry content, if enabled; shared by all
+     * differently configured instances.
+     */
+    protected final AtomicReference<NearCache<K>> _nearCache;
+
     /*
     /**********************************************************************
     /* Life-cycle
@@ -118,6 +180,10 @@ public abstract class StoreClient<K extends EntryKey,
         _thread = null;
         _stopRequested = new AtomicBoolean(false);
         _infoConverter = infoConverter;
+        _callExecutor = Executors.newCachedThreadPool(new CallThreadFactory());
+        _getHedger = new GetHedger(_callExecutor);
+        _timer = Executors.newSingleThreadScheduledExecutor(new CallThreadFactory());
+        _nearCache = new AtomicReference<NearCache<K>>();
     }
 
     /**
@@ -138,6 +204,10 @@ public abstract class StoreClient<K extends EntryKey,
 
         _thread = base._thread;
         _stopRequested = base._stopRequested;
+        _callExecutor = base._callExecutor;
+        _getHedger = base._getHedger;
+        _timer = base._timer;
+        _nearCache = base._nearCache;
     }
     
     /**
@@ -171,6 +241,9 @@ public abstract class StoreClient<K extends EntryKey,
         if (t != null) {
             t.interrupt();
         }
+        // Let in-flight background calls complete, but no new ones
+        _callExecutor.shutdown();
+        _timer.shutdown();
         // Should we ask HTTP Client to shut down here, or within thread?
         _httpClient.shutdown();
 //        _blockingHttpClient.getConnectionManager().shutdown();
@@ -209,6 +282,39 @@ public abstract class StoreClient<K extends EntryKey,
         return _keyConverter;
     }
 
+    /**
+     * Accessor for client-side content cache, if one has been enabled.
+     */
+    public NearCache<K> getNearCache() {
+        return _nearCache.get();
+    }
+
+    /**
+     * Method for enabling client-side caching of entry content: if enabled,
+     * {@link #getContentAsBytes} will use cached content when possible.
+     * Content PUT or DELETEd through this client is removed from cache.
+     * If cache was already enabled, existing cache is replaced.
+     *
+     * @return Cache that was created
+     */
+    public NearCache<K> enableNearCache(NearCacheConfig config)
+    {
+        NearCache<K> cache = new NearCache<K>(config, _keyConverter);
+        NearCache<K> old = _nearCache.getAndSet(cache);
+        if (old != null) {
+            old.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Accessor for helper object that handles hedged GETs; mostly useful
+     * for accessing hedging statistics.
+     */
+    public GetHedger getGetHedger() {
+        return _getHedger;
+    }
+
     /**
      * Overridable internal accessor to define whether background thread used
      * for updates is to run as daemon or not; usually it should (and by default
@@ -259,10 +365,38 @@ public abstract class StoreClient<K extends EntryKey,
      * Method that tries to update state of cluster by making a single call
      * to "most deserving" server node.
      */
+    @SuppressWarnings("unchecked")
     protected void updateOnce() throws Exception
     {
-        // !!! TODO:
-        // (1) Figure out which server node to call (least recently called one with updates etc)
+        if (!(_clusterView instanceof ClusterViewByClientImpl<?>)) {
+            return;
+        }
+        final ClusterViewByClientImpl<K> view = (ClusterViewByClientImpl<K>) _clusterView;
+        final long requestTime = System.currentTimeMillis();
+        // First: find the node with most out-of-date information, if any
+        ClusterServerNodeImpl node = view.findMostOutdatedNode(requestTime,
+                StoreClientConfig.MIN_DELAY_AFTER_FAILED_STATUS_CALL_MSECS);
+        if (node == null) {
+            return;
+        }
+        // and then fetch status, unless it has not changed since last fetch
+        final long lastFetched = node.getLastClusterUpdateFetched();
+        ClusterStatusMessage resp;
+        try {
+            resp = _statusAccessor.getClusterStatusIfChanged(node.getAddress(),
+                    StoreClientConfig.STATUS_CALL_TIMEOUT_MSECS, lastFetched);
+        } catch (Exception e) {
+            node.setLastStatusFetchFailed(System.currentTimeMillis());
+            throw e;
+        }
+        if (resp == null) { // not modified: just need to note we are up to date
+            node.setLastRequestSent(requestTime);
+            node.setLastResponseReceived(System.currentTimeMillis());
+            node.setLastClusterUpdateFetched(Math.max(lastFetched,
+                    node.getLastClusterUpdateAvailable()));
+            return;
+        }
+        view.updateStatus(node.getAddress(), resp, requestTime, System.currentTimeMillis());
     }
 
     /*
@@ -300,6 +434,19 @@ public abstract class StoreClient<K extends EntryKey,
         return putContent(params, key, PutContentProviders.forFile(file, file.length()));
     }
 
+    /**
+     * Convenience method for PUTting content read from given stream, when length
+     * of content is not known beforehand. Content is buffered as the first request
+     * sends it (to allow sending to multiple servers, as well as retries); content
+     * hash is calculated while sending, and passed after content for server to
+     * verify. Stream will be closed once all content has been read.
+     */
+    public final PutOperation putContent(PutCallParameters params, K key, InputStream in)
+            throws InterruptedException {
+        return putContent(params, key, PutContentProviders.forStream(in,
+                _keyConverter.createStreamingContentHasher()));
+    }
+
     /*
     /**********************************************************************
     /* Client API: convenience wrappers for GETs
@@ -316,9 +463,23 @@ public abstract class StoreClient<K extends EntryKey,
      * @return Array of bytes returned, if content exists; null if no such content
      *    exists (never PUT, or has been DELETEd)
      */
-    public byte[] getContentAsBytes(ReadCallParameters params, K key)
+    public byte[] getContentAsBytes(final ReadCallParameters params, K key)
             throws InterruptedException
     {
+        NearCache<K> cache = _nearCache.get();
+        if (cache != null) {
+            return cache.get(key, new NearCache.ContentLoader<K>() {
+                @Override
+                public byte[] load(K key, String ifNoneMatch) throws InterruptedException {
+                    GetOperationResult<byte[]> result = getContent(params, key,
+                            new ConditionalBytesProcessor(ifNoneMatch));
+                    if (result.failed()) {
+                        _handleGetFailure(params, key, result);
+                    }
+                    return result.getContents();
+                }
+            });
+        }
         GetContentProcessorForBytes processor = new GetContentProcessorForBytes();
         GetOperationResult<ByteAggregator> result = getContent(params, key, processor);
         if (result.failed()) { // failed to contact any server
@@ -409,6 +570,105 @@ public abstract class StoreClient<K extends EntryKey,
         return result.getContents();
     }
     
+    /**
+     * Convenience method for GETting big entries and storing them in specified
+     * file, by splitting content into segments of (at most) specified length,
+     * and fetching segments concurrently from different server nodes
+     * (replicas), using range requests. Segments are written directly into
+     * their positions in the result file. Failed segment requests are retried
+     * using other server nodes.
+     *<p>
+     * All segments must come from the same version of the entry: version is
+     * identified by ETag (content hash) of the first segment fetched, and
+     * segment responses with a different ETag are rejected (and retried
+     * using other server nodes), to avoid splicing together different versions.
+     *<p>
+     * Length of the content is first determined using a HEAD request; if
+     * content is no longer than a single segment, a regular GET is used.
+     *
+     * @param segmentLength Maximum length of segments to fetch with individual requests
+     * @param maxParallel Maximum number of segment requests to make concurrently
+     *
+     * @return Original result file, if content exists; null if content was not found but
+     *   operation succeeded (throw exception if access operation itself fails)
+     */
+    public File getContentAsFileInParallel(final ReadCallParameters params, final K key, File resultFile,
+            long segmentLength, int maxParallel)
+        throws InterruptedException
+    {
+        if (segmentLength <= 0L) {
+            throw new IllegalArgumentException("Invalid segmentLength ("+segmentLength+"): must be positive");
+        }
+        final long length = getContentLength(params, key);
+        if (length < 0L) {
+            return null;
+        }
+        if (length <= segmentLength || maxParallel < 2) {
+            return getContentAsFile(params, key, resultFile);
+        }
+        final List<ByteRange> segments = new ArrayList<ByteRange>();
+        for (long start = 0L; start < length; start += segmentLength) {
+            segments.add(new ByteRange(start, Math.min(segmentLength, length - start)));
+        }
+        final List<ClusterServerNode> servers = _enabledFirst(_clusterView.getNodesFor(key));
+        if (servers.isEmpty()) {
+            throw new IllegalStateException("Failed to GET resource '"+key+"': no server nodes to access");
+        }
+        final CONFIG config = _getConfig(params);
+        final AtomicInteger nextSegment = new AtomicInteger(0);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final AtomicReference<String> expEtag = new AtomicReference<String>();
+        RandomAccessFile raf = null;
+        boolean ok = false;
+
+        try {
+            raf = new RandomAccessFile(resultFile, "rw");
+            raf.setLength(length);
+            final FileChannel channel = raf.getChannel();
+            final int workerCount = Math.min(maxParallel, segments.size());
+            List<Callable<Boolean>> workers = new ArrayList<Callable<Boolean>>(workerCount);
+            for (int i = 0; i < workerCount; ++i) {
+                workers.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                        int ix;
+                        while (failure.get() == null && (ix = nextSegment.getAndIncrement()) < segments.size()) {
+                            String fail = _getSegment(config, params, key, servers, ix,
+                                    segments.get(ix), channel, expEtag);
+                            if (fail != null) {
+                                failure.compareAndSet(null, fail);
+                                return Boolean.FALSE;
+                            }
+                        }
+                        return Boolean.TRUE;
+                    }
+                });
+            }
+            for (Boolean result : _callAll(workers)) {
+                if (result == null) {
+                    failure.compareAndSet(null, "unexpected failure");
+                }
+            }
+            ok = (failure.get() == null);
+        } catch (IOException e) {
+            failure.compareAndSet(null, "failed to write file '"+resultFile.getAbsolutePath()+"': "+e.getMessage());
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) { }
+            }
+            if (!ok) {
+                resultFile.delete();
+            }
+        }
+        if (!ok) {
+            throw new IllegalStateException("Failed to GET resource '"+key+"' in "+segments.size()
+                    +" segments: "+failure.get());
+        }
+        return resultFile;
+    }
+
     /**
      * Convenience method for making HEAD request to figure out length of
      * the resource, if one exists (and -1 if not).
@@ -438,6 +698,68 @@ public abstract class StoreClient<K extends EntryKey,
         return result.getContentLength();
     }
     
+    /**
+     * Helper method for GETting a single segment of content: tries server
+     * nodes in turn, starting with one determined by segment index, to
+     * spread load across replicas.
+     *
+     * @param expEtag ETag of the entry version being fetched: set by the first
+     *    successful segment call, and verified for all others
+     *
+     * @return Null if segment was successfully fetched; otherwise description of
+     *    the last failure
+     */
+    protected String _getSegment(CONFIG config, ReadCallParameters params, K key,
+            List<ClusterServerNode> servers, int index, ByteRange range, FileChannel channel,
+            AtomicReference<String> expEtag)
+        throws InterruptedException
+    {
+        final long length = range.calculateLength();
+        final long endOfTime = System.currentTimeMillis()
+                + config.getOperationConfig().getGetOperationTimeoutMsecs();
+        final int count = servers.size();
+        String fail = null;
+        for (int i = 0; i < count; ++i) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            ClusterServerNode server = servers.get((index + i) % count);
+            ReadCallResult<Long> result = server.entryGetter().tryGet(config.getCallConfig(), params,
+                    endOfTime, key, new GetContentProcessorForFileRange(channel, range.getStart(), length),
+                    range);
+            if (result.failed()) {
+                fail = "segment "+range+" from "+server.getAddress()+": "+result.getFailure();
+            } else if (!result.hasResult()) { // 404 (or deleted): may not be synced yet, try others
+                fail = "segment "+range+" not found on "+server.getAddress();
+            } else if (result.getResult().longValue() != length) {
+                fail = "segment "+range+" from "+server.getAddress()+": got "+result.getResult()
+                        +" bytes, expected "+length;
+            } else {
+                // server may not send ETag if it has no content hash; "" to denote that
+                String etag = result.getHeaderValue(ClusterMateConstants.HTTP_HEADER_ETAG);
+                if (etag == null) {
+                    etag = "";
+                }
+                if (expEtag.compareAndSet(null, etag) || etag.equals(expEtag.get())) {
+                    return null;
+                }
+                // different version (not yet synced, or modified): contents already
+                // written will be overwritten if another server has the right one
+                fail = "segment "+range+" from "+server.getAddress()+": ETag '"+etag
+                        +"' differs from that of other segments ('"+expEtag.get()+"')";
+            }
+        }
+        return fail;
+    }
+
+    protected void _invalidateCached(K key)
+    {
+        NearCache<K> cache = _nearCache.get();
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+    }
+
     protected void _handleGetFailure(ReadCallParameters params, K key, GetOperationResult<?> result)
     {
         NodeFailure nodeFail = result.getFirstFail();
@@ -467,7 +789,37 @@ public abstract class StoreClient<K extends EntryKey,
      * @return Operation object that is used to actually perform PUT operation
      */
     public PutOperation putContent(PutCallParameters params, K key, PutContentProvider content) {
-        return _putContent(params, key, content);
+        _invalidateCached(key);
+        return _putContent(params, key, _compressForPut(content));
+    }
+
+    /**
+     * Helper method called to compress in-memory content to PUT, if configured
+     * {@link CompressionPolicy} indicates it should be, and it is not yet compressed.
+     */
+    protected PutContentProvider _compressForPut(PutContentProvider content)
+    {
+        ByteContainer bytes = content.contentAsBytes();
+        if (bytes == null || content.getExistingCompression() != null) {
+            return content;
+        }
+        CompressionCodec codec = _config.getCompressionPolicy().codecFor(bytes.byteLength());
+        if (codec == null) {
+            return content;
+        }
+        // hash is calculated over uncompressed content, so must be calculated first
+        int hash = content.getContentHash();
+        if (hash == HashConstants.NO_CHECKSUM) {
+            hash = _keyConverter.contentHashFor(bytes);
+            content.setContentHash(hash);
+        }
+        PutContentProvider compressed;
+        try {
+            compressed = PutContentProviders.forCompressedBytes(bytes, hash, codec);
+        } catch (IOException e) { // should never occur with in-memory content; but if it does, send as is
+            return content;
+        }
+        return (compressed == null) ? content : compressed;
     }
     
     /**
@@ -481,7 +833,7 @@ public abstract class StoreClient<K extends EntryKey,
         final NodesForKey nodes = _clusterView.getNodesFor(key);
 
         return new PutOperationImpl<K,CONFIG>(_getConfig(params), startTime,
-                nodes, key, params, content);
+                nodes, key, params, content, _callExecutor);
     }
 
     /*
@@ -538,28 +890,47 @@ public abstract class StoreClient<K extends EntryKey,
 
         // Ok: first round; try GET from every enabled store
         final boolean noRetries = !_allowRetries(config);
+        // and with hedging, may call the first two concurrently
+        int hedgeIndex = _findHedgeBackup(config, nodes, processor, noRetries);
         List<NodeFailure> retries = null;
         for (int i = 0; i < nodeCount; ++i) {
+            if (i == hedgeIndex) { // already called as backup of the first node
+                continue;
+            }
             ClusterServerNode server = nodes.node(i);
             if (!server.isDisabled() || noRetries) {
-                ReadCallResult<T> gotten = server.entryGetter().tryGet(config.getCallConfig(),
-                        params, endOfTime, key, processor, range);
-                if (gotten.failed()) {
-                    CallFailure fail = gotten.getFailure();
-                    if (fail.isRetriable()) {
-                        retries = _add(retries, new NodeFailure(server, fail));
-                    } else {
-                        result.withFailed(new NodeFailure(server, fail));
+                List<ReadCallResult<T>> calls;
+                if (i == 0 && hedgeIndex > 0) {
+                    GetHedger.Results<T> hedged = _getHedger.tryGet(config.getOperationConfig(),
+                            params, endOfTime, key, processor, range, server, nodes.node(hedgeIndex));
+                    // not called yet, or aborted (and primary may have failed); need to call in order
+                    if (!hedged.backupCompleted()) {
+                        hedgeIndex = -1;
                     }
-                    continue;
+                    calls = hedged.results();
+                } else {
+                    calls = Collections.singletonList(_tryGet(server, config, params, endOfTime,
+                            key, processor, range));
                 }
-                // did we get the thing?
-                T entry = gotten.getResult();
-                if (entry != null) {
-                    return result.withFailed(retries).setContents(server, entry);
+                for (ReadCallResult<T> gotten : calls) {
+                    server = gotten.getServer();
+                    if (gotten.failed()) {
+                        CallFailure fail = gotten.getFailure();
+                        if (fail.isRetriable()) {
+                            retries = _add(retries, new NodeFailure(server, fail));
+                        } else {
+                            result.withFailed(new NodeFailure(server, fail));
+                        }
+                        continue;
+                    }
+                    // did we get the thing?
+                    T entry = gotten.getResult();
+                    if (entry != null) {
+                        return result.withFailed(retries).setContents(server, entry);
+                    }
+                    // it not, it's 404, missing entry. Neither fail nor really success...
+                    result = result.withMissing(server);
                 }
-                // it not, it's 404, missing entry. Neither fail nor really success...
-                result = result.withMissing(server);
             }
         }
         if (noRetries) { // if we can't retry, don't:
@@ -901,6 +1272,289 @@ public abstract class StoreClient<K extends EntryKey,
         return result;
     }
 
+    /*
+    /**********************************************************************
+    /* Actual Client API, low-level operations: multi-entry PUT
+    /**********************************************************************
+     */
+
+    /**
+     * Method for storing multiple (usually small) entries, using as few calls
+     * as possible: entries are grouped by the server nodes they are to be
+     * stored in, and one call per node (per up to {@link #MAX_KEYS_PER_MULTI_PUT}
+     * entries) is made in parallel. Entries for which not enough calls
+     * succeed are then sent to the next nodes, in similar fashion.
+     * Content providers are released once operation completes.
+     *
+     * @return Results of operation for each entry, with same semantics
+     *   as results of single-entry PUT operations
+     */
+    public Map<K,PutOperationResult> putContents(final PutCallParameters params,
+            Map<K,? extends PutContentProvider> contents)
+        throws InterruptedException
+    {
+        final long startTime = System.currentTimeMillis();
+        final CONFIG config = _getConfig(params);
+        final OperationConfig opConfig = config.getOperationConfig();
+        final long endOfTime = startTime + opConfig.getPutOperationTimeoutMsecs();
+        final long lastValidTime = endOfTime - config.getCallConfig().getMinimumTimeoutMsecs();
+        final boolean noRetries = !_allowRetries(config);
+
+        final int count = contents.size();
+        List<K> keys = new ArrayList<K>(count);
+        List<PutContentProvider> providers = new ArrayList<PutContentProvider>(count);
+        NodesForKey[] nodes = new NodesForKey[count];
+        int[] nextNode = new int[count];
+        Map<K,PutOperationResult> results = new LinkedHashMap<K,PutOperationResult>(count);
+        for (Map.Entry<K,? extends PutContentProvider> entry : contents.entrySet()) {
+            K key = entry.getKey();
+            _invalidateCached(key);
+            nodes[keys.size()] = _clusterView.getNodesFor(key);
+            keys.add(key);
+            providers.add(entry.getValue());
+            results.put(key, new PutOperationResult(opConfig, params));
+        }
+
+        try {
+            for (int round = 0; ; ++round) {
+                if (round > 0) {
+                    if (noRetries || System.currentTimeMillis() >= lastValidTime) {
+                        break;
+                    }
+                }
+                // Find out which entries still need to be sent to which nodes
+                Map<ClusterServerNode,List<Integer>> entriesByNode = new LinkedHashMap<ClusterServerNode,List<Integer>>();
+                for (int i = 0; i < count; ++i) {
+                    PutOperationResult result = results.get(keys.get(i));
+                    int needed = opConfig.getOptimalOks() - result.getSuccessCount();
+                    for (; needed > 0 && nextNode[i] < nodes[i].size(); --needed) {
+                        ClusterServerNode server = nodes[i].node(nextNode[i]++);
+                        List<Integer> indexes = entriesByNode.get(server);
+                        if (indexes == null) {
+                            indexes = new ArrayList<Integer>();
+                            entriesByNode.put(server, indexes);
+                        }
+                        indexes.add(i);
+                    }
+                }
+                if (entriesByNode.isEmpty()) { // all done, or no more nodes to try
+                    break;
+                }
+                List<ClusterServerNode> batchNodes = new ArrayList<ClusterServerNode>();
+                List<List<Integer>> batchIndexes = new ArrayList<List<Integer>>();
+                List<Callable<ReadCallResult<MultiPutResponse>>> calls
+                    = new ArrayList<Callable<ReadCallResult<MultiPutResponse>>>();
+                for (Map.Entry<ClusterServerNode,List<Integer>> entry : entriesByNode.entrySet()) {
+                    final ClusterServerNode server = entry.getKey();
+                    List<Integer> indexes = entry.getValue();
+                    for (int i = 0, len = indexes.size(); i < len; i += MAX_KEYS_PER_MULTI_PUT) {
+                        List<Integer> batch = indexes.subList(i, Math.min(len, i + MAX_KEYS_PER_MULTI_PUT));
+                        final List<K> callKeys = new ArrayList<K>(batch.size());
+                        final List<PutContentProvider> callContents = new ArrayList<PutContentProvider>(batch.size());
+                        for (Integer ix : batch) {
+                            callKeys.add(keys.get(ix));
+                            callContents.add(providers.get(ix));
+                        }
+                        batchNodes.add(server);
+                        batchIndexes.add(batch);
+                        calls.add(new Callable<ReadCallResult<MultiPutResponse>>() {
+                            @Override
+                            public ReadCallResult<MultiPutResponse> call() {
+                                return server.<K>multiEntryPutter().tryPutMulti(config.getCallConfig(),
+                                        params, endOfTime, callKeys, callContents);
+                            }
+                        });
+                    }
+                }
+                List<ReadCallResult<MultiPutResponse>> gottens = _callAll(calls);
+                for (int b = 0, len = gottens.size(); b < len; ++b) {
+                    final ClusterServerNode server = batchNodes.get(b);
+                    final List<Integer> batch = batchIndexes.get(b);
+                    ReadCallResult<MultiPutResponse> gotten = gottens.get(b);
+                    CallFailure fail;
+                    if (gotten == null) {
+                        fail = CallFailure.clientInternal(server, startTime, System.currentTimeMillis(),
+                                "Multi-entry PUT call failed unexpectedly");
+                    } else if (gotten.failed()) {
+                        fail = gotten.getFailure();
+                    } else if (gotten.getResult() == null || gotten.getResult().size() != batch.size()) {
+                        fail = CallFailure.formatException(server, 200, startTime, System.currentTimeMillis(),
+                                "Invalid multi-entry PUT response: expected "+batch.size()+" results, got "
+                                +((gotten.getResult() == null) ? 0 : gotten.getResult().size()));
+                    } else {
+                        List<MultiPutResponse.Result> entryResults = gotten.getResult().results;
+                        for (int i = 0, end = batch.size(); i < end; ++i) {
+                            MultiPutResponse.Result entryResult = entryResults.get(i);
+                            PutOperationResult result = results.get(keys.get(batch.get(i)));
+                            if (entryResult.succeeded()) {
+                                result.addSucceeded(server);
+                            } else {
+                                result.withFailed(new NodeFailure(server, CallFailure.general(server,
+                                        entryResult.status, startTime, System.currentTimeMillis(),
+                                        entryResult.message)));
+                            }
+                        }
+                        continue;
+                    }
+                    for (Integer ix : batch) {
+                        results.get(keys.get(ix)).withFailed(new NodeFailure(server, fail));
+                    }
+                }
+            }
+        } finally {
+            for (PutContentProvider provider : providers) {
+                provider.release();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Factory method for constructing a {@link PutBatcher} that will
+     * automatically combine small PUTs (ones at most <code>maxEntryLength</code>
+     * bytes long) into multi-entry PUTs, holding each entry for at most
+     * <code>maxDelayMsecs</code> milliseconds.
+     */
+    public PutBatcher<K> createPutBatcher(PutCallParameters params,
+            long maxDelayMsecs, int maxBatchSize, long maxEntryLength)
+    {
+        maxBatchSize = Math.min(maxBatchSize, MAX_KEYS_PER_MULTI_PUT);
+        return new PutBatcher<K>(this, params, _callExecutor, _timer,
+                maxDelayMsecs, maxBatchSize, maxEntryLength);
+    }
+
+    /*
+    /**********************************************************************
+    /* Actual Client API, low-level operations: multi-entry GET, HEAD
+    /**********************************************************************
+     */
+
+    /**
+     * Method for fetching contents of multiple entries, using as few calls
+     * as possible: keys are grouped by the server node that is to be called
+     * first for each key, and one call per node (per up to
+     * {@link #MAX_KEYS_PER_MULTI_GET} keys) is made in parallel.
+     * Keys not found on the first node (or for which call fails) are
+     * then retried on the next node, in similar fashion.
+     *
+     * @return Map from keys of entries found to their contents (uncompressed);
+     *   keys for entries that could not be found are missing
+     */
+    public Map<K,byte[]> getContents(ReadCallParameters params, Collection<K> keys)
+        throws InterruptedException
+    {
+        Map<K,MultiGetItem> items = _getMulti(params, keys, false);
+        Map<K,byte[]> result = new LinkedHashMap<K,byte[]>(items.size());
+        for (Map.Entry<K,MultiGetItem> entry : items.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().content);
+        }
+        return result;
+    }
+
+    /**
+     * Method similar to {@link #getContents}, but that only fetches metadata
+     * of entries, similar to {@link #headContent}.
+     *
+     * @return Map from keys of entries found to their content lengths;
+     *   keys for entries that could not be found are missing
+     */
+    public Map<K,Long> headContents(ReadCallParameters params, Collection<K> keys)
+        throws InterruptedException
+    {
+        Map<K,MultiGetItem> items = _getMulti(params, keys, true);
+        Map<K,Long> result = new LinkedHashMap<K,Long>(items.size());
+        for (Map.Entry<K,MultiGetItem> entry : items.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().contentLength);
+        }
+        return result;
+    }
+
+    protected Map<K,MultiGetItem> _getMulti(final ReadCallParameters params, Collection<K> keys,
+            final boolean metadataOnly)
+        throws InterruptedException
+    {
+        final long startTime = System.currentTimeMillis();
+        final CONFIG config = _getConfig(params);
+        // use same timeout as with single-entry GET
+        final long endOfTime = startTime + config.getOperationConfig().getGetOperationTimeoutMsecs();
+        final long lastValidTime = endOfTime - config.getCallConfig().getMinimumTimeoutMsecs();
+        final boolean noRetries = !_allowRetries(config);
+
+        Map<K,MultiGetItem> found = new LinkedHashMap<K,MultiGetItem>(keys.size());
+        Set<K> remaining = new LinkedHashSet<K>(keys);
+
+        for (int round = 0; !remaining.isEmpty(); ++round) {
+            if (round > 0) {
+                if (noRetries || System.currentTimeMillis() >= lastValidTime) {
+                    break;
+                }
+            }
+            // Group keys by the node to call during this round; disabled nodes last
+            Map<ClusterServerNode,List<K>> keysByNode = new LinkedHashMap<ClusterServerNode,List<K>>();
+            for (K key : remaining) {
+                List<ClusterServerNode> nodes = _enabledFirst(_clusterView.getNodesFor(key));
+                if (round < nodes.size()) {
+                    ClusterServerNode server = nodes.get(round);
+                    List<K> nodeKeys = keysByNode.get(server);
+                    if (nodeKeys == null) {
+                        nodeKeys = new ArrayList<K>();
+                        keysByNode.put(server, nodeKeys);
+                    }
+                    nodeKeys.add(key);
+                }
+            }
+            if (keysByNode.isEmpty()) { // no more nodes to try
+                break;
+            }
+            // Then split into batches, and call them in parallel
+            List<ClusterServerNode> batchNodes = new ArrayList<ClusterServerNode>();
+            List<List<K>> batchKeys = new ArrayList<List<K>>();
+            for (Map.Entry<ClusterServerNode,List<K>> entry : keysByNode.entrySet()) {
+                List<K> nodeKeys = entry.getValue();
+                for (int i = 0, len = nodeKeys.size(); i < len; i += MAX_KEYS_PER_MULTI_GET) {
+                    batchNodes.add(entry.getKey());
+                    batchKeys.add(nodeKeys.subList(i, Math.min(len, i + MAX_KEYS_PER_MULTI_GET)));
+                }
+            }
+            final int batchCount = batchKeys.size();
+            List<Callable<ReadCallResult<List<MultiGetItem>>>> calls
+                = new ArrayList<Callable<ReadCallResult<List<MultiGetItem>>>>(batchCount);
+            for (int i = 0; i < batchCount; ++i) {
+                final ClusterServerNode server = batchNodes.get(i);
+                final List<K> callKeys = batchKeys.get(i);
+                calls.add(new Callable<ReadCallResult<List<MultiGetItem>>>() {
+                    @Override
+                    public ReadCallResult<List<MultiGetItem>> call() {
+                        return server.<K>multiEntryGetter().tryGetMulti(config.getCallConfig(),
+                                params, endOfTime, callKeys, metadataOnly);
+                    }
+                });
+            }
+            List<ReadCallResult<List<MultiGetItem>>> gottens = _callAll(calls);
+            for (int i = 0; i < batchCount; ++i) {
+                ReadCallResult<List<MultiGetItem>> gotten = gottens.get(i);
+                if (gotten == null) { // should not occur; accessors catch exceptions
+                    continue;
+                }
+                List<K> callKeys = batchKeys.get(i);
+                List<MultiGetItem> items = gotten.getResult();
+                // failed calls (and malformed responses) are retried on next round
+                if (gotten.failed() || items == null || items.size() != callKeys.size()) {
+                    continue;
+                }
+                for (int ix = 0, len = items.size(); ix < len; ++ix) {
+                    MultiGetItem item = items.get(ix);
+                    if (item.found()) {
+                        K key = callKeys.get(ix);
+                        found.put(key, item);
+                        remaining.remove(key);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
     /*
     /**********************************************************************
     /* Actual Client API, low-level operations: List entry ids, metadata
@@ -946,12 +1600,106 @@ public abstract class StoreClient<K extends EntryKey,
     {
         final long startTime = System.currentTimeMillis();
         final CONFIG config = _getConfig(params);
+        _invalidateCached(key);
 
         // First things first: find Server nodes to talk to:
         NodesForKey nodes = _clusterView.getNodesFor(key);
         return new DeleteOperationImpl<K,CONFIG>(config, startTime, nodes, key, params);
     }
 
+    /*
+    /**********************************************************************
+    /* Client API, asynchronous operations
+    /**********************************************************************
+     */
+
+    /**
+     * Asynchronous version of {@link #putContent(PutCallParameters, K, PutContentProvider)},
+     * which tries to complete PUT optimally (same as
+     * {@link PutOperation#completeOptimally()}). Content is released once
+     * operation completes.
+     *<p>
+     * Calls are non-blocking if the underlying network client supports it;
+     * otherwise they are made using a shared thread pool.
+     */
+    public OperationFuture<PutOperationResult> putContentAsync(PutCallParameters params, K key,
+            PutContentProvider content)
+    {
+        final long startTime = System.currentTimeMillis();
+        _invalidateCached(key);
+        final NodesForKey nodes = _clusterView.getNodesFor(key);
+        return new AsyncWriteOperation.ForPut<K>(_getConfig(params), startTime, nodes,
+                _callExecutor, _timer, params, key, content).start();
+    }
+
+    /**
+     * Asynchronous version of {@link #getContent(ReadCallParameters, K, GetContentProcessor)}.
+     * Note that hedged GETs are not used with asynchronous calls.
+     */
+    public final <T> OperationFuture<GetOperationResult<T>> getContentAsync(ReadCallParameters params,
+            K key, GetContentProcessor<T> processor)
+    {
+        return getContentAsync(params, key, processor, null);
+    }
+
+    public <T> OperationFuture<GetOperationResult<T>> getContentAsync(ReadCallParameters params,
+            K key, GetContentProcessor<T> processor, ByteRange range)
+    {
+        final long startTime = System.currentTimeMillis();
+        final NodesForKey nodes = _clusterView.getNodesFor(key);
+        return new AsyncReadOperation.ForGet<K,T>(_getConfig(params), startTime, nodes,
+                _callExecutor, _timer, params, key, processor, range).start();
+    }
+
+    /**
+     * Asynchronous version of {@link #headContent}.
+     */
+    public OperationFuture<HeadOperationResult> headContentAsync(ReadCallParameters params, K key)
+    {
+        final long startTime = System.currentTimeMillis();
+        final NodesForKey nodes = _clusterView.getNodesFor(key);
+        return new AsyncReadOperation.ForHead<K>(_getConfig(params), startTime, nodes,
+                _callExecutor, _timer, params, key).start();
+    }
+
+    /**
+     * Asynchronous version of {@link #deleteContent}, which tries to complete
+     * DELETE optimally (same as {@link DeleteOperation#completeOptimally()}).
+     */
+    public OperationFuture<DeleteOperationResult> deleteContentAsync(DeleteCallParameters params, K key)
+    {
+        final long startTime = System.currentTimeMillis();
+        _invalidateCached(key);
+        final NodesForKey nodes = _clusterView.getNodesFor(key);
+        return new AsyncWriteOperation.ForDelete<K>(_getConfig(params), startTime, nodes,
+                _callExecutor, _timer, params, key).start();
+    }
+
+    /**
+     * Asynchronous method for listing a single batch of entries with given
+     * key prefix; equivalent to a single {@link StoreEntryLister#listMore(int)}
+     * call.
+     *
+     * @param lastSeen Key of the last entry seen with previous batch, if any
+     *    (see {@link ListOperationResult#getLastSeen()}); null for first batch
+     */
+    public <T> OperationFuture<ListOperationResult<T>> listAsync(ReadCallParameters params,
+            K prefix, ListItemType itemType, K lastSeen, int maxToList)
+    {
+        if (itemType == null) {
+            throw new IllegalArgumentException("Can't pass null itemType");
+        }
+        @SuppressWarnings("unchecked")
+        GenericContentConverter<ListResponse<T>> converter = (GenericContentConverter<ListResponse<T>>) _listReaders.get(itemType);
+        if (converter == null) { // sanity check, should never occur
+            throw new IllegalArgumentException("Unsupported item type: "+itemType);
+        }
+        final long startTime = System.currentTimeMillis();
+        final NodesForKey nodes = _clusterView.getNodesFor(prefix);
+        return new AsyncReadOperation.ForList<K,T>(_getConfig(params), startTime, nodes,
+                _callExecutor, _timer, prefix, lastSeen, itemType, maxToList, converter).start();
+    }
+
     /*
     /**********************************************************************
     /* Helper methods
@@ -976,6 +1724,125 @@ public abstract class StoreClient<K extends EntryKey,
         return new GenericContentConverter<ITEM>(config.getJsonMapper(), infoType);
     }
     
+    /**
+     * Helper method for making given calls in parallel, and waiting for
+     * all of them to complete. The last call is made using the calling
+     * thread, others using call executor.
+     *
+     * @return Results of calls, in order in which calls were given; null
+     *    for calls that failed with an exception
+     */
+    protected <T> List<T> _callAll(List<Callable<T>> calls)
+        throws InterruptedException
+    {
+        final int count = calls.size();
+        List<Future<T>> futures = new ArrayList<Future<T>>(count);
+        try {
+            for (int i = 0; i < count-1; ++i) {
+                futures.add(_callExecutor.submit(calls.get(i)));
+            }
+            T last;
+            try {
+                last = calls.get(count-1).call();
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                last = null;
+            }
+            List<T> results = new ArrayList<T>(count);
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    results.add(null);
+                }
+            }
+            results.add(last);
+            return results;
+        } catch (InterruptedException e) {
+            // caller gives up, so no point in letting calls proceed
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Helper method for ordering given server nodes so that enabled ones
+     * come first, and disabled ones (if any) after them, to be tried only
+     * if enabled ones fail.
+     */
+    protected List<ClusterServerNode> _enabledFirst(NodesForKey nodes)
+    {
+        final int count = nodes.size();
+        List<ClusterServerNode> result = new ArrayList<ClusterServerNode>(count);
+        for (int i = 0; i < count; ++i) {
+            if (!nodes.node(i).isDisabled()) {
+                result.add(nodes.node(i));
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            if (nodes.node(i).isDisabled()) {
+                result.add(nodes.node(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Helper method for making a single GET call, keeping track of calls
+     * in-flight for the server node, and recording latency if call succeeds.
+     */
+    protected <T> ReadCallResult<T> _tryGet(ClusterServerNode server, CONFIG config,
+            ReadCallParameters params, long endOfTime, K key,
+            GetContentProcessor<T> processor, ByteRange range)
+    {
+        if (!(server instanceof ClusterServerNodeImpl)) {
+            return server.entryGetter().tryGet(config.getCallConfig(),
+                    params, endOfTime, key, processor, range);
+        }
+        final ClusterServerNodeImpl node = (ClusterServerNodeImpl) server;
+        final long start = System.currentTimeMillis();
+        node.callStarted();
+        ReadCallResult<T> result;
+        try {
+            result = server.entryGetter().tryGet(config.getCallConfig(),
+                    params, endOfTime, key, processor, range);
+        } finally {
+            node.callFinished();
+        }
+        if (result.succeeded()) {
+            node.recordGetLatency(System.currentTimeMillis() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Helper method for figuring out whether a GET to the first node may be
+     * hedged, and if so, which node to use as the backup.
+     *
+     * @return Index of the backup node, if hedging is possible; -1 if not
+     */
+    protected int _findHedgeBackup(CONFIG config, NodesForKey nodes,
+            GetContentProcessor<?> processor, boolean noRetries)
+    {
+        if (!config.getOperationConfig().hedgedGetsEnabled()
+                || !processor.allowsConcurrentHandlers()) {
+            return -1;
+        }
+        final int nodeCount = nodes.size();
+        if (nodeCount < 2 || (nodes.node(0).isDisabled() && !noRetries)) {
+            return -1;
+        }
+        for (int i = 1; i < nodeCount; ++i) {
+            if (noRetries || !nodes.node(i).isDisabled()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     protected boolean _allowRetries(CONFIG config) {
         return config.getOperationConfig().getAllowRetries();
     }
@@ -1001,4 +1868,26 @@ public abstract class StoreClient<K extends EntryKey,
             }
         }
     }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Simple {@link ThreadFactory} for creating daemon threads for making
+     * concurrent calls; daemon so as not to block shutdowns.
+     */
+    protected final static class CallThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger _count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "StoreClient-call-"+_count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
 }
@@ -3,6 +3,8 @@ package com.fasterxml.clustermate.client;
 import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.api.EntryKeyConverter;
 import com.fasterxml.clustermate.api.RequestPathStrategy;
+import com.fasterxml.clustermate.api.codec.CompressionCodecs;
+import com.fasterxml.clustermate.api.codec.CompressionPolicy;
 import com.fasterxml.clustermate.client.call.CallConfig;
 import com.fasterxml.clustermate.client.operation.OperationConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -46,6 +48,17 @@ public abstract class StoreClientConfig<
      */
     public final static long MIN_DELAY_BETWEEN_STATUS_CALLS_MSECS = 2000L;
 
+    /**
+     * Timeout to use for background calls for cluster status.
+     */
+    public final static long STATUS_CALL_TIMEOUT_MSECS = 5000L;
+
+    /**
+     * If a cluster status call to a node fails, wait for at least 15 seconds
+     * before trying to fetch status from the same node again.
+     */
+    public final static long MIN_DELAY_AFTER_FAILED_STATUS_CALL_MSECS = 15000L;
+
     /**
      * Add modest amount of delay between rounds of calls when we have failures,
      * just to reduce congestion during overloads
@@ -121,4 +134,18 @@ public abstract class StoreClientConfig<
     public CallConfig getCallConfig() { return _operationConfig.getCallConfig(); }    
     
     public OperationConfig getOperationConfig() { return _operationConfig; }
+
+    /**
+     * Accessor for codecs used for uncompressing content sent by servers,
+     * as well as indicating which compression types are acceptable.
+     * Sub-classes may override to register alternate codecs.
+     */
+    public CompressionCodecs getCompressionCodecs() { return CompressionCodecs.std(); }
+
+    /**
+     * Accessor for policy used for choosing codec, if any, for compressing
+     * content of PUTs before sending; by default nothing is compressed
+     * by client. Sub-classes may override to compress content by size.
+     */
+    public CompressionPolicy getCompressionPolicy() { return CompressionPolicy.none(); }
 }
@@ -53,6 +53,22 @@ public abstract class StoreClientConfigBuilder<
      */
     protected boolean _allowRetries;
 
+    /**
+     * Setting that determines whether PUTs are sent to all target nodes
+     * concurrently during the first round of calls.
+     */
+    protected boolean _parallelWrites;
+
+    // // Hedged GETs
+
+    protected int _hedgedGetMaxPercent;
+
+    protected long _hedgedGetDelayMsecs;
+
+    protected boolean _hedgedGetAdaptive;
+
+    protected boolean _loadAwareRouting;
+
     // // // For CallConfig
 
     // // Single call timeouts
@@ -123,6 +139,11 @@ public abstract class StoreClientConfigBuilder<
         _deleteOperationTimeoutMsecs = operationConfig.getDeleteOperationTimeoutMsecs();
 
         _allowRetries = operationConfig.getAllowRetries();
+        _parallelWrites = operationConfig.getParallelWrites();
+        _hedgedGetMaxPercent = operationConfig.getHedgedGetMaxPercent();
+        _hedgedGetDelayMsecs = operationConfig.getHedgedGetDelayMsecs();
+        _hedgedGetAdaptive = operationConfig.getHedgedGetAdaptive();
+        _loadAwareRouting = operationConfig.getLoadAwareRouting();
         
         final CallConfig callConfig = operationConfig.getCallConfig();
         _connectTimeoutMsecs = callConfig.getConnectTimeoutMsecs();
@@ -142,7 +163,9 @@ public abstract class StoreClientConfigBuilder<
         return new OperationConfig(cc,
                 _minOksToSucceed, _optimalOks, _maxOks,
                 _putOperationTimeoutMsecs, _getOperationTimeoutMsecs, _deleteOperationTimeoutMsecs,
-                _allowRetries
+                _allowRetries, _parallelWrites,
+                _hedgedGetMaxPercent, _hedgedGetDelayMsecs, _hedgedGetAdaptive,
+                _loadAwareRouting
         );
     }
 
@@ -198,6 +221,41 @@ public abstract class StoreClientConfigBuilder<
         return (BUILDER) this;
     }
     
+    @SuppressWarnings("unchecked")
+    public BUILDER setParallelWrites(boolean enable) {
+        _parallelWrites = enable;
+        return (BUILDER) this;
+    }
+
+    /**
+     * Method for enabling hedged GETs: if the first node has not responded
+     * within specified delay, a second GET is sent to the next node, and
+     * the first response is used.
+     *
+     * @param maxPercent Maximum percentage of GETs that may be hedged; 0 to disable
+     * @param delayMsecs Delay before sending hedge request
+     * @param adaptive Whether to use observed 95th percentile latency of the
+     *    first node as the delay, when known
+     */
+    @SuppressWarnings("unchecked")
+    public BUILDER setHedgedGets(int maxPercent, long delayMsecs, boolean adaptive) {
+        _hedgedGetMaxPercent = maxPercent;
+        _hedgedGetDelayMsecs = delayMsecs;
+        _hedgedGetAdaptive = adaptive;
+        return (BUILDER) this;
+    }
+
+    /**
+     * Method for enabling load-aware routing: if enabled, a server node that
+     * appears significantly slower or more loaded than an alternative will
+     * be called after that alternative, instead of first.
+     */
+    @SuppressWarnings("unchecked")
+    public BUILDER setLoadAwareRouting(boolean enable) {
+        _loadAwareRouting = enable;
+        return (BUILDER) this;
+    }
+
     @SuppressWarnings("unchecked")
     public BUILDER setMinimalOksToSucceed(int count) {
         _minOksToSucceed = count;
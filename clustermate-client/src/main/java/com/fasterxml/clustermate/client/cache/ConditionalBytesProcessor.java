@@ -0,0 +1,72 @@
+package com.fasterxml.clustermate.client.cache;
+
+import java.io.IOException;
+
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.util.ByteAggregator;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.client.call.GetContentProcessor;
+
+/**
+ * {@link GetContentProcessor} used by {@link NearCache} for (optionally
+ * conditional) GETs: content is aggregated as a byte array; and if server
+ * indicates that content has not changed, {@link NearCache#NOT_MODIFIED}
+ * is returned instead.
+ */
+public class ConditionalBytesProcessor extends GetContentProcessor<byte[]>
+{
+    protected final String _ifNoneMatch;
+
+    public ConditionalBytesProcessor(String ifNoneMatch) {
+        _ifNoneMatch = ifNoneMatch;
+    }
+
+    @Override
+    public Handler createHandler() {
+        return new Handler();
+    }
+
+    @Override
+    public boolean allowsConcurrentHandlers() {
+        return true;
+    }
+
+    @Override
+    public String getIfNoneMatch() {
+        return _ifNoneMatch;
+    }
+
+    public static class Handler extends GetContentProcessor.Handler<byte[]>
+    {
+        protected ByteAggregator _bytes;
+
+        protected boolean _notModified;
+
+        @Override
+        public boolean startContent(int statusCode, Compression comp) {
+            _notModified = (statusCode == ClusterMateConstants.HTTP_STATUS_NOT_MODIFIED);
+            return true;
+        }
+
+        @Override
+        public boolean processContent(byte[] content, int offset, int length)
+            throws IOException
+        {
+            _bytes = ByteAggregator.with(_bytes, content, offset, length);
+            return true;
+        }
+
+        @Override
+        public byte[] completeContentProcessing() throws IOException
+        {
+            if (_notModified) {
+                return NearCache.NOT_MODIFIED;
+            }
+            return (_bytes == null) ? new byte[0] : _bytes.toByteArray();
+        }
+
+        @Override
+        public void contentProcessingFailed(Throwable cause) { }
+    }
+}
@@ -0,0 +1,97 @@
+package com.fasterxml.clustermate.client.cache;
+
+/**
+ * Simple Count-Min sketch used for estimating access frequencies of
+ * keys (both cached and non-cached) in compact space. Counters are
+ * small (saturate at 15), and are periodically halved so that estimates
+ * reflect recent access patterns, as described in "TinyLFU: A Highly
+ * Efficient Cache Admission Policy" (Einziger, Friedman).
+ *<p>
+ * Instances are not thread-safe; caller is expected to synchronize access.
+ */
+public class FrequencySketch
+{
+    protected final static int MAX_COUNT = 15;
+
+    protected final static int DEPTH = 4;
+
+    protected final static int[] SEEDS = new int[] {
+        0x97cb3127, 0xb8d7a2c1, 0x3c6ef372, 0x5c4bcd33
+    };
+
+    protected final int[][] _counts;
+
+    protected final int _mask;
+
+    /**
+     * Number of increments after which all counters are halved
+     */
+    protected final int _sampleSize;
+
+    protected int _increments;
+
+    /**
+     * @param expectedEntries Approximate number of distinct keys expected to be
+     *   tracked; used for sizing the sketch
+     */
+    public FrequencySketch(int expectedEntries)
+    {
+        int width = 16;
+        // use width of at least 2x expected entries (max 1M), power of two
+        final int maxWidth = Math.min(Math.max(16, expectedEntries), 1 << 19) * 2;
+        while (width < maxWidth) {
+            width += width;
+        }
+        _counts = new int[DEPTH][width];
+        _mask = width - 1;
+        _sampleSize = width * 10;
+    }
+
+    /**
+     * Method for recording an access to key with given hash
+     */
+    public void increment(int hash)
+    {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; ++i) {
+            int[] row = _counts[i];
+            int ix = _index(hash, i);
+            if (row[ix] < MAX_COUNT) {
+                ++row[ix];
+                added = true;
+            }
+        }
+        if (added && ++_increments >= _sampleSize) {
+            _reset();
+        }
+    }
+
+    /**
+     * Method for finding estimated access frequency for key with given hash
+     */
+    public int frequency(int hash)
+    {
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; ++i) {
+            min = Math.min(min, _counts[i][_index(hash, i)]);
+        }
+        return min;
+    }
+
+    protected int _index(int hash, int row)
+    {
+        int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+        h ^= (h >>> 16);
+        return h & _mask;
+    }
+
+    protected void _reset()
+    {
+        for (int[] row : _counts) {
+            for (int i = 0, len = row.length; i < len; ++i) {
+                row[i] >>>= 1;
+            }
+        }
+        _increments >>>= 1;
+    }
+}
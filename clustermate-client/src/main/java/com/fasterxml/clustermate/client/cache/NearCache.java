@@ -0,0 +1,566 @@
+package com.fasterxml.clustermate.client.cache;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.hash.HashConstants;
+import com.fasterxml.storemate.shared.util.IOUtil;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.EntryKeyConverter;
+
+/**
+ * Client-side cache for entry content: since entries are immutable once
+ * PUT (although they may be DELETEd and re-created), content fetched from
+ * server can be kept locally and reused, either trusted as-is for a
+ * configured time, or revalidated with a conditional GET (using entry
+ * content hash as ETag) which avoids transferring content if it has not
+ * changed.
+ *<p>
+ * Content is kept in memory (on-heap or off-heap), with an optional disk
+ * tier for bigger entries. Each tier has a byte budget; eviction is done
+ * in LRU order, but new entries are only admitted if they have been
+ * accessed more frequently than the entry that would be evicted
+ * (TinyLFU admission policy), to avoid one-off accesses from pushing
+ * out frequently used content.
+ */
+public class NearCache<K extends EntryKey>
+{
+    /**
+     * Marker value that {@link ContentLoader} returns to indicate that
+     * cached content is still valid.
+     */
+    public final static byte[] NOT_MODIFIED = new byte[0];
+
+    /**
+     * Interface for objects that fetch content from server, when content
+     * is not found in cache or needs to be revalidated.
+     */
+    public interface ContentLoader<K>
+    {
+        /**
+         * @param key Key of entry to load
+         * @param ifNoneMatch ETag of cached content, if any; if not null, should be
+         *    used for making conditional request
+         *
+         * @return Content loaded, if any; null if no entry found; or
+         *   {@link NearCache#NOT_MODIFIED} if server indicated that cached content
+         *   is still valid
+         */
+        public byte[] load(K key, String ifNoneMatch) throws InterruptedException;
+    }
+
+    protected final NearCacheConfig _config;
+
+    protected final EntryKeyConverter<K> _keyConverter;
+
+    protected final FrequencySketch _sketch;
+
+    protected final Tier _memoryTier;
+
+    /**
+     * Tier for entries too big to keep in memory; null if disabled
+     */
+    protected final Tier _diskTier;
+
+    protected final AtomicInteger _fileCounter = new AtomicInteger(0);
+
+    /*
+    /**********************************************************************
+    /* Metrics
+    /**********************************************************************
+     */
+
+    protected final AtomicLong _hits = new AtomicLong();
+
+    protected final AtomicLong _misses = new AtomicLong();
+
+    protected final AtomicLong _revalidations = new AtomicLong();
+
+    protected final AtomicLong _evictions = new AtomicLong();
+
+    protected final AtomicLong _invalidations = new AtomicLong();
+
+    /*
+    /**********************************************************************
+    /* Life-cycle
+    /**********************************************************************
+     */
+
+    public NearCache(NearCacheConfig config, EntryKeyConverter<K> keyConverter)
+    {
+        _config = config;
+        _keyConverter = keyConverter;
+        _memoryTier = new Tier(config.getMaxMemoryBytes());
+        _diskTier = config.diskTierEnabled() ? new Tier(config.getMaxDiskBytes()) : null;
+        // assume entries average ~1k, for sizing purposes
+        long expected = (config.getMaxMemoryBytes() >> 10) + (config.getMaxDiskBytes() >> 14);
+        _sketch = new FrequencySketch((int) Math.min(expected, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Method for removing all cached content, including files of disk tier.
+     */
+    public void clear()
+    {
+        List<CachedEntry> removed = new ArrayList<CachedEntry>();
+        synchronized (this) {
+            _memoryTier.clear(removed);
+            if (_diskTier != null) {
+                _diskTier.clear(removed);
+            }
+        }
+        for (CachedEntry entry : removed) {
+            entry.release();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API
+    /**********************************************************************
+     */
+
+    /**
+     * Main access method: will return cached content if it can be trusted
+     * as is; otherwise will call given loader to either revalidate cached
+     * content, or to load content (which is then cached if possible).
+     *
+     * @return Content for the entry, if any; null if no such entry exists
+     */
+    public byte[] get(K key, ContentLoader<K> loader) throws InterruptedException
+    {
+        final StorableKey rawKey = key.asStorableKey();
+        CachedEntry entry;
+        synchronized (this) {
+            _sketch.increment(rawKey.hashCode());
+            entry = _find(rawKey);
+        }
+        if (entry != null && _isTrusted(entry, _currentTime())) {
+            byte[] data = entry.read();
+            if (data != null) {
+                _hits.incrementAndGet();
+                return data;
+            }
+            _remove(entry);
+            entry = null;
+        }
+        byte[] data = loader.load(key, (entry == null) ? null : entry.etag());
+        if (data == NOT_MODIFIED) {
+            byte[] cached = (entry == null) ? null : entry.read();
+            if (cached != null) {
+                entry.validated(_currentTime());
+                _hits.incrementAndGet();
+                _revalidations.incrementAndGet();
+                return cached;
+            }
+            // should not occur, but if it does, need to do full load
+            data = loader.load(key, null);
+            if (data == NOT_MODIFIED) {
+                throw new IllegalStateException("Unexpected 'not modified' response for unconditional load of '"
+                        +key+"'");
+            }
+        }
+        _misses.incrementAndGet();
+        if (data == null) { // deleted; need to remove stale entry
+            if (entry != null) {
+                _remove(entry);
+            }
+            return null;
+        }
+        put(key, data);
+        return data;
+    }
+
+    /**
+     * Method for adding given content in cache, if there is room for it
+     * (and it is not rejected by the admission policy).
+     *
+     * @return True if content was added; false if not
+     */
+    public boolean put(K key, byte[] data)
+    {
+        final StorableKey rawKey = key.asStorableKey();
+        final int length = data.length;
+        Tier tier;
+        CachedEntry entry;
+        int hash = _contentHashFor(data);
+        if (length <= _config.getMaxMemoryEntryLength() && length <= _memoryTier.maxBytes()) {
+            tier = _memoryTier;
+            if (_config.getOffHeap()) {
+                ByteBuffer bb = ByteBuffer.allocateDirect(length);
+                bb.put(data);
+                bb.flip();
+                entry = new DirectEntry(rawKey, hash, length, bb);
+            } else {
+                entry = new HeapEntry(rawKey, hash, length, Arrays.copyOf(data, length));
+            }
+        } else if (_diskTier != null && length <= _diskTier.maxBytes()) {
+            tier = _diskTier;
+            File f = new File(_config.getDiskDirectory(), "near-cache-"+_fileCounter.incrementAndGet()+".bin");
+            try {
+                IOUtil.writeFile(f, data, 0, length);
+            } catch (IOException e) { // not fatal; just can't cache
+                f.delete();
+                return false;
+            }
+            entry = new FileEntry(rawKey, hash, length, f);
+        } else {
+            return false;
+        }
+        entry.validated(_currentTime());
+        List<CachedEntry> removed = new ArrayList<CachedEntry>();
+        boolean added;
+        synchronized (this) {
+            // any older copy needs to go
+            CachedEntry old = _memoryTier.remove(rawKey);
+            if (old != null) {
+                removed.add(old);
+            }
+            if (_diskTier != null) {
+                old = _diskTier.remove(rawKey);
+                if (old != null) {
+                    removed.add(old);
+                }
+            }
+            added = tier.admit(entry, removed);
+        }
+        if (!added) {
+            entry.release();
+        }
+        for (CachedEntry old : removed) {
+            old.release();
+        }
+        return added;
+    }
+
+    /**
+     * Method called to remove cached content for given entry, if any;
+     * called when entry is DELETEd (or re-PUT).
+     */
+    public void invalidate(K key)
+    {
+        final StorableKey rawKey = key.asStorableKey();
+        CachedEntry entry;
+        synchronized (this) {
+            entry = _memoryTier.remove(rawKey);
+            if (entry == null && _diskTier != null) {
+                entry = _diskTier.remove(rawKey);
+            }
+        }
+        if (entry != null) {
+            _invalidations.incrementAndGet();
+            entry.release();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Metrics access
+    /**********************************************************************
+     */
+
+    /**
+     * @return Number of accesses served from cache (including ones that
+     *   were revalidated)
+     */
+    public long getHitCount() { return _hits.get(); }
+
+    /**
+     * @return Number of accesses that required fetching content from server
+     */
+    public long getMissCount() { return _misses.get(); }
+
+    /**
+     * @return Number of accesses for which cached content was revalidated,
+     *   without fetching content
+     */
+    public long getRevalidationCount() { return _revalidations.get(); }
+
+    /**
+     * @return Number of entries evicted (or not admitted) due to lack of space
+     */
+    public long getEvictionCount() { return _evictions.get(); }
+
+    /**
+     * @return Number of entries removed due to explicit invalidation
+     */
+    public long getInvalidationCount() { return _invalidations.get(); }
+
+    public synchronized int getEntryCount() {
+        return _memoryTier.size() + ((_diskTier == null) ? 0 : _diskTier.size());
+    }
+
+    public synchronized long getMemoryBytes() { return _memoryTier.usedBytes(); }
+
+    public synchronized long getDiskBytes() {
+        return (_diskTier == null) ? 0L : _diskTier.usedBytes();
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    protected long _currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    protected int _contentHashFor(byte[] data) {
+        return _keyConverter.contentHashFor(ByteContainer.simple(data));
+    }
+
+    protected boolean _isTrusted(CachedEntry entry, long now)
+    {
+        final long trustMsecs = _config.getTrustMsecs();
+        if (trustMsecs < 0L) {
+            return true;
+        }
+        return (now - entry.validatedAt()) < trustMsecs;
+    }
+
+    // NOTE: must be called when holding the lock
+    protected CachedEntry _find(StorableKey key)
+    {
+        CachedEntry entry = _memoryTier.get(key);
+        if (entry == null && _diskTier != null) {
+            entry = _diskTier.get(key);
+        }
+        return entry;
+    }
+
+    /**
+     * Method for removing given entry, if (and only if) it is still
+     * the cached entry for its key.
+     */
+    protected void _remove(CachedEntry entry)
+    {
+        boolean removed;
+        synchronized (this) {
+            removed = _memoryTier.remove(entry) || ((_diskTier != null) && _diskTier.remove(entry));
+        }
+        if (removed) {
+            entry.release();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes: tiers
+    /**********************************************************************
+     */
+
+    /**
+     * Container for entries of a single storage tier, with byte budget.
+     * Not thread-safe; all access needs to be synchronized by caller.
+     */
+    protected class Tier
+    {
+        protected final long _maxBytes;
+
+        /**
+         * Entries in access order, eldest (least-recently used) first
+         */
+        protected final LinkedHashMap<StorableKey,CachedEntry> _entries
+            = new LinkedHashMap<StorableKey,CachedEntry>(64, 0.75f, true);
+
+        protected long _usedBytes;
+
+        public Tier(long maxBytes) {
+            _maxBytes = maxBytes;
+        }
+
+        public long maxBytes() { return _maxBytes; }
+        public long usedBytes() { return _usedBytes; }
+        public int size() { return _entries.size(); }
+
+        public CachedEntry get(StorableKey key) {
+            return _entries.get(key);
+        }
+
+        public CachedEntry remove(StorableKey key) {
+            CachedEntry entry = _entries.remove(key);
+            if (entry != null) {
+                _usedBytes -= entry.length();
+            }
+            return entry;
+        }
+
+        public boolean remove(CachedEntry entry) {
+            // note: can't use get() as it would change access order
+            if (_entries.containsKey(entry.key())) {
+                CachedEntry curr = _entries.remove(entry.key());
+                if (curr == entry) {
+                    _usedBytes -= entry.length();
+                    return true;
+                }
+                _entries.put(curr.key(), curr);
+            }
+            return false;
+        }
+
+        /**
+         * Method for trying to add given entry, evicting least-recently used
+         * entries as necessary, if the new entry is accessed more frequently
+         * than entries to evict.
+         */
+        public boolean admit(CachedEntry entry, List<CachedEntry> removed)
+        {
+            final long needed = _usedBytes + entry.length() - _maxBytes;
+            if (needed > 0L) {
+                // First: find victims, verify they are not more popular
+                final int candidateFreq = _sketch.frequency(entry.key().hashCode());
+                List<CachedEntry> victims = new ArrayList<CachedEntry>();
+                long freed = 0L;
+                Iterator<CachedEntry> it = _entries.values().iterator();
+                while (freed < needed && it.hasNext()) {
+                    CachedEntry victim = it.next();
+                    if (_sketch.frequency(victim.key().hashCode()) >= candidateFreq) {
+                        _evictions.incrementAndGet();
+                        return false;
+                    }
+                    victims.add(victim);
+                    freed += victim.length();
+                }
+                for (CachedEntry victim : victims) {
+                    remove(victim.key());
+                    removed.add(victim);
+                    _evictions.incrementAndGet();
+                }
+            }
+            _entries.put(entry.key(), entry);
+            _usedBytes += entry.length();
+            return true;
+        }
+
+        public void clear(List<CachedEntry> removed)
+        {
+            removed.addAll(_entries.values());
+            _entries.clear();
+            _usedBytes = 0L;
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes: cached entries
+    /**********************************************************************
+     */
+
+    protected abstract static class CachedEntry
+    {
+        protected final StorableKey _key;
+
+        protected final int _contentHash;
+
+        protected final int _length;
+
+        protected volatile long _validatedAt;
+
+        protected CachedEntry(StorableKey key, int contentHash, int length) {
+            _key = key;
+            _contentHash = contentHash;
+            _length = length;
+        }
+
+        public StorableKey key() { return _key; }
+        public int length() { return _length; }
+        public long validatedAt() { return _validatedAt; }
+
+        public void validated(long time) {
+            _validatedAt = time;
+        }
+
+        /**
+         * @return ETag to use for revalidating content, if any
+         */
+        public String etag() {
+            if (_contentHash == HashConstants.NO_CHECKSUM) {
+                return null;
+            }
+            return "\""+_contentHash+"\"";
+        }
+
+        /**
+         * Method for reading a copy of cached content
+         *
+         * @return Copy of the content, if still available; null if not
+         */
+        public abstract byte[] read();
+
+        /**
+         * Method called once entry has been removed from cache
+         */
+        public void release() { }
+    }
+
+    protected final static class HeapEntry extends CachedEntry
+    {
+        protected final byte[] _data;
+
+        public HeapEntry(StorableKey key, int hash, int length, byte[] data) {
+            super(key, hash, length);
+            _data = data;
+        }
+
+        @Override
+        public byte[] read() {
+            return Arrays.copyOf(_data, _length);
+        }
+    }
+
+    protected final static class DirectEntry extends CachedEntry
+    {
+        protected final ByteBuffer _data;
+
+        public DirectEntry(StorableKey key, int hash, int length, ByteBuffer data) {
+            super(key, hash, length);
+            _data = data;
+        }
+
+        @Override
+        public byte[] read() {
+            byte[] result = new byte[_length];
+            // need to use a duplicate to keep reads thread-safe
+            _data.duplicate().get(result);
+            return result;
+        }
+    }
+
+    protected final static class FileEntry extends CachedEntry
+    {
+        protected final File _file;
+
+        public FileEntry(StorableKey key, int hash, int length, File f) {
+            super(key, hash, length);
+            _file = f;
+        }
+
+        @Override
+        public byte[] read()
+        {
+            byte[] result = new byte[_length];
+            try {
+                FileInputStream in = new FileInputStream(_file);
+                try {
+                    return (IOUtil.readFully(in, result) == _length) ? result : null;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) { // may have been evicted concurrently
+                return null;
+            }
+        }
+
+        @Override
+        public void release() {
+            _file.delete();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.fasterxml.clustermate.client.cache;
+
+import java.io.File;
+
+/**
+ * Configuration settings for {@link NearCache}. Instances are immutable;
+ * "mutant factory" methods are used for constructing differently
+ * configured instances.
+ */
+public class NearCacheConfig
+{
+    /**
+     * By default, let's use up to 32 megs of memory for cached content
+     */
+    public final static long DEFAULT_MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * By default, only cache entries up to 64k in size in memory
+     */
+    public final static long DEFAULT_MAX_MEMORY_ENTRY_LENGTH = 64 * 1024;
+
+    /**
+     * By default, cached content is trusted for 10 seconds before needing
+     * to be revalidated.
+     */
+    public final static long DEFAULT_TRUST_MSECS = 10000L;
+
+    /**
+     * Maximum number of bytes of content to keep in memory.
+     */
+    protected final long _maxMemoryBytes;
+
+    /**
+     * Maximum length of individual entries to keep in memory; longer
+     * entries may be stored on disk, if disk tier is enabled.
+     */
+    protected final long _maxMemoryEntryLength;
+
+    /**
+     * Whether content kept in memory should be stored outside of Java heap
+     * (using direct byte buffers).
+     */
+    protected final boolean _offHeap;
+
+    /**
+     * Length of time (in milliseconds) during which cached content is used
+     * without checking that it is still valid: after this, it is revalidated
+     * using conditional GET. If 0, content is always revalidated;
+     * if negative, never (content is trusted until evicted or invalidated).
+     */
+    protected final long _trustMsecs;
+
+    /**
+     * Directory to use for storing entries too big to keep in memory, if any;
+     * null to disable disk tier.
+     */
+    protected final File _diskDirectory;
+
+    /**
+     * Maximum number of bytes of content to store in disk tier.
+     */
+    protected final long _maxDiskBytes;
+
+    public NearCacheConfig() {
+        this(DEFAULT_MAX_MEMORY_BYTES, DEFAULT_MAX_MEMORY_ENTRY_LENGTH, false,
+                DEFAULT_TRUST_MSECS, null, 0L);
+    }
+
+    public NearCacheConfig(long maxMemoryBytes, long maxMemoryEntryLength, boolean offHeap,
+            long trustMsecs, File diskDirectory, long maxDiskBytes)
+    {
+        _maxMemoryBytes = maxMemoryBytes;
+        _maxMemoryEntryLength = maxMemoryEntryLength;
+        _offHeap = offHeap;
+        _trustMsecs = trustMsecs;
+        _diskDirectory = diskDirectory;
+        _maxDiskBytes = maxDiskBytes;
+    }
+
+    /*
+    /**********************************************************************
+    /* Mutant factories
+    /**********************************************************************
+     */
+
+    public NearCacheConfig withMemoryLimits(long maxBytes, long maxEntryLength, boolean offHeap) {
+        return new NearCacheConfig(maxBytes, maxEntryLength, offHeap,
+                _trustMsecs, _diskDirectory, _maxDiskBytes);
+    }
+
+    public NearCacheConfig withTrustMsecs(long msecs) {
+        return new NearCacheConfig(_maxMemoryBytes, _maxMemoryEntryLength, _offHeap,
+                msecs, _diskDirectory, _maxDiskBytes);
+    }
+
+    public NearCacheConfig withDiskTier(File dir, long maxBytes) {
+        return new NearCacheConfig(_maxMemoryBytes, _maxMemoryEntryLength, _offHeap,
+                _trustMsecs, dir, maxBytes);
+    }
+
+    /*
+    /**********************************************************************
+    /* Accessors
+    /**********************************************************************
+     */
+
+    public long getMaxMemoryBytes() { return _maxMemoryBytes; }
+
+    public long getMaxMemoryEntryLength() { return _maxMemoryEntryLength; }
+
+    public boolean getOffHeap() { return _offHeap; }
+
+    public long getTrustMsecs() { return _trustMsecs; }
+
+    public File getDiskDirectory() { return _diskDirectory; }
+
+    public long getMaxDiskBytes() { return _maxDiskBytes; }
+
+    public boolean diskTierEnabled() {
+        return (_diskDirectory != null) && (_maxDiskBytes > 0L);
+    }
+}
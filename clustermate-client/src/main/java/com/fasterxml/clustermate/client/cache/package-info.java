@@ -0,0 +1,5 @@
+/**
+ * Package that contains client-side caching functionality, used for
+ * avoiding repeated fetches of immutable entry content.
+ */
+package com.fasterxml.clustermate.client.cache;
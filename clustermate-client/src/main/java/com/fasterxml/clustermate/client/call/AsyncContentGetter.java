@@ -0,0 +1,20 @@
+package com.fasterxml.clustermate.client.call;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.storemate.shared.ByteRange;
+
+/**
+ * Optional interface that {@link ContentGetter} implementations may
+ * implement, if they can make GET calls without blocking the calling
+ * thread.
+ */
+public interface AsyncContentGetter<K extends EntryKey>
+{
+    /**
+     * Method for starting a GET call; listener will be called with the
+     * result, same as return value of {@link ContentGetter#tryGet}.
+     */
+    public <T> void tryGetAsync(CallConfig config, ReadCallParameters params,
+            long endOfTime, K contentId, GetContentProcessor<T> processor, ByteRange range,
+            CallListener<ReadCallResult<T>> listener);
+}
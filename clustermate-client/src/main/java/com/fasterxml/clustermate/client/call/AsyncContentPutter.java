@@ -0,0 +1,20 @@
+package com.fasterxml.clustermate.client.call;
+
+import com.fasterxml.clustermate.api.EntryKey;
+
+/**
+ * Optional interface that {@link ContentPutter} implementations may
+ * implement, if they can make PUT calls without blocking the calling
+ * thread.
+ */
+public interface AsyncContentPutter<K extends EntryKey>
+{
+    /**
+     * Method for starting a PUT call; listener will be called with
+     * <code>null</code> for successful call, or failure otherwise,
+     * same as return value of {@link ContentPutter#tryPut}.
+     */
+    public void tryPutAsync(CallConfig config, PutCallParameters params,
+            long endOfTime, K contentId, PutContentProvider content,
+            CallListener<CallFailure> listener);
+}
@@ -0,0 +1,14 @@
+package com.fasterxml.clustermate.client.call;
+
+/**
+ * Callback interface used with asynchronous calls: called once with
+ * the result of a single call, when the call completes (successfully
+ * or not).
+ *
+ * @param <R> Result type of the call; same as return type of the
+ *   matching blocking call method
+ */
+public interface CallListener<R>
+{
+    public void callCompleted(R result);
+}
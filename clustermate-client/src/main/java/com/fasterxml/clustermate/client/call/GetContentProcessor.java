@@ -16,7 +16,33 @@ public abstract class GetContentProcessor<T>
      * Method called to create handler instance
      */
     public abstract Handler<T> createHandler();
-    
+
+    /**
+     * Method called to check whether multiple handlers created by this
+     * processor may be used concurrently; this is required for things like
+     * hedged GETs, where content may be requested from more than one server
+     * node at the same time (and only one result is used).
+     *<p>
+     * Default implementation returns false, since handlers may share
+     * resources such as output files.
+     */
+    public boolean allowsConcurrentHandlers() {
+        return false;
+    }
+
+    /**
+     * Method called to check whether GET should be conditional: if non-null
+     * value is returned, it is sent as "If-None-Match" header; and if server
+     * indicates that content has not changed (with 304 response), handler
+     * is called with status code 304 and no content, and its result is
+     * returned as successful result.
+     *<p>
+     * Default implementation returns null, meaning unconditional GET.
+     */
+    public String getIfNoneMatch() {
+        return null;
+    }
+
     public static abstract class Handler<T>
     {
         /**
@@ -14,6 +14,14 @@ public class GetContentProcessorForBytes extends GetContentProcessor<ByteAggrega
         return new Handler();
     }
 
+    /**
+     * Handlers do not share any state, so they can be used concurrently
+     */
+    @Override
+    public boolean allowsConcurrentHandlers() {
+        return true;
+    }
+
     /**
      * Simple {@link PutContentProvider} implementation that collects content
      * as bytes, producing a {@link ByteAggregator}.
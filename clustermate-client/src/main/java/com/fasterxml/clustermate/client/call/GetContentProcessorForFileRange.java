@@ -0,0 +1,94 @@
+package com.fasterxml.clustermate.client.call;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.fasterxml.storemate.shared.compress.Compression;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+
+/**
+ * {@link GetContentProcessor} implementation used for GETting a segment
+ * (byte range) of content, and writing it into specified position of a
+ * file, using positional writes. This allows multiple segments to be
+ * written into the same file concurrently.
+ * Result is the number of bytes written.
+ */
+public class GetContentProcessorForFileRange extends GetContentProcessor<Long>
+{
+    protected final FileChannel _channel;
+
+    protected final long _offset;
+
+    protected final long _length;
+
+    /**
+     * @param channel Channel of the file to write content to
+     * @param offset Position in file to write first byte of content to
+     * @param length Expected length of content
+     */
+    public GetContentProcessorForFileRange(FileChannel channel, long offset, long length) {
+        _channel = channel;
+        _offset = offset;
+        _length = length;
+    }
+
+    @Override
+    public GetContentProcessorForFileRange.Handler createHandler() {
+        return new Handler(_channel, _offset, _length);
+    }
+
+    public static class Handler extends GetContentProcessor.Handler<Long>
+    {
+        protected final FileChannel _channel;
+
+        protected final long _offset;
+
+        protected final long _length;
+
+        protected long _written;
+
+        public Handler(FileChannel channel, long offset, long length) {
+            _channel = channel;
+            _offset = offset;
+            _length = length;
+        }
+
+        @Override
+        public boolean startContent(int statusCode, Compression compression)
+            throws IOException
+        {
+            // must get partial content, unless segment happens to cover all content
+            if (statusCode != ClusterMateConstants.HTTP_STATUS_OK_PARTIAL
+                    && !(statusCode == ClusterMateConstants.HTTP_STATUS_OK && _offset == 0L)) {
+                throw new IOException("Unexpected status code for range request: "+statusCode);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean processContent(byte[] content, int offset, int length)
+            throws IOException
+        {
+            if (_written + length > _length) {
+                throw new IOException("Received more content than expected ("+_length+" bytes) for range");
+            }
+            ByteBuffer bb = ByteBuffer.wrap(content, offset, length);
+            long pos = _offset + _written;
+            while (bb.hasRemaining()) {
+                pos += _channel.write(bb, pos);
+            }
+            _written += length;
+            return true;
+        }
+
+        @Override
+        public Long completeContentProcessing() throws IOException {
+            return Long.valueOf(_written);
+        }
+
+        @Override
+        public void contentProcessingFailed(Throwable cause) { }
+    }
+}
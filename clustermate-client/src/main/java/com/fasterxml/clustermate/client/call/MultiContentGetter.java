@@ -0,0 +1,31 @@
+package com.fasterxml.clustermate.client.call;
+
+import java.util.List;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+
+/**
+ * Interface for accessor used for fetching contents (or just metadata)
+ * of multiple entries stored in a single server, using a single call;
+ * one accessor per server and end point.
+ */
+public interface MultiContentGetter<K extends EntryKey>
+{
+    /**
+     * Method to call to try to fetch given entries from specified server
+     * node, with a single call.
+     * 
+     * @param config Configuration settings to use for call
+     * @param endOfTime Time point at which the whole operation will time out
+     * @param keys Keys of entries to fetch
+     * @param metadataOnly Whether to only fetch metadata (similar to HEAD)
+     *   or also contents of entries
+     *
+     * @return Result of the call; if successful, contains one item for each
+     *   requested key, in order in which keys were requested
+     */
+    public ReadCallResult<List<MultiGetItem>> tryGetMulti(CallConfig config,
+            ReadCallParameters params, long endOfTime,
+            List<K> keys, boolean metadataOnly);
+}
@@ -0,0 +1,30 @@
+package com.fasterxml.clustermate.client.call;
+
+import java.util.List;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.msg.MultiPutResponse;
+
+/**
+ * Interface for accessor used for storing multiple (usually small) entries
+ * in a single server, using a single call; one accessor per server and
+ * end point.
+ */
+public interface MultiContentPutter<K extends EntryKey>
+{
+    /**
+     * Method to call to try to store given entries in specified server
+     * node, with a single call.
+     *
+     * @param config Configuration settings to use for call
+     * @param endOfTime Time point at which the whole operation will time out
+     * @param keys Keys of entries to store
+     * @param contents Contents of entries to store, in same order as keys
+     *
+     * @return Result of the call; if successful, contains one result for
+     *   each entry, in order in which entries were given
+     */
+    public ReadCallResult<MultiPutResponse> tryPutMulti(CallConfig config,
+            PutCallParameters params, long endOfTime,
+            List<K> keys, List<PutContentProvider> contents);
+}
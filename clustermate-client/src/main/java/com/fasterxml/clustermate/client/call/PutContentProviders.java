@@ -6,6 +6,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 import com.fasterxml.storemate.shared.ByteContainer;
 import com.fasterxml.storemate.shared.compress.Compression;
 import com.fasterxml.storemate.shared.hash.HashConstants;
+import com.fasterxml.storemate.shared.hash.IncrementalHasher32;
+
+import com.fasterxml.clustermate.api.codec.CompressionCodec;
+import com.fasterxml.clustermate.client.util.StreamSpool;
 
 /**
  * Helper class used for creating one of standard {@link PutContentProvider}
@@ -32,7 +36,51 @@ public class PutContentProviders
     public static StdPutContentProvider forBytes(ByteContainer bytes, Compression comp, long origLen) {
         return new ByteBacked(bytes, comp, origLen);
     }
-    
+
+    /**
+     * Factory method for constructing provider for given content compressed
+     * using given codec, if that makes content shorter.
+     *
+     * @param contentHash Hash of uncompressed content; needs to be known
+     *   since it can not be calculated from compressed content
+     *
+     * @return Provider for compressed content; or null if compressed content
+     *   would not be shorter
+     */
+    public static StdPutContentProvider forCompressedBytes(ByteContainer bytes, int contentHash,
+            CompressionCodec codec)
+        throws IOException
+    {
+        final int origLen = bytes.byteLength();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(100, origLen >> 1));
+        OutputStream comp = codec.compressingStream(out);
+        bytes.writeBytes(comp);
+        comp.close();
+        if (out.size() >= origLen) {
+            return null;
+        }
+        StdPutContentProvider prov = forBytes(out.toByteArray(), codec.getCompression(), origLen);
+        prov.setContentHash(contentHash);
+        return prov;
+    }
+
+    /**
+     * Factory method for constructing provider for content of unknown length,
+     * read from given stream. Content is buffered (off-heap, overflowing
+     * to a temporary file) as the first request sends it, so that it can be
+     * re-sent for retries and to additional servers. Since content hash is not
+     * known when the first request is sent, it is calculated while sending and
+     * passed after content (see
+     * {@link com.fasterxml.clustermate.api.ClusterMateConstants#QUERY_PARAM_CHECKSUM_TRAILER});
+     * later requests pass hash calculated by given hasher up-front.
+     *
+     * @param hasher Hasher to use for calculating content hash; if null,
+     *    hash is calculated by each request separately
+     */
+    public static StdPutContentProvider forStream(InputStream in, IncrementalHasher32 hasher) {
+        return new StreamBacked(new StreamSpool(in, hasher));
+    }
+
     /**
      * Intermediate base class used for building actual {@link PutContentProvider} instances.
      */
@@ -166,4 +214,66 @@ public class PutContentProviders
         @Override public InputStream contentAsStream() { return null; }
         @Override public Object rawSource() { return _file; }
     }
+
+    /*
+    /**********************************************************************
+    /* Stream-backed implementation
+    /**********************************************************************
+     */
+
+    /**
+     * {@link PutContentProvider} implementation that is backed by an
+     * {@link java.io.InputStream} of unknown length, buffered using
+     * a {@link StreamSpool}.
+     */
+    protected static class StreamBacked
+        extends StdPutContentProvider
+    {
+        protected final StreamSpool _spool;
+
+        public StreamBacked(StreamSpool spool) {
+            this(spool, null, 0L);
+        }
+
+        public StreamBacked(StreamSpool spool,
+                Compression existingCompression, long uncompressedLength) {
+            super(existingCompression, uncompressedLength);
+            _spool = spool;
+        }
+
+        @Override
+        public StreamBacked withCompression(Compression comp, long uncompLen) {
+            return new StreamBacked(_spool, comp, uncompLen);
+        }
+
+        @Override
+        public void release() {
+            _spool.release();
+        }
+
+        /**
+         * Content hash becomes available once all content has been read
+         * from the source (by the first request to send it); but only if
+         * content is not compressed, since hash is to be calculated over
+         * uncompressed content.
+         */
+        @Override
+        public int getContentHash() {
+            int hash = _contentHash.get();
+            if (hash == HashConstants.NO_CHECKSUM
+                    && (_existingCompression == null || _existingCompression == Compression.NONE)) {
+                hash = _spool.getContentHash();
+                if (hash != HashConstants.NO_CHECKSUM) {
+                    setContentHash(hash);
+                }
+            }
+            return hash;
+        }
+
+        @Override public long length() { return _spool.length(); }
+        @Override public ByteContainer contentAsBytes() { return null; }
+        @Override public File contentAsFile() { return null; }
+        @Override public InputStream contentAsStream() throws IOException { return _spool.newReader(); }
+        @Override public Object rawSource() { return _spool; }
+    }
 }
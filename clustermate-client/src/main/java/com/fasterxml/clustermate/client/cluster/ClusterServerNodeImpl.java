@@ -1,6 +1,7 @@
 package com.fasterxml.clustermate.client.cluster;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.clustermate.api.EntryKey;
@@ -17,6 +18,10 @@ import com.fasterxml.clustermate.client.call.ContentHeader;
 import com.fasterxml.clustermate.client.call.ContentPutter;
 import com.fasterxml.clustermate.client.call.EntryInspector;
 import com.fasterxml.clustermate.client.call.EntryLister;
+import com.fasterxml.clustermate.client.call.MultiContentGetter;
+import com.fasterxml.clustermate.client.call.MultiContentPutter;
+import com.fasterxml.clustermate.client.util.DecayingAverage;
+import com.fasterxml.clustermate.client.util.LatencyWindow;
 import com.fasterxml.storemate.shared.IpAndPort;
 
 /**
@@ -28,6 +33,19 @@ import com.fasterxml.storemate.shared.IpAndPort;
 public class ClusterServerNodeImpl
     implements ClusterServerNode
 {
+    /**
+     * Length of logical sample window used for latency average: small enough
+     * to react to degradation in a few dozen calls.
+     */
+    protected final static int LATENCY_AVERAGE_WINDOW = 20;
+
+    /**
+     * Latency and load information older than this is not used for
+     * load-aware routing: this ensures that a node that was avoided due
+     * to high load gets called again at some point, to update information.
+     */
+    protected final static long LOAD_INFO_MAX_AGE_MSECS = 10000L;
+
     /**
      * Address (ip number and port) used for communicating with the
      * node. Note that this is resolved end point in case server
@@ -80,6 +98,41 @@ public class ClusterServerNodeImpl
      */
     private final AtomicLong _lastClusterUpdateAvailable = new AtomicLong(1L);
 
+    /**
+     * Timestamp of the latest failed attempt to fetch cluster status from
+     * this node, if any; used to avoid repeatedly calling unavailable nodes.
+     */
+    private volatile long _lastStatusFetchFailed = 0L;
+
+    /**
+     * Latencies of the most recent successful GET calls to this node;
+     * used for calculating things like adaptive hedging delays.
+     */
+    private final LatencyWindow _getLatencies = new LatencyWindow();
+
+    /**
+     * Decaying average of latencies of recent calls to this node; used
+     * for load-aware routing.
+     */
+    private final DecayingAverage _latencyAverage = new DecayingAverage(LATENCY_AVERAGE_WINDOW);
+
+    /**
+     * Number of calls to this node currently in-flight from this client.
+     */
+    private final AtomicInteger _callsInFlight = new AtomicInteger(0);
+
+    /**
+     * Latest load hint received from the node, if any (see
+     * {@link com.fasterxml.clustermate.api.ClusterMateConstants#CUSTOM_HTTP_HEADER_LOAD_HINT});
+     * 0 if none received.
+     */
+    private volatile int _loadHint = 0;
+
+    /**
+     * Timestamp of the last update to latency average or load hint
+     */
+    private volatile long _lastLoadInfoUpdate = 0L;
+
     /*
     /**********************************************************************
     /* Entry accessor handling
@@ -92,6 +145,8 @@ public class ClusterServerNodeImpl
     protected final ContentDeleter<?> _entryDeleter;
     protected final EntryLister<?> _entryLister;
     protected final EntryInspector<?> _entryInspector;
+    protected final MultiContentGetter<?> _multiEntryGetter;
+    protected final MultiContentPutter<?> _multiEntryPutter;
     
     /*
     /**********************************************************************
@@ -115,6 +170,8 @@ public class ClusterServerNodeImpl
         _entryDeleter = entryAccessors.entryDeleter(this);
         _entryLister = entryAccessors.entryLister(this);
         _entryInspector = entryAccessors.entryInspector(this);
+        _multiEntryGetter = entryAccessors.multiEntryGetter(this);
+        _multiEntryPutter = entryAccessors.multiEntryPutter(this);
     }
 
     // only for test usage
@@ -133,6 +190,8 @@ public class ClusterServerNodeImpl
         _entryDeleter = null;
         _entryLister = null;
         _entryInspector = null;
+        _multiEntryGetter = null;
+        _multiEntryPutter = null;
     }
     
     protected static ClusterServerNodeImpl forTesting(KeyRange range) {
@@ -211,6 +270,41 @@ public class ClusterServerNodeImpl
         _lastClusterUpdateAvailable.set(timestamp);
     }
 
+    public void setLastStatusFetchFailed(long timestamp) {
+        _lastStatusFetchFailed = timestamp;
+    }
+
+    /**
+     * Method called after a GET call to this node completes (either with
+     * content, or with "not found").
+     */
+    public void recordGetLatency(long msecs) {
+        _getLatencies.record(msecs);
+        _latencyAverage.addSample(msecs);
+        _lastLoadInfoUpdate = System.currentTimeMillis();
+    }
+
+    /**
+     * Method called when a call to this node is sent; needs to be matched
+     * by a call to {@link #callFinished}.
+     */
+    public void callStarted() {
+        _callsInFlight.incrementAndGet();
+    }
+
+    public void callFinished() {
+        _callsInFlight.decrementAndGet();
+    }
+
+    /**
+     * Method called when a response with load hint header is received
+     * from this node.
+     */
+    public void updateLoadHint(int hint) {
+        _loadHint = Math.max(0, hint);
+        _lastLoadInfoUpdate = System.currentTimeMillis();
+    }
+
     /*
     /**********************************************************************
     /* ReadOnlyServerNodeState implementation (public accessors)
@@ -243,6 +337,8 @@ public class ClusterServerNodeImpl
 
     @Override
     public long getLastClusterUpdateAvailable() { return _lastClusterUpdateAvailable.get(); }
+
+    public long getLastStatusFetchFailed() { return _lastStatusFetchFailed; }
     
     /*
     /**********************************************************************
@@ -250,6 +346,48 @@ public class ClusterServerNodeImpl
     /**********************************************************************
      */
 
+    /**
+     * Accessor for finding approximate percentile of recent GET latencies
+     * for this node.
+     *
+     * @param minSamples Minimum number of samples needed for calculation
+     *
+     * @return Latency in milliseconds, if at least <code>minSamples</code>
+     *    samples are available; -1 if not
+     */
+    public long getGetLatencyPercentile(int percentile, int minSamples) {
+        if (_getLatencies.size() < minSamples) {
+            return -1L;
+        }
+        return _getLatencies.percentile(percentile);
+    }
+
+    public double getLatencyAverage() { return _latencyAverage.getCurrentAverage(); }
+
+    public int getCallsInFlight() { return _callsInFlight.get(); }
+
+    public int getLoadHint() { return _loadHint; }
+
+    /**
+     * Method for calculating estimated cost of calling this node, based on
+     * average latency of recent calls, and on number of outstanding calls:
+     * either ones sent by this client, or ones reported by the node itself
+     * (via load hint), whichever is higher. Higher values mean that node is
+     * expected to be slower to respond.
+     *
+     * @return Estimated cost, if enough recent information is available; -1.0 if not
+     */
+    public double calculateLoadScore(long currentTime)
+    {
+        double avg = _latencyAverage.getCurrentAverage();
+        if (avg < 0.0 || (currentTime - _lastLoadInfoUpdate) > LOAD_INFO_MAX_AGE_MSECS) {
+            return -1.0;
+        }
+        int outstanding = Math.max(_callsInFlight.get(), _loadHint);
+        // +1 for latency, to avoid zero-latency nodes from looking equivalent
+        return (avg + 1.0) * (1 + outstanding);
+    }
+
     /**
      * Method for calculating distance metrics to use for sorting server nodes
      * based on distance. In addition to basic clock-wise distance from start
@@ -329,4 +467,16 @@ public class ClusterServerNodeImpl
     public <K extends EntryKey> EntryInspector<K> entryInspector() {
         return (EntryInspector<K>) _entryInspector;
     }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K extends EntryKey> MultiContentGetter<K> multiEntryGetter() {
+        return (MultiContentGetter<K>) _multiEntryGetter;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K extends EntryKey> MultiContentPutter<K> multiEntryPutter() {
+        return (MultiContentPutter<K>) _multiEntryPutter;
+    }
 }
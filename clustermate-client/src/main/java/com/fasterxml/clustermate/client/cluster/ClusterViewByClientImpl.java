@@ -4,6 +4,7 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.fasterxml.clustermate.api.*;
+import com.fasterxml.clustermate.api.msg.ClusterStatusMessage;
 import com.fasterxml.clustermate.client.*;
 import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
 import com.fasterxml.storemate.shared.IpAndPort;
@@ -71,7 +72,8 @@ public class ClusterViewByClientImpl<K extends EntryKey>
         } else {
             _rootPathSegments = storeConfig.getBasePath();
         }
-        _hashRouter = new HashRouter<K>(keyspace, _keyConverter, _states);
+        _hashRouter = new HashRouter<K>(keyspace, _keyConverter, _states,
+                (storeConfig != null) && storeConfig.getOperationConfig().getLoadAwareRouting());
     }
     
     public static <K extends EntryKey> ClusterViewByClientImpl<K> forTesting(KeySpace keyspace)
@@ -153,14 +155,7 @@ public class ClusterViewByClientImpl<K extends EntryKey>
                     _entryAccessors);
             _addNode(byNode, localState);
         }
-        boolean needInvalidate = localState.updateRanges(stateInfo.getRangeActive(),
-                stateInfo.getRangePassive());
-        if (localState.updateDisabled(stateInfo.isDisabled())) {
-            needInvalidate = true;
-        }
-        if (needInvalidate) {
-            invalidateRouting();
-        }
+        _updateNodeState(localState, stateInfo);
         localState.setLastRequestSent(requestTime);
         localState.setLastResponseReceived(responseTime);
         localState.setLastNodeUpdateFetched(stateInfo.getLastUpdated());
@@ -192,14 +187,57 @@ public class ClusterViewByClientImpl<K extends EntryKey>
             }
         }
         state.setLastNodeUpdateFetched(nodeInfoTimestamp);
-        boolean needInvalidate = state.updateRanges(stateInfo.getRangeActive(),
-                stateInfo.getRangePassive());
-        if (state.updateDisabled(stateInfo.isDisabled())) {
-            needInvalidate = true;
+        _updateNodeState(state, stateInfo);
+    }
+
+    /**
+     * Method called to update state with full cluster status, fetched directly
+     * from specified server node.
+     */
+    public synchronized void updateStatus(IpAndPort byNode, ClusterStatusMessage status,
+            long requestTime, long responseTime)
+    {
+        updateDirectState(byNode, status.local, requestTime, responseTime,
+                status.clusterLastUpdated);
+        for (NodeState stateSec : status.localPeers) {
+            updateIndirectState(byNode, stateSec);
         }
-        if (needInvalidate) {
-            invalidateRouting();
+    }
+
+    /**
+     * Method for finding the server node that has the most out-of-date cluster
+     * information; that is, node for which we know (based on timestamps piggy-backed
+     * on responses) that it has newer cluster information than what we have
+     * fetched from it, and from which we have fetched information least recently.
+     *
+     * @param failureDelayMsecs Minimum time to wait after a failed status call
+     *   to a node, before calling it again
+     *
+     * @return Node to fetch cluster status from, if any; null if none are known
+     *   to have newer information
+     */
+    public synchronized ClusterServerNodeImpl findMostOutdatedNode(long currentTime,
+            long failureDelayMsecs)
+    {
+        return _findMostOutdatedNode(_nodes.values(), currentTime, failureDelayMsecs);
+    }
+
+    // separate method for testing
+    protected ClusterServerNodeImpl _findMostOutdatedNode(Collection<ClusterServerNodeImpl> nodes,
+            long currentTime, long failureDelayMsecs)
+    {
+        ClusterServerNodeImpl result = null;
+        for (ClusterServerNodeImpl node : nodes) {
+            final long fetched = node.getLastClusterUpdateFetched();
+            if (node.getLastClusterUpdateAvailable() <= fetched
+                    || (currentTime - node.getLastStatusFetchFailed()) < failureDelayMsecs) {
+                continue;
+            }
+            if (result == null || fetched < result.getLastClusterUpdateFetched()) {
+                result = node;
+            }
         }
+        return result;
     }
 
     /*
@@ -233,13 +271,23 @@ public class ClusterViewByClientImpl<K extends EntryKey>
     {
         _nodes.put(key, state);
         _states.set(_nodes.values().toArray(new ClusterServerNodeImpl[_nodes.size()]));
+        _hashRouter.invalidateRouting(state.getTotalRange());
     }
 
     /**
-     * Method called when server node state information changes in a way that
-     * may affect routing of requests.
+     * Helper method for updating key ranges and disabled state of a node; if
+     * either changes, routing information is invalidated for hash slots that
+     * node covered before and/or after the change.
      */
-    private final void invalidateRouting() {
-        _hashRouter.invalidateRouting();
+    private void _updateNodeState(ClusterServerNodeImpl state, NodeState stateInfo)
+    {
+        final KeyRange oldRange = state.getTotalRange();
+        if (state.updateRanges(stateInfo.getRangeActive(), stateInfo.getRangePassive())) {
+            _hashRouter.invalidateRouting(oldRange);
+            _hashRouter.invalidateRouting(state.getTotalRange());
+        }
+        if (state.updateDisabled(stateInfo.isDisabled())) {
+            _hashRouter.invalidateRouting(state.getTotalRange());
+        }
     }
 }
@@ -15,10 +15,24 @@ import com.fasterxml.clustermate.client.NodesForKey;
  */
 public final class HashRouter<K extends EntryKey>
 {
+    /**
+     * Ratio by which estimated cost of calling the primary node must exceed
+     * that of an alternative node, for the alternative to be called first,
+     * when using load-aware routing. Needs to be high enough to keep routing
+     * mostly "sticky", so that nodes are not swapped due to minor fluctuations.
+     */
+    private final static double LOAD_IMBALANCE_RATIO = 2.0;
+
     private final KeySpace _keyspace;
     
     private final EntryKeyConverter<K> _keyConverter;
 
+    /**
+     * Whether primary node may be changed based on observed latencies
+     * and load.
+     */
+    private final boolean _loadAware;
+
     /**
      * Monotonically increasing counter we use for lazily constructing
      * and invalidating routing information, mapping from key hashes
@@ -38,9 +52,16 @@ public final class HashRouter<K extends EntryKey>
     
     public HashRouter(KeySpace keyspace, EntryKeyConverter<K> keyConverter,
             AtomicReference<ClusterServerNode[]> states)
+    {
+        this(keyspace, keyConverter, states, false);
+    }
+
+    public HashRouter(KeySpace keyspace, EntryKeyConverter<K> keyConverter,
+            AtomicReference<ClusterServerNode[]> states, boolean loadAware)
     {
         _keyspace = keyspace;
         _keyConverter = keyConverter;
+        _loadAware = loadAware;
         _routing = new AtomicReferenceArray<NodesForKey>(keyspace.getLength());
         _states = states;
     }
@@ -48,6 +69,23 @@ public final class HashRouter<K extends EntryKey>
     public void invalidateRouting() {
         _version.addAndGet(1);
     }
+
+    /**
+     * Method for invalidating routing information only for hash slots
+     * within specified range, leaving other pre-calculated entries intact.
+     * Entries are replaced with new placeholder instances (instead of nulls)
+     * to make sure that a concurrent calculation, based on older state,
+     * can not replace them.
+     */
+    public void invalidateRouting(KeyRange range)
+    {
+        BitSet slots = new BitSet(_keyspace.getLength());
+        range.fill(slots);
+        for (int i = slots.nextSetBit(0); i >= 0; i = slots.nextSetBit(i+1)) {
+            // version 0 is never used for valid entries
+            _routing.set(i, NodesForKey.empty(0));
+        }
+    }
     
     public NodesForKey getNodesFor(K key)
     {
@@ -56,13 +94,13 @@ public final class HashRouter<K extends EntryKey>
         int currVersion = _version.get();
         int modulo = hash.getModuloHash();
         NodesForKey nodes = _routing.get(modulo);
-        // fast (and common) case: pre-calculated, valid info exists:
-        if (nodes != null && nodes.version() == currVersion) {
-            return nodes;
+        // common case is that pre-calculated, valid info exists; if not, calculate
+        if (nodes == null || nodes.version() != currVersion) {
+            NodesForKey newNodes = _calculateNodes(currVersion, hash);
+            _routing.compareAndSet(modulo, nodes, newNodes);
+            nodes = newNodes;
         }
-        NodesForKey newNodes = _calculateNodes(currVersion, hash);
-        _routing.compareAndSet(modulo, nodes, newNodes);
-        return newNodes;
+        return _loadAware ? _preferLessLoaded(hash, nodes, System.currentTimeMillis()) : nodes;
     }
 
     protected NodesForKey _calculateNodes(int version, KeyHash keyHash) {
@@ -98,6 +136,44 @@ public final class HashRouter<K extends EntryKey>
         return new NodesForKey(version, matching);
     }
 
+    /**
+     * Method called to check whether the primary node (first node in
+     * hash-based order) appears significantly slower than an alternative
+     * node, and if so, to move the best alternative first. Only enabled
+     * nodes whose active range covers the key are considered as alternatives,
+     * and cached hash-based ordering is not modified.
+     */
+    protected NodesForKey _preferLessLoaded(KeyHash keyHash, NodesForKey nodes, long currentTime)
+    {
+        final int count = nodes.size();
+        if (count < 2) {
+            return nodes;
+        }
+        ClusterServerNode first = nodes.node(0);
+        if (first.isDisabled() || !(first instanceof ClusterServerNodeImpl)) {
+            return nodes;
+        }
+        final double firstScore = ((ClusterServerNodeImpl) first).calculateLoadScore(currentTime);
+        if (firstScore < 0.0) { // no (recent) information; stay with default
+            return nodes;
+        }
+        double bestScore = firstScore / LOAD_IMBALANCE_RATIO;
+        int bestIndex = -1;
+        for (int i = 1; i < count; ++i) {
+            ClusterServerNode node = nodes.node(i);
+            if (node.isDisabled() || !(node instanceof ClusterServerNodeImpl)
+                    || !node.getActiveRange().contains(keyHash)) {
+                continue;
+            }
+            double score = ((ClusterServerNodeImpl) node).calculateLoadScore(currentTime);
+            if (score >= 0.0 && score < bestScore) {
+                bestScore = score;
+                bestIndex = i;
+            }
+        }
+        return (bestIndex < 0) ? nodes : nodes.withFirst(bestIndex);
+    }
+
     /*
     /**********************************************************************
     /* Helper classes
@@ -0,0 +1,454 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.ListItemType;
+import com.fasterxml.clustermate.api.msg.ListResponse;
+import com.fasterxml.clustermate.client.*;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
+import com.fasterxml.clustermate.client.util.ContentConverter;
+import com.fasterxml.storemate.shared.ByteRange;
+
+/**
+ * Asynchronous version of single-entry read operations (GET, HEAD, List):
+ * calls are made one node at a time, same as with blocking operations,
+ * but instead of blocking, each call completion triggers next call.
+ * Delays between retry rounds are handled by scheduling next round
+ * using a timer, instead of sleeping.
+ *
+ * @param <R> Type of operation result
+ * @param <C> Type of results of individual calls
+ */
+public abstract class AsyncReadOperation<K extends EntryKey,
+    R extends ReadOperationResult<R>,
+    C extends CallResult
+>
+{
+    /*
+    /**********************************************************************
+    /* Configuration
+    /**********************************************************************
+     */
+
+    protected final StoreClientConfig<K,?> _config;
+
+    protected final CallConfig _callConfig;
+
+    protected final Executor _executor;
+
+    protected final ScheduledExecutorService _timer;
+
+    protected final NodesForKey _nodes;
+
+    protected final boolean _noRetries;
+
+    protected final long _endOfTime;
+
+    protected final long _lastValidTime;
+
+    /*
+    /**********************************************************************
+    /* State
+    /**********************************************************************
+     */
+
+    protected final R _result;
+
+    protected final OperationFuture<R> _future = new OperationFuture<R>();
+
+    /**
+     * Number of round(s) of calls started: first round calls enabled nodes,
+     * later rounds nodes with retriable failures (and second round disabled
+     * nodes as well).
+     */
+    protected int _round;
+
+    protected long _roundStartTime;
+
+    /**
+     * Nodes to call during current round, in order
+     */
+    protected List<SingleCallState> _roundNodes;
+
+    /**
+     * Index of the next node to call (of {@link #_roundNodes})
+     */
+    protected int _nextIndex;
+
+    /**
+     * Nodes that have failed with retriable failures during current round
+     */
+    protected List<SingleCallState> _retries;
+
+    /*
+    /**********************************************************************
+    /* Life-cycle
+    /**********************************************************************
+     */
+
+    protected AsyncReadOperation(StoreClientConfig<K,?> config, long startTime,
+            NodesForKey nodes, R result, Executor executor, ScheduledExecutorService timer)
+    {
+        _config = config;
+        _callConfig = config.getCallConfig();
+        _executor = executor;
+        _timer = timer;
+        _nodes = nodes;
+        _result = result;
+        _noRetries = !config.getOperationConfig().getAllowRetries();
+        // same timeout for all read operations
+        _endOfTime = startTime + config.getOperationConfig().getGetOperationTimeoutMsecs();
+        _lastValidTime = _endOfTime - _callConfig.getMinimumTimeoutMsecs();
+        _roundStartTime = startTime;
+        _retries = new ArrayList<SingleCallState>();
+    }
+
+    /**
+     * Method called to start the operation, which will then proceed
+     * asynchronously.
+     */
+    public OperationFuture<R> start()
+    {
+        final int nodeCount = _nodes.size();
+        List<SingleCallState> first = new ArrayList<SingleCallState>(nodeCount);
+        for (int i = 0; i < nodeCount; ++i) {
+            ClusterServerNode server = _nodes.node(i);
+            if (!server.isDisabled() || _noRetries) {
+                first.add(new SingleCallState(server));
+            }
+        }
+        _startRound(first);
+        return _future;
+    }
+
+    /*
+    /**********************************************************************
+    /* Abstract methods
+    /**********************************************************************
+     */
+
+    /**
+     * Method called to make the actual call to specified server; result
+     * is to be passed to {@link #_callCompleted} when call completes.
+     * Default implementation makes the blocking call using executor.
+     */
+    protected void _call(final SingleCallState call)
+    {
+        _executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                C result;
+                try {
+                    result = _blockingCall(call.server());
+                } catch (Throwable t) {
+                    _future.fail(t);
+                    return;
+                }
+                _callCompleted(call, result);
+            }
+        });
+    }
+
+    protected abstract C _blockingCall(ClusterServerNode server);
+
+    /**
+     * Method called for successful calls.
+     *
+     * @return True if operation is now complete; false if not
+     */
+    protected abstract boolean _handleSuccess(ClusterServerNode server, C callResult);
+
+    /*
+    /**********************************************************************
+    /* Call sequencing
+    /**********************************************************************
+     */
+
+    protected synchronized void _startRound(List<SingleCallState> nodes)
+    {
+        _roundNodes = nodes;
+        _nextIndex = 0;
+        _retries = new ArrayList<SingleCallState>();
+        _callNext();
+    }
+
+    protected synchronized void _callNext()
+    {
+        if (_nextIndex < _roundNodes.size()) {
+            // after first round, need to keep an eye on time left
+            if (_round > 0 && System.currentTimeMillis() >= _lastValidTime) {
+                _finish();
+                return;
+            }
+            _call(_roundNodes.get(_nextIndex++));
+            return;
+        }
+        // Round done; anything left to try?
+        if (_noRetries || _round > StoreClientConfig.MAX_RETRIES_FOR_GET) {
+            _finish();
+            return;
+        }
+        final List<SingleCallState> next = _retries;
+        // second round also tries disabled nodes (once)
+        if (_round == 0) {
+            for (int i = 0, len = _nodes.size(); i < len; ++i) {
+                ClusterServerNode server = _nodes.node(i);
+                if (server.isDisabled()) {
+                    next.add(new SingleCallState(server));
+                }
+            }
+        }
+        if (next.isEmpty()) {
+            _finish();
+            return;
+        }
+        ++_round;
+        final long now = System.currentTimeMillis();
+        final long delay = retryDelay(_roundStartTime, now, _endOfTime);
+        _roundStartTime = now + delay;
+        if (delay <= 0L) {
+            _startRound(next);
+            return;
+        }
+        _timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    _startRound(next);
+                } catch (Throwable t) {
+                    _future.fail(t);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    protected synchronized void _callCompleted(SingleCallState call, C callResult)
+    {
+        try {
+            if (callResult.failed()) {
+                CallFailure fail = callResult.getFailure();
+                call.addFailure(fail);
+                if (fail.isRetriable()) {
+                    _retries.add(call);
+                } else {
+                    _result.withFailed(call.getFails());
+                }
+            } else if (_handleSuccess(call.server(), callResult)) {
+                _finish();
+                return;
+            }
+            _callNext();
+        } catch (Throwable t) {
+            _future.fail(t);
+        }
+    }
+
+    protected void _finish()
+    {
+        // Nodes that failed (and were not re-tried) need to be included as failures
+        for (SingleCallState call : _retries) {
+            _result.withFailed(call.getFails());
+        }
+        for (int i = _nextIndex, len = _roundNodes.size(); i < len; ++i) {
+            NodeFailure fails = _roundNodes.get(i).getFails();
+            if (fails != null) {
+                _result.withFailed(fails);
+            }
+        }
+        _future.complete(_result);
+    }
+
+    /**
+     * Helper method for calculating delay between rounds of calls; same
+     * logic as used by blocking operations.
+     */
+    public static long retryDelay(long startTime, long currTime, long endTime)
+    {
+        long timeSpent = currTime - startTime;
+        // only add delay if we have had quick failures (signaling overload)
+        if (timeSpent < 1000L) {
+            long timeLeft = endTime - currTime;
+            // also, only wait if we still have some time; and then modest amount (250 mecs)
+            if (timeLeft >= (4 * StoreClientConfig.DELAY_BETWEEN_RETRY_ROUNDS_MSECS)) {
+                return StoreClientConfig.DELAY_BETWEEN_RETRY_ROUNDS_MSECS;
+            }
+        }
+        return 0L;
+    }
+
+    /*
+    /**********************************************************************
+    /* Concrete implementations
+    /**********************************************************************
+     */
+
+    /**
+     * Asynchronous GET operation; uses non-blocking calls if
+     * {@link ContentGetter} implements {@link AsyncContentGetter}.
+     */
+    public static class ForGet<K extends EntryKey,T>
+        extends AsyncReadOperation<K,GetOperationResult<T>,ReadCallResult<T>>
+    {
+        protected final ReadCallParameters _params;
+        protected final K _key;
+        protected final GetContentProcessor<T> _processor;
+        protected final ByteRange _range;
+
+        public ForGet(StoreClientConfig<K,?> config, long startTime, NodesForKey nodes,
+                Executor executor, ScheduledExecutorService timer,
+                ReadCallParameters params, K key, GetContentProcessor<T> processor, ByteRange range)
+        {
+            super(config, startTime, nodes, new GetOperationResult<T>(config.getOperationConfig()),
+                    executor, timer);
+            _params = params;
+            _key = key;
+            _processor = processor;
+            _range = range;
+        }
+
+        @Override
+        protected void _call(final SingleCallState call)
+        {
+            final ClusterServerNode server = call.server();
+            ContentGetter<K> getter = server.entryGetter();
+            if (!(getter instanceof AsyncContentGetter<?>)) {
+                super._call(call);
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            AsyncContentGetter<K> asyncGetter = (AsyncContentGetter<K>) getter;
+            final long start = System.currentTimeMillis();
+            _callStarted(server);
+            asyncGetter.tryGetAsync(_callConfig, _params, _endOfTime, _key, _processor, _range,
+                    new CallListener<ReadCallResult<T>>() {
+                @Override
+                public void callCompleted(ReadCallResult<T> result) {
+                    _callFinished(server, start, result);
+                    _callCompleted(call, result);
+                }
+            });
+        }
+
+        @Override
+        protected ReadCallResult<T> _blockingCall(ClusterServerNode server) {
+            final long start = System.currentTimeMillis();
+            _callStarted(server);
+            ReadCallResult<T> result = null;
+            try {
+                result = server.<K>entryGetter().tryGet(_callConfig, _params, _endOfTime,
+                        _key, _processor, _range);
+            } finally {
+                _callFinished(server, start, result);
+            }
+            return result;
+        }
+
+        @Override
+        protected boolean _handleSuccess(ClusterServerNode server, ReadCallResult<T> callResult)
+        {
+            T entry = callResult.getResult();
+            if (entry != null) {
+                _result.setContents(server, entry);
+                return true;
+            }
+            // if not, it's 404, missing entry. Neither fail nor really success...
+            _result.withMissing(server);
+            return false;
+        }
+
+        protected void _callStarted(ClusterServerNode server) {
+            if (server instanceof ClusterServerNodeImpl) {
+                ((ClusterServerNodeImpl) server).callStarted();
+            }
+        }
+
+        protected void _callFinished(ClusterServerNode server, long start, ReadCallResult<T> result) {
+            if (server instanceof ClusterServerNodeImpl) {
+                ClusterServerNodeImpl node = (ClusterServerNodeImpl) server;
+                node.callFinished();
+                if (result != null && result.succeeded()) {
+                    node.recordGetLatency(System.currentTimeMillis() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Asynchronous HEAD operation.
+     */
+    public static class ForHead<K extends EntryKey>
+        extends AsyncReadOperation<K,HeadOperationResult,HeadCallResult>
+    {
+        protected final ReadCallParameters _params;
+        protected final K _key;
+
+        public ForHead(StoreClientConfig<K,?> config, long startTime, NodesForKey nodes,
+                Executor executor, ScheduledExecutorService timer,
+                ReadCallParameters params, K key)
+        {
+            super(config, startTime, nodes, new HeadOperationResult(config.getOperationConfig()),
+                    executor, timer);
+            _params = params;
+            _key = key;
+        }
+
+        @Override
+        protected HeadCallResult _blockingCall(ClusterServerNode server) {
+            return server.<K>entryHeader().tryHead(_callConfig, _params, _endOfTime, _key);
+        }
+
+        @Override
+        protected boolean _handleSuccess(ClusterServerNode server, HeadCallResult callResult)
+        {
+            if (callResult.hasContentLength()) {
+                _result.setContentLength(server, callResult.getContentLength());
+                return true;
+            }
+            _result.withMissing(server);
+            return false;
+        }
+    }
+
+    /**
+     * Asynchronous operation for listing a single batch of entries.
+     */
+    public static class ForList<K extends EntryKey,T>
+        extends AsyncReadOperation<K,ListOperationResult<T>,ListCallResult<T>>
+    {
+        protected final K _prefix;
+        protected final K _lastSeen;
+        protected final ListItemType _itemType;
+        protected final int _maxToList;
+        protected final ContentConverter<ListResponse<T>> _converter;
+
+        public ForList(StoreClientConfig<K,?> config, long startTime, NodesForKey nodes,
+                Executor executor, ScheduledExecutorService timer,
+                K prefix, K lastSeen, ListItemType itemType, int maxToList,
+                ContentConverter<ListResponse<T>> converter)
+        {
+            super(config, startTime, nodes, new ListOperationResult<T>(config.getOperationConfig()),
+                    executor, timer);
+            _prefix = prefix;
+            _lastSeen = lastSeen;
+            _itemType = itemType;
+            _maxToList = maxToList;
+            _converter = converter;
+        }
+
+        @Override
+        protected ListCallResult<T> _blockingCall(ClusterServerNode server) {
+            return server.<K>entryLister().tryList(_callConfig, _endOfTime,
+                    _prefix, _lastSeen, _itemType, _maxToList, _converter);
+        }
+
+        @Override
+        protected boolean _handleSuccess(ClusterServerNode server, ListCallResult<T> callResult)
+        {
+            _result.setItems(server, callResult);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.client.*;
+import com.fasterxml.clustermate.client.call.*;
+
+/**
+ * Asynchronous version of write operations (PUT, DELETE), which tries to
+ * complete operation "optimally" (see {@link OperationConfig#getOptimalOks()}).
+ * Calls are made one node at a time (or, for PUTs with parallel writes
+ * enabled, to all nodes during the first round), and each call completion
+ * triggers next call(s). Delays between retry rounds are handled by
+ * scheduling next round using a timer, instead of sleeping.
+ */
+public abstract class AsyncWriteOperation<K extends EntryKey,
+    PARAMS extends CallParameters,
+    R extends WriteOperationResult<R>
+>
+{
+    /*
+    /**********************************************************************
+    /* Configuration
+    /**********************************************************************
+     */
+
+    protected final CallConfig _callConfig;
+
+    protected final Executor _executor;
+
+    protected final ScheduledExecutorService _timer;
+
+    protected final K _key;
+
+    protected final PARAMS _params;
+
+    protected final boolean _noRetries;
+
+    protected final boolean _parallelWrites;
+
+    protected final int _oksNeeded;
+
+    protected final int _maxCallRetries;
+
+    protected final long _endOfTime;
+
+    protected final long _lastValidTime;
+
+    /*
+    /**********************************************************************
+    /* State
+    /**********************************************************************
+     */
+
+    protected final R _result;
+
+    protected final OperationFuture<R> _future = new OperationFuture<R>();
+
+    /**
+     * Nodes that have neither succeeded nor failed permanently yet.
+     */
+    protected final List<SingleCallState> _activeNodes;
+
+    /**
+     * Number of round(s) of calls started.
+     */
+    protected int _round;
+
+    protected long _roundStartTime;
+
+    protected List<SingleCallState> _roundNodes;
+
+    protected int _nextIndex;
+
+    /**
+     * Number of calls sent for which we have not yet received response
+     */
+    protected int _inFlight;
+
+    /**
+     * Flag set when operation result has been completed; calls still
+     * in-flight at that point are allowed to complete, but their results
+     * are ignored.
+     */
+    protected boolean _completed;
+
+    /**
+     * Flag set while call sequencing is in progress: since call completions
+     * may be delivered synchronously (from within {@link #_call}), nested
+     * invocations of {@link #_callNext} only request another pass
+     * instead of recursing.
+     */
+    protected boolean _dispatching;
+
+    protected boolean _redispatch;
+
+    /**
+     * Flag to ensure {@link #_release} is only called once.
+     */
+    protected boolean _released;
+
+    /*
+    /**********************************************************************
+    /* Life-cycle
+    /**********************************************************************
+     */
+
+    protected AsyncWriteOperation(StoreClientConfig<K,?> config, long startTime,
+            NodesForKey nodes, K key, PARAMS params, R result,
+            int maxCallRetries, long operationTimeoutMsecs, boolean parallelWrites,
+            Executor executor, ScheduledExecutorService timer)
+    {
+        _callConfig = config.getCallConfig();
+        _executor = executor;
+        _timer = timer;
+        _key = key;
+        _params = params;
+        _result = result;
+        _noRetries = !config.getOperationConfig().getAllowRetries();
+        _parallelWrites = parallelWrites;
+        _oksNeeded = config.getOperationConfig().getOptimalOks();
+        _maxCallRetries = maxCallRetries;
+        _endOfTime = startTime + operationTimeoutMsecs;
+        _lastValidTime = _endOfTime - _callConfig.getMinimumTimeoutMsecs();
+        _roundStartTime = startTime;
+
+        final int nodeCount = nodes.size();
+        _activeNodes = new ArrayList<SingleCallState>(nodeCount);
+        for (int i = 0; i < nodeCount; ++i) {
+            _activeNodes.add(new SingleCallState(nodes.node(i)));
+        }
+    }
+
+    public OperationFuture<R> start()
+    {
+        List<SingleCallState> first = new ArrayList<SingleCallState>(_activeNodes.size());
+        for (SingleCallState call : _activeNodes) {
+            // only try disabled ones during first round if no retries allowed
+            if (_noRetries || !call.server().isDisabled()) {
+                first.add(call);
+            }
+        }
+        _startRound(first);
+        return _future;
+    }
+
+    /*
+    /**********************************************************************
+    /* Abstract methods
+    /**********************************************************************
+     */
+
+    /**
+     * Method called to make the actual call to specified server; result
+     * is to be passed to {@link #_callCompleted} when call completes.
+     * Default implementation makes the blocking call using executor.
+     */
+    protected void _call(final SingleCallState call)
+    {
+        _executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                CallFailure fail;
+                try {
+                    fail = _blockingCall(call.server());
+                } catch (Throwable t) {
+                    fail = CallFailure.clientInternal(call.server(), System.currentTimeMillis(),
+                            System.currentTimeMillis(), t);
+                }
+                _callCompleted(call, fail);
+            }
+        });
+    }
+
+    protected abstract CallFailure _blockingCall(ClusterServerNode server);
+
+    /**
+     * Method called once operation has completed and no calls are in-flight,
+     * to release any resources operation holds.
+     */
+    protected void _release() { }
+
+    /*
+    /**********************************************************************
+    /* Call sequencing
+    /**********************************************************************
+     */
+
+    protected synchronized void _startRound(List<SingleCallState> nodes)
+    {
+        // scheduled round may fire after operation was completed by other means
+        if (_completed) {
+            return;
+        }
+        _roundNodes = nodes;
+        _nextIndex = 0;
+        _callNext();
+    }
+
+    protected synchronized void _callNext()
+    {
+        if (_dispatching) { // completion delivered from within _call(); let outer loop handle
+            _redispatch = true;
+            return;
+        }
+        _dispatching = true;
+        try {
+            do {
+                _redispatch = false;
+                if (_completed) {
+                    return;
+                }
+                _dispatch();
+            } while (_redispatch);
+        } finally {
+            _dispatching = false;
+        }
+    }
+
+    private void _dispatch()
+    {
+        // with parallel writes, first round sends all calls at once
+        final int maxInFlight = (_parallelWrites && _round == 0) ? Integer.MAX_VALUE : 1;
+        while (!_completed && _inFlight < maxInFlight && _nextIndex < _roundNodes.size()) {
+            if (_round > 0 && System.currentTimeMillis() > _lastValidTime) {
+                _finish();
+                return;
+            }
+            final SingleCallState call = _roundNodes.get(_nextIndex++);
+            ++_inFlight;
+            try {
+                _call(call);
+            } catch (Throwable t) {
+                _callCompleted(call, CallFailure.clientInternal(call.server(),
+                        System.currentTimeMillis(), System.currentTimeMillis(), t));
+            }
+        }
+        if (_completed || _inFlight > 0) {
+            return;
+        }
+        // Round done: another one?
+        if (_noRetries || (_round+1) >= _maxCallRetries || _activeNodes.isEmpty()) {
+            _finish();
+            return;
+        }
+        ++_round;
+        final List<SingleCallState> next = new ArrayList<SingleCallState>(_activeNodes);
+        final long now = System.currentTimeMillis();
+        final long delay = AsyncReadOperation.retryDelay(_roundStartTime, now, _endOfTime);
+        _roundStartTime = now + delay;
+        if (delay <= 0L) { // start right away, but from the loop in _callNext(), not recursively
+            _roundNodes = next;
+            _nextIndex = 0;
+            _redispatch = true;
+            return;
+        }
+        // nothing more to do until next round starts; ignore pending re-dispatch requests
+        _redispatch = false;
+        _timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    _startRound(next);
+                } catch (Throwable t) {
+                    _fail(t);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    protected synchronized void _callCompleted(SingleCallState call, CallFailure fail)
+    {
+        --_inFlight;
+        try {
+            if (_completed) { // late response after completion; ignore, but may release
+                _releaseIfIdle();
+                return;
+            }
+            if (fail == null) { // success
+                _activeNodes.remove(call);
+                _result.addSucceeded(call.server());
+                if (_result.getSuccessCount() >= _oksNeeded
+                        || System.currentTimeMillis() > _lastValidTime) {
+                    _finish();
+                    return;
+                }
+            } else {
+                call.addFailure(fail);
+                // if not retriable, add as failure, remove from active
+                if (!fail.isRetriable()) {
+                    _activeNodes.remove(call);
+                    _result.withFailed(call.getFails());
+                }
+            }
+            _callNext();
+        } catch (Throwable t) {
+            _fail(t);
+        }
+    }
+
+    protected void _finish()
+    {
+        if (_completed) {
+            return;
+        }
+        _completed = true;
+        for (SingleCallState state : _activeNodes) {
+            NodeFailure fails = state.getFails();
+            if (fails == null) {
+                _result.withIgnored(state.server());
+            } else {
+                _result.withFailed(fails);
+            }
+        }
+        _releaseIfIdle();
+        _future.complete(_result);
+    }
+
+    protected synchronized void _fail(Throwable t)
+    {
+        if (!_completed) {
+            _completed = true;
+            _releaseIfIdle();
+        }
+        _future.fail(t);
+    }
+
+    private void _releaseIfIdle()
+    {
+        if (_inFlight == 0 && !_released) {
+            _released = true;
+            _release();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Concrete implementations
+    /**********************************************************************
+     */
+
+    /**
+     * Asynchronous PUT operation; uses non-blocking calls if
+     * {@link ContentPutter} implements {@link AsyncContentPutter}.
+     */
+    public static class ForPut<K extends EntryKey>
+        extends AsyncWriteOperation<K,PutCallParameters,PutOperationResult>
+    {
+        protected final PutContentProvider _content;
+
+        public ForPut(StoreClientConfig<K,?> config, long startTime, NodesForKey nodes,
+                Executor executor, ScheduledExecutorService timer,
+                PutCallParameters params, K key, PutContentProvider content)
+        {
+            super(config, startTime, nodes, key, params,
+                    new PutOperationResult(config.getOperationConfig(), params),
+                    StoreClientConfig.MAX_RETRIES_FOR_PUT,
+                    config.getOperationConfig().getPutOperationTimeoutMsecs(),
+                    config.getOperationConfig().getParallelWrites(),
+                    executor, timer);
+            _content = content;
+        }
+
+        @Override
+        protected void _call(final SingleCallState call)
+        {
+            ContentPutter<K> putter = call.server().entryPutter();
+            if (!(putter instanceof AsyncContentPutter<?>)) {
+                super._call(call);
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            AsyncContentPutter<K> asyncPutter = (AsyncContentPutter<K>) putter;
+            asyncPutter.tryPutAsync(_callConfig, _params, _endOfTime, _key, _content,
+                    new CallListener<CallFailure>() {
+                @Override
+                public void callCompleted(CallFailure fail) {
+                    _callCompleted(call, fail);
+                }
+            });
+        }
+
+        @Override
+        protected CallFailure _blockingCall(ClusterServerNode server) {
+            return server.<K>entryPutter().tryPut(_callConfig, _params, _endOfTime, _key, _content);
+        }
+
+        @Override
+        protected void _release() {
+            _content.release();
+        }
+    }
+
+    /**
+     * Asynchronous DELETE operation.
+     */
+    public static class ForDelete<K extends EntryKey>
+        extends AsyncWriteOperation<K,DeleteCallParameters,DeleteOperationResult>
+    {
+        public ForDelete(StoreClientConfig<K,?> config, long startTime, NodesForKey nodes,
+                Executor executor, ScheduledExecutorService timer,
+                DeleteCallParameters params, K key)
+        {
+            super(config, startTime, nodes, key, params,
+                    new DeleteOperationResult(config.getOperationConfig(), params),
+                    StoreClientConfig.MAX_RETRIES_FOR_DELETE,
+                    config.getOperationConfig().getDeleteOperationTimeoutMsecs(),
+                    false, executor, timer);
+        }
+
+        @Override
+        protected CallFailure _blockingCall(ClusterServerNode server) {
+            return server.<K>entryDeleter().tryDelete(_callConfig, _params, _endOfTime, _key);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.client.ClusterServerNode;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
+import com.fasterxml.storemate.shared.ByteRange;
+import com.fasterxml.storemate.shared.compress.Compression;
+
+/**
+ * Helper class that handles "hedged" (speculative) GET calls: if the first
+ * server node has not responded within hedging delay, the same GET is sent
+ * to a backup node, and whichever responds first with content is used.
+ * Handler of the losing call is aborted as soon as possible, and its result
+ * is discarded.
+ *<p>
+ * Instances are shared by all GET operations of a client, and also keep
+ * track of hedging statistics, which are used both for enforcing hedging
+ * budget (maximum percentage of GETs that may be hedged) and for exposing
+ * metrics.
+ */
+public class GetHedger
+{
+    /**
+     * Percentile of latencies of the primary node to use as adaptive
+     * hedging delay.
+     */
+    protected final static int ADAPTIVE_DELAY_PERCENTILE = 95;
+
+    /**
+     * Minimum number of latency samples needed before using adaptive delay
+     */
+    protected final static int ADAPTIVE_DELAY_MIN_SAMPLES = 20;
+
+    protected final Executor _executor;
+
+    // // // Statistics
+
+    /**
+     * Number of GETs that were eligible for hedging.
+     */
+    protected final AtomicLong _hedgeableGets = new AtomicLong(0L);
+
+    /**
+     * Number of hedge requests sent.
+     */
+    protected final AtomicLong _hedgesSent = new AtomicLong(0L);
+
+    /**
+     * Number of hedge requests that returned content before primary call.
+     */
+    protected final AtomicLong _hedgesWon = new AtomicLong(0L);
+
+    /**
+     * Number of hedge requests not sent due to hedging budget being used up.
+     */
+    protected final AtomicLong _hedgesDenied = new AtomicLong(0L);
+
+    public GetHedger(Executor executor) {
+        _executor = executor;
+    }
+
+    /*
+    /**********************************************************************
+    /* Metrics accessors
+    /**********************************************************************
+     */
+
+    public long getHedgeableGetCount() { return _hedgeableGets.get(); }
+    public long getHedgesSentCount() { return _hedgesSent.get(); }
+    public long getHedgesWonCount() { return _hedgesWon.get(); }
+    public long getHedgesDeniedCount() { return _hedgesDenied.get(); }
+
+    /*
+    /**********************************************************************
+    /* Main API
+    /**********************************************************************
+     */
+
+    /**
+     * Method to call to try to GET content from the primary node, with
+     * possible hedge request to the backup node.
+     *
+     * @return Results of calls that completed (and were not aborted),
+     *   in order of completion; along with indication of whether backup
+     *   node was called, and whether its call completed.
+     *   If it was aborted, its result is not included, and caller may
+     *   need to call it again (if the other call failed).
+     */
+    public <K extends EntryKey, T> Results<T> tryGet(OperationConfig operConfig,
+            ReadCallParameters params, long endOfTime, K key,
+            GetContentProcessor<T> processor, ByteRange range,
+            ClusterServerNode primary, ClusterServerNode backup)
+        throws InterruptedException
+    {
+        _hedgeableGets.incrementAndGet();
+        final CallConfig callConfig = operConfig.getCallConfig();
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+        final CompletionService<Attempt<T>> calls = new ExecutorCompletionService<Attempt<T>>(_executor);
+
+        Attempt<T> first = new Attempt<T>(primary, callConfig, params, endOfTime, key,
+                new ClaimingProcessor<T>(processor, claimed), range);
+        Future<Attempt<T>> firstFuture = calls.submit(first);
+        final long delay = Math.min(_hedgeDelay(operConfig, primary),
+                endOfTime - System.currentTimeMillis());
+        Future<Attempt<T>> done = (delay <= 0L) ? null : calls.poll(delay, TimeUnit.MILLISECONDS);
+        // Primary responded quickly, or no budget for hedging? Just use primary result
+        if (done == null && !_tryAcquireHedge(operConfig)) {
+            done = calls.take();
+        }
+        if (done != null) {
+            return new Results<T>(_results(_get(done)), false, false);
+        }
+        _hedgesSent.incrementAndGet();
+        Attempt<T> second = new Attempt<T>(backup, callConfig, params, endOfTime, key,
+                new ClaimingProcessor<T>(processor, claimed), range);
+        Future<Attempt<T>> secondFuture = calls.submit(second);
+
+        Attempt<T> winner = _get(calls.take());
+        if (winner.foundContent()) {
+            // cancel the other call; its handler is already blocked from producing content
+            if (winner == second) {
+                _hedgesWon.incrementAndGet();
+                firstFuture.cancel(true);
+            } else {
+                secondFuture.cancel(true);
+            }
+            return new Results<T>(_results(winner), true, (winner == second));
+        }
+        // Otherwise need to see what the other call gives us
+        Attempt<T> other = _get(calls.take());
+        List<ReadCallResult<T>> results = new ArrayList<ReadCallResult<T>>(2);
+        _addResult(results, winner);
+        _addResult(results, other);
+        if (other == second && other.foundContent()) {
+            _hedgesWon.incrementAndGet();
+        }
+        return new Results<T>(results, true, !second.aborted());
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    protected long _hedgeDelay(OperationConfig operConfig, ClusterServerNode primary)
+    {
+        if (operConfig.getHedgedGetAdaptive() && (primary instanceof ClusterServerNodeImpl)) {
+            long latency = ((ClusterServerNodeImpl) primary).getGetLatencyPercentile(ADAPTIVE_DELAY_PERCENTILE,
+                    ADAPTIVE_DELAY_MIN_SAMPLES);
+            if (latency >= 0L) {
+                // but let's not go too low, to avoid needless hedging of very fast calls
+                return Math.max(latency, CallConfig.MIN_TIMEOUT_MSECS);
+            }
+        }
+        return operConfig.getHedgedGetDelayMsecs();
+    }
+
+    /**
+     * Method called to check whether sending a hedge request is within
+     * hedging budget.
+     */
+    protected boolean _tryAcquireHedge(OperationConfig operConfig)
+    {
+        long allowed = (_hedgeableGets.get() * operConfig.getHedgedGetMaxPercent()) / 100;
+        if (_hedgesSent.get() < allowed) {
+            return true;
+        }
+        _hedgesDenied.incrementAndGet();
+        return false;
+    }
+
+    protected <T> Attempt<T> _get(Future<Attempt<T>> future) throws InterruptedException
+    {
+        try {
+            return future.get();
+        } catch (ExecutionException e) { // should never occur, ContentGetter catches all
+            throw new IllegalStateException("Internal error on hedged GET: "+e.getCause(), e.getCause());
+        }
+    }
+
+    protected <T> List<ReadCallResult<T>> _results(Attempt<T> attempt)
+    {
+        if (attempt.aborted()) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(attempt.result());
+    }
+
+    protected <T> void _addResult(List<ReadCallResult<T>> results, Attempt<T> attempt)
+    {
+        if (!attempt.aborted()) {
+            results.add(attempt.result());
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Container for results of a possibly hedged GET.
+     */
+    public final static class Results<T>
+    {
+        protected final List<ReadCallResult<T>> _results;
+        protected final boolean _backupCalled;
+        protected final boolean _backupCompleted;
+
+        public Results(List<ReadCallResult<T>> results, boolean backupCalled,
+                boolean backupCompleted) {
+            _results = results;
+            _backupCalled = backupCalled;
+            _backupCompleted = backupCompleted;
+        }
+
+        /**
+         * @return Results of completed (not aborted) calls, in order of completion
+         */
+        public List<ReadCallResult<T>> results() { return _results; }
+
+        /**
+         * @return True if a hedge request was sent to the backup node
+         */
+        public boolean backupCalled() { return _backupCalled; }
+
+        /**
+         * @return True if hedge request was sent to the backup node, and its
+         *   result is included in {@link #results}; false if not sent, or
+         *   if it was aborted or cancelled
+         */
+        public boolean backupCompleted() { return _backupCompleted; }
+    }
+
+    /**
+     * Task for making a single GET call, as part of hedged GET.
+     */
+    protected final static class Attempt<T> implements Callable<Attempt<T>>
+    {
+        protected final ClusterServerNode _server;
+        protected final CallConfig _callConfig;
+        protected final ReadCallParameters _params;
+        protected final long _endOfTime;
+        protected final EntryKey _key;
+        protected final ClaimingProcessor<T> _processor;
+        protected final ByteRange _range;
+
+        protected ReadCallResult<T> _result;
+
+        public Attempt(ClusterServerNode server, CallConfig callConfig,
+                ReadCallParameters params, long endOfTime, EntryKey key,
+                ClaimingProcessor<T> processor, ByteRange range)
+        {
+            _server = server;
+            _callConfig = callConfig;
+            _params = params;
+            _endOfTime = endOfTime;
+            _key = key;
+            _processor = processor;
+            _range = range;
+        }
+
+        @Override
+        public Attempt<T> call()
+        {
+            final ClusterServerNodeImpl node = (_server instanceof ClusterServerNodeImpl)
+                    ? (ClusterServerNodeImpl) _server : null;
+            final long start = System.currentTimeMillis();
+            if (node != null) {
+                node.callStarted();
+            }
+            try {
+                _result = _server.<EntryKey>entryGetter().tryGet(_callConfig, _params, _endOfTime,
+                        _key, _processor, _range);
+            } finally {
+                if (node != null) {
+                    node.callFinished();
+                }
+            }
+            if (_result.succeeded() && !aborted() && (node != null)) {
+                node.recordGetLatency(System.currentTimeMillis() - start);
+            }
+            return this;
+        }
+
+        public ReadCallResult<T> result() { return _result; }
+
+        public boolean aborted() { return _processor.aborted(); }
+
+        public boolean foundContent() {
+            return !aborted() && _result.succeeded() && _result.hasResult();
+        }
+    }
+
+    /**
+     * Wrapper for actual {@link GetContentProcessor}, used to ensure that
+     * only one of hedged calls may produce content: the first call to
+     * start content processing "claims" the right, and the other call is
+     * aborted.
+     */
+    protected final static class ClaimingProcessor<T> extends GetContentProcessor<T>
+    {
+        protected final GetContentProcessor<T> _delegate;
+        protected final AtomicBoolean _claimed;
+
+        protected volatile boolean _aborted;
+
+        public ClaimingProcessor(GetContentProcessor<T> delegate, AtomicBoolean claimed) {
+            _delegate = delegate;
+            _claimed = claimed;
+        }
+
+        @Override
+        public Handler<T> createHandler() {
+            return new ClaimingHandler(_delegate.createHandler());
+        }
+
+        @Override
+        public boolean allowsConcurrentHandlers() {
+            return true;
+        }
+
+        // need to pass conditional GET settings, if any, as-is
+        @Override
+        public String getIfNoneMatch() {
+            return _delegate.getIfNoneMatch();
+        }
+
+        public boolean aborted() { return _aborted; }
+
+        protected final class ClaimingHandler extends Handler<T>
+        {
+            protected final Handler<T> _handler;
+
+            public ClaimingHandler(Handler<T> h) {
+                _handler = h;
+            }
+
+            @Override
+            public boolean startContent(int statusCode, Compression compression)
+                throws IOException
+            {
+                if (!_claimed.compareAndSet(false, true)) {
+                    _aborted = true;
+                    return false;
+                }
+                return _handler.startContent(statusCode, compression);
+            }
+
+            @Override
+            public boolean processContent(byte[] content, int offset, int length) throws IOException {
+                if (_aborted) {
+                    return false;
+                }
+                return _handler.processContent(content, offset, length);
+            }
+
+            @Override
+            public T completeContentProcessing() throws IOException {
+                if (_aborted) {
+                    return null;
+                }
+                return _handler.completeContentProcessing();
+            }
+
+            @Override
+            public void contentProcessingFailed(Throwable t) {
+                _handler.contentProcessingFailed(t);
+            }
+        }
+    }
+}
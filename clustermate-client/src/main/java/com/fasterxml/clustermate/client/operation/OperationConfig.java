@@ -40,6 +40,36 @@ public class OperationConfig
 
     public final static long DEFAULT_DELETE_OPERATION_TIMEOUT_MSECS = 20000L;
 
+    /**
+     * By default PUTs are sent to target nodes one after another, to keep
+     * behavior same as with earlier versions.
+     */
+    public final static boolean DEFAULT_PARALLEL_WRITES = false;
+
+    /**
+     * Hedged GETs are disabled by default: 0 percent of GETs may send
+     * a hedge request.
+     */
+    public final static int DEFAULT_HEDGED_GET_MAX_PERCENT = 0;
+
+    /**
+     * If hedging is enabled, and no latency information is available,
+     * wait for 50 milliseconds before sending a hedge request.
+     */
+    public final static long DEFAULT_HEDGED_GET_DELAY_MSECS = 50L;
+
+    /**
+     * If hedging is enabled, base delay on observed latencies of the
+     * primary node, when available.
+     */
+    public final static boolean DEFAULT_HEDGED_GET_ADAPTIVE = true;
+
+    /**
+     * By default server nodes are ordered purely based on key hash, to keep
+     * behavior same as with earlier versions.
+     */
+    public final static boolean DEFAULT_LOAD_AWARE_ROUTING = false;
+
     // // // Per-call settings
     
     protected final CallConfig _callConfig;
@@ -67,6 +97,29 @@ public class OperationConfig
      * disabled for tests.
      */
     protected final boolean _allowRetries;
+
+    /**
+     * Setting that determines whether the first round of PUT calls is
+     * sent to all target nodes concurrently (true), or one node at a time
+     * (false).
+     */
+    protected final boolean _parallelWrites;
+
+    // // // Hedged GET settings
+
+    protected final int _hedgedGetMaxPercent;
+
+    protected final long _hedgedGetDelayMsecs;
+
+    protected final boolean _hedgedGetAdaptive;
+
+    // // // Routing settings
+
+    /**
+     * Setting that determines whether observed latencies and load of server
+     * nodes may be used to change order in which nodes are called.
+     */
+    protected final boolean _loadAwareRouting;
     
     /*
     ///////////////////////////////////////////////////////////////////////
@@ -84,7 +137,11 @@ public class OperationConfig
                 DEFAULT_GET_OPERATION_TIMEOUT_MSECS,
                 DEFAULT_DELETE_OPERATION_TIMEOUT_MSECS,
                 
-                true // yes, retries please
+                true, // yes, retries please
+                DEFAULT_PARALLEL_WRITES,
+                DEFAULT_HEDGED_GET_MAX_PERCENT, DEFAULT_HEDGED_GET_DELAY_MSECS,
+                DEFAULT_HEDGED_GET_ADAPTIVE,
+                DEFAULT_LOAD_AWARE_ROUTING
         );
     }
 
@@ -92,6 +149,20 @@ public class OperationConfig
             int minOks, int optimalOks, int maxOks,
             long put, long get, long delete,
             boolean allowRetries)
+    {
+        this(callConfig, minOks, optimalOks, maxOks,
+                put, get, delete,
+                allowRetries, DEFAULT_PARALLEL_WRITES,
+                DEFAULT_HEDGED_GET_MAX_PERCENT, DEFAULT_HEDGED_GET_DELAY_MSECS,
+                DEFAULT_HEDGED_GET_ADAPTIVE, DEFAULT_LOAD_AWARE_ROUTING);
+    }
+
+    public OperationConfig(CallConfig callConfig,
+            int minOks, int optimalOks, int maxOks,
+            long put, long get, long delete,
+            boolean allowRetries, boolean parallelWrites,
+            int hedgedGetMaxPercent, long hedgedGetDelayMsecs, boolean hedgedGetAdaptive,
+            boolean loadAwareRouting)
     {
         _callConfig = callConfig;
         
@@ -104,13 +175,56 @@ public class OperationConfig
         _deleteOperationTimeoutMsecs = delete;
 
         _allowRetries = allowRetries;
+        _parallelWrites = parallelWrites;
+
+        _hedgedGetMaxPercent = hedgedGetMaxPercent;
+        _hedgedGetDelayMsecs = hedgedGetDelayMsecs;
+        _hedgedGetAdaptive = hedgedGetAdaptive;
+
+        _loadAwareRouting = loadAwareRouting;
     }
 
     public OperationConfig withCallConfig(CallConfig cc) {
         return (_callConfig == cc) ? this : new OperationConfig(cc,
                 _minOksToSucceed, _optimalOks, _maxOks,
                 _putOperationTimeoutMsecs, _getOperationTimeoutMsecs, _deleteOperationTimeoutMsecs,
-                _allowRetries
+                _allowRetries, _parallelWrites,
+                _hedgedGetMaxPercent, _hedgedGetDelayMsecs, _hedgedGetAdaptive,
+                _loadAwareRouting
+                );
+    }
+
+    public OperationConfig withParallelWrites(boolean state) {
+        return (_parallelWrites == state) ? this : new OperationConfig(_callConfig,
+                _minOksToSucceed, _optimalOks, _maxOks,
+                _putOperationTimeoutMsecs, _getOperationTimeoutMsecs, _deleteOperationTimeoutMsecs,
+                _allowRetries, state,
+                _hedgedGetMaxPercent, _hedgedGetDelayMsecs, _hedgedGetAdaptive,
+                _loadAwareRouting
+                );
+    }
+
+    public OperationConfig withHedgedGets(int maxPercent, long delayMsecs, boolean adaptive) {
+        if (maxPercent == _hedgedGetMaxPercent && delayMsecs == _hedgedGetDelayMsecs
+                && adaptive == _hedgedGetAdaptive) {
+            return this;
+        }
+        return new OperationConfig(_callConfig,
+                _minOksToSucceed, _optimalOks, _maxOks,
+                _putOperationTimeoutMsecs, _getOperationTimeoutMsecs, _deleteOperationTimeoutMsecs,
+                _allowRetries, _parallelWrites,
+                maxPercent, delayMsecs, adaptive,
+                _loadAwareRouting
+                );
+    }
+
+    public OperationConfig withLoadAwareRouting(boolean state) {
+        return (_loadAwareRouting == state) ? this : new OperationConfig(_callConfig,
+                _minOksToSucceed, _optimalOks, _maxOks,
+                _putOperationTimeoutMsecs, _getOperationTimeoutMsecs, _deleteOperationTimeoutMsecs,
+                _allowRetries, _parallelWrites,
+                _hedgedGetMaxPercent, _hedgedGetDelayMsecs, _hedgedGetAdaptive,
+                state
                 );
     }
     
@@ -155,4 +269,47 @@ public class OperationConfig
     public long getDeleteOperationTimeoutMsecs() { return _deleteOperationTimeoutMsecs; }
 
     public boolean getAllowRetries() { return _allowRetries; }
+
+    /**
+     * Whether PUT operations should send the first round of calls to all
+     * target nodes concurrently, instead of calling them one at a time.
+     * If enabled, operation completes as soon as requested number of
+     * calls succeed, and remaining calls are left to complete in
+     * background.
+     */
+    public boolean getParallelWrites() { return _parallelWrites; }
+
+    /**
+     * Maximum percentage (0 - 100) of GET operations for which a hedge
+     * request may be sent: that is, a second GET to the next node, sent
+     * if the first node has not responded within hedging delay.
+     * Value of 0 disables hedging.
+     */
+    public int getHedgedGetMaxPercent() { return _hedgedGetMaxPercent; }
+
+    /**
+     * Delay after which a hedge request is sent, if the first node has not
+     * responded; used as is if adaptive delay is disabled, and as the
+     * fallback if no latency information is yet available.
+     */
+    public long getHedgedGetDelayMsecs() { return _hedgedGetDelayMsecs; }
+
+    /**
+     * Whether hedging delay is to be based on observed 95th percentile
+     * latency of the primary node (if known), instead of fixed delay.
+     */
+    public boolean getHedgedGetAdaptive() { return _hedgedGetAdaptive; }
+
+    public boolean hedgedGetsEnabled() { return _hedgedGetMaxPercent > 0; }
+
+    /**
+     * Whether order in which server nodes are called may be changed from
+     * the default (key hash based) order, to prefer nodes with lower observed
+     * latencies and load. If enabled, the default order is still used unless
+     * the primary node appears significantly slower than an alternative.
+     *<p>
+     * Note that this setting only has effect when used for constructing the
+     * client; it can not be changed on per-call basis.
+     */
+    public boolean getLoadAwareRouting() { return _loadAwareRouting; }
 }
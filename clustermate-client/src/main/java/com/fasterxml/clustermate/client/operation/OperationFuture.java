@@ -0,0 +1,166 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * {@link Future} implementation returned by asynchronous operations of
+ * {@link com.fasterxml.clustermate.client.StoreClient}. In addition to
+ * blocking access it allows registering {@link Listener}s that get called
+ * when operation completes, so that callers need not dedicate a thread
+ * per operation.
+ *<p>
+ * Note that cancellation is not supported: operations run until they
+ * either complete or time out.
+ *
+ * @param <T> Type of operation result
+ */
+public class OperationFuture<T> implements Future<T>
+{
+    /**
+     * Callback interface for getting notified when operation completes.
+     * Exactly one of methods is called, exactly once.
+     */
+    public interface Listener<T>
+    {
+        public void operationCompleted(T result);
+
+        public void operationFailed(Throwable problem);
+    }
+
+    protected final CountDownLatch _done = new CountDownLatch(1);
+
+    protected List<Listener<T>> _listeners;
+
+    protected boolean _completed;
+
+    protected T _result;
+
+    protected Throwable _problem;
+
+    /*
+    /**********************************************************************
+    /* Completion, listeners
+    /**********************************************************************
+     */
+
+    /**
+     * Method called to complete operation successfully.
+     *
+     * @return True if this call completed the future; false if it had already
+     *    been completed
+     */
+    public boolean complete(T result) {
+        List<Listener<T>> listeners;
+        synchronized (this) {
+            if (_completed) {
+                return false;
+            }
+            _completed = true;
+            _result = result;
+            listeners = _listeners;
+            _listeners = null;
+        }
+        _done.countDown();
+        if (listeners != null) {
+            for (Listener<T> l : listeners) {
+                l.operationCompleted(result);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method called to complete operation with a failure; used for unexpected
+     * problems, and not for failed calls (which are indicated by result object).
+     *
+     * @return True if this call completed the future; false if it had already
+     *    been completed
+     */
+    public boolean fail(Throwable problem) {
+        List<Listener<T>> listeners;
+        synchronized (this) {
+            if (_completed) {
+                return false;
+            }
+            _completed = true;
+            _problem = problem;
+            listeners = _listeners;
+            _listeners = null;
+        }
+        _done.countDown();
+        if (listeners != null) {
+            for (Listener<T> l : listeners) {
+                l.operationFailed(problem);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method for adding a listener to be called on completion; if operation
+     * has already completed, it is called right away, from the calling thread.
+     */
+    public OperationFuture<T> addListener(Listener<T> listener)
+    {
+        synchronized (this) {
+            if (!_completed) {
+                if (_listeners == null) {
+                    _listeners = new ArrayList<Listener<T>>(2);
+                }
+                _listeners.add(listener);
+                return this;
+            }
+        }
+        if (_problem != null) {
+            listener.operationFailed(_problem);
+        } else {
+            listener.operationCompleted(_result);
+        }
+        return this;
+    }
+
+    /*
+    /**********************************************************************
+    /* Future implementation
+    /**********************************************************************
+     */
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return _done.getCount() == 0L;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        _done.await();
+        return _get();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        if (!_done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return _get();
+    }
+
+    protected synchronized T _get() throws ExecutionException {
+        if (_problem != null) {
+            throw new ExecutionException(_problem);
+        }
+        return _result;
+    }
+}
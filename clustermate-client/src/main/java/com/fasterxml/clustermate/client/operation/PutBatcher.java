@@ -0,0 +1,290 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.client.NodesForKey;
+import com.fasterxml.clustermate.client.StoreClient;
+import com.fasterxml.clustermate.client.call.PutCallParameters;
+import com.fasterxml.clustermate.client.call.PutContentProvider;
+
+/**
+ * Helper class that can be used for automatically combining small PUTs
+ * into multi-entry PUTs: entries are collected per primary server node
+ * for up to configured delay (or until configured maximum batch size is
+ * reached), after which they are sent using
+ * {@link StoreClient#putContents}. This trades a small amount of latency
+ * for much lower per-entry overhead, similar to Nagle's algorithm.
+ *<p>
+ * Entries that are too big (or whose length is not known) are sent
+ * right away using regular single-entry PUTs.
+ */
+public class PutBatcher<K extends EntryKey>
+{
+    protected final StoreClient<K,?,?> _client;
+
+    protected final PutCallParameters _params;
+
+    protected final Executor _executor;
+
+    protected final ScheduledExecutorService _timer;
+
+    /**
+     * Maximum time entries are held before being sent.
+     */
+    protected final long _maxDelayMsecs;
+
+    /**
+     * Maximum number of entries to send with a single call; when reached,
+     * entries are sent without further delay.
+     */
+    protected final int _maxBatchSize;
+
+    /**
+     * Maximum length of entries to batch; longer entries are sent using
+     * regular PUTs.
+     */
+    protected final long _maxEntryLength;
+
+    protected final Object _lock = new Object();
+
+    /**
+     * Batches being collected, keyed by primary node of entries.
+     */
+    protected final Map<Object,Batch<K>> _pending = new HashMap<Object,Batch<K>>();
+
+    /*
+    /**********************************************************************
+    /* Life-cycle
+    /**********************************************************************
+     */
+
+    public PutBatcher(StoreClient<K,?,?> client, PutCallParameters params,
+            Executor executor, ScheduledExecutorService timer,
+            long maxDelayMsecs, int maxBatchSize, long maxEntryLength)
+    {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid maxBatchSize ("+maxBatchSize+"): must be positive");
+        }
+        _client = client;
+        _params = params;
+        _executor = executor;
+        _timer = timer;
+        _maxDelayMsecs = maxDelayMsecs;
+        _maxBatchSize = maxBatchSize;
+        _maxEntryLength = maxEntryLength;
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API
+    /**********************************************************************
+     */
+
+    /**
+     * Method for adding an entry to store: will either be added to a batch,
+     * or sent right away if not suitable for batching.
+     *<p>
+     * Note that if an entry with the same key is already pending, that batch
+     * is sent before new entry is added.
+     */
+    public OperationFuture<PutOperationResult> putContent(K key, PutContentProvider content)
+    {
+        final long length = content.length();
+        Object target = (length < 0L || length > _maxEntryLength) ? null : _batchKeyFor(key);
+        if (target == null) {
+            return _sendSingle(key, content);
+        }
+        OperationFuture<PutOperationResult> future = new OperationFuture<PutOperationResult>();
+        Batch<K> toSend = null;
+        Batch<K> toSendAfter = null;
+        boolean schedule = false;
+
+        synchronized (_lock) {
+            Batch<K> batch = _pending.get(target);
+            if (batch != null && batch.contains(key)) { // can't have dups within a batch
+                _pending.remove(target);
+                toSend = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch<K>(target);
+                _pending.put(target, batch);
+                schedule = true;
+            }
+            batch.add(key, content, future);
+            if (batch.size() >= _maxBatchSize) {
+                _pending.remove(target);
+                toSendAfter = batch;
+                schedule = false;
+            }
+        }
+        if (toSend != null) {
+            _sendAsync(toSend);
+        }
+        if (toSendAfter != null) {
+            _sendAsync(toSendAfter);
+        } else if (schedule) {
+            _scheduleFlush(target);
+        }
+        return future;
+    }
+
+    /**
+     * Method for sending all pending entries right away, without waiting
+     * for batching delays to expire.
+     */
+    public void flush()
+    {
+        List<Batch<K>> batches;
+        synchronized (_lock) {
+            batches = new ArrayList<Batch<K>>(_pending.values());
+            _pending.clear();
+        }
+        for (Batch<K> batch : batches) {
+            _sendAsync(batch);
+        }
+    }
+
+    /**
+     * @return Number of entries currently waiting to be sent
+     */
+    public int pendingCount()
+    {
+        int count = 0;
+        synchronized (_lock) {
+            for (Batch<K> batch : _pending.values()) {
+                count += batch.size();
+            }
+        }
+        return count;
+    }
+
+    /*
+    /**********************************************************************
+    /* Overridable methods
+    /**********************************************************************
+     */
+
+    /**
+     * Method called to find the key used for grouping given entry into
+     * batch; by default the primary server node for the key.
+     *
+     * @return Key used for grouping entries; null if entry can not be batched
+     */
+    protected Object _batchKeyFor(K key)
+    {
+        NodesForKey nodes = _client.getCluster().getNodesFor(key);
+        return (nodes.size() == 0) ? null : nodes.node(0);
+    }
+
+    protected Map<K,PutOperationResult> _send(Map<K,PutContentProvider> contents)
+        throws InterruptedException
+    {
+        return _client.putContents(_params, contents);
+    }
+
+    protected OperationFuture<PutOperationResult> _sendSingle(K key, PutContentProvider content) {
+        return _client.putContentAsync(_params, key, content);
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    protected void _scheduleFlush(final Object target)
+    {
+        _timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Batch<K> batch;
+                synchronized (_lock) {
+                    batch = _pending.get(target);
+                    // only send if it is (still) old enough
+                    if (batch == null
+                            || (System.currentTimeMillis() - batch.created()) < _maxDelayMsecs) {
+                        return;
+                    }
+                    _pending.remove(target);
+                }
+                _sendAsync(batch);
+            }
+        }, _maxDelayMsecs, TimeUnit.MILLISECONDS);
+    }
+
+    protected void _sendAsync(final Batch<K> batch)
+    {
+        _executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                _sendBatch(batch);
+            }
+        });
+    }
+
+    protected void _sendBatch(Batch<K> batch)
+    {
+        Map<K,PutOperationResult> results;
+        try {
+            results = _send(batch.contents());
+        } catch (Throwable t) {
+            for (OperationFuture<PutOperationResult> future : batch.futures()) {
+                future.fail(t);
+            }
+            return;
+        }
+        int i = 0;
+        for (K key : batch.contents().keySet()) {
+            PutOperationResult result = results.get(key);
+            OperationFuture<PutOperationResult> future = batch.futures().get(i++);
+            if (result == null) {
+                future.fail(new IllegalStateException("Missing result for entry '"+key+"'"));
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Container for entries collected for a single target.
+     */
+    protected static class Batch<K>
+    {
+        protected final Object _target;
+
+        protected final long _created;
+
+        protected final Map<K,PutContentProvider> _contents = new LinkedHashMap<K,PutContentProvider>();
+
+        protected final List<OperationFuture<PutOperationResult>> _futures
+            = new ArrayList<OperationFuture<PutOperationResult>>();
+
+        public Batch(Object target) {
+            _target = target;
+            _created = System.currentTimeMillis();
+        }
+
+        public void add(K key, PutContentProvider content, OperationFuture<PutOperationResult> future) {
+            _contents.put(key, content);
+            _futures.add(future);
+        }
+
+        public boolean contains(K key) { return _contents.containsKey(key); }
+        public int size() { return _contents.size(); }
+        public long created() { return _created; }
+        public Object target() { return _target; }
+        public Map<K,PutContentProvider> contents() { return _contents; }
+        public List<OperationFuture<PutOperationResult>> futures() { return _futures; }
+    }
+}
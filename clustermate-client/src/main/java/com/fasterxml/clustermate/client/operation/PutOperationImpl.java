@@ -1,5 +1,7 @@
 package com.fasterxml.clustermate.client.operation;
 
+import java.util.concurrent.*;
+
 import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.client.*;
 import com.fasterxml.clustermate.client.call.CallFailure;
@@ -20,6 +22,30 @@ public class PutOperationImpl<K extends EntryKey,
 
     protected final PutContentProvider _content;
 
+    /**
+     * Executor used for sending concurrent calls, if parallel writes are
+     * enabled; null if calls are to be made sequentially.
+     */
+    protected final Executor _executor;
+
+    /*
+    /**********************************************************************
+    /* State for parallel calls
+    /**********************************************************************
+     */
+
+    /**
+     * Completion service used to collect results of the first round of
+     * parallel calls, if any have been sent.
+     */
+    protected CompletionService<ParallelPutResult> _parallelCalls;
+
+    /**
+     * Number of parallel calls that have been sent, but for which results
+     * have not yet been collected.
+     */
+    protected int _pendingCalls;
+
     /*
     /**********************************************************************
     /* Life-cycle
@@ -29,18 +55,72 @@ public class PutOperationImpl<K extends EntryKey,
     public PutOperationImpl(CONFIG config, long startTime,
             NodesForKey serverNodes, K key,
             PutCallParameters params, PutContentProvider content)            
+    {
+        this(config, startTime, serverNodes, key, params, content, null);
+    }
+
+    /**
+     * @param executor Executor to use for parallel calls, if parallel writes
+     *    are enabled by operation configuration; if null, calls are always
+     *    made sequentially
+     */
+    public PutOperationImpl(CONFIG config, long startTime,
+            NodesForKey serverNodes, K key,
+            PutCallParameters params, PutContentProvider content,
+            Executor executor)
     {
         super(config, startTime, serverNodes, key, params,
                 new PutOperationResult(config.getOperationConfig(), params),
                 StoreClientConfig.MAX_RETRIES_FOR_PUT,
                 config.getOperationConfig().getPutOperationTimeoutMsecs());
         _content = content;
+        _executor = config.getOperationConfig().getParallelWrites() ? executor : null;
     }
 
     @Override
-    protected void _release() {
+    protected void _release()
+    {
+        // If calls are still in-flight, can not release content quite yet;
+        // need to let background calls complete first
+        final int pending = _pendingCalls;
+        if (pending > 0) {
+            _pendingCalls = 0;
+            final CompletionService<ParallelPutResult> calls = _parallelCalls;
+            try {
+                _executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        _releaseAfter(calls, pending);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // executor shut down (or saturated): must wait here instead
+                _releaseAfter(calls, pending);
+            }
+            return;
+        }
         _content.release();
     }
+
+    /**
+     * Helper method for waiting for in-flight calls to complete (but no longer
+     * than until end of operation), and then releasing content.
+     */
+    protected void _releaseAfter(CompletionService<ParallelPutResult> calls, int pending)
+    {
+        try {
+            for (int i = 0; i < pending; ++i) {
+                final long timeLeft = _endOfTime - System.currentTimeMillis();
+                if (timeLeft <= 0L || calls.poll(timeLeft, TimeUnit.MILLISECONDS) == null) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            _content.release();
+        }
+    }
     
     /*
     /**********************************************************************
@@ -145,12 +225,15 @@ public class PutOperationImpl<K extends EntryKey,
      */
     protected boolean _performPrimary(int oksNeeded) throws InterruptedException
     {
+        if (_executor != null) {
+            return _performPrimaryParallel(oksNeeded);
+        }
         if (_currentNodes == null) { // for very first call
             _currentNodes = _activeNodes.iterator();
             _roundStartTime = System.currentTimeMillis();
         }
         while (_currentNodes.hasNext()) {
-            final boolean includeDisabled = !_noRetries; // only try disabled ones if no retries allowed
+            final boolean includeDisabled = _noRetries; // only try disabled ones if no retries allowed
             final SingleCallState call = _currentNodes.next();
             final ClusterServerNode server = call.server();
             if (!includeDisabled && server.isDisabled()) { // skip disabled during first round (unless no retries)
@@ -176,6 +259,65 @@ public class PutOperationImpl<K extends EntryKey,
         return false;
     }
 
+    /**
+     * Alternative to {@link #_performPrimary} used when parallel writes are
+     * enabled: sends calls to all applicable nodes at once, and then collects
+     * results as they complete, until we have enough successes (or run out of
+     * time). Calls that are still in-flight at that point are left to complete
+     * in background, and their results are collected by later calls (if any).
+     *
+     * @return True if processing is now complete; false if more work needed
+     */
+    protected boolean _performPrimaryParallel(int oksNeeded) throws InterruptedException
+    {
+        if (_parallelCalls == null) { // for very first call
+            _roundStartTime = System.currentTimeMillis();
+            _parallelCalls = new ExecutorCompletionService<ParallelPutResult>(_executor);
+            final boolean includeDisabled = _noRetries; // only try disabled ones if no retries allowed
+            for (SingleCallState call : _activeNodes) {
+                if (!includeDisabled && call.server().isDisabled()) {
+                    continue;
+                }
+                _parallelCalls.submit(new ParallelPut(call));
+                ++_pendingCalls;
+            }
+        }
+        while (_pendingCalls > 0) {
+            final long timeLeft = _endOfTime - System.currentTimeMillis();
+            Future<ParallelPutResult> future = (timeLeft <= 0L) ? null
+                    : _parallelCalls.poll(timeLeft, TimeUnit.MILLISECONDS);
+            if (future == null) { // out of time; whatever is in-flight, stays in-flight
+                return true;
+            }
+            --_pendingCalls;
+            ParallelPutResult callResult;
+            try {
+                callResult = future.get();
+            } catch (ExecutionException e) { // should never occur, ContentPutter catches all
+                throw new IllegalStateException("Internal error on parallel PUT: "+e.getCause(), e.getCause());
+            }
+            final SingleCallState call = callResult.call;
+            final ClusterServerNode server = call.server();
+            final CallFailure fail = callResult.failure;
+            if (fail == null) { // success
+                _activeNodes.remove(call);
+                _result.addSucceeded(server);
+                if (_shouldFinish(_result, oksNeeded)) {
+                    return true;
+                }
+                continue;
+            }
+            // nope, failed. If retriable, keep; if not, add as failure, remove from active
+            if (fail.isRetriable()) {
+                call.addFailure(fail);
+            } else {
+                _activeNodes.remove(call);
+                _result.withFailed(new NodeFailure(server, fail));
+            }
+        }
+        return false;
+    }
+
     protected boolean _performSecondary(int oksNeeded) throws InterruptedException
     {
         // Starting a new round? Will need bit of delay most likely
@@ -211,4 +353,46 @@ public class PutOperationImpl<K extends EntryKey,
         }
         return false; // still node done
     }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Task used for making a single PUT call as part of parallel round of calls.
+     */
+    protected final class ParallelPut implements Callable<ParallelPutResult>
+    {
+        protected final SingleCallState _call;
+
+        public ParallelPut(SingleCallState call) {
+            _call = call;
+        }
+
+        @Override
+        public ParallelPutResult call() {
+            CallFailure fail = _call.server().entryPutter().tryPut(_callConfig, _params, _endOfTime, _key, _content);
+            return new ParallelPutResult(_call, fail);
+        }
+    }
+
+    /**
+     * Simple container for result of a single parallel PUT call
+     */
+    protected final static class ParallelPutResult
+    {
+        public final SingleCallState call;
+
+        /**
+         * Failure for the call, if any; null for success
+         */
+        public final CallFailure failure;
+
+        public ParallelPutResult(SingleCallState call, CallFailure failure) {
+            this.call = call;
+            this.failure = failure;
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package com.fasterxml.clustermate.client.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.storemate.shared.hash.IncrementalHasher32;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.std.ChecksumUtil;
+
+/**
+ * Wrapper for content stream of unknown checksum: calculates checksum
+ * incrementally as content is read, and returns it as a 4-byte (big-endian)
+ * trailer after content. Used for PUT requests with
+ * {@link ClusterMateConstants#QUERY_PARAM_CHECKSUM_TRAILER}, so that content
+ * can be sent without reading it first to calculate checksum, and server can
+ * still verify content before storing it.
+ */
+public class ChecksumAppendingInputStream extends InputStream
+{
+    protected final InputStream _in;
+
+    protected final IncrementalHasher32 _hasher;
+
+    /**
+     * Trailer to return after content; constructed once end of content is reached
+     */
+    protected byte[] _trailer;
+
+    protected int _trailerPtr;
+
+    protected byte[] _singleByte;
+
+    public ChecksumAppendingInputStream(InputStream in, IncrementalHasher32 hasher)
+    {
+        _in = in;
+        _hasher = hasher;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (_singleByte == null) {
+            _singleByte = new byte[1];
+        }
+        int count = read(_singleByte, 0, 1);
+        return (count <= 0) ? -1 : (_singleByte[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0) {
+            return 0;
+        }
+        if (_trailer == null) {
+            int count = _in.read(b, off, len);
+            if (count >= 0) {
+                if (count > 0) {
+                    _hasher.update(b, off, count);
+                }
+                return count;
+            }
+            final int hash = ChecksumUtil.cleanChecksum(_hasher.calculateHash());
+            _trailer = new byte[] { (byte) (hash >> 24), (byte) (hash >> 16),
+                    (byte) (hash >> 8), (byte) hash };
+        }
+        if (_trailerPtr >= _trailer.length) {
+            return -1;
+        }
+        int count = Math.min(len, _trailer.length - _trailerPtr);
+        System.arraycopy(_trailer, _trailerPtr, b, off, count);
+        _trailerPtr += count;
+        return count;
+    }
+}
@@ -0,0 +1,53 @@
+package com.fasterxml.clustermate.client.util;
+
+/**
+ * Simple thread-safe calculator for exponentially decaying average:
+ * 'avgN+1 = (p * newSample) + (1.0 - p) * avgN', where 'p' is '1/len'
+ * for sample window length 'len'. Unlike with fixed-size windows, the only
+ * state kept is the current average, and reads need no locking.
+ *<p>
+ * The first sample is used as is, as the initial average.
+ */
+public class DecayingAverage
+{
+    protected final double _newSampleMultiplier, _oldAvgMultiplier;
+
+    /**
+     * Current average; negative before the first sample.
+     */
+    protected volatile double _currentAverage = -1.0;
+
+    /**
+     * Lock we use to guard updates of the current average
+     */
+    protected final Object _lock = new Object();
+
+    /**
+     * @param len Length of logical sample window; used for calculating decay
+     *   multiplier (1 / len)
+     */
+    public DecayingAverage(int len)
+    {
+        if (len < 2) {
+            throw new IllegalArgumentException("'len' can not be less than 2");
+        }
+        _newSampleMultiplier = 1.0 / (double) len;
+        _oldAvgMultiplier = 1.0 - _newSampleMultiplier;
+    }
+
+    public void addSample(long sample)
+    {
+        synchronized (_lock) {
+            final double old = _currentAverage;
+            _currentAverage = (old < 0.0) ? (double) sample
+                    : (_newSampleMultiplier * sample) + (_oldAvgMultiplier * old);
+        }
+    }
+
+    /**
+     * @return Current average, if any samples have been added; -1.0 if not
+     */
+    public double getCurrentAverage() {
+        return _currentAverage;
+    }
+}
@@ -0,0 +1,76 @@
+package com.fasterxml.clustermate.client.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Simple thread-safe container for the most recent call latencies
+ * (in milliseconds) for a single server node; used for calculating
+ * approximate percentiles, for things like adaptive hedging delays.
+ *<p>
+ * Implementation is a fixed-size ring buffer; updates are lock-free,
+ * and percentile calculation sorts a copy of the current samples, which
+ * is cheap enough for small windows.
+ */
+public class LatencyWindow
+{
+    public final static int DEFAULT_SIZE = 64;
+
+    protected final AtomicLongArray _samples;
+
+    /**
+     * Total number of samples recorded; used both for finding the next
+     * slot to write and for knowing how many slots are valid.
+     */
+    protected final AtomicInteger _count = new AtomicInteger(0);
+
+    public LatencyWindow() {
+        this(DEFAULT_SIZE);
+    }
+
+    public LatencyWindow(int size) {
+        _samples = new AtomicLongArray(size);
+    }
+
+    public void record(long latencyMsecs) {
+        int index = _count.getAndIncrement();
+        // guard against overflow after 2 billion calls
+        if (index < 0) {
+            _count.set(_samples.length());
+            index = 0;
+        }
+        _samples.set(index % _samples.length(), latencyMsecs);
+    }
+
+    /**
+     * @return Number of valid samples currently in the window
+     */
+    public int size() {
+        int count = _count.get();
+        return (count < 0) ? _samples.length() : Math.min(count, _samples.length());
+    }
+
+    /**
+     * Method for calculating approximate percentile over currently retained
+     * samples.
+     *
+     * @param percentile Percentile to calculate, between 0 and 100
+     *
+     * @return Latency at given percentile, if any samples exist; -1 if not
+     */
+    public long percentile(int percentile)
+    {
+        final int size = size();
+        if (size == 0) {
+            return -1L;
+        }
+        long[] copy = new long[size];
+        for (int i = 0; i < size; ++i) {
+            copy[i] = _samples.get(i);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil((percentile / 100.0) * size) - 1;
+        return copy[Math.max(0, Math.min(size-1, index))];
+    }
+}
@@ -0,0 +1,80 @@
+package com.fasterxml.clustermate.client.util;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.util.IOUtil;
+
+import com.fasterxml.clustermate.api.codec.CompressionCodec;
+import com.fasterxml.clustermate.api.codec.CompressionCodecs;
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+
+/**
+ * Helper class used for reading framed responses to multi-entry GET
+ * requests; shared by all network client implementations.
+ * Payloads are uncompressed as necessary, and assigned as
+ * {@link MultiGetItem#content}.
+ */
+public class MultiGetResponseReader
+{
+    protected final static SmileFactory SMILE_FACTORY = new SmileFactory();
+
+    protected final ObjectReader _itemReader;
+
+    protected final CompressionCodecs _codecs;
+
+    public MultiGetResponseReader(ObjectMapper jsonMapper) {
+        this(jsonMapper, CompressionCodecs.std());
+    }
+
+    public MultiGetResponseReader(ObjectMapper jsonMapper, CompressionCodecs codecs) {
+        _itemReader = jsonMapper.readerFor(MultiGetItem.class).with(SMILE_FACTORY);
+        _codecs = codecs;
+    }
+
+    public List<MultiGetItem> readItems(InputStream in) throws IOException
+    {
+        List<MultiGetItem> items = new ArrayList<MultiGetItem>();
+        int len;
+
+        while ((len = MultiGetItem.readLength(in)) != MultiGetItem.LENGTH_EOF) {
+            MultiGetItem item = _itemReader.readValue(_readBytes(in, len));
+            if (item.length > 0L) {
+                if (item.length > Integer.MAX_VALUE) {
+                    throw new IOException("Too long payload ("+item.length+") for entry '"+item.key+"'");
+                }
+                byte[] data = _readBytes(in, (int) item.length);
+                Compression comp = item.compression;
+                if (comp != null && comp != Compression.NONE) {
+                    CompressionCodec codec = _codecs.find(comp);
+                    if (codec == null) {
+                        throw new IOException("Unsupported compression ("+comp+") for entry '"+item.key+"'");
+                    }
+                    data = codec.uncompress(ByteContainer.simple(data), (int) item.contentLength).asBytes();
+                }
+                item.content = data;
+            } else if (item.found() && item.contentLength == 0L) {
+                item.content = new byte[0];
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    protected byte[] _readBytes(InputStream in, int len) throws IOException
+    {
+        byte[] buffer = new byte[len];
+        int count = IOUtil.readFully(in, buffer);
+        if (count < len) {
+            throw new IOException("Unexpected end-of-stream: expected "+len+" bytes, got "+count);
+        }
+        return buffer;
+    }
+}
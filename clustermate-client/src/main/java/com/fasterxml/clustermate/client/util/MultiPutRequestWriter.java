@@ -0,0 +1,90 @@
+package com.fasterxml.clustermate.client.util;
+
+import java.io.*;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.hash.HashConstants;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.EntryKeyConverter;
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+import com.fasterxml.clustermate.api.msg.MultiPutItem;
+import com.fasterxml.clustermate.client.call.PutContentProvider;
+
+/**
+ * Helper class used for constructing framed bodies of multi-entry PUT
+ * requests; shared by all network client implementations.
+ * Since multi-entry PUTs are meant for small entries, whole request
+ * is built in memory.
+ */
+public class MultiPutRequestWriter<K extends EntryKey>
+{
+    protected final static SmileFactory SMILE_FACTORY = new SmileFactory();
+
+    protected final ObjectWriter _itemWriter;
+
+    protected final EntryKeyConverter<K> _keyConverter;
+
+    public MultiPutRequestWriter(ObjectMapper jsonMapper, EntryKeyConverter<K> keyConverter) {
+        _itemWriter = jsonMapper.writerFor(MultiPutItem.class).with(SMILE_FACTORY);
+        _keyConverter = keyConverter;
+    }
+
+    public byte[] write(List<K> keys, List<PutContentProvider> contents) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1000 + 200 * keys.size());
+        for (int i = 0, len = keys.size(); i < len; ++i) {
+            _writeEntry(bytes, keys.get(i), contents.get(i));
+        }
+        MultiGetItem.writeLength(bytes, MultiGetItem.LENGTH_EOF);
+        return bytes.toByteArray();
+    }
+
+    protected void _writeEntry(OutputStream out, K key, PutContentProvider content)
+        throws IOException
+    {
+        ByteContainer data = content.contentAsBytes();
+        if (data == null) {
+            data = ByteContainer.simple(_readAll(content));
+        }
+        int hash = content.getContentHash();
+        if (hash == HashConstants.NO_CHECKSUM) {
+            hash = _keyConverter.contentHashFor(data);
+            content.setContentHash(hash);
+        }
+        Compression comp = content.getExistingCompression();
+        long uncompLen = (comp == null || comp == Compression.NONE) ? 0L : content.uncompressedLength();
+        MultiPutItem item = new MultiPutItem(key.asStorableKey(), hash, comp,
+                uncompLen, data.byteLength());
+        byte[] header = _itemWriter.writeValueAsBytes(item);
+        if (header.length > MultiGetItem.MAX_HEADER_LENGTH) {
+            throw new IOException("Too long header ("+header.length+") for entry '"+key+"'");
+        }
+        MultiGetItem.writeLength(out, header.length);
+        out.write(header);
+        data.writeBytes(out);
+    }
+
+    protected byte[] _readAll(PutContentProvider content) throws IOException
+    {
+        File f = content.contentAsFile();
+        InputStream in = (f == null) ? content.contentAsStream() : new FileInputStream(f);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1000);
+            byte[] buffer = new byte[8000];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.fasterxml.clustermate.client.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.storemate.shared.hash.HashConstants;
+import com.fasterxml.storemate.shared.hash.IncrementalHasher32;
+
+import com.fasterxml.clustermate.std.ChecksumUtil;
+
+/**
+ * Helper class used for sharing content of a single-use {@link InputStream}
+ * between multiple readers: content is read from the source as readers
+ * need it (or all at once, see {@link #readAll}), and copied so that
+ * later readers (retries, additional copies sent to other servers) can
+ * replay it. Content hash is calculated incrementally as content is
+ * read from the source, so that no additional pass is needed.
+ *<p>
+ * Up to configured maximum amount of content is kept in fixed-size
+ * off-heap chunks, which are recycled once spool is released; content
+ * beyond that limit is written in a temporary file.
+ *<p>
+ * Access is synchronized, so readers may be used from multiple threads.
+ */
+public class StreamSpool
+{
+    protected final static int DEFAULT_CHUNK_SIZE = 64000;
+
+    /**
+     * By default, let's keep up to 16 chunks (about 1 MB) of content in memory.
+     */
+    public final static long DEFAULT_MAX_MEMORY = 16 * DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Maximum number of released default-sized chunks to retain for reuse
+     * (about 4 MB of direct memory).
+     */
+    protected final static int MAX_POOLED_CHUNKS = 64;
+
+    protected final static ConcurrentLinkedQueue<ByteBuffer> _chunkPool
+        = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    protected final static AtomicInteger _pooledChunks = new AtomicInteger();
+
+    protected final int _chunkSize;
+
+    /**
+     * Number of bytes that may be kept in memory chunks; rest of content
+     * goes to the overflow file.
+     */
+    protected final long _maxMemory;
+
+    /**
+     * Directory in which overflow file is created, if any; null for
+     * default temporary directory.
+     */
+    protected final File _tempDir;
+
+    protected final List<ByteBuffer> _chunks = new ArrayList<ByteBuffer>();
+
+    protected final IncrementalHasher32 _hasher;
+
+    protected InputStream _source;
+
+    protected byte[] _readBuffer;
+
+    protected File _overflowFile;
+
+    protected FileChannel _overflow;
+
+    /**
+     * Number of bytes read from the source so far
+     */
+    protected long _length;
+
+    protected boolean _complete;
+
+    protected boolean _released;
+
+    /**
+     * Problem encountered when reading from the source, if any; reported
+     * to all readers.
+     */
+    protected IOException _failure;
+
+    protected int _contentHash = HashConstants.NO_CHECKSUM;
+
+    public StreamSpool(InputStream source, IncrementalHasher32 hasher) {
+        this(source, hasher, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_MEMORY, null);
+    }
+
+    /**
+     * @param source Stream to read content from
+     * @param hasher Hasher to use for calculating content hash, if any;
+     *   if null, no hash is calculated
+     * @param chunkSize Size of buffer chunks to allocate
+     * @param maxMemory Maximum number of bytes to keep in memory chunks
+     *   (rounded down to full chunks); rest is written in a temporary file
+     * @param tempDir Directory for the temporary file; if null, the
+     *   default temporary-file directory is used
+     */
+    public StreamSpool(InputStream source, IncrementalHasher32 hasher, int chunkSize,
+            long maxMemory, File tempDir)
+    {
+        _source = source;
+        _hasher = hasher;
+        _chunkSize = chunkSize;
+        _maxMemory = Math.max(0L, maxMemory / chunkSize) * chunkSize;
+        _tempDir = tempDir;
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API
+    /**********************************************************************
+     */
+
+    /**
+     * Method for constructing a new reader that will return all content
+     * from the beginning.
+     */
+    public InputStream newReader() throws IOException {
+        synchronized (this) {
+            _verifyReadable();
+        }
+        return new Reader();
+    }
+
+    /**
+     * Method that can be called to read all remaining content from the source,
+     * so that length and content hash are known.
+     */
+    public synchronized void readAll() throws IOException
+    {
+        _verifyReadable();
+        while (!_complete && _fill()) { }
+    }
+
+    /**
+     * @return Whether all content has been read from the source
+     */
+    public synchronized boolean isComplete() {
+        return _complete;
+    }
+
+    /**
+     * @return Length of content, if all of it has been read; -1 if not yet known
+     */
+    public synchronized long length() {
+        return _complete ? _length : -1L;
+    }
+
+    /**
+     * @return Hash of full content, if all of it has been read; otherwise
+     *   {@link HashConstants#NO_CHECKSUM}
+     */
+    public synchronized int getContentHash() {
+        return _contentHash;
+    }
+
+    /**
+     * Method called to free buffered content, and close the source stream,
+     * if it is still open. No reads are allowed after this call.
+     */
+    public void release()
+    {
+        InputStream src;
+        FileChannel overflow;
+        File overflowFile;
+        synchronized (this) {
+            if (_released) {
+                return;
+            }
+            _released = true;
+            if (_chunkSize == DEFAULT_CHUNK_SIZE) {
+                for (ByteBuffer chunk : _chunks) {
+                    _releaseChunk(chunk);
+                }
+            }
+            _chunks.clear();
+            _readBuffer = null;
+            src = _source;
+            _source = null;
+            overflow = _overflow;
+            _overflow = null;
+            overflowFile = _overflowFile;
+            _overflowFile = null;
+        }
+        if (src != null) {
+            try {
+                src.close();
+            } catch (IOException e) { }
+        }
+        if (overflow != null) {
+            try {
+                overflow.close();
+            } catch (IOException e) { }
+        }
+        if (overflowFile != null) {
+            overflowFile.delete();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    protected void _verifyReadable() throws IOException
+    {
+        if (_released) {
+            throw new IOException("StreamSpool already released");
+        }
+        if (_failure != null) {
+            throw new IOException("Failed to read content: "+_failure.getMessage(), _failure);
+        }
+    }
+
+    protected synchronized int _read(long pos, byte[] buffer, int offset, int len)
+        throws IOException
+    {
+        _verifyReadable();
+        if (len == 0) {
+            return 0;
+        }
+        while (pos >= _length) {
+            if (_complete || !_fill()) {
+                return -1;
+            }
+        }
+        if (pos >= _maxMemory) {
+            int count = (int) Math.min(_length - pos, len);
+            return _overflow.read(ByteBuffer.wrap(buffer, offset, count), pos - _maxMemory);
+        }
+        int chunkIndex = (int) (pos / _chunkSize);
+        int chunkOffset = (int) (pos - ((long) chunkIndex * _chunkSize));
+        int avail = (int) Math.min(_chunkSize - chunkOffset, _length - pos);
+        int count = Math.min(avail, len);
+        ByteBuffer bb = _chunks.get(chunkIndex).duplicate();
+        bb.position(chunkOffset);
+        bb.get(buffer, offset, count);
+        return count;
+    }
+
+    /**
+     * @return True if more content was read; false if end of content was reached
+     */
+    protected boolean _fill() throws IOException
+    {
+        if (_readBuffer == null) {
+            _readBuffer = new byte[Math.min(_chunkSize, 16000)];
+        }
+        final boolean inMemory = (_length < _maxMemory);
+        final int chunkOffset = (int) (_length % _chunkSize);
+        int max = _readBuffer.length;
+        if (inMemory) {
+            max = Math.min(max, _chunkSize - chunkOffset);
+        }
+        int count;
+        try {
+            count = _source.read(_readBuffer, 0, max);
+        } catch (IOException e) {
+            _failure = e;
+            throw e;
+        }
+        if (count < 0) {
+            _complete = true;
+            if (_hasher != null) {
+                _contentHash = ChecksumUtil.cleanChecksum(_hasher.calculateHash());
+            }
+            _readBuffer = null;
+            InputStream src = _source;
+            _source = null;
+            src.close();
+            return false;
+        }
+        if (count > 0) {
+            if (inMemory) {
+                // only allocate once there is something to put in it
+                if (chunkOffset == 0) {
+                    _chunks.add(_allocChunk());
+                }
+                ByteBuffer bb = _chunks.get(_chunks.size()-1).duplicate();
+                bb.position(chunkOffset);
+                bb.put(_readBuffer, 0, count);
+            } else {
+                _writeOverflow(count);
+            }
+            if (_hasher != null) {
+                _hasher.update(_readBuffer, 0, count);
+            }
+            _length += count;
+        }
+        return true;
+    }
+
+    protected void _writeOverflow(int count) throws IOException
+    {
+        try {
+            if (_overflow == null) {
+                _overflowFile = File.createTempFile("cm-spool", ".tmp", _tempDir);
+                _overflowFile.deleteOnExit();
+                _overflow = new RandomAccessFile(_overflowFile, "rw").getChannel();
+            }
+            ByteBuffer bb = ByteBuffer.wrap(_readBuffer, 0, count);
+            long pos = _length - _maxMemory;
+            while (bb.hasRemaining()) {
+                pos += _overflow.write(bb, pos);
+            }
+        } catch (IOException e) {
+            _failure = e;
+            throw e;
+        }
+    }
+
+    protected ByteBuffer _allocChunk()
+    {
+        if (_chunkSize == DEFAULT_CHUNK_SIZE) {
+            ByteBuffer bb = _chunkPool.poll();
+            if (bb != null) {
+                _pooledChunks.decrementAndGet();
+                return bb;
+            }
+        }
+        return ByteBuffer.allocateDirect(_chunkSize);
+    }
+
+    protected static void _releaseChunk(ByteBuffer chunk)
+    {
+        if (_pooledChunks.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+            chunk.clear();
+            _chunkPool.add(chunk);
+        } else {
+            _pooledChunks.decrementAndGet();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    protected class Reader extends InputStream
+    {
+        protected long _position;
+
+        protected byte[] _singleByte;
+
+        @Override
+        public int read() throws IOException
+        {
+            if (_singleByte == null) {
+                _singleByte = new byte[1];
+            }
+            int count = read(_singleByte, 0, 1);
+            return (count <= 0) ? -1 : (_singleByte[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) throws IOException
+        {
+            int count = _read(_position, buffer, offset, len);
+            if (count > 0) {
+                _position += count;
+            }
+            return count;
+        }
+    }
+}
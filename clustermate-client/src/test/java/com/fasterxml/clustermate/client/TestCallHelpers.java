@@ -0,0 +1,80 @@
+package com.fasterxml.clustermate.client;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.storemate.shared.IpAndPort;
+
+import com.fasterxml.clustermate.api.KeySpace;
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
+
+/**
+ * Tests for helper methods {@link StoreClient} uses for choosing server
+ * nodes and making calls in parallel.
+ */
+public class TestCallHelpers extends ClientTestBase
+{
+    protected final KeySpace DEFAULT_SPACE = new KeySpace(360);
+
+    public void testEnabledFirst() throws Exception
+    {
+        ClusterServerNodeImpl[] nodes = new ClusterServerNodeImpl[3];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = new ClusterServerNodeImpl(null, new IpAndPort("localhost:"+(9000+i)),
+                    DEFAULT_SPACE.fullRange(), DEFAULT_SPACE.fullRange(), new TestGetSegment.Accessors(null));
+        }
+        nodes[0].updateDisabled(true);
+        List<ClusterServerNode> ordered = new TestGetSegment.TestClient()._enabledFirst(new NodesForKey(1, nodes));
+        assertEquals(Arrays.<ClusterServerNode>asList(nodes[1], nodes[2], nodes[0]), ordered);
+    }
+
+    public void testCallAllCancelsOnInterrupt() throws Exception
+    {
+        final TestGetSegment.TestClient client = new TestGetSegment.TestClient();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final List<Callable<Boolean>> calls = new ArrayList<Callable<Boolean>>();
+        // first call is made by executor, and blocks until interrupted
+        calls.add(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                started.countDown();
+                try {
+                    Thread.sleep(30000L);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return Boolean.TRUE;
+            }
+        });
+        // and last one by calling thread
+        calls.add(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Boolean.TRUE;
+            }
+        });
+        final AtomicReference<Throwable> fail = new AtomicReference<Throwable>();
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    client._callAll(calls);
+                } catch (Throwable t) {
+                    fail.set(t);
+                }
+            }
+        };
+        caller.start();
+        assertTrue(started.await(5L, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(5000L);
+        assertTrue(fail.get() instanceof InterruptedException);
+        // call still in-flight must have been cancelled
+        assertTrue(interrupted.await(5L, TimeUnit.SECONDS));
+    }
+}
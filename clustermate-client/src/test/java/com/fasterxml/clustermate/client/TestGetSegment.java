@@ -0,0 +1,188 @@
+package com.fasterxml.clustermate.client;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.storemate.shared.ByteRange;
+import com.fasterxml.storemate.shared.IpAndPort;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.KeySpace;
+import com.fasterxml.clustermate.api.RequestPathStrategy;
+import com.fasterxml.clustermate.api.msg.ItemInfo;
+import com.fasterxml.clustermate.api.msg.ListItem;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
+import com.fasterxml.clustermate.client.operation.OperationConfig;
+
+/**
+ * Tests for verifying that segments of a parallel GET must all come
+ * from the same version of entry (as indicated by ETag).
+ */
+public class TestGetSegment extends ClientTestBase
+{
+    protected final KeySpace DEFAULT_SPACE = new KeySpace(360);
+
+    public void testSegmentsFromSameVersion() throws Exception
+    {
+        File f = File.createTempFile("segments", ".bin");
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            TestClient client = new TestClient();
+            FileChannel channel = raf.getChannel();
+            raf.setLength(200L);
+            // first server has newer version (not yet synced to the second)
+            List<ClusterServerNode> servers = Arrays.asList(
+                    _node(0, new TestGetter("\"new\"", (byte) 1)),
+                    _node(1, new TestGetter("\"old\"", (byte) 2)));
+            AtomicReference<String> etag = new AtomicReference<String>();
+
+            // first segment determines version to fetch
+            assertNull(client.getSegment(servers, 0, new ByteRange(0L, 100L), channel, etag));
+            assertEquals("\"new\"", etag.get());
+            // and second must not come from the other version, even if tried first
+            assertNull(client.getSegment(servers, 1, new ByteRange(100L, 100L), channel, etag));
+            byte[] data = new byte[200];
+            raf.seek(0L);
+            raf.readFully(data);
+            for (byte b : data) {
+                assertEquals((byte) 1, b);
+            }
+
+            // and if no server has matching version, must fail
+            etag.set("\"other\"");
+            String fail = client.getSegment(servers, 0, new ByteRange(0L, 100L), channel, etag);
+            assertNotNull(fail);
+            verifyMessage("differs", fail);
+        } finally {
+            raf.close();
+            f.delete();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods, classes
+    /**********************************************************************
+     */
+
+    private ClusterServerNode _node(int index, TestGetter getter) {
+        ClusterServerNodeImpl node = new ClusterServerNodeImpl(null, new IpAndPort("localhost:"+(9000+index)),
+                DEFAULT_SPACE.fullRange(), DEFAULT_SPACE.fullRange(), new Accessors(getter));
+        getter.server = node;
+        return node;
+    }
+
+    static class TestClient extends StoreClient<TestKey, TestConfig, ItemInfo>
+    {
+        public TestClient() {
+            super(new TestConfig(), ListItem.class, null, null, null, null);
+        }
+
+        public String getSegment(List<ClusterServerNode> servers, int index, ByteRange range,
+                FileChannel channel, AtomicReference<String> etag)
+            throws InterruptedException
+        {
+            return _getSegment(_config, null, new TestKey("a"), servers, index, range,
+                    channel, etag);
+        }
+    }
+
+    /**
+     * Getter that returns requested range, filled with specified byte,
+     * along with specified ETag.
+     */
+    static class TestGetter implements ContentGetter<TestKey>
+    {
+        final String etag;
+
+        final byte fill;
+
+        ClusterServerNode server;
+
+        public TestGetter(String etag, byte fill) {
+            this.etag = etag;
+            this.fill = fill;
+        }
+
+        @Override
+        public <T> ReadCallResult<T> tryGet(CallConfig config, ReadCallParameters params,
+                long endOfTime, TestKey contentId, GetContentProcessor<T> processor, ByteRange range)
+        {
+            long now = System.currentTimeMillis();
+            GetContentProcessor.Handler<T> h = processor.createHandler();
+            try {
+                byte[] data = new byte[(int) range.calculateLength()];
+                Arrays.fill(data, fill);
+                h.startContent(ClusterMateConstants.HTTP_STATUS_OK_PARTIAL, null);
+                h.processContent(data, 0, data.length);
+                return new TestResult<T>(server, h.completeContentProcessing(), etag);
+            } catch (Exception e) {
+                return new TestResult<T>(CallFailure.clientInternal(server, now,
+                        System.currentTimeMillis(), e));
+            }
+        }
+    }
+
+    static class TestResult<T> extends ReadCallResult<T>
+    {
+        final String _etag;
+
+        public TestResult(ClusterServerNode server, T result, String etag) {
+            super(server, ClusterMateConstants.HTTP_STATUS_OK_PARTIAL, result);
+            _etag = etag;
+        }
+
+        public TestResult(CallFailure fail) {
+            super(fail);
+            _etag = null;
+        }
+
+        @Override
+        public String getHeaderValue(String key) {
+            return ClusterMateConstants.HTTP_HEADER_ETAG.equalsIgnoreCase(key) ? _etag : null;
+        }
+    }
+
+    static class Accessors implements EntryAccessors<TestKey>
+    {
+        private final TestGetter _getter;
+
+        public Accessors(TestGetter g) { _getter = g; }
+
+        @Override
+        public ContentPutter<TestKey> entryPutter(ClusterServerNode server) { return null; }
+        @Override
+        public ContentGetter<TestKey> entryGetter(ClusterServerNode server) { return _getter; }
+        @Override
+        public ContentHeader<TestKey> entryHeader(ClusterServerNode server) { return null; }
+        @Override
+        public ContentDeleter<TestKey> entryDeleter(ClusterServerNode server) { return null; }
+        @Override
+        public EntryLister<TestKey> entryLister(ClusterServerNode server) { return null; }
+        @Override
+        public EntryInspector<TestKey> entryInspector(ClusterServerNode server) { return null; }
+        @Override
+        public MultiContentGetter<TestKey> multiEntryGetter(ClusterServerNode server) { return null; }
+        @Override
+        public MultiContentPutter<TestKey> multiEntryPutter(ClusterServerNode server) { return null; }
+    }
+
+    static class TestConfig extends StoreClientConfig<TestKey, TestConfig>
+    {
+        public TestConfig() {
+            super(null, new String[0], (RequestPathStrategy<?>) null, new ObjectMapper(),
+                    new OperationConfig());
+        }
+
+        @Override
+        public <BUILDER extends StoreClientConfigBuilder<TestKey, TestConfig, BUILDER>> BUILDER builder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.fasterxml.clustermate.client.cache;
+
+import java.io.File;
+import java.util.*;
+
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+
+public class TestNearCache extends ClientTestBase
+{
+    public void testTrustedHits() throws Exception
+    {
+        TestCache cache = new TestCache(new NearCacheConfig().withTrustMsecs(1000L));
+        Loader loader = new Loader();
+        loader.contents.put("a", _data(100, 'a'));
+
+        assertTrue(Arrays.equals(_data(100, 'a'), cache.get(new TestKey("a"), loader)));
+        assertEquals(Arrays.asList("a:null"), loader.calls);
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(100L, cache.getMemoryBytes());
+
+        // within trust period, no calls
+        cache.time += 999L;
+        byte[] data = cache.get(new TestKey("a"), loader);
+        assertTrue(Arrays.equals(_data(100, 'a'), data));
+        assertEquals(1, loader.calls.size());
+        assertEquals(1L, cache.getHitCount());
+        // and caller can't modify cached copy
+        data[0] = 0;
+        assertTrue(Arrays.equals(_data(100, 'a'), cache.get(new TestKey("a"), loader)));
+
+        // missing entries are not cached
+        assertNull(cache.get(new TestKey("b"), loader));
+        assertNull(cache.get(new TestKey("b"), loader));
+        assertEquals(3, loader.calls.size());
+        assertEquals(3L, cache.getMissCount());
+    }
+
+    public void testRevalidation() throws Exception
+    {
+        TestCache cache = new TestCache(new NearCacheConfig().withTrustMsecs(0L));
+        Loader loader = new Loader();
+        loader.contents.put("a", _data(10, 'a'));
+        final String etag = "\""+calcChecksum(_data(10, 'a'))+"\"";
+
+        cache.get(new TestKey("a"), loader);
+        assertTrue(Arrays.equals(_data(10, 'a'), cache.get(new TestKey("a"), loader)));
+        assertEquals(Arrays.asList("a:null", "a:"+etag), loader.calls);
+        assertEquals(1L, cache.getRevalidationCount());
+        assertEquals(1L, cache.getHitCount());
+
+        // then content changes (delete + re-PUT by someone else)
+        loader.contents.put("a", _data(20, 'b'));
+        assertTrue(Arrays.equals(_data(20, 'b'), cache.get(new TestKey("a"), loader)));
+        assertEquals(2L, cache.getMissCount());
+        assertEquals(20L, cache.getMemoryBytes());
+
+        // and gets deleted
+        loader.contents.remove("a");
+        assertNull(cache.get(new TestKey("a"), loader));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    public void testInvalidation() throws Exception
+    {
+        TestCache cache = new TestCache(new NearCacheConfig().withTrustMsecs(-1L));
+        Loader loader = new Loader();
+        loader.contents.put("a", _data(10, 'a'));
+        cache.get(new TestKey("a"), loader);
+        cache.invalidate(new TestKey("a"));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(1L, cache.getInvalidationCount());
+        cache.get(new TestKey("a"), loader);
+        assertEquals(2, loader.calls.size());
+    }
+
+    public void testFrequencyAwareEviction() throws Exception
+    {
+        // room for 3 entries of 100 bytes
+        TestCache cache = new TestCache(new NearCacheConfig().withTrustMsecs(-1L)
+                .withMemoryLimits(300L, 100L, true));
+        Loader loader = new Loader();
+        for (String id : new String[] { "a", "b", "c", "d" }) {
+            loader.contents.put(id, _data(100, id.charAt(0)));
+        }
+        // make "a", "b", "c" popular
+        for (int i = 0; i < 3; ++i) {
+            cache.get(new TestKey("a"), loader);
+            cache.get(new TestKey("b"), loader);
+            cache.get(new TestKey("c"), loader);
+        }
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(3, loader.calls.size());
+
+        // one-off access should not push popular ones out
+        assertTrue(Arrays.equals(_data(100, 'd'), cache.get(new TestKey("d"), loader)));
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(1L, cache.getEvictionCount());
+        cache.get(new TestKey("a"), loader);
+        cache.get(new TestKey("b"), loader);
+        cache.get(new TestKey("c"), loader);
+        assertEquals(4, loader.calls.size());
+
+        // but once it becomes more popular than least-recently used one, it gets in
+        for (int i = 0; i < 5; ++i) {
+            cache.get(new TestKey("d"), loader);
+        }
+        assertEquals(3, cache.getEntryCount());
+        cache.get(new TestKey("d"), loader);
+        assertTrue(loader.calls.size() < 10);
+        assertTrue(Arrays.equals(_data(100, 'd'), cache.get(new TestKey("d"), loader)));
+        assertEquals(300L, cache.getMemoryBytes());
+    }
+
+    public void testDiskTier() throws Exception
+    {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "near-cache-test-"+System.nanoTime());
+        assertTrue(dir.mkdirs());
+        try {
+            TestCache cache = new TestCache(new NearCacheConfig().withTrustMsecs(-1L)
+                    .withMemoryLimits(1000L, 100L, false)
+                    .withDiskTier(dir, 10000L));
+            Loader loader = new Loader();
+            loader.contents.put("small", _data(50, 's'));
+            loader.contents.put("big", _data(5000, 'b'));
+            cache.get(new TestKey("small"), loader);
+            cache.get(new TestKey("big"), loader);
+            assertEquals(50L, cache.getMemoryBytes());
+            assertEquals(5000L, cache.getDiskBytes());
+            assertEquals(1, dir.listFiles().length);
+            assertTrue(Arrays.equals(_data(5000, 'b'), cache.get(new TestKey("big"), loader)));
+            assertEquals(2, loader.calls.size());
+
+            // and if file disappears, content is reloaded
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            assertTrue(Arrays.equals(_data(5000, 'b'), cache.get(new TestKey("big"), loader)));
+            assertEquals(3, loader.calls.size());
+
+            cache.clear();
+            assertEquals(0, cache.getEntryCount());
+            assertEquals(0, dir.listFiles().length);
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes, methods
+    /**********************************************************************
+     */
+
+    private byte[] _data(int len, char c) {
+        byte[] b = new byte[len];
+        Arrays.fill(b, (byte) c);
+        return b;
+    }
+
+    class TestCache extends NearCache<TestKey>
+    {
+        public long time = 1000L;
+
+        public TestCache(NearCacheConfig config) {
+            super(config, null);
+        }
+
+        @Override
+        protected long _currentTime() { return time; }
+
+        @Override
+        protected int _contentHashFor(byte[] data) {
+            return calcChecksum(data);
+        }
+    }
+
+    /**
+     * Loader that emulates server-side conditional GET handling
+     */
+    class Loader implements NearCache.ContentLoader<TestKey>
+    {
+        public final Map<String,byte[]> contents = new HashMap<String,byte[]>();
+
+        public final List<String> calls = new ArrayList<String>();
+
+        @Override
+        public byte[] load(TestKey key, String ifNoneMatch)
+        {
+            calls.add(key+":"+ifNoneMatch);
+            byte[] data = contents.get(key.toString());
+            if (data != null && ifNoneMatch != null
+                    && ifNoneMatch.equals("\""+calcChecksum(data)+"\"")) {
+                return NearCache.NOT_MODIFIED;
+            }
+            return data;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.fasterxml.clustermate.client.call;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+
+public class TestGetContentProcessorForFileRange extends ClientTestBase
+{
+    public void testSegmentsOutOfOrder() throws Exception
+    {
+        final byte[] DATA = "0123456789abcdefghij".getBytes("UTF-8");
+        File f = File.createTempFile("segments", ".bin");
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.setLength(DATA.length);
+            FileChannel ch = raf.getChannel();
+            // write last segment first, in pieces
+            GetContentProcessor.Handler<Long> h2 = new GetContentProcessorForFileRange(ch, 10L, 10L).createHandler();
+            assertTrue(h2.startContent(206, null));
+            h2.processContent(DATA, 10, 4);
+            h2.processContent(DATA, 14, 6);
+            assertEquals(Long.valueOf(10L), h2.completeContentProcessing());
+
+            GetContentProcessor.Handler<Long> h1 = new GetContentProcessorForFileRange(ch, 0L, 10L).createHandler();
+            assertTrue(h1.startContent(206, null));
+            h1.processContent(DATA, 0, 10);
+            assertEquals(Long.valueOf(10L), h1.completeContentProcessing());
+        } finally {
+            raf.close();
+        }
+        byte[] result = new byte[DATA.length];
+        FileInputStream in = new FileInputStream(f);
+        assertEquals(DATA.length, in.read(result));
+        in.close();
+        f.delete();
+        assertTrue(Arrays.equals(DATA, result));
+    }
+
+    public void testInvalidResponses() throws Exception
+    {
+        File f = File.createTempFile("segments", ".bin");
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            FileChannel ch = raf.getChannel();
+            // full content is only acceptable for the first segment
+            GetContentProcessor.Handler<Long> h = new GetContentProcessorForFileRange(ch, 5L, 5L).createHandler();
+            try {
+                h.startContent(200, null);
+                fail("Should not accept full content");
+            } catch (IOException e) {
+                verifyException(e, "Unexpected status code");
+            }
+            h = new GetContentProcessorForFileRange(ch, 0L, 5L).createHandler();
+            assertTrue(h.startContent(200, null));
+            try {
+                h.processContent(new byte[8], 0, 8);
+                fail("Should not accept too much content");
+            } catch (IOException e) {
+                verifyException(e, "more content than expected");
+            }
+        } finally {
+            raf.close();
+            f.delete();
+        }
+    }
+}
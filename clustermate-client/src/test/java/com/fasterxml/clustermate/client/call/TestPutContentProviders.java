@@ -0,0 +1,38 @@
+package com.fasterxml.clustermate.client.call;
+
+import java.util.Arrays;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.compress.Compressors;
+
+import com.fasterxml.clustermate.api.codec.CompressionCodec;
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+
+public class TestPutContentProviders extends ClientTestBase
+{
+    public void testCompressedBytes() throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 20000) {
+            sb.append("Compressible content ").append(sb.length()).append('\n');
+        }
+        final byte[] DATA = sb.toString().getBytes("UTF-8");
+        final int hash = calcChecksum(DATA);
+        PutContentProvider prov = PutContentProviders.forCompressedBytes(ByteContainer.simple(DATA),
+                hash, CompressionCodec.LZF.instance);
+        assertNotNull(prov);
+        assertEquals(Compression.LZF, prov.getExistingCompression());
+        assertEquals(DATA.length, prov.uncompressedLength());
+        assertTrue(prov.length() < DATA.length);
+        // hash must be that of uncompressed content
+        assertEquals(hash, prov.getContentHash());
+        byte[] data = Compressors.lzfUncompress(prov.contentAsBytes().asBytes());
+        assertTrue(Arrays.equals(DATA, data));
+
+        // but no point in compressing if it does not make content shorter
+        final byte[] SHORT = "abc".getBytes("UTF-8");
+        assertNull(PutContentProviders.forCompressedBytes(ByteContainer.simple(SHORT),
+                calcChecksum(SHORT), CompressionCodec.GZIP.instance));
+    }
+}
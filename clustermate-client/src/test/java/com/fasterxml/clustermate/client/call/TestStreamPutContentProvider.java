@@ -0,0 +1,130 @@
+package com.fasterxml.clustermate.client.call;
+
+import java.io.*;
+import java.util.Arrays;
+
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.hash.HashConstants;
+
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+import com.fasterxml.clustermate.client.util.ChecksumAppendingInputStream;
+import com.fasterxml.clustermate.std.ChecksumUtil;
+
+public class TestStreamPutContentProvider extends ClientTestBase
+{
+    public void testReplayAndHash() throws Exception
+    {
+        final byte[] DATA = _data(150000);
+        PutContentProvider prov = PutContentProviders.forStream(new ByteArrayInputStream(DATA),
+                ChecksumUtil.startChecksum());
+        assertEquals(-1L, prov.length());
+        assertNull(prov.contentAsBytes());
+        assertNull(prov.contentAsFile());
+
+        // content is not read before it is first sent, so hash not yet known
+        assertEquals(HashConstants.NO_CHECKSUM, prov.getContentHash());
+
+        // but is once content has been sent once
+        InputStream first = prov.contentAsStream();
+        byte[] buffer = new byte[1000];
+        assertEquals(buffer.length, first.read(buffer));
+        assertEquals(-1L, prov.length());
+        // and content replayable for retries, other servers, even while first is in progress
+        assertTrue(Arrays.equals(DATA, _readAll(prov.contentAsStream())));
+        assertEquals(ChecksumUtil.calcChecksum(DATA), prov.getContentHash());
+        assertEquals(DATA.length, prov.length());
+        first.close();
+        assertTrue(Arrays.equals(DATA, _readAll(prov.contentAsStream())));
+
+        prov.release();
+        try {
+            prov.contentAsStream();
+            fail("Should not allow reads after release");
+        } catch (IOException e) {
+            verifyException(e, "already released");
+        }
+    }
+
+    public void testFailedSource() throws Exception
+    {
+        InputStream src = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Broken source");
+            }
+        };
+        PutContentProvider prov = PutContentProviders.forStream(src, ChecksumUtil.startChecksum());
+        try {
+            _readAll(prov.contentAsStream());
+            fail("Should report source failure");
+        } catch (IOException e) {
+            verifyException(e, "Broken source");
+        }
+        // for all readers
+        try {
+            prov.contentAsStream();
+            fail("Should report source failure");
+        } catch (IOException e) {
+            verifyException(e, "Broken source");
+        }
+        assertEquals(HashConstants.NO_CHECKSUM, prov.getContentHash());
+        prov.release();
+    }
+
+    public void testNoHashForCompressed() throws Exception
+    {
+        final byte[] DATA = _data(1000);
+        PutContentProvider prov = PutContentProviders.forStream(new ByteArrayInputStream(DATA),
+                ChecksumUtil.startChecksum())
+                .withCompression(Compression.GZIP, 2000L);
+        assertTrue(Arrays.equals(DATA, _readAll(prov.contentAsStream())));
+        assertEquals(DATA.length, prov.length());
+        // hash must be for uncompressed content, so can not calculate
+        assertEquals(HashConstants.NO_CHECKSUM, prov.getContentHash());
+        prov.release();
+    }
+
+    public void testChecksumTrailer() throws Exception
+    {
+        final byte[] DATA = _data(70000);
+        PutContentProvider prov = PutContentProviders.forStream(new ByteArrayInputStream(DATA),
+                ChecksumUtil.startChecksum());
+        // checksum calculated while sending, appended after content
+        byte[] sent = _readAll(new ChecksumAppendingInputStream(prov.contentAsStream(),
+                ChecksumUtil.startChecksum()));
+        assertEquals(DATA.length + 4, sent.length);
+        assertTrue(Arrays.equals(DATA, Arrays.copyOf(sent, DATA.length)));
+        final int exp = ChecksumUtil.calcChecksum(DATA);
+        int act = ((sent[DATA.length] & 0xFF) << 24) | ((sent[DATA.length+1] & 0xFF) << 16)
+                | ((sent[DATA.length+2] & 0xFF) << 8) | (sent[DATA.length+3] & 0xFF);
+        assertEquals(exp, act);
+        // and same hash available for later requests
+        assertEquals(exp, prov.getContentHash());
+        prov.release();
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods
+    /**********************************************************************
+     */
+
+    private byte[] _data(int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; ++i) {
+            b[i] = (byte) (i ^ (i >> 8));
+        }
+        return b;
+    }
+
+    private byte[] _readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4000];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -1,5 +1,8 @@
 package com.fasterxml.clustermate.client.cluster;
 
+import com.fasterxml.storemate.shared.StorableKey;
+
+import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.std.ChecksumUtil;
 
 import junit.framework.TestCase;
@@ -37,4 +40,43 @@ public abstract class ClientTestBase extends TestCase
     protected int calcChecksum(byte[] data) {
         return ChecksumUtil.calcChecksum(data);
     }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Simple {@link EntryKey} implementation for tests
+     */
+    public static class TestKey extends EntryKey
+    {
+        protected final String _id;
+
+        public TestKey(String id) { _id = id; }
+
+        @Override
+        public StorableKey asStorableKey() { return new StorableKey(asBytes()); }
+
+        @Override
+        public byte[] asBytes() {
+            try {
+                return _id.getBytes("UTF-8");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public String toString() { return _id; }
+
+        @Override
+        public int hashCode() { return _id.hashCode(); }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof TestKey) && _id.equals(((TestKey) o)._id);
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package com.fasterxml.clustermate.client.cluster;
 
+import java.util.*;
+
 import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.api.KeyRange;
 import com.fasterxml.clustermate.api.KeySpace;
@@ -122,4 +124,37 @@ public class TestClientClusterViewImpl extends ClientTestBase
         ClusterServerNodeImpl[] moreNodes = new ClusterServerNodeImpl[] { NODE1, NODE2, NODE3, extraNode };
         assertEquals(360, view._getCoverage(moreNodes));
     }
+
+    public void testFindMostOutdatedNode()
+    {
+        ClusterViewByClientImpl<EntryKey> view = ClusterViewByClientImpl.forTesting(DEFAULT_SPACE);
+        List<ClusterServerNodeImpl> nodes = Arrays.asList(allNodes);
+        final long now = System.currentTimeMillis();
+        final long failDelay = 1000L;
+
+        // initially nothing has been fetched, so first one is picked
+        assertSame(NODE1, view._findMostOutdatedNode(nodes, now, failDelay));
+
+        // but once up to date, others are checked
+        NODE1.setLastClusterUpdateFetched(now - 100L);
+        NODE1.setLastClusterUpdateAvailable(now - 100L);
+        assertSame(NODE2, view._findMostOutdatedNode(nodes, now, failDelay));
+
+        // and the one with oldest fetched information preferred
+        NODE2.setLastClusterUpdateFetched(now - 50L);
+        NODE2.setLastClusterUpdateAvailable(now);
+        NODE3.setLastClusterUpdateFetched(now - 500L);
+        NODE3.setLastClusterUpdateAvailable(now);
+        assertSame(NODE3, view._findMostOutdatedNode(nodes, now, failDelay));
+
+        // unless call to it has failed recently
+        NODE3.setLastStatusFetchFailed(now - 10L);
+        assertSame(NODE2, view._findMostOutdatedNode(nodes, now, failDelay));
+        assertSame(NODE3, view._findMostOutdatedNode(nodes, now + failDelay, failDelay));
+
+        // and if everything is up to date, nothing to call
+        NODE2.setLastClusterUpdateFetched(now);
+        NODE3.setLastClusterUpdateFetched(now);
+        assertNull(view._findMostOutdatedNode(nodes, now + failDelay, failDelay));
+    }
 }
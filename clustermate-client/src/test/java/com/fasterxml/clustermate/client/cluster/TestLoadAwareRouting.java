@@ -0,0 +1,99 @@
+package com.fasterxml.clustermate.client.cluster;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.KeyHash;
+import com.fasterxml.clustermate.api.KeySpace;
+import com.fasterxml.clustermate.client.ClusterServerNode;
+import com.fasterxml.clustermate.client.NodesForKey;
+
+public class TestLoadAwareRouting extends ClientTestBase
+{
+    protected final KeySpace DEFAULT_SPACE = new KeySpace(360);
+
+    public void testPrimaryKeptIfSimilar()
+    {
+        ClusterServerNodeImpl node1 = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(0, 120));
+        ClusterServerNodeImpl node2 = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(90, 60));
+        HashRouter<EntryKey> router = _router(node1, node2);
+        KeyHash hash = DEFAULT_SPACE.hash(100);
+        NodesForKey nodes = router._calculateNodes(1, hash);
+        assertSame(node2, nodes.node(0));
+
+        // no information: no change
+        long now = System.currentTimeMillis();
+        assertSame(nodes, router._preferLessLoaded(hash, nodes, now));
+
+        // somewhat slower primary is fine too
+        node2.recordGetLatency(15L);
+        node1.recordGetLatency(10L);
+        assertSame(nodes, router._preferLessLoaded(hash, nodes, now));
+    }
+
+    public void testSlowPrimaryAvoided()
+    {
+        ClusterServerNodeImpl node1 = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(0, 120));
+        ClusterServerNodeImpl node2 = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(90, 60));
+        HashRouter<EntryKey> router = _router(node1, node2);
+        KeyHash hash = DEFAULT_SPACE.hash(100);
+        NodesForKey nodes = router._calculateNodes(1, hash);
+
+        node2.recordGetLatency(100L);
+        node1.recordGetLatency(10L);
+        long now = System.currentTimeMillis();
+        NodesForKey reordered = router._preferLessLoaded(hash, nodes, now);
+        assertEquals(2, reordered.size());
+        assertSame(node1, reordered.node(0));
+        assertSame(node2, reordered.node(1));
+
+        // but if information is old, go back to default order
+        assertSame(nodes, router._preferLessLoaded(hash, nodes,
+                now + ClusterServerNodeImpl.LOAD_INFO_MAX_AGE_MSECS + 1000L));
+    }
+
+    public void testLoadedPrimaryAvoided()
+    {
+        ClusterServerNodeImpl node1 = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(0, 120));
+        ClusterServerNodeImpl node2 = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(90, 60));
+        HashRouter<EntryKey> router = _router(node1, node2);
+        KeyHash hash = DEFAULT_SPACE.hash(100);
+        NodesForKey nodes = router._calculateNodes(1, hash);
+
+        node2.recordGetLatency(10L);
+        node1.recordGetLatency(10L);
+        // many calls in-flight to primary
+        node2.callStarted();
+        node2.callStarted();
+        long now = System.currentTimeMillis();
+        assertSame(node1, router._preferLessLoaded(hash, nodes, now).node(0));
+        node2.callFinished();
+        node2.callFinished();
+        assertSame(nodes, router._preferLessLoaded(hash, nodes, now));
+
+        // and same if server reports high load
+        node2.updateLoadHint(5);
+        assertSame(node1, router._preferLessLoaded(hash, nodes, now).node(0));
+    }
+
+    public void testPassiveNodeNotPreferred()
+    {
+        // node1 only has key in its passive range; can not be used as primary
+        ClusterServerNodeImpl node1 = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(0, 60),
+                DEFAULT_SPACE.range(0, 120));
+        ClusterServerNodeImpl node2 = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(90, 60));
+        HashRouter<EntryKey> router = _router(node1, node2);
+        KeyHash hash = DEFAULT_SPACE.hash(100);
+        NodesForKey nodes = router._calculateNodes(1, hash);
+        assertSame(node2, nodes.node(0));
+
+        node2.recordGetLatency(100L);
+        node1.recordGetLatency(10L);
+        assertSame(nodes, router._preferLessLoaded(hash, nodes, System.currentTimeMillis()));
+    }
+
+    private HashRouter<EntryKey> _router(ClusterServerNode... nodes) {
+        return new HashRouter<EntryKey>(DEFAULT_SPACE, null,
+                new AtomicReference<ClusterServerNode[]>(nodes), true);
+    }
+}
@@ -0,0 +1,38 @@
+package com.fasterxml.clustermate.client.cluster;
+
+import com.fasterxml.clustermate.api.KeySpace;
+
+public class TestNodeLatencies extends ClientTestBase
+{
+    protected final KeySpace DEFAULT_SPACE = new KeySpace(360);
+
+    public void testGetLatencyPercentiles()
+    {
+        ClusterServerNodeImpl node = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(0, 120));
+        // nothing recorded yet
+        assertEquals(-1L, node.getGetLatencyPercentile(95, 1));
+
+        for (int i = 1; i <= 20; ++i) {
+            node.recordGetLatency(i);
+        }
+        // not enough samples?
+        assertEquals(-1L, node.getGetLatencyPercentile(95, 50));
+        assertEquals(19L, node.getGetLatencyPercentile(95, 20));
+        assertEquals(10L, node.getGetLatencyPercentile(50, 20));
+        assertEquals(20L, node.getGetLatencyPercentile(100, 20));
+    }
+
+    public void testGetLatencyWindowWrap()
+    {
+        ClusterServerNodeImpl node = ClusterServerNodeImpl.forTesting(DEFAULT_SPACE.range(0, 120));
+        // fill window with slow calls, then overwrite all with fast ones
+        for (int i = 0; i < 64; ++i) {
+            node.recordGetLatency(1000L);
+        }
+        assertEquals(1000L, node.getGetLatencyPercentile(95, 1));
+        for (int i = 0; i < 64; ++i) {
+            node.recordGetLatency(5L);
+        }
+        assertEquals(5L, node.getGetLatencyPercentile(95, 1));
+    }
+}
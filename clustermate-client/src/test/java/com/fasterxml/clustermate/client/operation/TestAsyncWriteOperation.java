@@ -0,0 +1,217 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.clustermate.api.KeySpace;
+import com.fasterxml.clustermate.api.RequestPathStrategy;
+import com.fasterxml.clustermate.client.*;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
+import com.fasterxml.storemate.shared.IpAndPort;
+
+/**
+ * Tests for verifying that {@link AsyncWriteOperation} works correctly
+ * when call completions are delivered synchronously, from within
+ * the call itself.
+ */
+public class TestAsyncWriteOperation extends ClientTestBase
+{
+    protected final KeySpace DEFAULT_SPACE = new KeySpace(360);
+
+    private ScheduledExecutorService _timer;
+
+    @Override
+    public void setUp() {
+        _timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @Override
+    public void tearDown() {
+        _timer.shutdownNow();
+    }
+
+    public void testSynchronousFailures() throws Exception
+    {
+        _verifySynchronousFailures(false);
+    }
+
+    public void testSynchronousFailuresParallel() throws Exception
+    {
+        _verifySynchronousFailures(true);
+    }
+
+    private void _verifySynchronousFailures(boolean parallel) throws Exception
+    {
+        InlinePutter putter = new InlinePutter(503);
+        CountingPut put = _put(parallel, putter, 3);
+        PutOperationResult result = put.start().get(10L, TimeUnit.SECONDS);
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(3, result.getFailCount());
+        // every node tried once per round, no more
+        assertEquals(3 * StoreClientConfig.MAX_RETRIES_FOR_PUT, putter.calls.get());
+        // and no calls after completion either
+        Thread.sleep(50L);
+        assertEquals(3 * StoreClientConfig.MAX_RETRIES_FOR_PUT, putter.calls.get());
+        assertEquals(1, put.completions.get());
+        assertEquals(1, put.releases.get());
+    }
+
+    public void testSynchronousSuccess() throws Exception
+    {
+        _verifySynchronousSuccess(false);
+        _verifySynchronousSuccess(true);
+    }
+
+    private void _verifySynchronousSuccess(boolean parallel) throws Exception
+    {
+        InlinePutter putter = new InlinePutter(0);
+        CountingPut put = _put(parallel, putter, 3);
+        PutOperationResult result = put.start().get(1L, TimeUnit.SECONDS);
+        assertTrue(result.succeededOptimally());
+        assertEquals(OperationConfig.DEFAULT_OPTIMAL_OKS_PER_OPERATION, result.getSuccessCount());
+        // since calls complete right away, no more calls are made once done, even in parallel mode
+        assertEquals(OperationConfig.DEFAULT_OPTIMAL_OKS_PER_OPERATION, putter.calls.get());
+        assertEquals(1, put.completions.get());
+        assertEquals(1, put.releases.get());
+    }
+
+    public void testSynchronousException() throws Exception
+    {
+        InlinePutter putter = new InlinePutter(-1);
+        CountingPut put = _put(false, putter, 2);
+        PutOperationResult result = put.start().get(1L, TimeUnit.SECONDS);
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(2, result.getFailCount());
+        assertEquals(2, putter.calls.get());
+        assertEquals(1, put.completions.get());
+        assertEquals(1, put.releases.get());
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods, classes
+    /**********************************************************************
+     */
+
+    private CountingPut _put(boolean parallel, InlinePutter putter, int nodeCount)
+    {
+        OperationConfig opConfig = new OperationConfig().withParallelWrites(parallel);
+        ClusterServerNode[] nodes = new ClusterServerNode[nodeCount];
+        for (int i = 0; i < nodeCount; ++i) {
+            nodes[i] = new ClusterServerNodeImpl(null, new IpAndPort("localhost:"+(9000+i)),
+                    DEFAULT_SPACE.fullRange(), DEFAULT_SPACE.fullRange(), new Accessors(putter));
+        }
+        return new CountingPut(new TestConfig(opConfig), new NodesForKey(1, nodes), _timer);
+    }
+
+    static class CountingPut extends AsyncWriteOperation.ForPut<TestKey>
+    {
+        final AtomicInteger releases = new AtomicInteger();
+        final AtomicInteger completions = new AtomicInteger();
+
+        public CountingPut(StoreClientConfig<TestKey,?> config, NodesForKey nodes,
+                ScheduledExecutorService timer)
+        {
+            super(config, System.currentTimeMillis(), nodes, null, timer,
+                    null, new TestKey("key"), PutContentProviders.forBytes(new byte[10]));
+            _future.addListener(new OperationFuture.Listener<PutOperationResult>() {
+                @Override
+                public void operationCompleted(PutOperationResult result) {
+                    completions.incrementAndGet();
+                }
+
+                @Override
+                public void operationFailed(Throwable problem) {
+                    completions.incrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        protected void _release() {
+            releases.incrementAndGet();
+            super._release();
+        }
+    }
+
+    /**
+     * Putter that completes calls from within {@link #tryPutAsync}, like
+     * async HTTP clients do when request can not be sent at all.
+     * Status of 0 means success, negative value that call throws an exception.
+     */
+    static class InlinePutter
+        implements ContentPutter<TestKey>, AsyncContentPutter<TestKey>
+    {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final int status;
+
+        ClusterServerNode server;
+
+        public InlinePutter(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public void tryPutAsync(CallConfig config, PutCallParameters params,
+                long endOfTime, TestKey contentId, PutContentProvider content,
+                CallListener<CallFailure> listener)
+        {
+            calls.incrementAndGet();
+            if (status < 0) {
+                throw new IllegalStateException("Failed to send");
+            }
+            long now = System.currentTimeMillis();
+            listener.callCompleted((status == 0) ? null
+                    : CallFailure.general(server, status, now, now, "Failed"));
+        }
+
+        @Override
+        public CallFailure tryPut(CallConfig config, PutCallParameters params,
+                long endOfTime, TestKey contentId, PutContentProvider content) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class Accessors implements EntryAccessors<TestKey>
+    {
+        private final InlinePutter _putter;
+
+        public Accessors(InlinePutter p) { _putter = p; }
+
+        @Override
+        public ContentPutter<TestKey> entryPutter(ClusterServerNode server) {
+            _putter.server = server;
+            return _putter;
+        }
+
+        @Override
+        public ContentGetter<TestKey> entryGetter(ClusterServerNode server) { return null; }
+        @Override
+        public ContentHeader<TestKey> entryHeader(ClusterServerNode server) { return null; }
+        @Override
+        public ContentDeleter<TestKey> entryDeleter(ClusterServerNode server) { return null; }
+        @Override
+        public EntryLister<TestKey> entryLister(ClusterServerNode server) { return null; }
+        @Override
+        public EntryInspector<TestKey> entryInspector(ClusterServerNode server) { return null; }
+        @Override
+        public MultiContentGetter<TestKey> multiEntryGetter(ClusterServerNode server) { return null; }
+        @Override
+        public MultiContentPutter<TestKey> multiEntryPutter(ClusterServerNode server) { return null; }
+    }
+
+    static class TestConfig extends StoreClientConfig<TestKey, TestConfig>
+    {
+        public TestConfig(OperationConfig opConfig) {
+            super(null, new String[0], (RequestPathStrategy<?>) null, null, opConfig);
+        }
+
+        @Override
+        public <BUILDER extends StoreClientConfigBuilder<TestKey, TestConfig, BUILDER>> BUILDER builder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.fasterxml.storemate.shared.ByteRange;
+import com.fasterxml.storemate.shared.IpAndPort;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.KeySpace;
+import com.fasterxml.clustermate.client.*;
+import com.fasterxml.clustermate.client.cache.ConditionalBytesProcessor;
+import com.fasterxml.clustermate.client.cache.NearCache;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
+
+public class TestGetHedger extends ClientTestBase
+{
+    protected final KeySpace DEFAULT_SPACE = new KeySpace(360);
+
+    private ExecutorService _executor;
+
+    @Override
+    public void setUp() {
+        _executor = Executors.newCachedThreadPool();
+    }
+
+    @Override
+    public void tearDown() {
+        _executor.shutdownNow();
+    }
+
+    /**
+     * Test to verify that conditional GETs done for near cache remain
+     * conditional when hedged.
+     */
+    public void testHedgedConditionalGet() throws Exception
+    {
+        final String ETAG = "\"abc\"";
+        TestGetter primaryGetter = new TestGetter(ETAG, 2000L);
+        TestGetter backupGetter = new TestGetter(ETAG, 0L);
+        ClusterServerNode primary = _node(0, primaryGetter);
+        ClusterServerNode backup = _node(1, backupGetter);
+
+        OperationConfig config = new OperationConfig().withHedgedGets(100, 10L, false);
+        GetHedger hedger = new GetHedger(_executor);
+        GetHedger.Results<byte[]> results = hedger.tryGet(config, null,
+                System.currentTimeMillis() + 5000L, new TestKey("a"),
+                new ConditionalBytesProcessor(ETAG), null, primary, backup);
+        assertTrue(results.backupCalled());
+        assertEquals(1L, hedger.getHedgesWonCount());
+        assertEquals(1, results.results().size());
+        ReadCallResult<byte[]> result = results.results().get(0);
+        assertSame(backup, result.getServer());
+        assertSame(NearCache.NOT_MODIFIED, result.getResult());
+
+        // and both calls must have been conditional
+        assertEquals(Arrays.asList(ETAG), primaryGetter.ifNoneMatches);
+        assertEquals(Arrays.asList(ETAG), backupGetter.ifNoneMatches);
+    }
+
+    /**
+     * Test to verify that if the primary call claims content but then fails,
+     * aborted backup call is reported as not completed, so that caller
+     * knows to call backup node again.
+     */
+    public void testAbortedBackupNotCompleted() throws Exception
+    {
+        TestGetter primaryGetter = new TestGetter("\"abc\"", 300L, true);
+        TestGetter backupGetter = new TestGetter("\"abc\"", 0L);
+        ClusterServerNode primary = _node(0, primaryGetter);
+        ClusterServerNode backup = _node(1, backupGetter);
+
+        OperationConfig config = new OperationConfig().withHedgedGets(100, 50L, false);
+        GetHedger hedger = new GetHedger(_executor);
+        GetHedger.Results<byte[]> results = hedger.tryGet(config, null,
+                System.currentTimeMillis() + 5000L, new TestKey("a"),
+                new ConditionalBytesProcessor(null), null, primary, backup);
+        assertTrue(results.backupCalled());
+        assertFalse(results.backupCompleted());
+        // only failure of the primary is included
+        assertEquals(1, results.results().size());
+        ReadCallResult<byte[]> result = results.results().get(0);
+        assertSame(primary, result.getServer());
+        assertTrue(result.failed());
+        assertEquals(0L, hedger.getHedgesWonCount());
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods, classes
+    /**********************************************************************
+     */
+
+    private ClusterServerNode _node(int index, TestGetter getter) {
+        ClusterServerNodeImpl node = new ClusterServerNodeImpl(null, new IpAndPort("localhost:"+(9000+index)),
+                DEFAULT_SPACE.fullRange(), DEFAULT_SPACE.fullRange(), new Accessors(getter));
+        getter.server = node;
+        return node;
+    }
+
+    /**
+     * Getter that returns "not modified" if given ETag matches, optionally
+     * after a delay.
+     */
+    static class TestGetter implements ContentGetter<TestKey>
+    {
+        final List<String> ifNoneMatches = Collections.synchronizedList(new ArrayList<String>());
+
+        final String etag;
+
+        final long delayMsecs;
+
+        /**
+         * Whether to start content before delay, and fail after it
+         */
+        final boolean failAfterStart;
+
+        ClusterServerNode server;
+
+        public TestGetter(String etag, long delay) {
+            this(etag, delay, false);
+        }
+
+        public TestGetter(String etag, long delay, boolean failAfterStart) {
+            this.etag = etag;
+            delayMsecs = delay;
+            this.failAfterStart = failAfterStart;
+        }
+
+        @Override
+        public <T> ReadCallResult<T> tryGet(CallConfig config, ReadCallParameters params,
+                long endOfTime, TestKey contentId, GetContentProcessor<T> processor, ByteRange range)
+        {
+            final String ifNoneMatch = processor.getIfNoneMatch();
+            ifNoneMatches.add(ifNoneMatch);
+            long now = System.currentTimeMillis();
+            if (failAfterStart) {
+                GetContentProcessor.Handler<T> h = processor.createHandler();
+                try {
+                    h.startContent(ClusterMateConstants.HTTP_STATUS_OK, null);
+                    Thread.sleep(delayMsecs);
+                } catch (Exception e) { }
+                IOException fail = new IOException("Connection reset");
+                h.contentProcessingFailed(fail);
+                return new TestResult<T>(CallFailure.clientInternal(server, now,
+                        System.currentTimeMillis(), fail));
+            }
+            if (delayMsecs > 0L) {
+                try {
+                    Thread.sleep(delayMsecs);
+                } catch (InterruptedException e) {
+                    return new TestResult<T>(CallFailure.timeout(server, now, System.currentTimeMillis()));
+                }
+            }
+            GetContentProcessor.Handler<T> h = processor.createHandler();
+            try {
+                if (etag.equals(ifNoneMatch)) {
+                    if (!h.startContent(ClusterMateConstants.HTTP_STATUS_NOT_MODIFIED, null)) {
+                        return new TestResult<T>(server, ClusterMateConstants.HTTP_STATUS_NOT_MODIFIED, null);
+                    }
+                    return new TestResult<T>(server, ClusterMateConstants.HTTP_STATUS_NOT_MODIFIED,
+                            h.completeContentProcessing());
+                }
+                byte[] data = new byte[100];
+                if (!h.startContent(ClusterMateConstants.HTTP_STATUS_OK, null)) {
+                    return new TestResult<T>(server, ClusterMateConstants.HTTP_STATUS_OK, null);
+                }
+                h.processContent(data, 0, data.length);
+                return new TestResult<T>(server, ClusterMateConstants.HTTP_STATUS_OK,
+                        h.completeContentProcessing());
+            } catch (Exception e) {
+                return new TestResult<T>(CallFailure.clientInternal(server, now,
+                        System.currentTimeMillis(), e));
+            }
+        }
+    }
+
+    static class TestResult<T> extends ReadCallResult<T>
+    {
+        public TestResult(ClusterServerNode server, int status, T result) {
+            super(server, status, result);
+        }
+
+        public TestResult(CallFailure fail) {
+            super(fail);
+        }
+
+        @Override
+        public String getHeaderValue(String key) {
+            return null;
+        }
+    }
+
+    static class Accessors implements EntryAccessors<TestKey>
+    {
+        private final TestGetter _getter;
+
+        public Accessors(TestGetter g) { _getter = g; }
+
+        @Override
+        public ContentPutter<TestKey> entryPutter(ClusterServerNode server) { return null; }
+        @Override
+        public ContentGetter<TestKey> entryGetter(ClusterServerNode server) { return _getter; }
+        @Override
+        public ContentHeader<TestKey> entryHeader(ClusterServerNode server) { return null; }
+        @Override
+        public ContentDeleter<TestKey> entryDeleter(ClusterServerNode server) { return null; }
+        @Override
+        public EntryLister<TestKey> entryLister(ClusterServerNode server) { return null; }
+        @Override
+        public EntryInspector<TestKey> entryInspector(ClusterServerNode server) { return null; }
+        @Override
+        public MultiContentGetter<TestKey> multiEntryGetter(ClusterServerNode server) { return null; }
+        @Override
+        public MultiContentPutter<TestKey> multiEntryPutter(ClusterServerNode server) { return null; }
+    }
+}
@@ -0,0 +1,79 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.fasterxml.clustermate.client.StoreClientConfig;
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+
+public class TestOperationFuture extends ClientTestBase
+{
+    public void testListenersOnCompletion() throws Exception
+    {
+        OperationFuture<String> f = new OperationFuture<String>();
+        final List<String> calls = new ArrayList<String>();
+        f.addListener(new Collector(calls));
+        assertFalse(f.isDone());
+        try {
+            f.get(1L, TimeUnit.MILLISECONDS);
+            fail("Should time out");
+        } catch (TimeoutException e) { }
+
+        assertTrue(f.complete("abc"));
+        assertTrue(f.isDone());
+        assertEquals("abc", f.get());
+        // second completion is ignored
+        assertFalse(f.complete("def"));
+        assertFalse(f.fail(new IllegalStateException()));
+        assertEquals(Arrays.asList("ok:abc"), calls);
+
+        // and listeners added afterwards get called right away
+        f.addListener(new Collector(calls));
+        assertEquals(Arrays.asList("ok:abc", "ok:abc"), calls);
+    }
+
+    public void testListenersOnFailure() throws Exception
+    {
+        OperationFuture<String> f = new OperationFuture<String>();
+        final List<String> calls = new ArrayList<String>();
+        f.addListener(new Collector(calls));
+        assertTrue(f.fail(new IllegalStateException("foobar")));
+        assertEquals(Arrays.asList("fail:foobar"), calls);
+        try {
+            f.get();
+            fail("Should fail");
+        } catch (ExecutionException e) {
+            verifyException((Exception) e.getCause(), "foobar");
+        }
+    }
+
+    public void testRetryDelay()
+    {
+        final long delay = StoreClientConfig.DELAY_BETWEEN_RETRY_ROUNDS_MSECS;
+        // quick failures, plenty of time: delay
+        assertEquals(delay, AsyncReadOperation.retryDelay(0L, 100L, 10000L));
+        // slow round: no delay
+        assertEquals(0L, AsyncReadOperation.retryDelay(0L, 2000L, 10000L));
+        // too little time left: no delay
+        assertEquals(0L, AsyncReadOperation.retryDelay(0L, 100L, 100L + 3 * delay));
+    }
+
+    static class Collector implements OperationFuture.Listener<String>
+    {
+        protected final List<String> _calls;
+
+        public Collector(List<String> calls) { _calls = calls; }
+
+        @Override
+        public void operationCompleted(String result) {
+            _calls.add("ok:"+result);
+        }
+
+        @Override
+        public void operationFailed(Throwable problem) {
+            _calls.add("fail:"+problem.getMessage());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.fasterxml.clustermate.client.call.PutContentProvider;
+import com.fasterxml.clustermate.client.call.PutContentProviders;
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+
+public class TestPutBatcher extends ClientTestBase
+{
+    private ScheduledExecutorService _timer;
+
+    @Override
+    public void setUp() {
+        _timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @Override
+    public void tearDown() {
+        _timer.shutdownNow();
+    }
+
+    public void testGroupingAndSizeLimit() throws Exception
+    {
+        // long delay, so only size limit or explicit flush triggers sending
+        RecordingBatcher batcher = new RecordingBatcher(_timer, 60000L, 3, 100L);
+        List<OperationFuture<PutOperationResult>> futures = new ArrayList<OperationFuture<PutOperationResult>>();
+        futures.add(batcher.putContent(new TestKey("a1"), _content(10)));
+        futures.add(batcher.putContent(new TestKey("b1"), _content(10)));
+        futures.add(batcher.putContent(new TestKey("a2"), _content(10)));
+        assertEquals(3, batcher.pendingCount());
+        assertEquals(0, batcher.batches.size());
+        // third one for "a" fills the batch
+        futures.add(batcher.putContent(new TestKey("a3"), _content(10)));
+        assertEquals(1, batcher.batches.size());
+        assertEquals(Arrays.asList("a1", "a2", "a3"), batcher.batches.get(0));
+        assertEquals(1, batcher.pendingCount());
+        assertTrue(futures.get(0).isDone());
+        assertFalse(futures.get(1).isDone());
+
+        batcher.flush();
+        assertEquals(0, batcher.pendingCount());
+        assertEquals(2, batcher.batches.size());
+        assertEquals(Arrays.asList("b1"), batcher.batches.get(1));
+        for (OperationFuture<PutOperationResult> f : futures) {
+            assertNotNull(f.get(1L, TimeUnit.SECONDS));
+        }
+        assertEquals(0, batcher.singles.size());
+    }
+
+    public void testDuplicateKeyFlushes() throws Exception
+    {
+        RecordingBatcher batcher = new RecordingBatcher(_timer, 60000L, 10, 100L);
+        batcher.putContent(new TestKey("a1"), _content(10));
+        batcher.putContent(new TestKey("a1"), _content(5));
+        assertEquals(1, batcher.batches.size());
+        assertEquals(Arrays.asList("a1"), batcher.batches.get(0));
+        assertEquals(1, batcher.pendingCount());
+    }
+
+    public void testDelayedFlush() throws Exception
+    {
+        RecordingBatcher batcher = new RecordingBatcher(_timer, 20L, 10, 100L);
+        OperationFuture<PutOperationResult> f = batcher.putContent(new TestKey("a1"), _content(10));
+        assertNotNull(f.get(5L, TimeUnit.SECONDS));
+        assertEquals(1, batcher.batches.size());
+        assertEquals(0, batcher.pendingCount());
+    }
+
+    public void testLargeEntriesNotBatched() throws Exception
+    {
+        RecordingBatcher batcher = new RecordingBatcher(_timer, 60000L, 10, 100L);
+        OperationFuture<PutOperationResult> f = batcher.putContent(new TestKey("a1"), _content(200));
+        assertTrue(f.isDone());
+        assertEquals(Arrays.asList("a1"), batcher.singles);
+        assertEquals(0, batcher.pendingCount());
+    }
+
+    public void testFailedBatch() throws Exception
+    {
+        RecordingBatcher batcher = new RecordingBatcher(_timer, 60000L, 10, 100L);
+        batcher.fail = true;
+        OperationFuture<PutOperationResult> f = batcher.putContent(new TestKey("a1"), _content(10));
+        batcher.flush();
+        try {
+            f.get(1L, TimeUnit.SECONDS);
+            fail("Should have failed");
+        } catch (ExecutionException e) {
+            verifyException(e, "Simulated failure");
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes, methods
+    /**********************************************************************
+     */
+
+    private PutContentProvider _content(int len) {
+        return PutContentProviders.forBytes(new byte[len]);
+    }
+
+    /**
+     * Batcher that groups entries by first character of key, and just
+     * records calls made instead of sending anything.
+     */
+    static class RecordingBatcher extends PutBatcher<TestKey>
+    {
+        public final List<List<String>> batches = new CopyOnWriteArrayList<List<String>>();
+        public final List<String> singles = new ArrayList<String>();
+
+        public volatile boolean fail;
+
+        public RecordingBatcher(ScheduledExecutorService timer,
+                long maxDelayMsecs, int maxBatchSize, long maxEntryLength)
+        {
+            super(null, null, new Executor() { // send synchronously
+                @Override
+                public void execute(Runnable r) { r.run(); }
+            }, timer, maxDelayMsecs, maxBatchSize, maxEntryLength);
+        }
+
+        @Override
+        protected Object _batchKeyFor(TestKey key) {
+            return key.toString().substring(0, 1);
+        }
+
+        @Override
+        protected Map<TestKey,PutOperationResult> _send(Map<TestKey,PutContentProvider> contents)
+        {
+            if (fail) {
+                throw new IllegalStateException("Simulated failure");
+            }
+            List<String> ids = new ArrayList<String>();
+            Map<TestKey,PutOperationResult> results = new HashMap<TestKey,PutOperationResult>();
+            for (TestKey key : contents.keySet()) {
+                ids.add(key.toString());
+                results.put(key, new PutOperationResult(new OperationConfig(), null));
+            }
+            batches.add(ids);
+            return results;
+        }
+
+        @Override
+        protected OperationFuture<PutOperationResult> _sendSingle(TestKey key, PutContentProvider content) {
+            singles.add(key.toString());
+            OperationFuture<PutOperationResult> f = new OperationFuture<PutOperationResult>();
+            f.complete(new PutOperationResult(new OperationConfig(), null));
+            return f;
+        }
+    }
+}
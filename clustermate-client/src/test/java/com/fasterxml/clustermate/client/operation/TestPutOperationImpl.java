@@ -0,0 +1,258 @@
+package com.fasterxml.clustermate.client.operation;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.IpAndPort;
+import com.fasterxml.storemate.shared.compress.Compression;
+
+import com.fasterxml.clustermate.api.KeySpace;
+import com.fasterxml.clustermate.client.*;
+import com.fasterxml.clustermate.client.call.*;
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+import com.fasterxml.clustermate.client.cluster.ClusterServerNodeImpl;
+import com.fasterxml.clustermate.client.operation.TestAsyncWriteOperation.TestConfig;
+
+/**
+ * Tests for first round of calls of {@link PutOperationImpl}, mostly
+ * with parallel calls.
+ */
+public class TestPutOperationImpl extends ClientTestBase
+{
+    protected final KeySpace DEFAULT_SPACE = new KeySpace(360);
+
+    private ExecutorService _executor;
+
+    @Override
+    public void setUp() {
+        _executor = Executors.newCachedThreadPool();
+    }
+
+    @Override
+    public void tearDown() {
+        _executor.shutdownNow();
+    }
+
+    public void testParallelPartialFailure() throws Exception
+    {
+        CountingContent content = new CountingContent();
+        BlockingPutter[] putters = new BlockingPutter[] {
+                new BlockingPutter(200, false), new BlockingPutter(400, false)
+        };
+        PutOperationImpl<TestKey,TestConfig> put = _put(putters, content);
+        put.completeOptimally();
+        PutOperationResult result = put.finish();
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(1, result.getFailCount());
+        assertEquals(400, result.getFirstFail().getFirstCallFailure().getStatusCode());
+        for (BlockingPutter putter : putters) {
+            assertEquals(1, putter.calls.get());
+        }
+        assertEquals(1, content.releases.get());
+    }
+
+    public void testReleaseAfterInFlightCalls() throws Exception
+    {
+        CountingContent content = new CountingContent();
+        BlockingPutter slow = new BlockingPutter(200, true);
+        PutOperationImpl<TestKey,TestConfig> put = _put(new BlockingPutter[] {
+                new BlockingPutter(200, false), new BlockingPutter(200, false), slow }, content);
+        put.completeOptimally();
+        PutOperationResult result = put.finish();
+        assertEquals(2, result.getSuccessCount());
+        // third call still in-flight, so content can not yet be released
+        assertTrue(slow.started.await(5L, TimeUnit.SECONDS));
+        assertEquals(0, content.releases.get());
+        slow.proceed.countDown();
+        assertTrue(content.released.await(5L, TimeUnit.SECONDS));
+        assertEquals(1, content.releases.get());
+    }
+
+    public void testReleaseWithShutDownExecutor() throws Exception
+    {
+        CountingContent content = new CountingContent();
+        final BlockingPutter slow = new BlockingPutter(200, true);
+        PutOperationImpl<TestKey,TestConfig> put = _put(new BlockingPutter[] {
+                new BlockingPutter(200, false), new BlockingPutter(200, false), slow }, content);
+        put.completeOptimally();
+        assertTrue(slow.started.await(5L, TimeUnit.SECONDS));
+        // no more tasks accepted; release must be done by the calling thread
+        _executor.shutdown();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50L);
+                } catch (InterruptedException e) { }
+                slow.proceed.countDown();
+            }
+        }.start();
+        put.finish();
+        assertEquals(1, slow.calls.get());
+        assertEquals(1, content.releases.get());
+    }
+
+    /**
+     * Test to verify that disabled nodes are skipped during the first round
+     * (unless no retries are allowed), same way with sequential and parallel calls
+     */
+    public void testDisabledNodes() throws Exception
+    {
+        _verifyDisabledNodes(false, true);
+        _verifyDisabledNodes(true, true);
+        _verifyDisabledNodes(false, false);
+        _verifyDisabledNodes(true, false);
+    }
+
+    private void _verifyDisabledNodes(boolean parallel, boolean allowRetries) throws Exception
+    {
+        BlockingPutter disabled = new BlockingPutter(200, false);
+        BlockingPutter[] putters = new BlockingPutter[] {
+                disabled, new BlockingPutter(200, false), new BlockingPutter(200, false)
+        };
+        OperationConfig opConfig = new OperationConfig(new CallConfig(),
+                OperationConfig.DEFAULT_MIN_OKS_PER_OPERATION, OperationConfig.DEFAULT_OPTIMAL_OKS_PER_OPERATION,
+                OperationConfig.DEFAULT_MAX_OKS,
+                OperationConfig.DEFAULT_PUT_OPERATION_TIMEOUT_MSECS,
+                OperationConfig.DEFAULT_GET_OPERATION_TIMEOUT_MSECS,
+                OperationConfig.DEFAULT_DELETE_OPERATION_TIMEOUT_MSECS,
+                allowRetries).withParallelWrites(parallel);
+        ClusterServerNodeImpl[] nodes = _nodes(putters);
+        nodes[0].updateDisabled(true);
+        PutOperationImpl<TestKey,TestConfig> put = new PutOperationImpl<TestKey,TestConfig>(
+                new TestConfig(opConfig), System.currentTimeMillis(), new NodesForKey(1, nodes),
+                new TestKey("key"), null, new CountingContent(), parallel ? _executor : null);
+        put.performSingleRound(OperationConfig.DEFAULT_OPTIMAL_OKS_PER_OPERATION);
+        PutOperationResult result = put.finish();
+        String desc = "parallel: "+parallel+", retries: "+allowRetries;
+        assertEquals(desc, 2, result.getSuccessCount());
+        if (allowRetries) {
+            assertEquals(desc, 0, disabled.calls.get());
+        } else {
+            // with parallel calls, all nodes are called; sequential starts with the first one
+            assertTrue(desc, disabled.started.await(5L, TimeUnit.SECONDS));
+            assertEquals(desc, 1, disabled.calls.get());
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods, classes
+    /**********************************************************************
+     */
+
+    private PutOperationImpl<TestKey,TestConfig> _put(BlockingPutter[] putters,
+            PutContentProvider content)
+    {
+        OperationConfig opConfig = new OperationConfig().withParallelWrites(true);
+        return new PutOperationImpl<TestKey,TestConfig>(new TestConfig(opConfig),
+                System.currentTimeMillis(), new NodesForKey(1, _nodes(putters)), new TestKey("key"),
+                null, content, _executor);
+    }
+
+    private ClusterServerNodeImpl[] _nodes(BlockingPutter[] putters)
+    {
+        ClusterServerNodeImpl[] nodes = new ClusterServerNodeImpl[putters.length];
+        for (int i = 0; i < putters.length; ++i) {
+            nodes[i] = new ClusterServerNodeImpl(null, new IpAndPort("localhost:"+(9000+i)),
+                    DEFAULT_SPACE.fullRange(), DEFAULT_SPACE.fullRange(), new Accessors(putters[i]));
+        }
+        return nodes;
+    }
+
+    /**
+     * Putter that returns specified status; and may block until allowed to
+     * proceed.
+     */
+    static class BlockingPutter implements ContentPutter<TestKey>
+    {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final CountDownLatch proceed;
+
+        final int status;
+
+        ClusterServerNode server;
+
+        public BlockingPutter(int status, boolean block) {
+            this.status = status;
+            proceed = new CountDownLatch(block ? 1 : 0);
+        }
+
+        @Override
+        public CallFailure tryPut(CallConfig config, PutCallParameters params,
+                long endOfTime, TestKey contentId, PutContentProvider content)
+        {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long now = System.currentTimeMillis();
+            return (status == 200) ? null
+                    : CallFailure.general(server, status, now, now, "Failed");
+        }
+    }
+
+    static class CountingContent extends PutContentProviders.StdPutContentProvider
+    {
+        final AtomicInteger releases = new AtomicInteger();
+
+        final CountDownLatch released = new CountDownLatch(1);
+
+        final ByteContainer _bytes = ByteContainer.simple(new byte[10]);
+
+        @Override
+        public void release() {
+            releases.incrementAndGet();
+            released.countDown();
+        }
+
+        @Override
+        public PutContentProviders.StdPutContentProvider withCompression(Compression comp,
+                long uncompLen) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public long length() { return (long) _bytes.byteLength(); }
+        @Override public ByteContainer contentAsBytes() { return _bytes; }
+        @Override public File contentAsFile() { return null; }
+        @Override public InputStream contentAsStream() { return null; }
+        @Override public Object rawSource() { return _bytes; }
+    }
+
+    static class Accessors implements EntryAccessors<TestKey>
+    {
+        private final BlockingPutter _putter;
+
+        public Accessors(BlockingPutter p) { _putter = p; }
+
+        @Override
+        public ContentPutter<TestKey> entryPutter(ClusterServerNode server) {
+            _putter.server = server;
+            return _putter;
+        }
+
+        @Override
+        public ContentGetter<TestKey> entryGetter(ClusterServerNode server) { return null; }
+        @Override
+        public ContentHeader<TestKey> entryHeader(ClusterServerNode server) { return null; }
+        @Override
+        public ContentDeleter<TestKey> entryDeleter(ClusterServerNode server) { return null; }
+        @Override
+        public EntryLister<TestKey> entryLister(ClusterServerNode server) { return null; }
+        @Override
+        public EntryInspector<TestKey> entryInspector(ClusterServerNode server) { return null; }
+        @Override
+        public MultiContentGetter<TestKey> multiEntryGetter(ClusterServerNode server) { return null; }
+        @Override
+        public MultiContentPutter<TestKey> multiEntryPutter(ClusterServerNode server) { return null; }
+    }
+}
@@ -0,0 +1,130 @@
+package com.fasterxml.clustermate.client.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.fasterxml.storemate.shared.hash.HashConstants;
+
+import com.fasterxml.clustermate.client.cluster.ClientTestBase;
+import com.fasterxml.clustermate.std.ChecksumUtil;
+
+public class TestStreamSpool extends ClientTestBase
+{
+    public void testInterleavedReaders() throws Exception
+    {
+        final byte[] DATA = _data(150000);
+        StreamSpool spool = new StreamSpool(new ByteArrayInputStream(DATA), ChecksumUtil.startChecksum());
+        assertEquals(HashConstants.NO_CHECKSUM, spool.getContentHash());
+
+        // two readers, interleaved; second starts after first has read some
+        InputStream in1 = spool.newReader();
+        ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7000];
+        int count = in1.read(buffer);
+        out1.write(buffer, 0, count);
+        InputStream in2 = spool.newReader();
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        while (true) {
+            int c1 = in1.read(buffer);
+            if (c1 > 0) {
+                out1.write(buffer, 0, c1);
+            }
+            int c2 = in2.read(buffer, 0, 333);
+            if (c2 > 0) {
+                out2.write(buffer, 0, c2);
+            }
+            if (c1 < 0 && c2 < 0) {
+                break;
+            }
+        }
+        assertTrue(Arrays.equals(DATA, out1.toByteArray()));
+        assertTrue(Arrays.equals(DATA, out2.toByteArray()));
+        assertEquals(DATA.length, spool.length());
+        assertEquals(ChecksumUtil.calcChecksum(DATA), spool.getContentHash());
+        spool.release();
+    }
+
+    public void testOverflowToFile() throws Exception
+    {
+        final byte[] DATA = _data(25000);
+        File dir = new File("target/spool-test");
+        dir.mkdirs();
+        // 2 chunks (2000 bytes) in memory; rest in file
+        StreamSpool spool = new StreamSpool(new ByteArrayInputStream(DATA),
+                ChecksumUtil.startChecksum(), 1000, 2500L, dir);
+        spool.readAll();
+        assertEquals(2, spool._chunks.size());
+        assertNotNull(spool._overflowFile);
+        File f = spool._overflowFile;
+        assertEquals(DATA.length - 2000, f.length());
+        assertEquals(ChecksumUtil.calcChecksum(DATA), spool.getContentHash());
+        assertTrue(Arrays.equals(DATA, _readAll(spool.newReader())));
+        assertTrue(Arrays.equals(DATA, _readAll(spool.newReader())));
+        spool.release();
+        assertFalse(f.exists());
+    }
+
+    public void testNoChunkAtEnd() throws Exception
+    {
+        // exactly one full chunk: must not allocate another one at end-of-content
+        StreamSpool spool = new StreamSpool(new ByteArrayInputStream(_data(1000)),
+                null, 1000, 10000L, null);
+        spool.readAll();
+        assertEquals(1, spool._chunks.size());
+        spool.release();
+
+        spool = new StreamSpool(new ByteArrayInputStream(new byte[0]), null);
+        spool.readAll();
+        assertEquals(0, spool.length());
+        assertEquals(0, spool._chunks.size());
+        spool.release();
+    }
+
+    public void testChunksRecycled() throws Exception
+    {
+        StreamSpool spool = new StreamSpool(new ByteArrayInputStream(_data(100)), null);
+        spool.readAll();
+        ByteBuffer chunk = spool._chunks.get(0);
+        spool.release();
+        assertEquals(1, _pooled(chunk));
+        // and no double-release
+        spool.release();
+        assertEquals(1, _pooled(chunk));
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods
+    /**********************************************************************
+     */
+
+    private int _pooled(ByteBuffer chunk) {
+        int count = 0;
+        for (ByteBuffer bb : StreamSpool._chunkPool) {
+            if (bb == chunk) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private byte[] _data(int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; ++i) {
+            b[i] = (byte) (i ^ (i >> 8));
+        }
+        return b;
+    }
+
+    private byte[] _readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4000];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
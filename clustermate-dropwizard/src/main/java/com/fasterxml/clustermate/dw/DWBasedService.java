@@ -9,6 +9,8 @@ import java.io.*;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.ServletRegistration;
+
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.component.LifeCycle.Listener;
 import org.slf4j.Logger;
@@ -327,6 +329,7 @@ public abstract class DWBasedService<
         LOG.info("Creating handlers for service endpoints");
         _clusterInfoHandler = constructClusterInfoHandler();
         _syncHandler = constructSyncHandler();
+        _managed.add(_syncHandler);
         _storeHandler = constructStoreHandler();
         _managed.add(_storeHandler);
 
@@ -441,9 +444,11 @@ public abstract class DWBasedService<
         LOG.info("Registering main Dispatcher servlet at: "+rootPath);
         ServletBase dispatcher = servletFactory.contructDispatcherServlet();
         if (dispatcher != null) {
-            environment.servlets()
-                .addServlet("CM-Dispatcher", dispatcher)
-                .addMapping(rootPath);
+            ServletRegistration.Dynamic reg = environment.servlets()
+                .addServlet("CM-Dispatcher", dispatcher);
+            reg.addMapping(rootPath);
+            // needed for non-blocking entry I/O, if enabled
+            reg.setAsyncSupported(true);
         }
         // // And optional additional servlet for for entry access
         addStoreEntryServlet(environment);
@@ -9,6 +9,7 @@ import com.codahale.metrics.annotation.Timed;
 
 import com.fasterxml.storemate.store.StoreException;
 
+import com.fasterxml.clustermate.api.ClusterMateConstants;
 import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.api.EntryKeyConverter;
 import com.fasterxml.clustermate.api.OperationType;
@@ -109,7 +110,34 @@ public abstract class StoreResource<K extends EntryKey, E extends StoredEntry<K>
             InputStream dataIn)
         throws IOException, StoreException
     {
-        return handlePut(new JaxrsHttpRequest(uriInfo, headers, externalPath, OperationType.POST), dataIn);
+        JaxrsHttpRequest request = new JaxrsHttpRequest(uriInfo, headers, externalPath, OperationType.POST);
+        // except that multi-entry operations are also sent as POSTs
+        String multi = request.getQueryParameter(ClusterMateConstants.QUERY_PARAM_MULTI);
+        if (ClusterMateConstants.MULTI_OP_GET.equals(multi)) {
+            return handleMultiGet(request, dataIn);
+        }
+        if (ClusterMateConstants.MULTI_OP_PUT.equals(multi)) {
+            return handleMultiPut(request, dataIn);
+        }
+        return handlePut(request, dataIn);
+    }
+
+    protected final Response handleMultiPut(JaxrsHttpRequest request, InputStream dataIn)
+        throws IOException, StoreException
+    {
+        JaxrsHttpResponse response = new JaxrsHttpResponse();
+        _storeHandler.putEntries(request, response, dataIn, null);
+        _addStdHeaders(response);
+        return response.buildResponse();
+    }
+
+    protected final Response handleMultiGet(JaxrsHttpRequest request, InputStream dataIn)
+        throws IOException, StoreException
+    {
+        JaxrsHttpResponse response = new JaxrsHttpResponse();
+        _storeHandler.getEntries(request, response, dataIn, null);
+        _addStdHeaders(response);
+        return response.buildResponse();
     }
     
     protected final Response handlePut(JaxrsHttpRequest request, InputStream dataIn)
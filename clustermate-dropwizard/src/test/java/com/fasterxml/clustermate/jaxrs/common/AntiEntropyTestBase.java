@@ -0,0 +1,223 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.store.StorableCreationMetadata;
+import com.fasterxml.storemate.store.StorableCreationResult;
+import com.fasterxml.storemate.store.StorableStore;
+import com.fasterxml.storemate.store.StoreOperationSource;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.ContentType;
+import com.fasterxml.clustermate.api.KeyRange;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.clustermate.service.sync.*;
+
+/**
+ * Test(s) to verify that hash trees used for anti-entropy are kept up to
+ * date as entries are added, and that the hash tree end points work.
+ */
+public abstract class AntiEntropyTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("ANTI");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    /**
+     * Whether to index keys by leaf or not (not indexing means that
+     * listing needs to scan through all entries)
+     */
+    protected boolean _indexKeys = true;
+
+    @Override
+    protected ServiceConfigForTests createSimpleTestConfig(String testSuffix, boolean cleanUp)
+        throws IOException
+    {
+        ServiceConfigForTests config = super.createSimpleTestConfig(testSuffix, cleanUp);
+        config.antiEntropy.enabled = true;
+        if (!_indexKeys) {
+            config.antiEntropy.maxIndexedKeys = 0;
+        }
+        // needs to match keyspace of cluster view used for tests
+        config.cluster.clusterKeyspaceSize = 360;
+        return config;
+    }
+
+    public void testHashTreesWithoutKeyIndex() throws Exception
+    {
+        _indexKeys = false;
+        testHashTrees();
+    }
+
+    public void testHashTrees() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+        final StorableStore entries = resource.getStores().getEntryStore();
+        final KeyRange range = resource.getKeyRange();
+
+        try {
+            final EntryHashTrees trees = resource.getStuff().getEntryHashTrees();
+            assertNotNull(trees);
+            assertFalse(trees.isBuilt());
+            assertNull(trees.slotHashes(range));
+
+            // initially empty, all hashes zero
+            trees.rebuild(entries);
+            assertTrue(trees.isBuilt());
+            final long[] emptyHashes = trees.slotHashes(range);
+            assertEquals(range.getLength(), emptyHashes.length);
+
+            // then add entries; hashes must be updated incrementally
+            final TestKey KEY1 = contentKey(CLIENT_ID, "data/anti/1");
+            for (int i = 0; i < 5; ++i) {
+                _put(resource, contentKey(CLIENT_ID, "data/anti/"+i));
+            }
+            final long[] hashes = trees.slotHashes(range);
+            int changed = 0;
+            for (int i = 0; i < hashes.length; ++i) {
+                if (hashes[i] != emptyHashes[i]) {
+                    ++changed;
+                }
+            }
+            assertTrue(changed > 0);
+            
+            // and must match hashes from full rebuild
+            trees.rebuild(entries);
+            Assert.assertArrayEquals(hashes, trees.slotHashes(range));
+
+            // then verify end points: first, slot hashes
+            SyncHandler<TestKey, StoredEntry<TestKey>> syncH = new SyncHandler<TestKey, StoredEntry<TestKey>>(resource.getStuff(),
+                    resource.getStores(), resource.getCluster());
+            FakeHttpRequest req = new FakeHttpRequest();
+            req.addQueryParam(ClusterMateConstants.QUERY_PARAM_KEYRANGE_START, ""+range.getStart());
+            req.addQueryParam(ClusterMateConstants.QUERY_PARAM_KEYRANGE_LENGTH, ""+range.getLength());
+            req.addHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT, ContentType.SMILE.toString());
+            FakeHttpResponse response = new FakeHttpResponse();
+            syncH.localHashTree(req, response, null);
+            assertEquals(200, response.getStatus());
+            SyncTreeResponse treeResp = resource.getStuff().smileReader(SyncTreeResponse.class)
+                    .readValue(response.getStreamingContentAsBytes());
+            assertNull(treeResp.message);
+            assertEquals(trees.getLeafBits(), treeResp.leafBits);
+            Assert.assertArrayEquals(hashes, treeResp.hashes);
+
+            // then listing of entries of a single leaf; including one added after rebuild
+            final TestKey KEY2 = contentKey(CLIENT_ID, "data/anti/added");
+            _put(resource, KEY2);
+            final int leaf = trees.leafIndexFor(KEY1.asStorableKey());
+            final int leaf2 = trees.leafIndexFor(KEY2.asStorableKey());
+            SyncTreeListResponse<?> listResp = _listLeaves(resource, syncH, 200, leaf, leaf2);
+            assertNull(listResp.lastSeen);
+            assertTrue(listResp.size() >= 2);
+            int found = 0;
+            for (SyncListResponseEntry entry : listResp.entries) {
+                int entryLeaf = trees.leafIndexFor(entry.key);
+                assertTrue(entryLeaf == leaf || entryLeaf == leaf2);
+                if (entry.key.equals(KEY1.asStorableKey())
+                        || entry.key.equals(KEY2.asStorableKey())) {
+                    ++found;
+                }
+            }
+            assertEquals(2, found);
+
+            // and invalid leaf indexes must be rejected
+            _listLeaves(resource, syncH, 400, trees.getLeafCount());
+            _listLeaves(resource, syncH, 400, -1);
+        } finally {
+            entries.stop();
+        }
+    }
+
+    /**
+     * Test to verify that entries updated while hash trees are being rebuilt
+     * are included exactly once, regardless of whether rebuild sees
+     * the old or new version.
+     */
+    public void testUpdateDuringRebuild() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix()+"-rebuild",
+                timeMaster, true);
+        final StorableStore entries = resource.getStores().getEntryStore();
+        final KeyRange range = resource.getKeyRange();
+        try {
+            final EntryHashTrees trees = resource.getStuff().getEntryHashTrees();
+            trees.rebuild(entries);
+            final StorableKey KEY1 = contentKey(CLIENT_ID, "data/anti/rebuild1").asStorableKey();
+            final StorableKey KEY2 = contentKey(CLIENT_ID, "data/anti/rebuild2").asStorableKey();
+
+            // first: rebuild done after entry was stored, but before hashes updated
+            trees.entryUpdating(KEY1);
+            StorableCreationResult result = _insert(entries, KEY1, "first");
+            trees.rebuild(entries);
+            trees.entryCreated(KEY1, result);
+            long[] hashes = trees.slotHashes(range);
+            trees.rebuild(entries);
+            Assert.assertArrayEquals(trees.slotHashes(range), hashes);
+
+            // then: update started after rebuild, completed before next one
+            trees.entryUpdating(KEY2);
+            result = _insert(entries, KEY2, "second");
+            trees.entryCreated(KEY2, result);
+            hashes = trees.slotHashes(range);
+            trees.rebuild(entries);
+            Assert.assertArrayEquals(trees.slotHashes(range), hashes);
+
+            // and failed update must not change anything
+            trees.entryUpdating(KEY2);
+            trees.entryCreated(KEY2, null);
+            Assert.assertArrayEquals(hashes, trees.slotHashes(range));
+        } finally {
+            entries.stop();
+        }
+    }
+
+    private StorableCreationResult _insert(StorableStore entries, StorableKey key, String content)
+        throws IOException
+    {
+        byte[] data = content.getBytes("UTF-8");
+        return entries.insert(StoreOperationSource.REQUEST, null, key, ByteContainer.simple(data),
+                new StorableCreationMetadata(Compression.NONE, calcChecksum(data), 0),
+                ByteContainer.emptyContainer());
+    }
+
+    private SyncTreeListResponse<?> _listLeaves(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            SyncHandler<TestKey, StoredEntry<TestKey>> syncH, int expStatus, int... leaves)
+        throws IOException
+    {
+        byte[] reqBytes = resource.getStuff().jsonWriter()
+                .writeValueAsBytes(new SyncTreeListRequest(leaves, null));
+        FakeHttpResponse response = new FakeHttpResponse();
+        syncH.localListTreeEntries(new FakeHttpRequest(), response,
+                new ByteArrayInputStream(reqBytes), null);
+        assertEquals(expStatus, response.getStatus());
+        if (expStatus != 200) {
+            return null;
+        }
+        return resource.getStuff().jsonReader(SyncTreeListResponse.class)
+                .readValue(response.getStreamingContentAsBytes());
+    }
+
+    private void _put(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource, TestKey key)
+        throws IOException
+    {
+        final byte[] data = ("Data for "+key).getBytes("UTF-8");
+        FakeHttpResponse response = new FakeHttpResponse();
+        resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                key, calcChecksum(data), new ByteArrayInputStream(data), null, null, null);
+        assertEquals(200, response.getStatus());
+    }
+}
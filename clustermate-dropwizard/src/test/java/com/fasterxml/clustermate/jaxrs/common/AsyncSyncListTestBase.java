@@ -0,0 +1,152 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.skife.config.TimeSpan;
+
+import com.fasterxml.storemate.store.util.OperationDiagnostics;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.ContentType;
+import com.fasterxml.clustermate.api.KeyRange;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.ServiceResponse;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.clustermate.service.sync.SyncHandler;
+import com.fasterxml.clustermate.service.sync.SyncListAsyncContext;
+import com.fasterxml.clustermate.service.sync.SyncListResponse;
+import com.fasterxml.clustermate.service.sync.SyncListWaiters;
+
+/**
+ * Test case(s) to verify that asynchronous long-polling of sync list
+ * requests completes requests both when maximum wait time passes, and
+ * when entries are inserted while waiting.
+ */
+public abstract class AsyncSyncListTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf(2345);
+
+    final static long GRACE_PERIOD = 200L;
+
+    final static long MAX_LONG_POLL = 2000L;
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    @Override
+    protected ServiceConfigForTests createSimpleTestConfig(String testSuffix, boolean cleanUp)
+        throws IOException
+    {
+        ServiceConfigForTests config = super.createSimpleTestConfig(testSuffix, cleanUp);
+        config.cfgSyncAsyncLongPoll = true;
+        config.cfgSyncGracePeriod = new TimeSpan(GRACE_PERIOD+"ms");
+        config.cfgSyncMaxLongPollTime = new TimeSpan(MAX_LONG_POLL+"ms");
+        return config;
+    }
+
+    public void testAsyncLongPoll() throws Exception
+    {
+        final long creationTime = 1234L;
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(creationTime);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+
+        try {
+            SyncHandler<TestKey, StoredEntry<TestKey>> syncH = new SyncHandler<TestKey, StoredEntry<TestKey>>(resource.getStuff(),
+                    resource.getStores(), resource.getCluster());
+            assertTrue(syncH.canListAsync());
+            SyncListWaiters waiters = resource.getStuff().getSyncListWaiters();
+
+            // First: with no entries, must wait for the full long-poll time
+            TestAsyncContext ctxt = new TestAsyncContext();
+            long start = System.currentTimeMillis();
+            assertNull(_startSyncList(resource, syncH, creationTime, ctxt));
+            assertTrue(ctxt.suspended);
+            assertEquals(1, waiters.getWaiterCount());
+            SyncListResponse<?> syncList = _awaitSyncList(resource, ctxt);
+            assertTrue(System.currentTimeMillis() - start >= MAX_LONG_POLL - 100L);
+            assertEquals(0, syncList.entries.size());
+            assertEquals(0, waiters.getWaiterCount());
+
+            // and then: insertion of an entry should wake up waiter once grace period passes
+            ctxt = new TestAsyncContext();
+            start = System.currentTimeMillis();
+            assertNull(_startSyncList(resource, syncH, creationTime, ctxt));
+            assertTrue(ctxt.suspended);
+
+            final TestKey KEY1 = contentKey(CLIENT_ID, "data/entry/1");
+            final byte[] SMALL_DATA = "Some data that we want to store -- small, gets inlined...".getBytes("UTF-8");
+            FakeHttpResponse response = new FakeHttpResponse();
+            resource.getHandler().putEntry(new FakeHttpRequest(), response, KEY1,
+                    calcChecksum(SMALL_DATA), new ByteArrayInputStream(SMALL_DATA),
+                    null, null, null);
+            assertEquals(200, response.getStatus());
+            timeMaster.advanceCurrentTimeMillis(2 * GRACE_PERIOD);
+
+            syncList = _awaitSyncList(resource, ctxt);
+            assertTrue(System.currentTimeMillis() - start < MAX_LONG_POLL - 100L);
+            assertEquals(1, syncList.entries.size());
+        } finally {
+            resource.getStores().stop();
+            resource.getStuff().getSyncListWaiters().stop();
+        }
+    }
+
+    private FakeHttpResponse _startSyncList(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            SyncHandler<TestKey, StoredEntry<TestKey>> syncH, long since, TestAsyncContext ctxt)
+        throws Exception
+    {
+        final KeyRange localRange = resource.getKeyRange();
+        FakeHttpRequest syncReq = new FakeHttpRequest();
+        syncReq.addQueryParam(ClusterMateConstants.QUERY_PARAM_KEYRANGE_START, ""+localRange.getStart());
+        syncReq.addQueryParam(ClusterMateConstants.QUERY_PARAM_KEYRANGE_LENGTH, ""+localRange.getLength());
+        syncReq.addHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT, ContentType.SMILE.toString());
+        return syncH.localListEntriesAsync(syncReq, new FakeHttpResponse(), since,
+                new OperationDiagnostics(0L), ctxt);
+    }
+
+    private SyncListResponse<?> _awaitSyncList(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            TestAsyncContext ctxt) throws Exception
+    {
+        assertTrue(ctxt.completed.await(MAX_LONG_POLL * 3, TimeUnit.MILLISECONDS));
+        FakeHttpResponse response = (FakeHttpResponse) ctxt.response;
+        assertEquals(200, response.getStatus());
+        assertEquals(ContentType.SMILE.toString(), response.getContentType());
+        SyncListResponse<?> syncList = resource.getStuff().smileReader(SyncListResponse.class)
+                .readValue(response.getStreamingContentAsBytes());
+        assertNull(syncList.message);
+        assertNotNull(syncList.entries);
+        return syncList;
+    }
+
+    static class TestAsyncContext implements SyncListAsyncContext
+    {
+        public volatile boolean suspended;
+
+        public volatile ServiceResponse response;
+
+        public final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void suspend() {
+            suspended = true;
+        }
+
+        @Override
+        public void resume(Runnable task) {
+            new Thread(task).start();
+        }
+
+        @Override
+        public void complete(ServiceResponse resp) {
+            response = resp;
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.jaxrs.StoreResource;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.LZFBlockIndexCache;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.store.StorableStore;
+import com.fasterxml.storemate.store.StoreOperationSource;
+
+/**
+ * Test that verifies that range requests for large LZF-compressed
+ * entries, served using block indexes, return expected content.
+ */
+public abstract class BlockIndexTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("BLCK");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    @Override
+    protected ServiceConfigForTests createSimpleTestConfig(String testSuffix, boolean cleanUp)
+        throws IOException
+    {
+        ServiceConfigForTests config = super.createSimpleTestConfig(testSuffix, cleanUp);
+        config.blockIndex.minFileLength = 100000L;
+        return config;
+    }
+
+    public void testRangesOfLargeEntry() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResource<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(),
+                timeMaster, true);
+        final StorableStore entries = resource.getStores().getEntryStore();
+        final LZFBlockIndexCache indexes = resource.getHandler().getBlockIndexes();
+        assertNotNull(indexes);
+
+        final byte[] DATA = biggerCompressibleData(3 * 1024 * 1024).getBytes("UTF-8");
+        final int LEN = DATA.length;
+        final TestKey KEY = contentKey(CLIENT_ID, "data/big/ranges");
+
+        try {
+            FakeHttpResponse response = new FakeHttpResponse();
+            resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                    KEY, calcChecksum(DATA), new ByteArrayInputStream(DATA),
+                    null, null, null);
+            assertEquals(200, response.getStatus());
+
+            StoredEntry<TestKey> entry = rawToEntry(entries.findEntry(StoreOperationSource.REQUEST,
+                    null, KEY.asStorableKey()));
+            assertEquals(Compression.LZF, entry.getCompression());
+            assertTrue(entry.hasExternalData());
+            assertTrue(entry.getStorageLength() > 100000L);
+
+            // full content is served without index
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest(), response, KEY);
+            assertEquals(200, response.getStatus());
+            Assert.assertArrayEquals(DATA, collectOutput(response));
+            assertEquals(0L, indexes.getBuildCount());
+
+            // as are ranges from the beginning
+            _verifyRange(resource, KEY, DATA, 0, 99);
+            assertEquals(0L, indexes.getBuildCount());
+
+            // but others need index: first built, then reused
+            _verifyRange(resource, KEY, DATA, LEN-1000, LEN-1);
+            assertEquals(1L, indexes.getBuildCount());
+            assertEquals(0L, indexes.getHitCount());
+
+            // ranges at, and across, block boundaries (64k - 1 uncompressed per block)
+            _verifyRange(resource, KEY, DATA, 65535, 65535 + 99);
+            _verifyRange(resource, KEY, DATA, 65530, 65545);
+            _verifyRange(resource, KEY, DATA, 3 * 65535 - 1, 3 * 65535);
+            // wide range over many blocks
+            _verifyRange(resource, KEY, DATA, 100000, LEN-100000);
+            // and just the last byte
+            _verifyRange(resource, KEY, DATA, LEN-1, LEN-1);
+            assertEquals(1L, indexes.getBuildCount());
+            assertEquals(5L, indexes.getHitCount());
+        } finally {
+            entries.stop();
+        }
+    }
+
+    private void _verifyRange(StoreResource<TestKey, StoredEntry<TestKey>> resource,
+            TestKey key, byte[] data, int first, int last) throws IOException
+    {
+        FakeHttpResponse response = new FakeHttpResponse();
+        resource.getHandler().getEntry(new FakeHttpRequest()
+            .addHeader(ClusterMateConstants.HTTP_HEADER_RANGE_FOR_REQUEST, "bytes="+first+"-"+last),
+            response, key);
+        assertEquals(206, response.getStatus());
+        byte[] actual = collectOutput(response);
+        assertEquals(last - first + 1, actual.length);
+        Assert.assertArrayEquals(Arrays.copyOfRange(data, first, last+1), actual);
+    }
+}
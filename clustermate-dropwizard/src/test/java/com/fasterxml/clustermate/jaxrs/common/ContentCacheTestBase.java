@@ -0,0 +1,110 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.EntryContentCache;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.storemate.shared.compress.Compressors;
+import com.fasterxml.storemate.store.StorableStore;
+
+/**
+ * Test that verifies that GETs served from the hot-content cache
+ * return same content as ones served from the store, and that
+ * deletions are reflected.
+ */
+public abstract class ContentCacheTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("CACH");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    @Override
+    protected ServiceConfigForTests createSimpleTestConfig(String testSuffix, boolean cleanUp)
+        throws IOException
+    {
+        ServiceConfigForTests config = super.createSimpleTestConfig(testSuffix, cleanUp);
+        config.contentCache.maxMemory = 1024L * 1024L;
+        return config;
+    }
+
+    public void testCachedGets() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+        EntryContentCache cache = resource.getStuff().getContentCache();
+        assertNotNull(cache);
+
+        final String INPUT_STR = biggerCompressibleData(29000);
+        final byte[] INPUT_BYTES = INPUT_STR.getBytes("UTF-8");
+        final TestKey KEY = contentKey(CLIENT_ID, "data/cached/1");
+
+        StorableStore entries = resource.getStores().getEntryStore();
+        try {
+            FakeHttpResponse response = new FakeHttpResponse();
+            resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                    KEY, calcChecksum(INPUT_BYTES), new ByteArrayInputStream(INPUT_BYTES),
+                    null, null, null);
+            verifyResponseOk(response);
+
+            // first GET only counts access, second one admits entry
+            for (int i = 0; i < 2; ++i) {
+                response = new FakeHttpResponse();
+                resource.getHandler().getEntry(new FakeHttpRequest(), response, KEY);
+                assertEquals(200, response.getStatus());
+                Assert.assertArrayEquals(INPUT_BYTES, collectOutput(response));
+            }
+            assertEquals(1, cache.getEntryCount());
+            assertEquals(0L, cache.getHitCount());
+
+            // and then served from cache
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest(), response, KEY);
+            assertEquals(200, response.getStatus());
+            assertFalse(response.hasFile());
+            Assert.assertArrayEquals(INPUT_BYTES, collectOutput(response));
+            assertEquals(1L, cache.getHitCount());
+
+            // including ranges
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest()
+                .addHeader(ClusterMateConstants.HTTP_HEADER_RANGE_FOR_REQUEST, "bytes=100-199"),
+                response, KEY);
+            assertEquals(206, response.getStatus());
+            Assert.assertArrayEquals(Arrays.copyOfRange(INPUT_BYTES, 100, 200), collectOutput(response));
+
+            // and compressed content, if client accepts it
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest()
+                .addHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT_COMPRESSION, "lzf"),
+                response, KEY);
+            assertEquals(200, response.getStatus());
+            byte[] data = collectOutput(response);
+            assertTrue(data.length < INPUT_BYTES.length);
+            Assert.assertArrayEquals(INPUT_BYTES, Compressors.lzfUncompress(data));
+            assertEquals(3L, cache.getHitCount());
+
+            // but once deleted, no longer served
+            response = new FakeHttpResponse();
+            resource.getHandler().removeEntry(new FakeHttpRequest(), response, KEY);
+            verifyResponseOk(response);
+            assertEquals(0, cache.getEntryCount());
+
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest(), response, KEY);
+            assertEquals(404, response.getStatus());
+        } finally {
+            entries.stop();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.storemate.store.StorableStore;
+
+/**
+ * Test that measures amount of memory allocated by GETs of small,
+ * cached entries, to catch regressions in allocation rate of the
+ * hot path of {@link com.fasterxml.clustermate.service.store.StoreHandler#getEntry}.
+ */
+public abstract class GetAllocationTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("ALOC");
+
+    /**
+     * Name of system property used to specify upper limit for bytes allocated
+     * per GET (by handler itself, not counting request and response objects).
+     * Since allocation rates vary between JVMs and versions, limit is only
+     * enforced when explicitly enabled, using "allocation-check" profile.
+     */
+    final static String PROP_MAX_BYTES_PER_GET = "clustermate.test.maxBytesPerGet";
+
+    final static int WARMUP_ROUNDS = 5000;
+
+    final static int MEASURED_ROUNDS = 2000;
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    @Override
+    protected ServiceConfigForTests createSimpleTestConfig(String testSuffix, boolean cleanUp)
+        throws IOException
+    {
+        ServiceConfigForTests config = super.createSimpleTestConfig(testSuffix, cleanUp);
+        config.metadataCache.maxMemory = 1024L * 1024L;
+        return config;
+    }
+
+    public void testAllocationsPerGet() throws Exception
+    {
+        final java.lang.management.ThreadMXBean mx0 = ManagementFactory.getThreadMXBean();
+        if (!(mx0 instanceof com.sun.management.ThreadMXBean)) { // can't measure on this JVM
+            return;
+        }
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) mx0;
+        if (!mx.isThreadAllocatedMemorySupported() || !mx.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        final long maxBytesPerGet = Long.getLong(PROP_MAX_BYTES_PER_GET, -1L);
+        final long threadId = Thread.currentThread().getId();
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+
+        final byte[] DATA = "Small content for allocation test".getBytes("UTF-8");
+        final TestKey KEY = contentKey(CLIENT_ID, "data/alloc/1");
+        StorableStore entries = resource.getStores().getEntryStore();
+        try {
+            FakeHttpResponse response = new FakeHttpResponse();
+            final int hash = calcChecksum(DATA);
+            resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                    KEY, hash, new ByteArrayInputStream(DATA), null, null, null);
+            assertEquals(200, response.getStatus());
+
+            final String etag = "\""+hash+"\"";
+            long total = 0L;
+            for (int i = 0, end = WARMUP_ROUNDS + MEASURED_ROUNDS; i < end; ++i) {
+                // alternate between plain and conditional GETs
+                FakeHttpRequest request = new FakeHttpRequest();
+                if ((i & 1) != 0) {
+                    request.addHeader(ClusterMateConstants.HTTP_HEADER_ETAG_NO_MATCH, etag);
+                }
+                response = new FakeHttpResponse();
+                final long start = mx.getThreadAllocatedBytes(threadId);
+                resource.getHandler().getEntry(request, response, KEY);
+                final long bytes = mx.getThreadAllocatedBytes(threadId) - start;
+                if (i >= WARMUP_ROUNDS) {
+                    total += bytes;
+                }
+                assertEquals(((i & 1) == 0) ? 200 : 304, response.getStatus());
+            }
+            final long perGet = total / MEASURED_ROUNDS;
+            if (maxBytesPerGet >= 0L && perGet > maxBytesPerGet) {
+                fail("Too many bytes allocated per GET: "+perGet+" (max "+maxBytesPerGet+")");
+            }
+        } finally {
+            entries.stop();
+        }
+    }
+}
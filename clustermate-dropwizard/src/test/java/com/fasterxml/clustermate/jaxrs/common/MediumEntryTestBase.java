@@ -1,9 +1,11 @@
 package com.fasterxml.clustermate.jaxrs.common;
 
 import java.io.ByteArrayInputStream;
+import java.util.Arrays;
 
 import org.junit.Assert;
 
+import com.fasterxml.clustermate.api.ClusterMateConstants;
 import com.fasterxml.clustermate.jaxrs.StoreResource;
 import com.fasterxml.clustermate.jaxrs.testutil.*;
 import com.fasterxml.clustermate.service.msg.PutResponse;
@@ -153,4 +155,64 @@ public abstract class MediumEntryTestBase extends JaxrsStoreTestBase
         entries.stop();
     }
 
+    // Checksum may also be passed after content, when it is not known up-front
+    public void testChecksumTrailer() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResource<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix()+"-trailer", timeMaster, true);
+        StorableStore entries = resource.getStores().getEntryStore();
+
+        // verify both inlined and file-backed entries
+        final byte[] SMALL_DATA = "Small and inlined".getBytes("UTF-8");
+        final byte[] BIG_DATA = biggerRandomData(new ServiceConfigForTests().storeConfig.maxUncompressedSizeForGZIP + 7777)
+                .getBytes("UTF-8");
+        int index = 0;
+        for (byte[] data : new byte[][] { SMALL_DATA, BIG_DATA }) {
+            // first, with mismatching checksum: must not be stored
+            final TestKey BAD_KEY = contentKey(CLIENT_ID, "data/trailer/"+(++index));
+            FakeHttpResponse response = new FakeHttpResponse();
+            resource.getHandler().putEntry(_trailerRequest(), response, BAD_KEY,
+                    _withTrailer(data, calcChecksum(data) + 1));
+            assertEquals(400, response.getStatus());
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest(), response, BAD_KEY);
+            assertEquals(404, response.getStatus());
+
+            // and then with correct one
+            final TestKey KEY = contentKey(CLIENT_ID, "data/trailer/"+(++index));
+            response = new FakeHttpResponse();
+            resource.getHandler().putEntry(_trailerRequest(), response, KEY,
+                    _withTrailer(data, calcChecksum(data)));
+            assertEquals(200, response.getStatus());
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest(), response, KEY);
+            assertEquals(200, response.getStatus());
+            Assert.assertArrayEquals(data, collectOutput(response));
+        }
+        assertEquals(2, entryCount(entries));
+
+        // but not allowed with compressed content
+        FakeHttpResponse response = new FakeHttpResponse();
+        resource.getHandler().putEntry(_trailerRequest()
+                .addHeader(ClusterMateConstants.HTTP_HEADER_COMPRESSION, Compression.LZF.asContentEncoding())
+                .addHeader(ClusterMateConstants.CUSTOM_HTTP_HEADER_UNCOMPRESSED_LENGTH, "100"),
+                response, contentKey(CLIENT_ID, "data/trailer/lzf"), _withTrailer(SMALL_DATA, 1));
+        assertEquals(400, response.getStatus());
+        assertEquals(2, entryCount(entries));
+
+        entries.stop();
+    }
+
+    private FakeHttpRequest _trailerRequest() {
+        return new FakeHttpRequest().addQueryParam(ClusterMateConstants.QUERY_PARAM_CHECKSUM_TRAILER, "true");
+    }
+
+    private ByteArrayInputStream _withTrailer(byte[] data, int checksum) {
+        byte[] result = Arrays.copyOf(data, data.length + 4);
+        result[data.length] = (byte) (checksum >> 24);
+        result[data.length+1] = (byte) (checksum >> 16);
+        result[data.length+2] = (byte) (checksum >> 8);
+        result[data.length+3] = (byte) checksum;
+        return new ByteArrayInputStream(result);
+    }
 }
@@ -0,0 +1,91 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.EntryMetadataCache;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.storemate.store.StorableStore;
+
+/**
+ * Test that verifies that lookups served from the metadata cache
+ * (including cached information on missing entries) reflect
+ * insertions and deletions.
+ */
+public abstract class MetadataCacheTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("META");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    @Override
+    protected ServiceConfigForTests createSimpleTestConfig(String testSuffix, boolean cleanUp)
+        throws IOException
+    {
+        ServiceConfigForTests config = super.createSimpleTestConfig(testSuffix, cleanUp);
+        config.metadataCache.maxMemory = 1024L * 1024L;
+        return config;
+    }
+
+    public void testCachedLookups() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+        EntryMetadataCache cache = resource.getStuff().getMetadataCache();
+        assertNotNull(cache);
+
+        final byte[] DATA = "Some fairly small content".getBytes("UTF-8");
+        final TestKey KEY = contentKey(CLIENT_ID, "data/meta/1");
+
+        StorableStore entries = resource.getStores().getEntryStore();
+        try {
+            // first, missing entries get cached
+            for (int i = 0; i < 2; ++i) {
+                FakeHttpResponse response = new FakeHttpResponse();
+                resource.getHandler().getEntry(new FakeHttpRequest(), response, KEY);
+                assertEquals(404, response.getStatus());
+            }
+            assertEquals(1L, cache.getMissingHitCount());
+
+            // but not once entry gets added
+            FakeHttpResponse response = new FakeHttpResponse();
+            resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                    KEY, calcChecksum(DATA), new ByteArrayInputStream(DATA),
+                    null, null, null);
+            verifyResponseOk(response);
+
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest(), response, KEY);
+            assertEquals(200, response.getStatus());
+            Assert.assertArrayEquals(DATA, collectOutput(response));
+
+            // after which HEAD and GET can be served from cache
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntryStats(new FakeHttpRequest(), response, KEY);
+            assertEquals(200, response.getStatus());
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntry(new FakeHttpRequest(), response, KEY);
+            assertEquals(200, response.getStatus());
+            Assert.assertArrayEquals(DATA, collectOutput(response));
+            assertEquals(2L, cache.getHitCount());
+
+            // and deletion must be reflected as well
+            response = new FakeHttpResponse();
+            resource.getHandler().removeEntry(new FakeHttpRequest(), response, KEY);
+            verifyResponseOk(response);
+            response = new FakeHttpResponse();
+            resource.getHandler().getEntryStats(new FakeHttpRequest(), response, KEY);
+            assertEquals(204, response.getStatus());
+        } finally {
+            entries.stop();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.*;
+import java.util.*;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.fasterxml.storemate.shared.ByteContainer;
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.compress.Compressors;
+import com.fasterxml.storemate.store.StorableStore;
+
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+import com.fasterxml.clustermate.api.msg.MultiGetRequest;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+
+/**
+ * Tests for verifying that multi-entry GET requests work as expected.
+ */
+public abstract class MultiGetTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("MULT");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    public void testMultiGet() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1000L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+        StorableStore entries = resource.getStores().getEntryStore();
+
+        try {
+            final TestKey KEY1 = contentKey(CLIENT_ID, "multi/small");
+            final TestKey KEY2 = contentKey(CLIENT_ID, "multi/missing");
+            final TestKey KEY3 = contentKey(CLIENT_ID, "multi/big");
+            // first one small enough to get inlined; last one big enough to be external, compressed
+            final byte[] DATA1 = "Some data that gets inlined...".getBytes("UTF-8");
+            final byte[] DATA3 = biggerCompressibleData(45000).getBytes("UTF-8");
+
+            FakeHttpResponse response = new FakeHttpResponse();
+            resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                    KEY1, calcChecksum(DATA1), new ByteArrayInputStream(DATA1),
+                    null, null, null);
+            verifyResponseOk(response);
+            response = new FakeHttpResponse();
+            resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                    KEY3, calcChecksum(DATA3), new ByteArrayInputStream(DATA3),
+                    null, null, null);
+            verifyResponseOk(response);
+            assertEquals(2, entryCount(entries));
+
+            // First, full GET
+            List<MultiGetItem> items = _getMulti(resource, false,
+                    KEY1.asStorableKey(), KEY2.asStorableKey(), KEY3.asStorableKey());
+            assertEquals(3, items.size());
+
+            MultiGetItem item = items.get(0);
+            assertEquals(KEY1.asStorableKey(), item.key);
+            assertEquals(200, item.status);
+            assertEquals(DATA1.length, item.contentLength);
+            assertEquals(calcChecksum(DATA1), item.contentHash);
+            assertEquals(new String(DATA1, "UTF-8"), new String(item.content, "UTF-8"));
+
+            item = items.get(1);
+            assertEquals(KEY2.asStorableKey(), item.key);
+            assertEquals(404, item.status);
+            assertEquals(0L, item.length);
+            assertNull(item.content);
+
+            item = items.get(2);
+            assertEquals(KEY3.asStorableKey(), item.key);
+            assertEquals(200, item.status);
+            assertEquals(DATA3.length, item.contentLength);
+            assertNotNull(item.compression);
+            assertNotSame(Compression.NONE, item.compression);
+            assertTrue(item.length < DATA3.length);
+            assertEquals(DATA3.length, item.content.length);
+            assertTrue(Arrays.equals(DATA3, item.content));
+
+            // and then metadata-only
+            items = _getMulti(resource, true,
+                    KEY3.asStorableKey(), KEY2.asStorableKey());
+            assertEquals(2, items.size());
+            item = items.get(0);
+            assertEquals(200, item.status);
+            assertEquals(DATA3.length, item.contentLength);
+            assertEquals(0L, item.length);
+            assertNull(item.content);
+            assertEquals(404, items.get(1).status);
+
+            // and finally, verify that empty requests are not accepted
+            response = new FakeHttpResponse();
+            byte[] req = resource.getStuff().jsonWriter().writeValueAsBytes(
+                    new MultiGetRequest(new ArrayList<StorableKey>(), false));
+            resource.getHandler().getEntries(new FakeHttpRequest(), response,
+                    new ByteArrayInputStream(req), null);
+            assertEquals(400, response.getStatus());
+        } finally {
+            entries.stop();
+        }
+    }
+
+    protected List<MultiGetItem> _getMulti(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            boolean metadataOnly, StorableKey... keys)
+        throws IOException
+    {
+        byte[] req = resource.getStuff().jsonWriter().writeValueAsBytes(
+                new MultiGetRequest(Arrays.asList(keys), metadataOnly));
+        FakeHttpResponse response = new FakeHttpResponse();
+        resource.getHandler().getEntries(new FakeHttpRequest(), response,
+                new ByteArrayInputStream(req), null);
+        assertEquals(200, response.getStatus());
+
+        ObjectReader r = resource.getStuff().smileReader(MultiGetItem.class);
+        InputStream in = new ByteArrayInputStream(response.getStreamingContentAsBytes());
+        List<MultiGetItem> items = new ArrayList<MultiGetItem>();
+        int len;
+        while ((len = MultiGetItem.readLength(in)) != MultiGetItem.LENGTH_EOF) {
+            MultiGetItem item = r.readValue(_read(in, len));
+            if (item.length > 0L) {
+                byte[] data = _read(in, (int) item.length);
+                if (item.compression != null && item.compression != Compression.NONE) {
+                    data = Compressors.uncompress(ByteContainer.simple(data), item.compression,
+                            (int) item.contentLength).asBytes();
+                }
+                item.content = data;
+            }
+            items.add(item);
+        }
+        // nothing more to read
+        assertEquals(-1, in.read());
+        return items;
+    }
+
+    private byte[] _read(InputStream in, int len) throws IOException
+    {
+        byte[] b = new byte[len];
+        assertEquals(len, in.read(b));
+        return b;
+    }
+}
@@ -0,0 +1,139 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.*;
+import java.util.*;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.store.StorableStore;
+
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+import com.fasterxml.clustermate.api.msg.MultiPutItem;
+import com.fasterxml.clustermate.api.msg.MultiPutResponse;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+
+/**
+ * Tests for verifying that multi-entry PUT requests work as expected.
+ */
+public abstract class MultiPutTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("MPUT");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    public void testMultiPut() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1000L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+        StorableStore entries = resource.getStores().getEntryStore();
+
+        try {
+            final TestKey KEY1 = contentKey(CLIENT_ID, "multi/a");
+            final TestKey KEY2 = contentKey(CLIENT_ID, "multi/b");
+            final TestKey KEY3 = contentKey(CLIENT_ID, "multi/empty");
+            final byte[] DATA1 = "First entry".getBytes("UTF-8");
+            final byte[] DATA2 = biggerCompressibleData(3000).getBytes("UTF-8");
+            final byte[] DATA3 = new byte[0];
+
+            FakeHttpResponse response = _putMulti(resource,
+                    Arrays.asList(KEY1, KEY2, KEY3), Arrays.asList(DATA1, DATA2, DATA3));
+            assertEquals(200, response.getStatus());
+            MultiPutResponse result = response.getEntity();
+            assertEquals(3, result.size());
+            for (MultiPutResponse.Result r : result.results) {
+                assertEquals(200, r.status);
+                assertTrue(r.succeeded());
+            }
+            assertEquals(KEY1.asStorableKey(), result.results.get(0).key);
+            assertEquals(KEY3.asStorableKey(), result.results.get(2).key);
+            assertEquals(3, entryCount(entries));
+
+            // verify contents via regular GETs
+            _verifyContent(resource, KEY1, DATA1);
+            _verifyContent(resource, KEY2, DATA2);
+            _verifyContent(resource, KEY3, DATA3);
+
+            // then, identical re-PUT is fine, but conflicting one is not
+            final TestKey KEY4 = contentKey(CLIENT_ID, "multi/c");
+            response = _putMulti(resource, Arrays.asList(KEY1, KEY2, KEY4),
+                    Arrays.asList(DATA1, DATA1, DATA1));
+            assertEquals(200, response.getStatus());
+            result = response.getEntity();
+            assertEquals(3, result.size());
+            assertTrue(result.results.get(0).succeeded());
+            assertFalse(result.results.get(1).succeeded());
+            assertEquals(409, result.results.get(1).status);
+            assertTrue(result.results.get(2).succeeded());
+            assertEquals(4, entryCount(entries));
+            _verifyContent(resource, KEY2, DATA2);
+
+            // and truncated requests are rejected as a whole
+            response = new FakeHttpResponse();
+            byte[] req = _request(resource, Arrays.asList(KEY1), Arrays.asList(DATA1));
+            resource.getHandler().putEntries(new FakeHttpRequest(), response,
+                    new ByteArrayInputStream(req, 0, req.length - 8), null);
+            assertEquals(400, response.getStatus());
+
+            // including ones where only a later entry is malformed: nothing is to be stored
+            final TestKey KEY5 = contentKey(CLIENT_ID, "multi/d");
+            final TestKey KEY6 = contentKey(CLIENT_ID, "multi/e");
+            response = new FakeHttpResponse();
+            req = _request(resource, Arrays.asList(KEY5, KEY6), Arrays.asList(DATA1, DATA2));
+            resource.getHandler().putEntries(new FakeHttpRequest(), response,
+                    new ByteArrayInputStream(req, 0, req.length - 8), null);
+            assertEquals(400, response.getStatus());
+            assertEquals(4, entryCount(entries));
+        } finally {
+            entries.stop();
+        }
+    }
+
+    protected FakeHttpResponse _putMulti(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            List<TestKey> keys, List<byte[]> contents)
+        throws IOException
+    {
+        FakeHttpResponse response = new FakeHttpResponse();
+        resource.getHandler().putEntries(new FakeHttpRequest(), response,
+                new ByteArrayInputStream(_request(resource, keys, contents)), null);
+        return response;
+    }
+
+    protected byte[] _request(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            List<TestKey> keys, List<byte[]> contents)
+        throws IOException
+    {
+        ObjectWriter w = resource.getStuff().smileWriter();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0, len = keys.size(); i < len; ++i) {
+            byte[] data = contents.get(i);
+            MultiPutItem item = new MultiPutItem(keys.get(i).asStorableKey(),
+                    calcChecksum(data), Compression.NONE, 0L, data.length);
+            byte[] header = w.writeValueAsBytes(item);
+            MultiGetItem.writeLength(bytes, header.length);
+            bytes.write(header);
+            bytes.write(data);
+        }
+        MultiGetItem.writeLength(bytes, MultiGetItem.LENGTH_EOF);
+        return bytes.toByteArray();
+    }
+
+    protected void _verifyContent(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            TestKey key, byte[] expected)
+        throws IOException
+    {
+        FakeHttpResponse response = new FakeHttpResponse();
+        resource.getHandler().getEntry(new FakeHttpRequest(), response, key);
+        assertEquals(200, response.getStatus());
+        if (expected.length == 0) {
+            return;
+        }
+        assertTrue(Arrays.equals(expected, response.getStreamingContentAsBytes()));
+    }
+}
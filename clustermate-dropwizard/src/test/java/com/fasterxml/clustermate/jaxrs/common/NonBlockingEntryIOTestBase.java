@@ -0,0 +1,349 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.storemate.store.Storable;
+import com.fasterxml.storemate.store.StoreOperationSource;
+
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.servlet.NonBlockingEntryOutput;
+import com.fasterxml.clustermate.servlet.ServletServiceRequest;
+import com.fasterxml.clustermate.servlet.ServletServiceResponse;
+import com.fasterxml.clustermate.servlet.StoreEntryServlet;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+
+/**
+ * Tests for verifying handling of problems with non-blocking reading of
+ * PUT content (content length mismatch, timeout, client closing connection)
+ * and non-blocking writing of GET content: requests must be completed
+ * exactly once, with appropriate status, and without storing partial content.
+ */
+public abstract class NonBlockingEntryIOTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("NBIO");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    /*
+    /**********************************************************************
+    /* Tests for non-blocking PUT
+    /**********************************************************************
+     */
+
+    public void testPut() throws Exception
+    {
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = _resource("put");
+        try {
+            final byte[] DATA = _data(20000);
+            PutRequest req = new PutRequest(resource, "data/nb/ok", DATA.length);
+            assertTrue(req.start());
+            assertTrue(req.async.started);
+            req.in.feed(DATA, 0, 12000);
+            req.in.feed(DATA, 12000, DATA.length - 12000);
+            assertEquals(0, req.completions.get());
+            req.in.finish();
+
+            assertEquals(200, req.response.status);
+            req.verifyCompleted();
+            assertNotNull(req.findEntry());
+        } finally {
+            resource.getStores().stop();
+        }
+    }
+
+    public void testPutNotNonBlocking() throws Exception
+    {
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = _resource("blocking");
+        try {
+            // unknown length, or too long: must use blocking input instead
+            PutRequest req = new PutRequest(resource, "data/nb/unknown", -1L);
+            assertFalse(req.start());
+            assertFalse(req.async.started);
+            req = new PutRequest(resource, "data/nb/long",
+                    resource.getStuff().getServiceConfig().cfgNonBlockingMaxPutLength + 1L);
+            assertFalse(req.start());
+            assertFalse(req.async.started);
+        } finally {
+            resource.getStores().stop();
+        }
+    }
+
+    public void testPutContentTooShort() throws Exception
+    {
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = _resource("short");
+        try {
+            final byte[] DATA = _data(3000);
+            PutRequest req = new PutRequest(resource, "data/nb/short", DATA.length + 1000);
+            assertTrue(req.start());
+            req.in.feed(DATA, 0, DATA.length);
+            req.in.finish();
+
+            assertEquals(HttpServletResponse.SC_BAD_REQUEST, req.response.status);
+            req.verifyCompleted();
+            assertNull(req.findEntry());
+        } finally {
+            resource.getStores().stop();
+        }
+    }
+
+    public void testPutContentTooLong() throws Exception
+    {
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = _resource("long");
+        try {
+            final byte[] DATA = _data(3000);
+            PutRequest req = new PutRequest(resource, "data/nb/long", DATA.length - 1000);
+            assertTrue(req.start());
+            // fails as soon as more content than expected is read
+            req.in.feed(DATA, 0, DATA.length);
+            assertEquals(HttpServletResponse.SC_BAD_REQUEST, req.response.status);
+            req.verifyCompleted();
+            // and later notifications must have no effect
+            req.in.finish();
+            req.verifyCompleted();
+            assertNull(req.findEntry());
+        } finally {
+            resource.getStores().stop();
+        }
+    }
+
+    public void testPutTimeout() throws Exception
+    {
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = _resource("timeout");
+        try {
+            final byte[] DATA = _data(3000);
+            PutRequest req = new PutRequest(resource, "data/nb/timeout", DATA.length);
+            assertTrue(req.start());
+            assertEquals(resource.getStuff().getServiceConfig().cfgNonBlockingIOTimeout.getMillis(),
+                    req.async.timeout);
+            req.in.feed(DATA, 0, 1000);
+            req.async.fireTimeout();
+
+            assertEquals(HttpServletResponse.SC_REQUEST_TIMEOUT, req.response.status);
+            req.verifyCompleted();
+            // and even if rest of content arrives later, must not be stored
+            req.in.feed(DATA, 1000, DATA.length - 1000);
+            req.in.finish();
+            req.verifyCompleted();
+            assertNull(req.findEntry());
+        } finally {
+            resource.getStores().stop();
+        }
+    }
+
+    public void testPutClientAbort() throws Exception
+    {
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = _resource("abort");
+        try {
+            final byte[] DATA = _data(3000);
+            // first, as reported to read listener
+            PutRequest req = new PutRequest(resource, "data/nb/abort1", DATA.length);
+            assertTrue(req.start());
+            req.in.feed(DATA, 0, 1000);
+            req.in.listener.onError(new IOException("Connection reset by peer"));
+            assertEquals(HttpServletResponse.SC_BAD_REQUEST, req.response.status);
+            req.verifyCompleted();
+            // container may report it via async listener too; no effect
+            req.async.fireError(new IOException("Connection reset by peer"));
+            req.verifyCompleted();
+            assertNull(req.findEntry());
+
+            // and then, as reported via async listener only
+            req = new PutRequest(resource, "data/nb/abort2", DATA.length);
+            assertTrue(req.start());
+            req.in.feed(DATA, 0, 1000);
+            req.async.fireError(new IOException("Connection reset by peer"));
+            assertEquals(HttpServletResponse.SC_BAD_REQUEST, req.response.status);
+            req.verifyCompleted();
+            assertNull(req.findEntry());
+        } finally {
+            resource.getStores().stop();
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Tests for non-blocking GET output
+    /**********************************************************************
+     */
+
+    public void testOutput() throws Exception
+    {
+        final byte[] DATA = _data(150000);
+        GetRequest req = new GetRequest(DATA);
+        req.out.writable = 0L;
+        req.start();
+        assertEquals(0, req.out.bytes.size());
+        // let's allow writes in steps smaller than chunk size
+        while (req.completions.get() == 0) {
+            req.out.allow(50000L);
+        }
+        assertTrue(Arrays.equals(DATA, req.out.bytes.toByteArray()));
+        assertEquals(DATA.length, req.output.getBytesWritten());
+        assertEquals(200, req.response.status);
+        req.verifyCompleted();
+    }
+
+    public void testOutputTimeout() throws Exception
+    {
+        GetRequest req = new GetRequest(_data(150000));
+        req.out.writable = 0L;
+        req.start();
+        req.async.fireTimeout();
+
+        assertEquals(HttpServletResponse.SC_GATEWAY_TIMEOUT, req.response.status);
+        req.verifyCompleted();
+    }
+
+    public void testOutputClientAbort() throws Exception
+    {
+        final byte[] DATA = _data(150000);
+        GetRequest req = new GetRequest(DATA);
+        req.out.writable = 0L;
+        req.start();
+        req.out.allow(1000L);
+        final int written = req.out.bytes.size();
+        assertTrue(written > 0 && written < DATA.length);
+        req.response.committed = true;
+        req.out.failure = new IOException("Broken pipe");
+        req.out.allow(1000L);
+
+        // status already sent, can not be changed
+        assertEquals(200, req.response.status);
+        assertEquals(written, req.output.getBytesWritten());
+        req.verifyCompleted();
+        // and if container reports problem as well, no effect
+        req.async.fireError(req.out.failure);
+        req.verifyCompleted();
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods, classes
+    /**********************************************************************
+     */
+
+    private StoreResourceForTests<TestKey, StoredEntry<TestKey>> _resource(String suffix)
+        throws IOException
+    {
+        return createResource(testPrefix()+"-"+suffix, new TimeMasterForSimpleTesting(1234L), true);
+    }
+
+    private byte[] _data(int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; ++i) {
+            b[i] = (byte) (i ^ (i >> 7));
+        }
+        return b;
+    }
+
+    /**
+     * Servlet sub-class that exposes non-blocking PUT handling
+     */
+    static class TestServlet extends StoreEntryServlet<TestKey, StoredEntry<TestKey>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        public TestServlet(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource) {
+            super(resource.getStuff(), resource.getCluster(), resource.getHandler());
+        }
+
+        public boolean startPut(ServletServiceRequest request, ServletServiceResponse response,
+                TestKey key, Runnable onCompletion) throws IOException
+        {
+            return _startNonBlockingPut(request, response, null,
+                    key, onCompletion);
+        }
+    }
+
+    /**
+     * Helper class for holding state of a single non-blocking request
+     */
+    abstract static class RequestBase
+    {
+        final FakeServletIO.Async async = new FakeServletIO.Async();
+
+        final FakeServletIO.Output out = new FakeServletIO.Output();
+
+        final FakeServletIO.Response response = new FakeServletIO.Response(out);
+
+        final AtomicInteger completions = new AtomicInteger();
+
+        final Runnable onCompletion = new Runnable() {
+            @Override
+            public void run() {
+                completions.incrementAndGet();
+            }
+        };
+
+        public void verifyCompleted() {
+            assertEquals("Async context completions", 1, async.completions.get());
+            assertEquals("Completion callbacks", 1, completions.get());
+        }
+    }
+
+    class PutRequest extends RequestBase
+    {
+        final StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource;
+
+        final TestKey key;
+
+        final FakeServletIO.Input in = new FakeServletIO.Input();
+
+        final HttpServletRequest nativeRequest;
+
+        public PutRequest(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+                String path, long contentLength)
+        {
+            this.resource = resource;
+            key = contentKey(CLIENT_ID, path);
+            nativeRequest = FakeServletIO.request("PUT", contentLength, in, async);
+            async.setRequestAndResponse(nativeRequest, response.asResponse());
+        }
+
+        public boolean start() throws IOException {
+            return new TestServlet(resource).startPut(new ServletServiceRequest(nativeRequest, "", true),
+                    new ServletServiceResponse(response.asResponse()), key, onCompletion);
+        }
+
+        public Storable findEntry() throws IOException {
+            return resource.getStores().getEntryStore().findEntry(StoreOperationSource.REQUEST,
+                    null, key.asStorableKey());
+        }
+    }
+
+    static class GetRequest extends RequestBase
+    {
+        final ReadableByteChannel content;
+
+        NonBlockingEntryOutput output;
+
+        public GetRequest(byte[] data) {
+            content = Channels.newChannel(new ByteArrayInputStream(data));
+            async.setRequestAndResponse(null, response.asResponse());
+        }
+
+        public void start() {
+            output = new NonBlockingEntryOutput(async, out, content, onCompletion);
+            output.start();
+        }
+
+        @Override
+        public void verifyCompleted() {
+            super.verifyCompleted();
+            assertFalse("Content channel should be closed", content.isOpen());
+        }
+    }
+}
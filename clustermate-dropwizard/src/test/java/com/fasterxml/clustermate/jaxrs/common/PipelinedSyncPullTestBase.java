@@ -0,0 +1,271 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.skife.config.TimeSpan;
+
+import com.fasterxml.storemate.shared.IpAndPort;
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.util.WithBytesCallback;
+import com.fasterxml.storemate.store.Storable;
+import com.fasterxml.storemate.store.StoreOperationSource;
+
+import com.fasterxml.clustermate.api.KeySpace;
+import com.fasterxml.clustermate.api.NodeDefinition;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.SharedServiceStuff;
+import com.fasterxml.clustermate.service.cfg.SyncPullConfig;
+import com.fasterxml.clustermate.service.cluster.ClusterPeerImpl;
+import com.fasterxml.clustermate.service.cluster.ClusterViewByServerUpdatable;
+import com.fasterxml.clustermate.service.state.ActiveNodeState;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.clustermate.service.sync.*;
+
+/**
+ * Tests for verifying that pipelined sync-pull (multiple outstanding
+ * requests per peer) fetches all entries, retries failed batches (and
+ * entries with content that does not match checksum), and only advances
+ * 'syncedUpTo' over the fully fetched prefix of entries.
+ */
+public abstract class PipelinedSyncPullTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("PIPE");
+
+    final static int ENTRY_COUNT = 6;
+
+    final static int MAX_OUTSTANDING = 3;
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    public void testBatchesAndRetry() throws Exception
+    {
+        // fail batch with the third entry once: should be retried
+        _testPipelined("retry", 1, 0, ENTRY_COUNT, 105L);
+    }
+
+    public void testCorruptedEntry() throws Exception
+    {
+        // corrupt contents of an entry once: must not be stored, but retried
+        _testPipelined("corrupt", 0, 1, ENTRY_COUNT, 105L);
+    }
+
+    public void testFailedBatch() throws Exception
+    {
+        // fail batch with the third entry always: later entries are still
+        // fetched, but 'syncedUpTo' must not advance past the failed one
+        _testPipelined("fail", Integer.MAX_VALUE, 0, ENTRY_COUNT-1, 101L);
+    }
+
+    private void _testPipelined(String suffix, int failures, int corruptions,
+            int expFetched, long expSyncedUpTo)
+        throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new NonBlockingTimeMaster(1234L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> source = createResource(testPrefix()+"-"+suffix+"-src",
+                timeMaster, true);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> target = createResource(testPrefix()+"-"+suffix+"-dst",
+                timeMaster, true);
+        TestPeer peer = null;
+        try {
+            // Entries of same size, so that they are divided into batches of 2
+            List<SyncListResponseEntry> listed = new ArrayList<SyncListResponseEntry>();
+            Map<StorableKey,byte[]> contents = new HashMap<StorableKey,byte[]>();
+            for (int i = 0; i < ENTRY_COUNT; ++i) {
+                TestKey key = contentKey(CLIENT_ID, "data/pipe/entry"+i);
+                byte[] data = ("Data for entry #"+i).getBytes("UTF-8");
+                FakeHttpResponse response = new FakeHttpResponse();
+                source.getHandler().putEntry(new FakeHttpRequest(), response, key,
+                        calcChecksum(data), new ByteArrayInputStream(data), null, null, null);
+                assertEquals(200, response.getStatus());
+                contents.put(key.asStorableKey(), data);
+
+                SyncListResponseEntry entry = new SyncListResponseEntry();
+                entry.key = key.asStorableKey();
+                entry.size = source.getStores().getEntryStore().findEntry(StoreOperationSource.REQUEST,
+                        null, entry.key).getStorageLength();
+                entry.insertionTime = 100L + i;
+                listed.add(entry);
+            }
+            final StorableKey failKey = listed.get(2).key;
+
+            SharedServiceStuff stuff = target.getStuff();
+            stuff.getServiceConfig().syncPull = new SyncPullConfig(MAX_OUTSTANDING, 200, 64 * 1024, 2);
+            PullAccessor accessor = new PullAccessor(stuff,
+                    new SyncHandler<TestKey, StoredEntry<TestKey>>(source.getStuff(),
+                            source.getStores(), source.getCluster()),
+                    failKey, failures, corruptions);
+            peer = new TestPeer(target, accessor);
+
+            List<SyncListResponseEntry> missing = new ArrayList<SyncListResponseEntry>(listed);
+            AtomicInteger rounds = new AtomicInteger(0);
+            long syncedUpTo = peer.fetchMissing(missing, rounds);
+
+            // First round: 3 batches of 2 entries, each done by a different thread
+            List<List<StorableKey>> requests = accessor.requests;
+            assertTrue(requests.size() > MAX_OUTSTANDING);
+            Set<List<StorableKey>> firstRound = new HashSet<List<StorableKey>>(requests.subList(0, MAX_OUTSTANDING));
+            assertEquals(new HashSet<List<StorableKey>>(Arrays.asList(
+                    Arrays.asList(listed.get(0).key, listed.get(1).key),
+                    Arrays.asList(listed.get(2).key, listed.get(3).key),
+                    Arrays.asList(listed.get(4).key, listed.get(5).key))),
+                    firstRound);
+            assertEquals(MAX_OUTSTANDING, accessor.threads.size());
+            for (String thread : accessor.threads) {
+                assertTrue(thread.startsWith("SyncPull-"));
+            }
+            // and after that, only entries not yet fetched are requested again
+            for (List<StorableKey> req : requests.subList(MAX_OUTSTANDING, requests.size())) {
+                for (StorableKey key : req) {
+                    assertTrue(key.equals(listed.get(2).key) || key.equals(listed.get(3).key));
+                }
+            }
+            assertEquals(requests.size(), rounds.get());
+
+            assertEquals(expSyncedUpTo, syncedUpTo);
+            assertEquals(ENTRY_COUNT - expFetched, missing.size());
+            if (!missing.isEmpty()) {
+                assertEquals(failKey, missing.get(0).key);
+            }
+            for (SyncListResponseEntry entry : listed) {
+                Storable stored = target.getStores().getEntryStore().findEntry(StoreOperationSource.REQUEST,
+                        null, entry.key);
+                if (missing.contains(entry)) {
+                    assertNull(stored);
+                } else {
+                    assertNotNull(stored);
+                    Assert.assertArrayEquals(contents.get(entry.key), _inlined(stored));
+                }
+            }
+        } finally {
+            if (peer != null) {
+                peer.stop();
+            }
+            source.getStores().stop();
+            target.getStores().stop();
+        }
+    }
+
+    private byte[] _inlined(Storable entry) {
+        return entry.withInlinedData(new WithBytesCallback<byte[]>() {
+            @Override
+            public byte[] withBytes(byte[] buffer, int offset, int length) {
+                return Arrays.copyOfRange(buffer, offset, offset+length);
+            }
+        });
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Peer implementation that gives access to fetching of missing
+     * entries, without running sync thread.
+     */
+    static class TestPeer extends ClusterPeerImpl<TestKey, StoredEntry<TestKey>>
+    {
+        public TestPeer(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+                SyncListAccessor accessor)
+        {
+            super(resource.getStuff(), (ClusterViewByServerUpdatable) resource.getCluster(),
+                    resource.getStores().getNodeStore(), resource.getStores().getEntryStore(),
+                    _remoteState(), null, accessor);
+            _running.set(true);
+        }
+
+        private static ActiveNodeState _remoteState() {
+            KeySpace keyspace = new KeySpace(360);
+            return new ActiveNodeState(new NodeDefinition(new IpAndPort("localhost:9998"), 2,
+                    keyspace.fullRange(), keyspace.fullRange()), 0L);
+        }
+
+        public long fetchMissing(List<SyncListResponseEntry> entries, AtomicInteger rounds)
+            throws InterruptedException
+        {
+            return _fetchMissing(entries, rounds);
+        }
+    }
+
+    /**
+     * Accessor that serves sync-pull requests from a local handler, failing
+     * requests for specified key given number of times.
+     */
+    static class PullAccessor extends SyncListAccessor
+    {
+        final List<List<StorableKey>> requests = Collections.synchronizedList(new ArrayList<List<StorableKey>>());
+
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+
+        final SyncHandler<TestKey, StoredEntry<TestKey>> _handler;
+
+        final SharedServiceStuff _stuff;
+
+        final StorableKey _failKey;
+
+        final AtomicInteger _failuresLeft;
+
+        final AtomicInteger _corruptionsLeft;
+
+        public PullAccessor(SharedServiceStuff stuff, SyncHandler<TestKey, StoredEntry<TestKey>> handler,
+                StorableKey failKey, int failures, int corruptions)
+        {
+            super(stuff);
+            _stuff = stuff;
+            _handler = handler;
+            _failKey = failKey;
+            _failuresLeft = new AtomicInteger(failures);
+            _corruptionsLeft = new AtomicInteger(corruptions);
+        }
+
+        @Override
+        public InputStream readLocalSyncPullResponse(SyncPullRequest request, TimeSpan timeout,
+                IpAndPort endpoint, AtomicInteger statusCodeWrapper, int expectedPayloadSize)
+            throws IOException
+        {
+            requests.add(new ArrayList<StorableKey>(request.entries));
+            threads.add(Thread.currentThread().getName());
+            if (request.entries.contains(_failKey) && _failuresLeft.getAndDecrement() > 0) {
+                statusCodeWrapper.set(500);
+                return null;
+            }
+            FakeHttpResponse response = new FakeHttpResponse();
+            byte[] reqBytes = _stuff.jsonWriter(SyncPullRequest.class).writeValueAsBytes(request);
+            _handler.localPullEntries(new FakeHttpRequest(), response, new ByteArrayInputStream(reqBytes), null);
+            statusCodeWrapper.set(response.getStatus());
+            byte[] content = response.getStreamingContentAsBytes();
+            if (request.entries.contains(_failKey) && _corruptionsLeft.getAndDecrement() > 0) {
+                // last byte of the last entry, before end marker
+                content[content.length - 5] ^= 0x01;
+            }
+            return new ByteArrayInputStream(content);
+        }
+    }
+
+    /**
+     * Time master that just advances time when sleeping, since there is
+     * no other thread to do that.
+     */
+    static class NonBlockingTimeMaster extends TimeMasterForSimpleTesting
+    {
+        public NonBlockingTimeMaster(long startTime) {
+            super(startTime);
+        }
+
+        @Override
+        public void sleep(long waitTime) {
+            if (waitTime > 0L) {
+                _currentTime.addAndGet(waitTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.ByteArrayInputStream;
+import java.util.*;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.store.Storable;
+import com.fasterxml.storemate.store.StorableStore;
+import com.fasterxml.storemate.store.StoreOperationSource;
+
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.SortedKeyLookup;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+
+/**
+ * Test to verify that multi-key lookups using key-ordered iteration
+ * find same entries as individual lookups.
+ */
+public abstract class SortedKeyLookupTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("SORT");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    public void testLookups() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+        final StorableStore entries = resource.getStores().getEntryStore();
+
+        try {
+            // add every third entry...
+            for (int i = 0; i < 100; i += 3) {
+                final TestKey key = _key(i);
+                final byte[] data = ("Data #"+i).getBytes("UTF-8");
+                FakeHttpResponse response = new FakeHttpResponse();
+                resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                        key, calcChecksum(data), new ByteArrayInputStream(data), null, null, null);
+                assertEquals(200, response.getStatus());
+            }
+            // ... and look up subsets with different densities, and gaps
+            _verifyLookups(entries, 0, 100, 1, 0);
+            _verifyLookups(entries, 0, 100, 1, 1);
+            _verifyLookups(entries, 5, 60, 2, 4);
+            _verifyLookups(entries, 0, 100, 7, SortedKeyLookup.DEFAULT_MAX_GAP);
+            _verifyLookups(entries, 90, 120, 1, SortedKeyLookup.DEFAULT_MAX_GAP);
+            _verifyLookups(entries, 100, 120, 1, 2);
+        } finally {
+            entries.stop();
+        }
+    }
+
+    private void _verifyLookups(StorableStore entries, int start, int end, int step, int maxGap)
+        throws Exception
+    {
+        List<StorableKey> keyList = new ArrayList<StorableKey>();
+        for (int i = start; i < end; i += step) {
+            keyList.add(_key(i).asStorableKey());
+        }
+        Collections.sort(keyList);
+        StorableKey[] keys = keyList.toArray(new StorableKey[keyList.size()]);
+        Storable[] found = new SortedKeyLookup(entries, maxGap).findEntries(StoreOperationSource.SYNC, keys);
+        assertEquals(keys.length, found.length);
+        for (int i = 0; i < keys.length; ++i) {
+            Storable exp = entries.findEntry(StoreOperationSource.SYNC, null, keys[i]);
+            if (exp == null) {
+                assertNull("Should not find entry for "+keys[i], found[i]);
+            } else {
+                assertNotNull("Should find entry for "+keys[i], found[i]);
+                assertEquals(keys[i], found[i].getKey());
+                assertEquals(exp.getContentHash(), found[i].getContentHash());
+            }
+        }
+    }
+
+    private TestKey _key(int index) {
+        return contentKey(CLIENT_ID, String.format("data/sorted/%03d", index));
+    }
+}
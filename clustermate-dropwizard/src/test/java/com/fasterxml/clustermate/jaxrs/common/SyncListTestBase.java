@@ -8,10 +8,13 @@ import com.fasterxml.storemate.store.util.OperationDiagnostics;
 import com.fasterxml.clustermate.api.ClusterMateConstants;
 import com.fasterxml.clustermate.api.ContentType;
 import com.fasterxml.clustermate.api.KeyRange;
+import com.fasterxml.clustermate.api.msg.ClusterStatusMessage;
 import com.fasterxml.clustermate.jaxrs.testutil.*;
 import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.clustermate.service.sync.BinarySyncList;
 import com.fasterxml.clustermate.service.sync.SyncHandler;
 import com.fasterxml.clustermate.service.sync.SyncListResponse;
+import com.fasterxml.clustermate.service.sync.SyncListResponseEntry;
 
 /**
  * Test case(s) to verify that we can handle basic pull list request
@@ -105,26 +108,109 @@ public abstract class SyncListTestBase extends JaxrsStoreTestBase
         }
     }
 
+    /**
+     * Test to verify that binary-encoded Sync List contains same information
+     * as Smile-encoded one.
+     */
+    public void testBinarySyncList() throws Exception
+    {
+        final long creationTime = 1234L;
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(creationTime);
+
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix()+"Binary", timeMaster, true);
+
+        try {
+            SyncHandler<TestKey, StoredEntry<TestKey>> syncH = new SyncHandler<TestKey, StoredEntry<TestKey>>(resource.getStuff(),
+                    resource.getStores(), resource.getCluster());
+            StorableStore entries = resource.getStores().getEntryStore();
+            final byte[] SMALL_DATA = "Some data that we want to store -- small, gets inlined...".getBytes("UTF-8");
+            final int hash = calcChecksum(SMALL_DATA);
+            final int COUNT = 5;
+
+            for (int i = 0; i < COUNT; ++i) {
+                FakeHttpResponse response = new FakeHttpResponse();
+                resource.getHandler().putEntry(new FakeHttpRequest(), response,
+                        contentKey(CLIENT_ID, "data/entry/"+i),
+                        hash, new ByteArrayInputStream(SMALL_DATA),
+                        null, null, null);
+                assertEquals(200, response.getStatus());
+                timeMaster.advanceCurrentTimeMillis(100L);
+            }
+            // and delete one, to get a tombstone
+            FakeHttpResponse response = new FakeHttpResponse();
+            resource.getHandler().removeEntry(new FakeHttpRequest(), response,
+                    contentKey(CLIENT_ID, "data/entry/2"));
+            assertEquals(200, response.getStatus());
+            assertEquals(COUNT, entryCount(entries));
+            timeMaster.advanceCurrentTimeMillis(syncH.getSyncGracePeriodMsecs() + 1000L);
+
+            SyncListResponse<StoredEntry<?>> smileList = _fetchSyncList(resource, syncH, creationTime,
+                    new OperationDiagnostics(0L));
+            SyncListResponse<?> binaryList = _fetchSyncList(resource, syncH, creationTime,
+                    new OperationDiagnostics(0L), ContentType.SYNC_LIST);
+
+            assertNull(binaryList.message);
+            assertEquals(COUNT, smileList.entries.size());
+            assertEquals(smileList.entries.size(), binaryList.entries.size());
+            assertEquals(smileList.lastSeen(), binaryList.lastSeen());
+            assertEquals(smileList.clusterHash, binaryList.clusterHash);
+            assertEquals(smileList.clientWait, binaryList.clientWait);
+            assertEquals(smileList.eoi, binaryList.eoi);
+            assertNotNull(binaryList.clusterStatus);
+
+            int deleted = 0;
+            for (int i = 0; i < COUNT; ++i) {
+                SyncListResponseEntry exp = smileList.entries.get(i);
+                SyncListResponseEntry act = binaryList.entries.get(i);
+                assertEquals(exp.key, act.key);
+                assertEquals(exp.insertionTime, act.insertionTime);
+                assertEquals(exp.size, act.size);
+                assertEquals(exp.hash, act.hash);
+                if (act.size < 0L) {
+                    ++deleted;
+                }
+            }
+            assertEquals(1, deleted);
+        } finally {
+            resource.getStores().stop();
+        }
+    }
+
     private SyncListResponse<StoredEntry<?>> _fetchSyncList(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
             SyncHandler<TestKey, StoredEntry<TestKey>> syncH,
             long creationTime,
             OperationDiagnostics diag) throws Exception
+    {
+        // JSON or Smile? Either should be fine...
+        @SuppressWarnings("unchecked")
+        SyncListResponse<StoredEntry<?>> resp = (SyncListResponse<StoredEntry<?>>)
+            _fetchSyncList(resource, syncH, creationTime, diag, ContentType.SMILE);
+        return resp;
+    }
+
+    private SyncListResponse<?> _fetchSyncList(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            SyncHandler<TestKey, StoredEntry<TestKey>> syncH,
+            long creationTime,
+            OperationDiagnostics diag, ContentType contentType) throws Exception
     {
         final KeyRange localRange = resource.getKeyRange();
         FakeHttpRequest syncReq = new FakeHttpRequest();
         syncReq.addQueryParam(ClusterMateConstants.QUERY_PARAM_KEYRANGE_START, ""+localRange.getStart());
         syncReq.addQueryParam(ClusterMateConstants.QUERY_PARAM_KEYRANGE_LENGTH, ""+localRange.getLength());
-        // JSON or Smile? Either should be fine...
-        syncReq.addHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT, ContentType.SMILE.toString());
+        syncReq.addHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT, contentType.toString());
         
         FakeHttpResponse response = new FakeHttpResponse();
         
         syncH.localListEntries(syncReq, response, creationTime, diag);
         assertTrue(response.hasStreamingContent());
         assertEquals(200, response.getStatus());
-        assertEquals(ContentType.SMILE.toString(), response.getContentType());
+        assertEquals(contentType.toString(), response.getContentType());
         byte[] data = response.getStreamingContentAsBytes();
 
+        if (contentType == ContentType.SYNC_LIST) {
+            return BinarySyncList.decode(new ByteArrayInputStream(data),
+                    resource.getStuff().smileReader(ClusterStatusMessage.class));
+        }
         return resource.getStuff().smileReader(SyncListResponse.class).readValue(data);
     }
 
@@ -0,0 +1,164 @@
+package com.fasterxml.clustermate.jaxrs.common;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Assert;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.compress.Compressors;
+import com.fasterxml.storemate.shared.util.IOUtil;
+
+import com.fasterxml.clustermate.api.ClusterMateConstants;
+import com.fasterxml.clustermate.api.ContentType;
+import com.fasterxml.clustermate.jaxrs.testutil.*;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.clustermate.service.sync.SyncHandler;
+import com.fasterxml.clustermate.service.sync.SyncPullEntry;
+import com.fasterxml.clustermate.service.sync.SyncPullRequest;
+import com.fasterxml.clustermate.service.sync.SyncPullResponse;
+
+/**
+ * Tests for verifying that sync-pull responses are written correctly,
+ * both with Smile and binary entry headers.
+ */
+public abstract class SyncPullTestBase extends JaxrsStoreTestBase
+{
+    final static CustomerId CLIENT_ID = CustomerId.valueOf("PULL");
+
+    @Override
+    public void setUp() {
+        initTestLogging();
+    }
+
+    protected abstract String testPrefix();
+
+    public void testSyncPull() throws Exception
+    {
+        final TimeMasterForSimpleTesting timeMaster = new TimeMasterForSimpleTesting(1234L);
+        StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource = createResource(testPrefix(), timeMaster, true);
+
+        try {
+            SyncHandler<TestKey, StoredEntry<TestKey>> syncH = new SyncHandler<TestKey, StoredEntry<TestKey>>(resource.getStuff(),
+                    resource.getStores(), resource.getCluster());
+            final TestKey SMALL = contentKey(CLIENT_ID, "data/pull/small");
+            final TestKey BIG1 = contentKey(CLIENT_ID, "data/pull/big1");
+            final TestKey BIG2 = contentKey(CLIENT_ID, "data/pull/big2");
+            final TestKey BIG3 = contentKey(CLIENT_ID, "data/pull/big3");
+            final TestKey DELETED = contentKey(CLIENT_ID, "data/pull/deleted");
+
+            Map<TestKey,byte[]> contents = new HashMap<TestKey,byte[]>();
+            contents.put(SMALL, "Some small data, gets inlined".getBytes("UTF-8"));
+            // big enough to be stored as files, and not be read fully when opened
+            contents.put(BIG1, biggerRandomData(100 * 1000).getBytes("UTF-8"));
+            contents.put(BIG2, biggerRandomData(150 * 1000).getBytes("UTF-8"));
+            contents.put(BIG3, biggerRandomData(40 * 1000).getBytes("UTF-8"));
+            contents.put(DELETED, "To be deleted".getBytes("UTF-8"));
+            for (Map.Entry<TestKey,byte[]> entry : contents.entrySet()) {
+                FakeHttpResponse response = new FakeHttpResponse();
+                byte[] data = entry.getValue();
+                resource.getHandler().putEntry(new FakeHttpRequest(), response, entry.getKey(),
+                        calcChecksum(data), new ByteArrayInputStream(data), null, null, null);
+                assertEquals(200, response.getStatus());
+            }
+            FakeHttpResponse response = new FakeHttpResponse();
+            resource.getHandler().removeEntry(new FakeHttpRequest(), response, DELETED);
+            assertEquals(200, response.getStatus());
+
+            final TestKey[] keys = new TestKey[] { SMALL, BIG1, DELETED, BIG2, BIG3 };
+            SyncPullRequest pullReq = new SyncPullRequest();
+            for (TestKey key : keys) {
+                pullReq.addEntry(key.asStorableKey());
+            }
+            final byte[] reqBytes = resource.getStuff().jsonWriter(SyncPullRequest.class).writeValueAsBytes(pullReq);
+
+            List<PulledEntry> smile = _pull(resource, syncH, reqBytes, keys.length, false);
+            List<PulledEntry> binary = _pull(resource, syncH, reqBytes, keys.length, true);
+
+            for (int i = 0; i < keys.length; ++i) {
+                PulledEntry exp = smile.get(i);
+                PulledEntry act = binary.get(i);
+                assertNotNull(exp);
+                assertNotNull(act);
+                assertEquals(keys[i].asStorableKey(), exp.header.key);
+                assertEquals(exp.header.key, act.header.key);
+                assertEquals(exp.header.creationTime, act.header.creationTime);
+                assertEquals(exp.header.minTTLSecs, act.header.minTTLSecs);
+                assertEquals(exp.header.maxTTLSecs, act.header.maxTTLSecs);
+                assertEquals(exp.header.size, act.header.size);
+                assertEquals(exp.header.storageSize, act.header.storageSize);
+                assertEquals(exp.header.checksum, act.header.checksum);
+                assertEquals(exp.header.checksumForCompressed, act.header.checksumForCompressed);
+                assertEquals(exp.header.compression, act.header.compression);
+                assertEquals(exp.header.lastAccessMethod, act.header.lastAccessMethod);
+                assertEquals(exp.header.isDeleted, act.header.isDeleted);
+                Assert.assertArrayEquals(exp.payload, act.payload);
+
+                if (keys[i] == DELETED) {
+                    assertTrue(act.header.isDeleted);
+                    continue;
+                }
+                byte[] data = act.payload;
+                if (act.header.compression == Compression.LZF) {
+                    data = Compressors.lzfUncompress(data);
+                }
+                Assert.assertArrayEquals(contents.get(keys[i]), data);
+            }
+        } finally {
+            resource.getStores().stop();
+        }
+    }
+
+    private List<PulledEntry> _pull(StoreResourceForTests<TestKey, StoredEntry<TestKey>> resource,
+            SyncHandler<TestKey, StoredEntry<TestKey>> syncH, byte[] reqBytes, int count,
+            boolean binary) throws IOException
+    {
+        FakeHttpRequest request = new FakeHttpRequest();
+        if (binary) {
+            request.addHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT,
+                    ContentType.SYNC_PULL.toString()+", "+ContentType.SMILE.toString());
+        }
+        FakeHttpResponse response = new FakeHttpResponse();
+        syncH.localPullEntries(request, response, new ByteArrayInputStream(reqBytes), null);
+        assertEquals(200, response.getStatus());
+        assertTrue(response.hasStreamingContent());
+        if (binary) {
+            assertEquals(ContentType.SYNC_PULL.toString(), response.getContentType());
+        }
+        final ObjectReader smileReader = resource.getStuff().smileReader(SyncPullEntry.class);
+        InputStream in = new ByteArrayInputStream(response.getStreamingContentAsBytes());
+
+        List<PulledEntry> result = new ArrayList<PulledEntry>();
+        for (int i = 0; i < count; ++i) {
+            int headerLength = SyncPullResponse.readHeaderLength(in);
+            if (headerLength == 0) {
+                result.add(null);
+                continue;
+            }
+            byte[] headerBytes = new byte[headerLength];
+            assertEquals(headerLength, IOUtil.readFully(in, headerBytes));
+            assertEquals(binary, SyncPullEntry.isBinary(headerBytes));
+            SyncPullEntry header = binary ? SyncPullEntry.fromBinary(headerBytes)
+                    : smileReader.<SyncPullEntry>readValue(headerBytes);
+            byte[] payload = new byte[header.isDeleted ? 0 : (int) header.storageSize];
+            assertEquals(payload.length, IOUtil.readFully(in, payload));
+            result.add(new PulledEntry(header, payload));
+        }
+        assertEquals(SyncHandler.LENGTH_EOF, SyncPullResponse.readHeaderLength(in));
+        assertEquals(-1, in.read());
+        return result;
+    }
+
+    static class PulledEntry
+    {
+        public final SyncPullEntry header;
+        public final byte[] payload;
+
+        public PulledEntry(SyncPullEntry header, byte[] payload) {
+            this.header = header;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.fasterxml.clustermate.jaxrs.testutil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Minimal fake implementations of Servlet 3.1 async and non-blocking
+ * I/O abstractions, used for testing non-blocking entry I/O without
+ * a container: tests drive listener callbacks explicitly.
+ */
+public class FakeServletIO
+{
+    /*
+    /**********************************************************************
+    /* Requests, responses
+    /**********************************************************************
+     */
+
+    /**
+     * Method for constructing a fake async-capable request with given
+     * content length, and input and async context to expose.
+     */
+    public static HttpServletRequest request(final String method, final long contentLength,
+            final Input in, final Async async)
+    {
+        return (HttpServletRequest) Proxy.newProxyInstance(FakeServletIO.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) {
+                String name = m.getName();
+                if ("getMethod".equals(name)) {
+                    return method;
+                }
+                if ("getContentLengthLong".equals(name)) {
+                    return contentLength;
+                }
+                if ("getContentLength".equals(name)) {
+                    return (int) contentLength;
+                }
+                if ("isAsyncSupported".equals(name)) {
+                    return Boolean.TRUE;
+                }
+                if ("startAsync".equals(name)) {
+                    async.started = true;
+                    return async;
+                }
+                if ("getInputStream".equals(name)) {
+                    return in;
+                }
+                return _defaultValue(m.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Response state, accessible via {@link #asResponse}.
+     */
+    public static class Response implements InvocationHandler
+    {
+        public volatile int status = 200;
+
+        public volatile boolean committed;
+
+        public final Output out;
+
+        public Response(Output out) {
+            this.out = out;
+        }
+
+        public HttpServletResponse asResponse() {
+            return (HttpServletResponse) Proxy.newProxyInstance(FakeServletIO.class.getClassLoader(),
+                    new Class<?>[] { HttpServletResponse.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            String name = m.getName();
+            if ("setStatus".equals(name)) {
+                if (committed) {
+                    throw new IllegalStateException("Response already committed");
+                }
+                status = (Integer) args[0];
+                return null;
+            }
+            if ("getStatus".equals(name)) {
+                return status;
+            }
+            if ("isCommitted".equals(name)) {
+                return committed;
+            }
+            if ("getOutputStream".equals(name)) {
+                return out;
+            }
+            return _defaultValue(m.getReturnType());
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Async context
+    /**********************************************************************
+     */
+
+    public static class Async implements AsyncContext
+    {
+        public final List<AsyncListener> listeners = new ArrayList<AsyncListener>();
+
+        public final AtomicInteger completions = new AtomicInteger();
+
+        public volatile boolean started;
+
+        public volatile long timeout;
+
+        protected ServletRequest _request;
+
+        protected ServletResponse _response;
+
+        public void setRequestAndResponse(ServletRequest req, ServletResponse resp) {
+            _request = req;
+            _response = resp;
+        }
+
+        /**
+         * Method for simulating container timing out the request
+         */
+        public void fireTimeout() throws IOException {
+            for (AsyncListener l : new ArrayList<AsyncListener>(listeners)) {
+                l.onTimeout(new AsyncEvent(this));
+            }
+        }
+
+        /**
+         * Method for simulating container reporting a failure (such as
+         * client closing the connection)
+         */
+        public void fireError(Throwable t) throws IOException {
+            for (AsyncListener l : new ArrayList<AsyncListener>(listeners)) {
+                l.onError(new AsyncEvent(this, t));
+            }
+        }
+
+        @Override
+        public ServletRequest getRequest() { return _request; }
+
+        @Override
+        public ServletResponse getResponse() { return _response; }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() { return true; }
+
+        @Override
+        public void dispatch() { throw new UnsupportedOperationException(); }
+
+        @Override
+        public void dispatch(String path) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public void dispatch(ServletContext context, String path) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public void complete() {
+            if (completions.incrementAndGet() > 1) {
+                throw new IllegalStateException("Already completed");
+            }
+        }
+
+        @Override
+        public void start(Runnable run) {
+            run.run();
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener, ServletRequest req, ServletResponse resp) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> cls) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setTimeout(long t) { timeout = t; }
+
+        @Override
+        public long getTimeout() { return timeout; }
+    }
+
+    /*
+    /**********************************************************************
+    /* Non-blocking streams
+    /**********************************************************************
+     */
+
+    /**
+     * Input that exposes content made available by test, one
+     * {@link #feed} call at a time.
+     */
+    public static class Input extends ServletInputStream
+    {
+        public ReadListener listener;
+
+        protected byte[] _data = new byte[0];
+
+        protected int _offset;
+
+        protected boolean _finished;
+
+        /**
+         * Method for making more content available, and notifying listener
+         */
+        public void feed(byte[] data, int offset, int len) throws IOException
+        {
+            byte[] b = new byte[len];
+            System.arraycopy(data, offset, b, 0, len);
+            _data = b;
+            _offset = 0;
+            listener.onDataAvailable();
+        }
+
+        /**
+         * Method for indicating end of content, and notifying listener
+         */
+        public void finish() throws IOException
+        {
+            _finished = true;
+            listener.onAllDataRead();
+        }
+
+        @Override
+        public boolean isFinished() { return _finished && (_offset == _data.length); }
+
+        @Override
+        public boolean isReady() { return _offset < _data.length; }
+
+        @Override
+        public void setReadListener(ReadListener l) { listener = l; }
+
+        @Override
+        public int read() throws IOException {
+            if (_offset >= _data.length) {
+                throw new IOException("Read when not ready");
+            }
+            return _data[_offset++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) throws IOException
+        {
+            if (_offset >= _data.length) {
+                throw new IOException("Read when not ready");
+            }
+            int count = Math.min(len, _data.length - _offset);
+            System.arraycopy(_data, _offset, buffer, offset, count);
+            _offset += count;
+            return count;
+        }
+    }
+
+    /**
+     * Output that accepts up to specified number of bytes before
+     * becoming not ready; and that may be made to fail, to simulate
+     * client closing the connection.
+     */
+    public static class Output extends ServletOutputStream
+    {
+        public WriteListener listener;
+
+        public final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Number of bytes that may be written before output is no longer ready
+         */
+        public volatile long writable = Long.MAX_VALUE;
+
+        public volatile IOException failure;
+
+        /**
+         * Method for allowing more content to be written, and notifying listener
+         */
+        public void allow(long count) throws IOException
+        {
+            writable = count;
+            listener.onWritePossible();
+        }
+
+        @Override
+        public boolean isReady() { return writable > 0L; }
+
+        @Override
+        public void setWriteListener(WriteListener l) {
+            listener = l;
+            try {
+                l.onWritePossible();
+            } catch (IOException e) {
+                l.onError(e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int len) throws IOException
+        {
+            if (failure != null) {
+                throw failure;
+            }
+            if (writable <= 0L) {
+                throw new IOException("Write when not ready");
+            }
+            bytes.write(b, offset, len);
+            writable -= len;
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods
+    /**********************************************************************
+     */
+
+    protected static Object _defaultValue(Class<?> type)
+    {
+        if (type == Boolean.TYPE) {
+            return Boolean.FALSE;
+        }
+        if (type == Integer.TYPE) {
+            return 0;
+        }
+        if (type == Long.TYPE) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -26,6 +26,7 @@ public class PathsForTests extends RequestPathStrategy<TestPath>
 
     protected final static String SEGMENT_LIST = "list";
     protected final static String SEGMENT_PULL = "pull";
+    protected final static String SEGMENT_TREE = "tree";
     
     /*
     /**********************************************************************
@@ -60,6 +61,8 @@ public class PathsForTests extends RequestPathStrategy<TestPath>
             return _syncPath(basePath).addPathSegment(SEGMENT_LIST);
         case SYNC_PULL:
             return _syncPath(basePath).addPathSegment(SEGMENT_PULL);
+        case SYNC_TREE:
+            return _syncPath(basePath).addPathSegment(SEGMENT_TREE);
 
         default:
             throw new UnsupportedOperationException("No support yet for "+type);
@@ -103,6 +106,11 @@ public class PathsForTests extends RequestPathStrategy<TestPath>
         return _syncPath(basePath).addPathSegment(SEGMENT_PULL);
     }
 
+    @Override
+    public <B extends RequestPathBuilder<B>> B appendSyncTreePath(B basePath) {
+        return _syncPath(basePath).addPathSegment(SEGMENT_TREE);
+    }
+
     @Override
     public <B extends RequestPathBuilder<B>> B appendNodeStatusPath(B basePath) {
         return _nodePath(basePath).addPathSegment(SEGMENT_STATUS);
@@ -170,6 +178,9 @@ public class PathsForTests extends RequestPathStrategy<TestPath>
             if (pathDecoder.matchPathSegment(SEGMENT_PULL)) {
                 return TestPath.SYNC_PULL;
             }
+            if (pathDecoder.matchPathSegment(SEGMENT_TREE)) {
+                return TestPath.SYNC_TREE;
+            }
         } else if (pathDecoder.matchPathSegment(FIRST_SEGMENT_REMOTE)) {
             if (pathDecoder.matchPathSegment(SEGMENT_SYNC)) {
                 if (pathDecoder.matchPathSegment(SEGMENT_LIST)) {
@@ -19,7 +19,7 @@ public class StoreHandlerForTests extends StoreHandler<TestKey, StoredEntry<Test
     @Override
     protected DeferredDeleter constructDeleter(SharedServiceStuff stuff, Stores<TestKey,?> stores)
     {
-        return DeferredDeleter.nonDeferring(stores.getEntryStore());
+        return DeferredDeleter.nonDeferring(stores.getEntryStore(), stuff);
     }
     
     @Override
@@ -23,6 +23,7 @@ public enum TestPath
     // access to sync information
     SYNC_LIST, // request for change list (ids)
     SYNC_PULL, // request for specific (changed/new) entries
+    SYNC_TREE, // hash trees for anti-entropy
     
     REMOTE_SYNC_LIST, // request for change list (ids)
     REMOTE_SYNC_PULL, // request for specific (changed/new) entries
@@ -7,17 +7,24 @@ import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import com.fasterxml.storemate.shared.StorableKey;
 import com.fasterxml.storemate.shared.TimeMaster;
+import com.fasterxml.storemate.store.StorableCreationResult;
 import com.fasterxml.storemate.store.StoreConfig;
 import com.fasterxml.storemate.store.file.FileManager;
 import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.api.EntryKeyConverter;
 import com.fasterxml.clustermate.api.RequestPathStrategy;
+import com.fasterxml.clustermate.api.codec.CompressionCodecs;
 import com.fasterxml.clustermate.api.msg.ListItem;
 import com.fasterxml.clustermate.json.ClusterMateTypesModule;
 import com.fasterxml.clustermate.service.cfg.ServiceConfig;
+import com.fasterxml.clustermate.service.store.EntryContentCache;
+import com.fasterxml.clustermate.service.store.EntryMetadataCache;
 import com.fasterxml.clustermate.service.store.StoredEntry;
 import com.fasterxml.clustermate.service.store.StoredEntryConverter;
+import com.fasterxml.clustermate.service.sync.EntryHashTrees;
+import com.fasterxml.clustermate.service.sync.SyncListWaiters;
 
 /**
  * Since we need to pass lots of shared helper objects this class
@@ -41,6 +48,24 @@ public abstract class SharedServiceStuff
 
     protected final RequestPathStrategy<?> _pathStrategy;
 
+    /**
+     * Caches are created lazily, since configuration is only
+     * available via sub-class.
+     */
+    protected EntryContentCache _contentCache;
+
+    protected boolean _contentCacheInited;
+
+    protected EntryMetadataCache _metadataCache;
+
+    protected boolean _metadataCacheInited;
+
+    protected volatile SyncListWaiters _syncListWaiters;
+
+    protected volatile EntryHashTrees _hashTrees;
+
+    protected boolean _hashTreesInited;
+
     /*
     /**********************************************************************
     /* Construction
@@ -111,6 +136,153 @@ public abstract class SharedServiceStuff
         return _pathStrategy;
     }
 
+    /**
+     * Accessor for codecs used for compressing and uncompressing entry
+     * content; sub-classes may override to register alternate codecs.
+     */
+    public CompressionCodecs getCompressionCodecs() {
+        return CompressionCodecs.std();
+    }
+
+    /**
+     * Accessor for shared in-memory content cache, if one is enabled
+     * by configuration.
+     *
+     * @return Content cache to use, if enabled; null if not
+     */
+    public synchronized EntryContentCache getContentCache()
+    {
+        if (!_contentCacheInited) {
+            _contentCacheInited = true;
+            ServiceConfig config = getServiceConfig();
+            _contentCache = EntryContentCache.construct(config.contentCache);
+        }
+        return _contentCache;
+    }
+
+    /**
+     * Accessor for shared in-memory entry metadata cache, if one is enabled
+     * by configuration.
+     *
+     * @return Metadata cache to use, if enabled; null if not
+     */
+    public synchronized EntryMetadataCache getMetadataCache()
+    {
+        if (!_metadataCacheInited) {
+            _metadataCacheInited = true;
+            ServiceConfig config = getServiceConfig();
+            _metadataCache = EntryMetadataCache.construct(config.metadataCache);
+        }
+        return _metadataCache;
+    }
+
+    /**
+     * Accessor for the registry of asynchronously waiting "Sync List" requests;
+     * constructed lazily when first needed.
+     */
+    public synchronized SyncListWaiters getSyncListWaiters()
+    {
+        if (_syncListWaiters == null) {
+            _syncListWaiters = new SyncListWaiters(getKeyConverter(), _timeMaster,
+                    getServiceConfig().cfgSyncGracePeriod.getMillis());
+        }
+        return _syncListWaiters;
+    }
+
+    /**
+     * Accessor for hash trees used for anti-entropy, if enabled by
+     * configuration; constructed lazily when first needed.
+     *
+     * @return Hash trees to use, if enabled; null if not
+     */
+    public synchronized EntryHashTrees getEntryHashTrees()
+    {
+        if (!_hashTreesInited) {
+            _hashTreesInited = true;
+            ServiceConfig config = getServiceConfig();
+            if (config.antiEntropy.enabled) {
+                _hashTrees = new EntryHashTrees(getKeyConverter(), _timeMaster,
+                        config.cluster.clusterKeyspaceSize, config.antiEntropy);
+            }
+        }
+        return _hashTrees;
+    }
+
+    /**
+     * Method that must be called before an entry may be created or replaced;
+     * and that must be followed by a call to either
+     * {@link #entryModified(StorableKey, StorableCreationResult)} or
+     * {@link #entryNotModified}, once operation completes or fails.
+     */
+    public void entryModifying(StorableKey key)
+    {
+        EntryHashTrees trees = getEntryHashTrees();
+        if (trees != null) {
+            trees.entryUpdating(key);
+        }
+    }
+
+    /**
+     * Variant of {@link #entryModified(StorableKey)} to call when an entry
+     * has been created or replaced, to also allow incremental updating of
+     * hash trees used for anti-entropy (if enabled).
+     *
+     * @param result Result of the operation; may be null if operation failed
+     */
+    public void entryModified(StorableKey key, StorableCreationResult result)
+    {
+        entryModified(key);
+        EntryHashTrees trees = getEntryHashTrees();
+        if (trees != null) {
+            trees.entryCreated(key, result);
+        }
+    }
+
+    /**
+     * Method to call if creation or replacement of an entry, announced by
+     * {@link #entryModifying}, did not modify the entry (failed, or was
+     * found redundant).
+     */
+    public void entryNotModified(StorableKey key)
+    {
+        EntryHashTrees trees = getEntryHashTrees();
+        if (trees != null) {
+            trees.entryCreated(key, null);
+        }
+    }
+
+    /**
+     * Method that must be called when an entry has been inserted, deleted
+     * or otherwise modified: makes sure that no stale information is
+     * served from in-memory caches, and that Sync List requests waiting
+     * for entries get notified.
+     */
+    public void entryModified(StorableKey key)
+    {
+        invalidateCachedEntry(key);
+        SyncListWaiters waiters = _syncListWaiters;
+        if (waiters != null) {
+            waiters.entryModified(key);
+        }
+    }
+
+    /**
+     * Method for making sure that no stale information is served from
+     * in-memory caches (if any are enabled) for given entry.
+     * Usually called via {@link #entryModified}.
+     */
+    public void invalidateCachedEntry(StorableKey key)
+    {
+        EntryMetadataCache metadataCache = getMetadataCache();
+        if (metadataCache != null) {
+            metadataCache.invalidate(key);
+        }
+        EntryContentCache contentCache = getContentCache();
+        if (contentCache != null) {
+            contentCache.invalidate(key);
+        }
+    }
+
     /*
     /**********************************************************************
     /* Convenience methods for TimeMaster
@@ -0,0 +1,76 @@
+package com.fasterxml.clustermate.service.cfg;
+
+import org.skife.config.TimeSpan;
+
+/**
+ * Configuration container used for defining whether and how nodes
+ * use hash trees (Merkle trees) over their key ranges to find and repair
+ * differences with peers ("anti-entropy"), in addition to regular
+ * timestamp-based synchronization.
+ * Anti-entropy is disabled by default.
+ */
+public class AntiEntropyConfig
+{
+    /**
+     * Whether hash trees are maintained, and anti-entropy rounds run,
+     * or not.
+     *<p>
+     * Default value is false.
+     */
+    public boolean enabled;
+
+    /**
+     * Number of bits used for dividing each key range slot into leaves:
+     * each slot will have <code>2^leafBits</code> leaves. Higher values
+     * allow more accurate finding of differences, at the cost of bigger
+     * trees to exchange. Must be between 0 and 10, and the same for all
+     * nodes of the cluster.
+     *<p>
+     * Default value is 4 (16 leaves per slot).
+     */
+    public int leafBits;
+
+    /**
+     * Minimum interval between anti-entropy rounds done with each peer.
+     *<p>
+     * Default value is 10 minutes.
+     */
+    public TimeSpan interval;
+
+    /**
+     * Interval between full rebuilds of hash trees, done to correct any
+     * drift caused by modifications that are not reflected incrementally
+     * (such as removal of expired entries and tombstones).
+     *<p>
+     * Default value is 6 hours.
+     */
+    public TimeSpan rebuildInterval;
+
+    /**
+     * Maximum number of keys to index by leaf, in memory, to allow listing
+     * entries of differing leaves without scanning through all entries.
+     * If store has more entries, index is not used and listing scans all
+     * keys instead. Memory usage is roughly 100 bytes plus length of key,
+     * per key; 0 disables indexing.
+     *<p>
+     * Default value is 250,000.
+     */
+    public int maxIndexedKeys;
+
+    public AntiEntropyConfig() {
+        this(false, 4, new TimeSpan("10m"), new TimeSpan("6h"), 250000);
+    }
+
+    public AntiEntropyConfig(boolean enabled, int leafBits,
+            TimeSpan interval, TimeSpan rebuildInterval, int maxIndexedKeys)
+    {
+        if (leafBits < 0 || leafBits > 10) {
+            throw new IllegalArgumentException("leafBits ("+leafBits+") must be between 0 and 10");
+        }
+        this.enabled = enabled;
+        this.leafBits = leafBits;
+        this.interval = interval;
+        this.rebuildInterval = rebuildInterval;
+        this.maxIndexedKeys = maxIndexedKeys;
+    }
+}
@@ -0,0 +1,47 @@
+package com.fasterxml.clustermate.service.cfg;
+
+/**
+ * Configuration for block indexes of LZF-compressed files, used for
+ * serving range requests (GETs with "Range" header) by seeking directly
+ * to the first compressed block that covers requested range, instead of
+ * uncompressing all content that precedes it.
+ * Indexes are built by scanning block headers of a file when first needed,
+ * and kept in a bounded in-memory cache.
+ * Indexing is enabled by default.
+ */
+public class BlockIndexConfig
+{
+    /**
+     * Whether block indexes are used for range requests or not.
+     *<p>
+     * Default value is true.
+     */
+    public boolean enabled;
+
+    /**
+     * Minimum length of compressed file for which block index is used;
+     * smaller files are simply uncompressed from the beginning.
+     *<p>
+     * Default value is 1 megabyte.
+     */
+    public long minFileLength;
+
+    /**
+     * Maximum number of block indexes to keep cached; value of 0
+     * means that indexes are built for each request separately.
+     *<p>
+     * Default value is 256.
+     */
+    public int maxCachedIndexes;
+
+    public BlockIndexConfig() {
+        this(true, 1024L * 1024L, 256);
+    }
+
+    public BlockIndexConfig(boolean enabled, long minFileLength, int maxCachedIndexes)
+    {
+        this.enabled = enabled;
+        this.minFileLength = minFileLength;
+        this.maxCachedIndexes = maxCachedIndexes;
+    }
+}
@@ -0,0 +1,46 @@
+package com.fasterxml.clustermate.service.cfg;
+
+/**
+ * Configuration for the optional server-side in-memory cache of
+ * frequently accessed ("hot") entry content, used to serve GET requests
+ * without store lookups or file access.
+ * Cache is disabled by default.
+ */
+public class ContentCacheConfig
+{
+    /**
+     * Maximum amount of (off-heap) memory to use for cached content,
+     * in bytes. Value of 0 (or negative) disables caching.
+     *<p>
+     * Default value is 0, i.e. cache is disabled.
+     */
+    public long maxMemory = 0L;
+
+    /**
+     * Maximum length of an individual entry to cache (for stored,
+     * possibly compressed content).
+     *<p>
+     * Default value is 256 kB.
+     */
+    public int maxEntryLength = 256 * 1024;
+
+    /**
+     * Whether uncompressed content of compressed entries should also be
+     * cached (if it does not exceed {@link #maxEntryLength}), so that
+     * requests that require uncompression (including Range requests)
+     * may be served without uncompressing content for each request.
+     *<p>
+     * Default value is true.
+     */
+    public boolean cacheUncompressed = true;
+
+    public ContentCacheConfig() { }
+
+    public ContentCacheConfig(long maxMemory, int maxEntryLength,
+            boolean cacheUncompressed)
+    {
+        this.maxMemory = maxMemory;
+        this.maxEntryLength = maxEntryLength;
+        this.cacheUncompressed = cacheUncompressed;
+    }
+}
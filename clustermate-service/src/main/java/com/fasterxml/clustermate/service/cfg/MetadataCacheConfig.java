@@ -0,0 +1,47 @@
+package com.fasterxml.clustermate.service.cfg;
+
+/**
+ * Configuration for the optional server-side in-memory cache of entry
+ * metadata, used for GET, HEAD and info requests to avoid store lookups
+ * for recently accessed entries; including entries that do not exist
+ * ("negative caching").
+ * Cache is disabled by default.
+ */
+public class MetadataCacheConfig
+{
+    /**
+     * Maximum amount of memory to use for cached metadata (and inlined
+     * content of small entries), in bytes. Value of 0 (or negative)
+     * disables caching.
+     *<p>
+     * Default value is 0, i.e. cache is disabled.
+     */
+    public long maxMemory = 0L;
+
+    /**
+     * Maximum time that information about an existing entry (or tombstone)
+     * is cached, in milliseconds. Since all changes made through this
+     * service invalidate cached information, this only limits staleness
+     * caused by external changes, such as removal of expired entries.
+     *<p>
+     * Default value is 30 seconds.
+     */
+    public long maxAgeMsecs = 30000L;
+
+    /**
+     * Time that information about a missing entry is cached, in
+     * milliseconds. Value of 0 (or negative) disables negative caching.
+     *<p>
+     * Default value is 1 second.
+     */
+    public long missingTTLMsecs = 1000L;
+
+    public MetadataCacheConfig() { }
+
+    public MetadataCacheConfig(long maxMemory, long maxAgeMsecs, long missingTTLMsecs)
+    {
+        this.maxMemory = maxMemory;
+        this.maxAgeMsecs = maxAgeMsecs;
+        this.missingTTLMsecs = missingTTLMsecs;
+    }
+}
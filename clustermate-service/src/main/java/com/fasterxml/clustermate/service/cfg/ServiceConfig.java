@@ -154,6 +154,24 @@ public abstract class ServiceConfig
      * for details.
      */
     public DeferredDeleteConfig deletes = new DeferredDeleteConfig();
+
+    /**
+     * Optional in-memory cache for content of frequently read entries;
+     * disabled by default.
+     */
+    public ContentCacheConfig contentCache = new ContentCacheConfig();
+
+    /**
+     * Optional in-memory cache for metadata of recently accessed entries
+     * (including missing ones); disabled by default.
+     */
+    public MetadataCacheConfig metadataCache = new MetadataCacheConfig();
+
+    /**
+     * Settings for block indexes used to serve range requests for large
+     * compressed entries; enabled by default.
+     */
+    public BlockIndexConfig blockIndex = new BlockIndexConfig();
     
     /*
     /**********************************************************************
@@ -244,6 +262,13 @@ public abstract class ServiceConfig
      */
     public int cfgMaxEntriesPerSyncList = 500;
 
+    /**
+     * How many entries can we return with each sync-list call, when using
+     * compact binary encoding? Encoded entries take only a few dozen bytes
+     * each, so this can be much higher than {@link #cfgMaxEntriesPerSyncList}.
+     */
+    public int cfgMaxEntriesPerBinarySyncList = 2000;
+
     /**
      * What is the maximum amount of time server may keep connection
      * for "Sync List" open before having to return empty result
@@ -257,6 +282,59 @@ public abstract class ServiceConfig
      */
     public TimeSpan cfgSyncMaxLongPollTime = new TimeSpan("3s");
 
+    /**
+     * Setting that determines whether "Sync List" long-polling should be done
+     * asynchronously, if the container supports it (Servlet 3.0): if so,
+     * no thread is held while waiting, and requests are completed as soon
+     * as entries become available (inserted entries having passed the grace
+     * period), or at latest when {@link #cfgSyncMaxLongPollTime} has passed.
+     *<p>
+     * Default setting is false.
+     */
+    public boolean cfgSyncAsyncLongPoll = false;
+
+    /**
+     * Settings for fetching missing entries from peers: whether multiple
+     * sync-pull requests may be outstanding at the same time.
+     */
+    public SyncPullConfig syncPull = new SyncPullConfig();
+
+    /**
+     * Optional hash-tree based anti-entropy, used for finding differences
+     * that timestamp-based synchronization misses; disabled by default.
+     */
+    public AntiEntropyConfig antiEntropy = new AntiEntropyConfig();
+
+    /*
+    /**********************************************************************
+    /* Request handling: non-blocking I/O
+    /**********************************************************************
+     */
+
+    /**
+     * Setting that determines whether entry GET and PUT requests should
+     * use non-blocking I/O, if the container supports it (Servlet 3.1):
+     * if enabled, content is only read and written when connection is
+     * ready, so that slow clients do not hold on to container threads.
+     *<p>
+     * Default setting is false.
+     */
+    public boolean cfgNonBlockingEntryIO = false;
+
+    /**
+     * Maximum length of PUT content that is read in (off-heap) memory
+     * using non-blocking input, before being passed to the store.
+     * Content that is longer, or of unknown length, is read using
+     * blocking I/O.
+     */
+    public int cfgNonBlockingMaxPutLength = 4 * 1024 * 1024;
+
+    /**
+     * Maximum time allowed for non-blocking reading or writing of content
+     * for a single request, after which request is failed.
+     */
+    public TimeSpan cfgNonBlockingIOTimeout = new TimeSpan("60s");
+
     /*
     /**********************************************************************
     /* Metrics settings
@@ -0,0 +1,71 @@
+package com.fasterxml.clustermate.service.cfg;
+
+/**
+ * Configuration container used for defining how entries missing from the
+ * local node are fetched from peers ("sync pull"): by default one request
+ * at a time, fully processed before sending the next one; or pipelined,
+ * with multiple outstanding requests per peer. Also contains settings
+ * for serving sync-pull requests.
+ */
+public class SyncPullConfig
+{
+    /**
+     * Maximum number of sync-pull requests outstanding to a single peer
+     * at any given time. If 1, requests are done sequentially, and entries
+     * stored as they are read; if higher, missing entries are divided into
+     * batches of similar size, fetched concurrently, and (smaller) entries
+     * stored by the sync thread from a bounded queue.
+     *<p>
+     * Default value is 1.
+     */
+    public int maxOutstandingRequests;
+
+    /**
+     * Maximum number of entries read from peers but not yet stored locally,
+     * when pipelining; if the queue is full, reading of responses is paused.
+     *<p>
+     * Default value is 200.
+     */
+    public int applyQueueSize;
+
+    /**
+     * Maximum storage size of entries that are buffered in memory and
+     * added to the apply queue, when pipelining; bigger entries are stored
+     * directly by the thread reading the response.
+     *<p>
+     * Default value is 64 kB.
+     */
+    public int maxQueuedEntrySize;
+
+    /**
+     * Number of entries following the one being written, for which files are
+     * opened, and beginning of contents read, in background when serving
+     * sync-pull requests. If 0, no read-ahead is done.
+     *<p>
+     * Default value is 2.
+     */
+    public int readAheadEntries;
+
+    public SyncPullConfig() {
+        this(1, 200, 64 * 1024, 2);
+    }
+
+    public SyncPullConfig(int maxOutstandingRequests, int applyQueueSize, int maxQueuedEntrySize,
+            int readAheadEntries)
+    {
+        if (maxOutstandingRequests < 1) {
+            throw new IllegalArgumentException("maxOutstandingRequests ("+maxOutstandingRequests+") must be positive");
+        }
+        if (applyQueueSize < 1) {
+            throw new IllegalArgumentException("applyQueueSize ("+applyQueueSize+") must be positive");
+        }
+        this.maxOutstandingRequests = maxOutstandingRequests;
+        this.applyQueueSize = applyQueueSize;
+        this.maxQueuedEntrySize = maxQueuedEntrySize;
+        this.readAheadEntries = readAheadEntries;
+    }
+
+    public boolean isPipelined() {
+        return maxOutstandingRequests > 1;
+    }
+}
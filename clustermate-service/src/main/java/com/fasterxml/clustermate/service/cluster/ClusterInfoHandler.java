@@ -32,11 +32,19 @@ public class ClusterInfoHandler
     /**
      * Simple read request for getting snapshot of Cluster status as seen
      * by this node.
+     *<p>
+     * If request has parameter {@link ClusterMateConstants#QUERY_PARAM_SINCE},
+     * and cluster information has not been updated since that timestamp,
+     * "304 Not Modified" is returned without content.
      */
     @SuppressWarnings("unchecked")
     public <RESP extends ServiceResponse> RESP getStatus(ServiceRequest request, RESP response,
             OperationDiagnostics metadata)
     {
+        long since = _findLongParam(request, ClusterMateConstants.QUERY_PARAM_SINCE);
+        if (since > 0L && _cluster.getLastUpdated() <= since) {
+            return (RESP) response.notChanged();
+        }
         // use streaming impl just so we'll use specific ObjectWriter
         // true -> do include remote peer info too
         return (RESP) response.ok(new StreamingEntityImpl(_writer, _cluster.asMessage(true)))
@@ -1,10 +1,10 @@
 package com.fasterxml.clustermate.service.cluster;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -13,17 +13,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.storemate.shared.*;
+import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.hash.HashConstants;
+import com.fasterxml.storemate.shared.util.BufferRecycler;
 import com.fasterxml.storemate.shared.util.IOUtil;
+import com.fasterxml.storemate.shared.util.WithBytesCallback;
 import com.fasterxml.storemate.store.*;
 import com.fasterxml.storemate.store.state.NodeStateStore;
 import com.fasterxml.storemate.store.util.BoundedInputStream;
 import com.fasterxml.clustermate.api.*;
 import com.fasterxml.clustermate.service.SharedServiceStuff;
+import com.fasterxml.clustermate.service.cfg.SyncPullConfig;
 import com.fasterxml.clustermate.service.state.ActiveNodeState;
+import com.fasterxml.clustermate.service.store.SortedKeyLookup;
 import com.fasterxml.clustermate.service.store.StoredEntry;
 import com.fasterxml.clustermate.service.store.StoredEntryConverter;
 import com.fasterxml.clustermate.service.sync.*;
 import com.fasterxml.clustermate.service.util.StoreUtil;
+import com.fasterxml.clustermate.std.ChecksumUtil;
 
 public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
     extends ClusterPeer
@@ -76,6 +83,19 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
      */
     private final int MAX_FETCH_TRIES = 20;
 
+    /**
+     * When pipelining sync-pulls, sync thread checks whether all requests
+     * have completed at this interval, if no entries are queued.
+     */
+    private final static long POLL_FOR_PULLED_MSECS = 20L;
+
+    /**
+     * Recyclable buffers used for reading contents of inlineable entries
+     * during sync-pull; sized for default maximum inlined size, but will
+     * grow as necessary.
+     */
+    private final static BufferRecycler _pullBuffers = new BufferRecycler(StoreConfig.DEFAULT_MAX_INLINED);
+
     private final static Logger LOG = LoggerFactory.getLogger(ClusterPeerImpl.class);
     
     /*
@@ -127,6 +147,12 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
      */
     protected final StorableStore _entryStore;
 
+    /**
+     * Helper object used for finding local copies of listed entries
+     * in key order
+     */
+    protected final SortedKeyLookup _keyLookup;
+
     /**
      * Need to construct metadata nuggets with this factory
      */
@@ -163,6 +189,11 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
      * on list response if hash differs.
      */
     protected long _lastClusterHash;
+
+    /**
+     * Timestamp of the last anti-entropy round done with the peer, if any.
+     */
+    protected long _lastAntiEntropy;
     
     /*
     /**********************************************************************
@@ -174,6 +205,12 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
      * Synchronization state of this peer
      */
     protected ActiveNodeState _syncState;
+
+    /**
+     * Threads used for sending concurrent sync-pull requests, if pipelining
+     * is enabled; created when first needed.
+     */
+    protected ExecutorService _syncPullExecutor;
     
     /*
     /**********************************************************************
@@ -185,14 +222,28 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
             NodeStateStore<IpAndPort, ActiveNodeState> stateStore, StorableStore entryStore,
             ActiveNodeState state,
             ClusterStatusAccessor accessor)
+    {
+        this(stuff, cluster, stateStore, entryStore, state, accessor,
+                new SyncListAccessor(stuff));
+    }
+
+    /**
+     * Constructor that allows specifying accessor to use for sync calls;
+     * mostly useful for testing.
+     */
+    protected ClusterPeerImpl(SharedServiceStuff stuff, ClusterViewByServerUpdatable cluster,
+            NodeStateStore<IpAndPort, ActiveNodeState> stateStore, StorableStore entryStore,
+            ActiveNodeState state,
+            ClusterStatusAccessor accessor, SyncListAccessor syncListAccessor)
     {
         super();
         _cluster = cluster;
         _stuff = stuff;
-        _syncListAccessor = new SyncListAccessor(stuff);
+        _syncListAccessor = syncListAccessor;
         _syncState = state;
         _stateStore = stateStore;
         _entryStore = entryStore;
+        _keyLookup = new SortedKeyLookup(entryStore);
         _timeMaster = stuff.getTimeMaster();
         _entryConverter = stuff.getEntryConverter();
         _statusAccessor = accessor;
@@ -237,6 +288,11 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
 //            t.notify();
             t.interrupt();
         }
+        synchronized (this) {
+            if (_syncPullExecutor != null) {
+                _syncPullExecutor.shutdownNow();
+            }
+        }
         _syncListAccessor.stop();
     }
 
@@ -457,6 +513,10 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
         if (insertedEntryCount == 0) { // nothing to update
             // may still need to update timestamp?
             _updatePersistentState(listTime, lastSeenTimestamp);
+            // and since we are caught up, may want to check for missed entries
+            if (_antiEntropyDue()) {
+                _doAntiEntropy();
+            }
 
             // Ok: maybe server instructed us as to how long to sleep?
             long sleepMsecs = syncResp.clientWait;
@@ -472,7 +532,8 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
         @SuppressWarnings("unused")
         int tombstoneCount = _handleTombstones(newEntries);
         // then filter out entries that we already have:
-        _filterSeen(newEntries);
+        Map<StorableKey,Storable> localEntries = _findLocalEntries(newEntries);
+        _filterSeen(newEntries, localEntries);
         if (!_running.get()) { // short-circuit during shutdown
             return;
         }
@@ -598,17 +659,163 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
         return null;
     }
 
+    /*
+    /**********************************************************************
+    /* Anti-entropy
+    /**********************************************************************
+     */
+
+    protected boolean _antiEntropyDue()
+    {
+        EntryHashTrees trees = _stuff.getEntryHashTrees();
+        if (trees == null || !trees.isBuilt()) {
+            return false;
+        }
+        long interval = _stuff.getServiceConfig().antiEntropy.interval.getMillis();
+        return (_timeMaster.currentTimeMillis() - _lastAntiEntropy) >= interval;
+    }
+
+    /**
+     * Method for finding and fetching entries that regular synchronization
+     * has missed, by comparing hash trees of shared key range with the peer:
+     * first hashes of slots; then hashes of leaves of differing slots; and
+     * finally listing entries of differing leaves.
+     * Found entries are handled same way as listed entries, except that
+     * 'syncedUpTo' is not updated.
+     */
+    protected void _doAntiEntropy() throws InterruptedException, IOException, StoreException
+    {
+        _lastAntiEntropy = _timeMaster.currentTimeMillis();
+        final EntryHashTrees trees = _stuff.getEntryHashTrees();
+        final KeyRange range = getSyncRange();
+        if (range.getLength() == 0) {
+            return;
+        }
+        final IpAndPort endpoint = _syncState.getAddress();
+        final long startTime = _lastAntiEntropy;
+
+        SyncTreeResponse remote = _syncListAccessor.fetchHashTree(endpoint, range, 0,
+                TIMEOUT_FOR_SYNCLIST);
+        if (remote == null || remote.hashes == null) {
+            return;
+        }
+        if (remote.leafBits != trees.getLeafBits()) {
+            LOG.warn("Can not do anti-entropy with {}: leafBits differ ({} vs {})",
+                    new Object[] { endpoint, remote.leafBits, trees.getLeafBits() });
+            return;
+        }
+        long[] local = trees.slotHashes(range);
+        if (local == null || local.length != remote.hashes.length) {
+            return;
+        }
+        // First: find leaves that differ, within slots that differ
+        final int leafBits = trees.getLeafBits();
+        BitSet leaves = new BitSet();
+        int diffSlots = 0;
+        for (int i = 0; i < local.length; ++i) {
+            if (local[i] == remote.hashes[i]) {
+                continue;
+            }
+            ++diffSlots;
+            final int slot = (range.getStart() + i) % trees.getSlotCount();
+            SyncTreeResponse remoteLeaves = _syncListAccessor.fetchHashTree(endpoint,
+                    range.getKeyspace().range(slot, 1), 1, TIMEOUT_FOR_SYNCLIST);
+            long[] localLeaves = trees.leafHashes(slot);
+            if (remoteLeaves == null || remoteLeaves.hashes == null
+                    || localLeaves == null || localLeaves.length != remoteLeaves.hashes.length) {
+                return;
+            }
+            for (int j = 0; j < localLeaves.length; ++j) {
+                if (localLeaves[j] != remoteLeaves.hashes[j]) {
+                    leaves.set((slot << leafBits) + j);
+                }
+            }
+        }
+        if (leaves.isEmpty()) {
+            return;
+        }
+        int[] leafIndexes = new int[leaves.cardinality()];
+        for (int i = 0, ix = leaves.nextSetBit(0); ix >= 0; ix = leaves.nextSetBit(ix+1)) {
+            leafIndexes[i++] = ix;
+        }
+
+        // And then list and fetch entries of those leaves
+        int listed = 0, fetched = 0;
+        StorableKey lastSeen = null;
+        do {
+            SyncTreeListResponse<?> resp = _syncListAccessor.fetchTreeEntries(endpoint,
+                    new SyncTreeListRequest(leafIndexes, lastSeen), TIMEOUT_FOR_SYNCLIST);
+            if (resp == null || !_running.get()) {
+                break;
+            }
+            lastSeen = resp.lastSeen;
+            List<SyncListResponseEntry> entries = (resp.entries == null)
+                    ? new ArrayList<SyncListResponseEntry>() : resp.entries;
+            listed += entries.size();
+            _handleTombstones(entries);
+            Map<StorableKey,Storable> localEntries = _findLocalEntries(entries);
+            _filterSeen(entries, localEntries);
+            if (!entries.isEmpty()) {
+                int count = entries.size();
+                _fetchMissing(entries, new AtomicInteger(0));
+                fetched += (count - entries.size());
+            }
+        } while (lastSeen != null);
+
+        LOG.info("Anti-entropy with {}: {}/{} slots differed ({} leaves), fetched {}/{} listed entries in {} msecs",
+                new Object[] { endpoint, diffSlots, local.length, leafIndexes.length,
+                fetched, listed, _timeMaster.currentTimeMillis() - startTime });
+    }
+
+    /**
+     * Helper method for finding local copies of listed entries: lookups are
+     * done in key order, to allow traversing nearby keys with a single cursor
+     * (instead of separate random lookups), as long as keys are close enough.
+     *
+     * @return Local entries found, keyed by entry key
+     */
+    protected Map<StorableKey,Storable> _findLocalEntries(List<SyncListResponseEntry> entries)
+        throws IOException
+    {
+        if (entries.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        StorableKey[] keys = new StorableKey[entries.size()];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = entries.get(i).key;
+        }
+        Arrays.sort(keys);
+        // should not get duplicates, but if we do, must remove
+        int count = 1;
+        for (int i = 1; i < keys.length; ++i) {
+            if (!keys[i].equals(keys[count-1])) {
+                keys[count++] = keys[i];
+            }
+        }
+        if (count < keys.length) {
+            keys = Arrays.copyOf(keys, count);
+        }
+        Storable[] found = _keyLookup.findEntries(StoreOperationSource.SYNC, keys);
+        Map<StorableKey,Storable> result = new HashMap<StorableKey,Storable>();
+        for (int i = 0; i < count; ++i) {
+            if (found[i] != null) {
+                result.put(keys[i], found[i]);
+            }
+        }
+        return result;
+    }
+
     /**
      * Helper method called to handle removal of entries, by handling
      * tombstones received and converting existing non-deleted local
-     * entries into tombstones.
+     * entries into tombstones. Deletions are done in key order.
      * 
      * @return Number of tombstone entries found on the list
      */
     protected int _handleTombstones(List<SyncListResponseEntry> entries)
         throws IOException, StoreException
     {
-        int count = 0;
+        List<StorableKey> toDelete = null;
         Iterator<SyncListResponseEntry> it = entries.iterator();
         while (it.hasNext()) {
             SyncListResponseEntry entry = it.next();
@@ -617,16 +824,34 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
              *   Could think of it either way; but for now, let's not waste time and space
              */
             if (entry.deleted()) {
-                ++count;
                 it.remove();
-                _entryStore.softDelete(StoreOperationSource.SYNC, null, entry.key, true, true);
+                if (toDelete == null) {
+                    toDelete = new ArrayList<StorableKey>();
+                }
+                toDelete.add(entry.key);
             }
         }
-        return count;
+        if (toDelete == null) {
+            return 0;
+        }
+        // Store decides whether there is anything to delete, based on current state
+        Collections.sort(toDelete);
+        for (StorableKey key : toDelete) {
+            _entryStore.softDelete(StoreOperationSource.SYNC, null, key, true, true);
+            _stuff.entryModified(key);
+        }
+        return toDelete.size();
     }
 
-    protected void _filterSeen(List<SyncListResponseEntry> entries)
-        throws IOException, StoreException
+    /**
+     * Helper method for removing entries that we already have from the list,
+     * unless conflict resolution requires pulling of remote copy.
+     * 
+     * @param localEntries Local copies of listed entries, as returned by
+     *   {@link #_findLocalEntries}
+     */
+    protected void _filterSeen(List<SyncListResponseEntry> entries,
+            Map<StorableKey,Storable> localEntries)
     {
         Iterator<SyncListResponseEntry> it = entries.iterator();
         while (it.hasNext()) {
@@ -635,7 +860,7 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
              *   need to pay attention here, since conflict resolution may be
              *   necessary.
              */
-            Storable localEntry = _entryStore.findEntry(StoreOperationSource.SYNC, null, remoteEntry.key);
+            Storable localEntry = localEntries.get(remoteEntry.key);
             if (localEntry != null) {
                 // Do we have an actual conflict? If so, needs resolution as per:
                 if (StoreUtil.needToPullRemoteToResolve(localEntry.getLastModified(), localEntry.getContentHash(),
@@ -656,9 +881,12 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
      * 
      * @return Timestamp to use as the new 'syncedUpTo' value
      */
-    private long _fetchMissing(List<SyncListResponseEntry> missingEntries, AtomicInteger rounds)
+    protected long _fetchMissing(List<SyncListResponseEntry> missingEntries, AtomicInteger rounds)
         throws InterruptedException
     {
+        if (_stuff.getServiceConfig().syncPull.isPipelined()) {
+            return _fetchMissingPipelined(missingEntries, rounds);
+        }
         // initially create as big batches as possible
         int maxToFetch = missingEntries.size();
         int tries = 0;
@@ -777,6 +1005,299 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
         return syncedUpTo;
     }
 
+    /*
+    /**********************************************************************
+    /* Pipelined sync-pull
+    /**********************************************************************
+     */
+
+    /**
+     * Alternative to sequential fetching, used when multiple outstanding
+     * sync-pull requests are allowed: missing entries are divided into batches
+     * of similar total size, and fetched concurrently using sync-pull threads.
+     * Smaller entries are buffered in memory and queued to be stored by the
+     * calling (sync) thread; bigger ones are stored directly by the
+     * fetching thread.
+     * 
+     * @return Timestamp to use as the new 'syncedUpTo' value
+     */
+    private long _fetchMissingPipelined(List<SyncListResponseEntry> missingEntries,
+            AtomicInteger rounds)
+        throws InterruptedException
+    {
+        final SyncPullConfig config = _stuff.getServiceConfig().syncPull;
+        final ExecutorService executor = _syncPullExecutor(config.maxOutstandingRequests);
+        if (executor == null) { // shutting down
+            return 0L;
+        }
+        // need to keep track of all entries fetched, over all rounds
+        final SyncListResponseEntry[] allEntries = missingEntries.toArray(
+                new SyncListResponseEntry[missingEntries.size()]);
+        final boolean[] fetched = new boolean[allEntries.length];
+        int tries = 0;
+        int fails = 0;
+
+        do {
+            ++tries;
+            // entries still missing, in order, and their indexes in the full list
+            final SyncListResponseEntry[] entries = missingEntries.toArray(
+                    new SyncListResponseEntry[missingEntries.size()]);
+            final int[] indexes = new int[entries.length];
+            for (int i = 0, ix = 0; i < fetched.length; ++i) {
+                if (!fetched[i]) {
+                    indexes[ix++] = i;
+                }
+            }
+            final boolean[] done = new boolean[entries.length];
+            final BlockingQueue<PulledEntry> queue = new ArrayBlockingQueue<PulledEntry>(config.applyQueueSize);
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int[] batch : _buildBatches(entries, config.maxOutstandingRequests)) {
+                futures.add(executor.submit(_pullTask(entries, batch[0], batch[1], done,
+                        queue, config.maxQueuedEntrySize)));
+            }
+            rounds.addAndGet(futures.size());
+            fails += _applyPulled(queue, futures, done);
+
+            // need to retry ones not fetched
+            Iterator<SyncListResponseEntry> it = missingEntries.iterator();
+            for (int i = 0; it.hasNext(); ++i) {
+                it.next();
+                if (done[i]) {
+                    fetched[indexes[i]] = true;
+                    it.remove();
+                }
+            }
+        } while (fails < MAX_SYNC_FAILURES && !missingEntries.isEmpty() && tries < MAX_FETCH_TRIES
+                && _running.get());
+
+        if (fails > 0) {
+            _failCount.addAndGet(fails);
+        }
+        // can only advance timestamp up to the first entry not yet fetched
+        int prefix = 0;
+        while (prefix < fetched.length && fetched[prefix]) {
+            ++prefix;
+        }
+        return (prefix == 0) ? 0L : allEntries[prefix-1].insertionTime;
+    }
+
+    private synchronized ExecutorService _syncPullExecutor(int threads)
+    {
+        if (!_running.get()) {
+            return null;
+        }
+        if (_syncPullExecutor == null) {
+            final String name = "SyncPull-"+_syncState.getAddress();
+            _syncPullExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger _count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, name+"-"+_count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return _syncPullExecutor;
+    }
+
+    /**
+     * Helper method for dividing entries to fetch into consecutive batches
+     * of similar total size; at most {@link #MAX_TOTAL_PAYLOAD} each.
+     * 
+     * @return List of batches, as [start, end[ pairs of entry indexes
+     */
+    private List<int[]> _buildBatches(SyncListResponseEntry[] entries, int batchCount)
+    {
+        long totalSize = 0L;
+        for (SyncListResponseEntry entry : entries) {
+            totalSize += entry.size;
+        }
+        final long maxBatchSize = Math.min(MAX_TOTAL_PAYLOAD, (totalSize + batchCount - 1) / batchCount);
+        List<int[]> batches = new ArrayList<int[]>(batchCount);
+        int start = 0;
+        long batchSize = 0L;
+        for (int i = 0; i < entries.length; ++i) {
+            if (i > start && (batchSize + entries[i].size) > maxBatchSize) {
+                batches.add(new int[] { start, i });
+                start = i;
+                batchSize = 0L;
+            }
+            batchSize += entries[i].size;
+        }
+        if (start < entries.length) {
+            batches.add(new int[] { start, entries.length });
+        }
+        return batches;
+    }
+
+    private Callable<Integer> _pullTask(final SyncListResponseEntry[] entries,
+            final int start, final int end, final boolean[] done,
+            final BlockingQueue<PulledEntry> queue, final int maxQueuedEntrySize)
+    {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws InterruptedException {
+                return _pullBatch(entries, start, end, done, queue, maxQueuedEntrySize);
+            }
+        };
+    }
+
+    /**
+     * Method called by sync-pull threads to fetch a single batch of entries.
+     *
+     * @return Number of failures (0 or 1)
+     */
+    private int _pullBatch(SyncListResponseEntry[] entries, int start, int end,
+            boolean[] done, BlockingQueue<PulledEntry> queue, int maxQueuedEntrySize)
+        throws InterruptedException
+    {
+        final int expCount = end - start;
+        final long startTime = _timeMaster.currentTimeMillis();
+        SyncPullRequest req = new SyncPullRequest();
+        long expSize = 0L;
+        for (int i = start; i < end; ++i) {
+            req.addEntry(entries[i].key);
+            expSize += entries[i].size;
+        }
+        AtomicInteger status = new AtomicInteger(0);
+        InputStream in = null;
+        try {
+            in = _syncListAccessor.readLocalSyncPullResponse(req, TIMEOUT_FOR_SYNCLIST,
+                     getAddress(), status, (int) expSize);
+        } catch (Exception e) {
+            LOG.warn("Problem trying to make syncPull call to fetch "+expCount+" entries: ("
+                    +e.getClass().getName() + ") " + e.getMessage());
+        }
+        if (in == null) {
+            LOG.warn("Problem trying to fetch {} entries, received status code of {}",
+                    expCount, status.get());
+            _timeMaster.sleep(SLEEP_FOR_SYNCPULL_ERRORS_MSECS);
+            return 1;
+        }
+        final PullProblems probs = new PullProblems();
+        int count = 0;
+        try {
+            for (int i = start; i < end; ++i, ++count) {
+                int headerLength = SyncPullResponse.readHeaderLength(in);
+                if (headerLength == SyncHandler.LENGTH_EOF) {
+                    break;
+                }
+                if (headerLength == 0) { // missing; expired?
+                    ++probs.missing;
+                    done[i] = true;
+                    continue;
+                }
+                byte[] headerBytes = new byte[headerLength];
+                int len = IOUtil.readFully(in, headerBytes);
+                if (len < headerLength) {
+                    throw new IOException("Unexpected end-of-input: got "+len+" bytes; needed "+headerLength);
+                }
+                SyncPullEntry header = _syncListAccessor.decodePullEntry(headerBytes);
+                // Deleted entries have no payload; small ones are buffered, big ones stored directly
+                if (header.isDeleted) {
+                    queue.put(new PulledEntry(i, entries[i], header, NO_BYTES));
+                } else if (header.storageSize <= maxQueuedEntrySize) {
+                    byte[] data = new byte[(int) header.storageSize];
+                    len = IOUtil.readFully(in, data);
+                    if (len < data.length) {
+                        throw new IOException("Unexpected end-of-input: got "+len+" bytes; needed "+data.length);
+                    }
+                    queue.put(new PulledEntry(i, entries[i], header, data));
+                } else {
+                    _pullEntry(entries[i], header, in, probs);
+                    done[i] = true;
+                }
+            }
+            if (count < expCount) {
+                LOG.warn("Server returned fewer entries than requested for sync pull: {} vs {} (in {} msecs)",
+                        new Object[] { count, expCount, (_timeMaster.currentTimeMillis() - startTime)});
+            }
+            if (probs.hasIssues()) {
+                LOG.warn("Problems with pull request to {}: {}", _syncState.getAddress(), probs);
+            }
+            // let's consider 0 entries to be an error, to prevent infinite loops
+            return (count == 0) ? 1 : 0;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.warn("Problem trying to fetch syncPull entry {}/{}: ({}) {}",
+                    new Object[] { count+1, expCount, e.getClass().getName(), e.getMessage() } );
+            _timeMaster.sleep(SLEEP_FOR_SYNCPULL_ERRORS_MSECS);
+            return 1;
+        } finally {
+            try { in.close(); } catch (Exception e) { // shouldn't really happen
+                LOG.warn("Failed to close HTTP stream: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method called by the sync thread to store entries queued by sync-pull
+     * threads, until all sync-pull requests have completed.
+     *
+     * @return Number of failures
+     */
+    private int _applyPulled(BlockingQueue<PulledEntry> queue, List<Future<Integer>> futures,
+            boolean[] done)
+        throws InterruptedException
+    {
+        final PullProblems probs = new PullProblems();
+        int fails = 0;
+        boolean completed = false;
+        try {
+            while (true) {
+                PulledEntry pulled = queue.poll(POLL_FOR_PULLED_MSECS, TimeUnit.MILLISECONDS);
+                if (pulled == null) {
+                    // must check completion before emptiness, to avoid missing last entries
+                    if (_allDone(futures) && queue.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                try {
+                    _pullEntry(pulled.listEntry, pulled.header, ByteContainer.simple(pulled.data), probs);
+                    done[pulled.index] = true;
+                } catch (Exception e) {
+                    ++fails;
+                    LOG.warn("Problem trying to store sync-pulled entry '{}': ({}) {}",
+                            new Object[] { pulled.header.key, e.getClass().getName(), e.getMessage() });
+                }
+            }
+            for (Future<Integer> future : futures) {
+                try {
+                    fails += future.get();
+                } catch (ExecutionException e) {
+                    ++fails;
+                    Throwable t = e.getCause();
+                    LOG.warn("Problem with sync-pull request: ({}) {}", t.getClass().getName(), t.getMessage());
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                for (Future<Integer> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        if (probs.hasIssues()) {
+            LOG.warn("Problems with pull requests to {}: {}", _syncState.getAddress(), probs);
+        }
+        return fails;
+    }
+
+    private static boolean _allDone(List<Future<Integer>> futures)
+    {
+        for (Future<Integer> future : futures) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private SyncPullRequest _buildSyncPullRequest(List<SyncListResponseEntry> missingEntries,
             int maxEntries, AtomicInteger expectedPayloadSize)
     {
@@ -835,74 +1356,158 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
             InputStream in, PullProblems probs)
         throws IOException
     {
-        final StorableKey key = header.key;
-
         /* first things first: either read things in memory (for inline inclusion),
          * or pipe into a file.
          */
-        long expSize = header.storageSize;
+        final long expSize = header.storageSize;
         // Sanity check: although rare, deletion could have occurred after we got
         // the initial sync list, so:
         if (header.isDeleted) {
-            _entryStore.softDelete(StoreOperationSource.SYNC, null, key, true, true);
+            _pullDeletion(header.key);
+            return;
+        }
+        // although not 100% required, we can simplify handling of smallest entries
+        if (expSize <= _stuff.getServiceConfig().storeConfig.maxInlinedStorageSize) { // inlineable
+            if (expSize == 0) {
+                _pullEntry(reqEntry, header, ByteContainer.emptyContainer(), probs);
+                return;
+            }
+            // contents are copied by store, so we can reuse the buffer
+            final int len = (int) expSize;
+            BufferRecycler.Holder bufferHolder = _pullBuffers.getHolder();
+            final byte[] buffer = bufferHolder.borrowBuffer(len);
+            try {
+                _readFully(in, buffer, len);
+                _pullEntry(reqEntry, header, ByteContainer.simple(buffer, 0, len), probs);
+            } finally {
+                bufferHolder.returnBuffer(buffer);
+            }
+            return;
+        }
+        /* 21-Sep-2012, tatu: Important -- we must ensure that store only reads
+         *   bytes that belong to the entry payload. The easiest way is by adding
+         *   a wrapper stream that ensures this...
+         */
+        /* Note: large entries are not transferred using file channels; store
+         *   creates and names data files itself, and verifies checksum as content
+         *   gets copied into the file, so streaming insert is the only option.
+         */
+        BoundedInputStream bin = new BoundedInputStream(in, expSize, false);
+        StorableCreationResult result = null;
+        _stuff.entryModifying(header.key);
+        try {
+            // 19-Sep-2013, tatu: May need to upsert, when resolving conflicts
+            result = _entryStore.upsertConditionally(StoreOperationSource.SYNC, null,
+                    header.key, bin, _pullMetadata(header), _pullCustomMetadata(header), true,
+                    new ConflictOverwriteChecker(reqEntry.insertionTime));
+        } finally {
+            if (result == null) { // failed, _pullResult won't be called
+                _stuff.entryNotModified(header.key);
+            }
+        }
+
+        if (result.succeeded() && !bin.isCompletelyRead()) { // error or warning?
+            Storable entry = result.getNewEntry();
+            long ssize = (entry == null) ? -1L : entry.getStorageLength();
+            ++probs.other;
+            LOG.warn("Problems with sync-pull for '{}': read {} bytes, should have read {} more; entry storageSize: {}",
+                    new Object[] { header.key, bin.bytesRead(), bin.bytesLeft(), ssize });
+        }
+        _pullResult(header, result, probs);
+    }
+
+    /**
+     * Alternative to {@link #_pullEntry(SyncListResponseEntry, SyncPullEntry, InputStream, PullProblems)}
+     * used when contents have already been read in memory: passed to store
+     * as is, without copying through a stream. Since store does not verify
+     * checksum of content passed this way, it is verified here.
+     */
+    private void _pullEntry(SyncListResponseEntry reqEntry, SyncPullEntry header,
+            ByteContainer data, PullProblems probs)
+        throws IOException
+    {
+        if (header.isDeleted) {
+            _pullDeletion(header.key);
             return;
         }
-        StorableCreationResult result;
+        _verifyChecksum(header, data);
+        StorableCreationResult result = null;
+        _stuff.entryModifying(header.key);
+        try {
+            // 19-Sep-2013, tatu: May need to upsert, when resolving conflicts
+            result = _entryStore.upsertConditionally(StoreOperationSource.SYNC, null,
+                    header.key, data, _pullMetadata(header), _pullCustomMetadata(header), true,
+                    new ConflictOverwriteChecker(reqEntry.insertionTime));
+        } finally {
+            if (result == null) { // failed, _pullResult won't be called
+                _stuff.entryNotModified(header.key);
+            }
+        }
+        _pullResult(header, result, probs);
+    }
+
+    /**
+     * Helper method for verifying that checksum of pulled content matches
+     * that indicated by the header: for compressed content, checksum of
+     * compressed data is verified, if known.
+     */
+    private void _verifyChecksum(SyncPullEntry header, ByteContainer data) throws IOException
+    {
+        final boolean compressed = (header.compression != null) && (header.compression != Compression.NONE);
+        final int exp = compressed ? header.checksumForCompressed : header.checksum;
+        if (exp == HashConstants.NO_CHECKSUM) {
+            return;
+        }
+        int act = data.withBytes(new WithBytesCallback<Integer>() {
+            @Override
+            public Integer withBytes(byte[] buffer, int offset, int length) {
+                return ChecksumUtil.calcChecksum(buffer, offset, length);
+            }
+        });
+        if (act != exp) {
+            throw new IOException("Checksum mismatch for sync-pulled entry '"+header.key+"' ("
+                    +(compressed ? "compressed, " : "")+data.byteLength()+" bytes): expected 0x"
+                    +Integer.toHexString(exp)+", got 0x"+Integer.toHexString(act));
+        }
+    }
+
+    private void _pullDeletion(StorableKey key) throws IOException
+    {
+        _entryStore.softDelete(StoreOperationSource.SYNC, null, key, true, true);
+        _stuff.entryModified(key);
+    }
+
+    private StorableCreationMetadata _pullMetadata(SyncPullEntry header)
+    {
         StorableCreationMetadata stdMetadata = new StorableCreationMetadata(header.compression,
                 header.checksum, header.checksumForCompressed);
         stdMetadata.uncompressedSize = header.size;
         stdMetadata.storageSize = header.storageSize;
         // 16-Apr-2014, tatu: Need to remember to set replica flag now
         stdMetadata.replicated = true;
+        return stdMetadata;
+    }
 
+    private ByteContainer _pullCustomMetadata(SyncPullEntry header)
+    {
         /* 25-Apr-2014, As per [#32], we need to compensate time-to-live settings so that
          *   it is not reset; rather, it stay as close to remaining TTL as possible.
          *   
          *   Note that this means that "maxTTLSecs" IS modified, and "minTTLSecs" NOT, since
          *   former is measured from creation and latter (if used) from last-access.
          */
-        
-        ByteContainer customMetadata = _entryConverter.createMetadata(_timeMaster.currentTimeMillis(),
+        return _entryConverter.createMetadata(_timeMaster.currentTimeMillis(),
                 header.lastAccessMethod, header.minTTLSecs, header.maxTTLSecs);
+    }
 
-        // although not 100% required, we can simplify handling of smallest entries
-        if (expSize <= _stuff.getServiceConfig().storeConfig.maxInlinedStorageSize) { // inlineable
-            ByteContainer data;
-
-            if (expSize == 0) {
-                data = ByteContainer.emptyContainer();
-            } else {
-                byte[] bytes = new byte[(int) expSize];
-                int len = IOUtil.readFully(in, bytes);
-                if (len < expSize) {
-                    throw new IOException("Unexpected end-of-input: got "+len+" bytes; needed "+expSize);
-                }
-                data = ByteContainer.simple(bytes);
-            }
-            // 19-Sep-2013, tatu: May need to upsert, when resolving conflicts
-            result = _entryStore.upsertConditionally(StoreOperationSource.SYNC, null, key, data,
-                    stdMetadata, customMetadata, true,
-                    new ConflictOverwriteChecker(reqEntry.insertionTime));
+    private void _pullResult(SyncPullEntry header, StorableCreationResult result, PullProblems probs)
+    {
+        // entry may have replaced an existing one, in case of conflict resolution
+        if (result.succeeded()) {
+            _stuff.entryModified(header.key, result);
         } else {
-            /* 21-Sep-2012, tatu: Important -- we must ensure that store only reads
-             *   bytes that belong to the entry payload. The easiest way is by adding
-             *   a wrapper stream that ensures this...
-             */
-            BoundedInputStream bin = new BoundedInputStream(in, stdMetadata.storageSize, false);
-            // 19-Sep-2013, tatu: May need to upsert, when resolving conflicts
-            result = _entryStore.upsertConditionally(StoreOperationSource.SYNC, null, key, bin,
-                    stdMetadata, customMetadata, true,
-                    new ConflictOverwriteChecker(reqEntry.insertionTime));
-
-            if (result.succeeded() && !bin.isCompletelyRead()) { // error or warning?
-                Storable entry = result.getNewEntry();
-                long ssize = (entry == null) ? -1L : entry.getStorageLength();
-                ++probs.other;
-                LOG.warn("Problems with sync-pull for '{}': read {} bytes, should have read {} more; entry storageSize: {}",
-                        new Object[] { header.key, bin.bytesRead(), bin.bytesLeft(), ssize });
-            }
+            _stuff.entryNotModified(header.key);
         }
-
         // should we care whether this was redundant or not?
         if (!result.succeeded()) {
             if (probs.redundant++ == 0) {
@@ -919,11 +1524,45 @@ public class ClusterPeerImpl<K extends EntryKey, E extends StoredEntry<K>>
         }
     }
 
+    private static void _readFully(InputStream in, byte[] buffer, final int len)
+        throws IOException
+    {
+        int offset = 0;
+        while (offset < len) {
+            int count = in.read(buffer, offset, len-offset);
+            if (count < 0) {
+                throw new EOFException("Unexpected end-of-input: got "+offset+" bytes; needed "+len);
+            }
+            offset += count;
+        }
+    }
+
     protected final boolean hasOverlap(NodeState state1, NodeState state2)
     {
         return state1.totalRange().overlapsWith(state2.totalRange());
     }
 
+    private final static byte[] NO_BYTES = new byte[0];
+
+    /**
+     * Container for an entry read from a sync-pull response, queued to be
+     * stored by the sync thread.
+     */
+    private static class PulledEntry {
+        public final int index;
+        public final SyncListResponseEntry listEntry;
+        public final SyncPullEntry header;
+        public final byte[] data;
+
+        public PulledEntry(int index, SyncListResponseEntry listEntry, SyncPullEntry header,
+                byte[] data) {
+            this.index = index;
+            this.listEntry = listEntry;
+            this.header = header;
+            this.data = data;
+        }
+    }
+
     private static class PullProblems {
         public int redundant = 0;
         public int missing = 0;
@@ -0,0 +1,130 @@
+package com.fasterxml.clustermate.service.msg;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+import com.fasterxml.storemate.shared.ByteRange;
+import com.fasterxml.storemate.shared.TimeMaster;
+import com.fasterxml.storemate.store.util.OperationDiagnostics;
+
+import com.fasterxml.clustermate.service.util.StatsCollectingOutputStream;
+
+/**
+ * {@link StreamingResponseContent} implementation used for returning
+ * content from a (usually off-heap) {@link ByteBuffer}, such as
+ * entries served from the content cache.
+ */
+public class BufferBackedResponseContent
+    implements ChunkedResponseContent
+{
+    private final static int COPY_BUFFER_LENGTH = 8000;
+
+    private final OperationDiagnostics _diagnostics;
+
+    private final TimeMaster _timeMaster;
+
+    /**
+     * Content to write, positioned and limited to contain just content to
+     * write (to support Range requests)
+     */
+    private final ByteBuffer _data;
+
+    public BufferBackedResponseContent(OperationDiagnostics diag, TimeMaster timeMaster,
+            ByteBuffer data, ByteRange range)
+    {
+        _diagnostics = diag;
+        _timeMaster = timeMaster;
+        ByteBuffer bb = data.duplicate();
+        if (range != null) {
+            // casts are safe, as buffers are limited to 2 gigs
+            int start = bb.position() + (int) range.getStart();
+            bb.limit(start + (int) range.calculateLength());
+            bb.position(start);
+        }
+        _data = bb;
+    }
+
+    @Override
+    public boolean hasFile() { return false; }
+    @Override
+    public boolean inline() { return false; }
+
+    @Override
+    public long getLength() {
+        return _data.remaining();
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() {
+        return new BufferChannel(_data.duplicate());
+    }
+
+    @Override
+    public void writeContent(final OutputStream out) throws IOException
+    {
+        final long start = (_diagnostics == null) ? 0L : _timeMaster.nanosForDiagnostics();
+        ByteBuffer bb = _data.duplicate();
+        try {
+            // can we write buffer as is?
+            if (out instanceof StatsCollectingOutputStream) {
+                StatsCollectingOutputStream statsOut = (StatsCollectingOutputStream) out;
+                if (statsOut.canTransferFrom()) {
+                    statsOut.transferFrom(bb);
+                    return;
+                }
+            }
+            byte[] buffer = new byte[Math.min(COPY_BUFFER_LENGTH, bb.remaining())];
+            while (bb.hasRemaining()) {
+                int count = Math.min(buffer.length, bb.remaining());
+                bb.get(buffer, 0, count);
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            if (_diagnostics != null) {
+                _diagnostics.addResponseWriteTime(start, _timeMaster.nanosForDiagnostics());
+            }
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    private final static class BufferChannel implements ReadableByteChannel
+    {
+        private final ByteBuffer _buffer;
+
+        private boolean _open = true;
+
+        public BufferChannel(ByteBuffer buffer) {
+            _buffer = buffer;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            if (!_open) {
+                throw new ClosedChannelException();
+            }
+            if (!_buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(dst.remaining(), _buffer.remaining());
+            ByteBuffer src = _buffer.duplicate();
+            src.limit(src.position() + count);
+            dst.put(src);
+            _buffer.position(_buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() { return _open; }
+
+        @Override
+        public void close() { _open = false; }
+    }
+}
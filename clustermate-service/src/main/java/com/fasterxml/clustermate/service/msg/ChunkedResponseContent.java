@@ -0,0 +1,25 @@
+package com.fasterxml.clustermate.service.msg;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Extension of {@link StreamingResponseContent} for content that may be
+ * read in chunks by caller, instead of being written all at once by
+ * {@link #writeContent}: this is needed for non-blocking output, where
+ * content is only to be written when the connection is writable.
+ */
+public interface ChunkedResponseContent
+    extends StreamingResponseContent
+{
+    /**
+     * Method for opening a channel for reading content in chunks,
+     * if content can be read as-is (without further processing such as
+     * uncompression). If a channel is returned, caller is responsible for
+     * closing it; and {@link #writeContent} must not be called.
+     *
+     * @return Channel to read content from, if content can be read in
+     *   chunks; null if not
+     */
+    public ReadableByteChannel openChannel() throws IOException;
+}
@@ -1,6 +1,10 @@
 package com.fasterxml.clustermate.service.msg;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.*;
 
 import org.slf4j.Logger;
@@ -8,9 +12,7 @@ import org.slf4j.LoggerFactory;
 
 import com.ning.compress.DataHandler;
 import com.ning.compress.Uncompressor;
-import com.ning.compress.gzip.GZIPUncompressor;
 import com.ning.compress.lzf.LZFInputStream;
-import com.ning.compress.lzf.LZFUncompressor;
 
 import com.fasterxml.util.membuf.StreamyBytesMemBuffer;
 
@@ -18,7 +20,6 @@ import com.fasterxml.storemate.shared.ByteRange;
 import com.fasterxml.storemate.shared.StorableKey;
 import com.fasterxml.storemate.shared.TimeMaster;
 import com.fasterxml.storemate.shared.compress.Compression;
-import com.fasterxml.storemate.shared.compress.Compressors;
 import com.fasterxml.storemate.shared.util.BufferRecycler;
 import com.fasterxml.storemate.store.FileOperationCallback;
 import com.fasterxml.storemate.store.Storable;
@@ -31,8 +32,13 @@ import com.fasterxml.storemate.store.util.CountingInputStream;
 import com.fasterxml.storemate.store.util.OperationDiagnostics;
 import com.fasterxml.storemate.store.util.SimpleLogThrottler;
 
+import com.fasterxml.clustermate.api.codec.CompressionCodec;
+import com.fasterxml.clustermate.api.codec.CompressionCodecs;
+import com.fasterxml.clustermate.service.store.LZFBlockIndex;
+import com.fasterxml.clustermate.service.store.LZFBlockIndexCache;
 import com.fasterxml.clustermate.service.store.StoredEntry;
 import com.fasterxml.clustermate.service.util.BufferBackedInputStream;
+import com.fasterxml.clustermate.service.util.StatsCollectingOutputStream;
 
 /**
  * {@link StreamingResponseContent} implementation used
@@ -43,7 +49,7 @@ import com.fasterxml.clustermate.service.util.BufferBackedInputStream;
  * allowing possible throttling of reading of content to output.
  */
 public class FileBackedResponseContentImpl
-    implements StreamingResponseContent
+    implements ChunkedResponseContent
 {
     private final static Logger LOG = LoggerFactory.getLogger(FileBackedResponseContentImpl.class);
 
@@ -77,6 +83,12 @@ public class FileBackedResponseContentImpl
     final protected StorableStore _store;
     
     final protected StoreOperationThrottler _throttler;
+
+    /**
+     * Block indexes to use for range requests of LZF-compressed content,
+     * if enabled; null if not.
+     */
+    final protected LZFBlockIndexCache _blockIndexes;
     
     /*
     /**********************************************************************
@@ -104,6 +116,12 @@ public class FileBackedResponseContentImpl
     
     private final Compression _compression;
 
+    /**
+     * Codec to use for uncompressing content, if compression is to be
+     * removed and a codec is registered for it; null otherwise.
+     */
+    private final CompressionCodec _codec;
+
     /**
      * When reading from a file, this indicates length of content before
      * processing (if any).
@@ -117,7 +135,8 @@ public class FileBackedResponseContentImpl
      */
 
     public FileBackedResponseContentImpl(OperationDiagnostics diag, TimeMaster timeMaster,
-            StorableStore store, long operationTime,
+            StorableStore store, CompressionCodecs codecs, LZFBlockIndexCache blockIndexes,
+            long operationTime,
             File f, Compression comp, ByteRange range,
             StoredEntry<?> entry)
         throws StoreException
@@ -126,6 +145,7 @@ public class FileBackedResponseContentImpl
         _timeMaster = timeMaster;
         _store = store;
         _throttler = store.getThrottler();
+        _blockIndexes = blockIndexes;
         _operationTime = operationTime;
         _entry = entry;
         _fileLength = entry.getStorageLength();
@@ -141,6 +161,7 @@ public class FileBackedResponseContentImpl
         }
         _file = f;
         _compression = comp;
+        _codec = codecs.find(comp);
         try {
             _fileInput = new FileInputStream(_file);
         } catch (FileNotFoundException e) {
@@ -165,6 +186,25 @@ public class FileBackedResponseContentImpl
         return _dataLength;
     }
 
+    /*
+    /**********************************************************************
+    /* Chunked access
+    /**********************************************************************
+     */
+
+    /**
+     * Content can be read in chunks if it needs no uncompression; each
+     * chunk is read separately, as a throttled file read.
+     */
+    @Override
+    public ReadableByteChannel openChannel()
+    {
+        if (Compression.needsUncompress(_compression)) {
+            return null;
+        }
+        return new FileRangeChannel(Math.max(0L, _dataOffset), _dataLength);
+    }
+
     /*
     /**********************************************************************
     /* Actual streaming
@@ -174,6 +214,15 @@ public class FileBackedResponseContentImpl
     @Override
     public void writeContent(final OutputStream out) throws IOException
     {
+        // Bigger uncompressed content may be transferred directly, if output allows
+        if (!Compression.needsUncompress(_compression) && (_dataLength > READ_BUFFER_LENGTH)
+                && (out instanceof StatsCollectingOutputStream)) {
+            StatsCollectingOutputStream statsOut = (StatsCollectingOutputStream) out;
+            if (statsOut.canTransferFrom()) {
+                _transferUncompressed(statsOut, _dataOffset, _dataLength);
+                return;
+            }
+        }
         final BufferRecycler.Holder bufferHolder = _bufferRecycler.getHolder();        
         final byte[] copyBuffer = bufferHolder.borrowBuffer();
         try {
@@ -328,6 +377,41 @@ public class FileBackedResponseContentImpl
         }
     }
     
+    /**
+     * Method called for content that needs no uncompression, when output
+     * allows transferring content from file without copying it through
+     * user-space buffers.
+     */
+    protected void _transferUncompressed(final StatsCollectingOutputStream out,
+            final long offset, final long dataLength)
+        throws IOException
+    {
+        final long fsWaitStart = (_diagnostics == null) ? 0L : _timeMaster.nanosForDiagnostics();
+        _throttler.performFileRead(StoreOperationSource.REQUEST,
+                _operationTime, _entry.getRaw(), _file,
+                new FileOperationCallback<Void>() {
+            @Override
+            public Void perform(long operationTime, StorableKey key, Storable value, File externalFile)
+                throws IOException
+            {
+                final long start = (_diagnostics == null) ? 0L : _timeMaster.nanosForDiagnostics();
+                final FileChannel channel = _fileInput.getChannel();
+                long count = 0L;
+                try {
+                    count = out.transferFrom(channel, Math.max(0L, offset), dataLength);
+                } finally {
+                    _close(_fileInput);
+                    // reading and writing can not be separated here, so count it all as file access
+                    if (_diagnostics != null) {
+                        _diagnostics.addFileReadAccess(fsWaitStart, start, _timeMaster.nanosForDiagnostics(),
+                                count);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
     /*
     /**********************************************************************
     /* Second level copy methods; compressed data
@@ -347,17 +431,8 @@ public class FileBackedResponseContentImpl
         _readAll(out, copyBuffer, 0L, inputLength);
 
         // Compress-Ning package allows "push" style uncompression (yay!)
-        Uncompressor uncomp;
         DataHandler h = new RangedDataHandler(out, offset, dataLength);
-
-        if (_compression == Compression.LZF) {
-            uncomp = new LZFUncompressor(h);
-        } else if (_compression == Compression.GZIP) {
-            uncomp = new GZIPUncompressor(h);
-        } else { // otherwise, must use bulk operations?
-            // TODO: currently we do not have other codecs
-            throw new UnsupportedOperationException("No Uncompressor for compression type: "+_compression);
-        }
+        Uncompressor uncomp = _codec().createUncompressor(h);
 
         final long start = (_diagnostics == null) ? 0L : _timeMaster.nanosForDiagnostics();
         uncomp.feedCompressedData(copyBuffer, 0, inputLength);
@@ -498,14 +573,18 @@ public class FileBackedResponseContentImpl
             byte[] copyBuffer, StreamyBytesMemBuffer offHeap)
         throws IOException
     {
+        // First: for range requests, may be able to seek past blocks that precede range
+        long toSkip = _dataOffset;
+        if (toSkip > 0L) {
+            toSkip -= _seekToBlock(in0, toSkip);
+        }
         final CountingInputStream counter = new CountingInputStream(in0);
         
-        InputStream in = Compressors.uncompressingStream(counter, _compression);
+        InputStream in = _codec().uncompressingStream(counter);
 
-        // First: anything to skip (only the case for range requests)?
-        if (_dataOffset > 0L) {
+        // Then: anything (else) to skip?
+        if (toSkip > 0L) {
             long skipped = 0L;
-            long toSkip = _dataOffset;
 
             final long start = (_diagnostics == null) ? 0L : _timeMaster.nanosForDiagnostics();
             
@@ -749,6 +828,41 @@ public class FileBackedResponseContentImpl
         }
     }
 
+    /**
+     * Helper method called to position given (file) stream at the beginning
+     * of the compressed block that contains uncompressed content at given
+     * offset, if block index is available for the content.
+     *
+     * @return Uncompressed offset of the block that stream was positioned
+     *    at; 0 if stream was not moved
+     */
+    protected long _seekToBlock(InputStream in, long uncompressedOffset) throws IOException
+    {
+        if ((_blockIndexes == null) || (_compression != Compression.LZF)
+                || (in != _fileInput) || !_blockIndexes.shouldUseFor(_entry.getRaw())) {
+            return 0L;
+        }
+        final long start = (_diagnostics == null) ? 0L : _timeMaster.nanosForDiagnostics();
+        LZFBlockIndex index = _blockIndexes.findOrBuild(_entry.getRaw(), _fileInput.getChannel());
+        int block = index.findBlock(uncompressedOffset);
+        if (block <= 0) {
+            return 0L;
+        }
+        _skip(in, index.compressedOffset(block));
+        if (_diagnostics != null) {
+            _diagnostics.addFileReadAccess(start, _timeMaster, 0L);
+        }
+        return index.uncompressedOffset(block);
+    }
+
+    protected final CompressionCodec _codec()
+    {
+        if (_codec == null) {
+            throw new UnsupportedOperationException("No codec registered for compression type: "+_compression);
+        }
+        return _codec;
+    }
+
     private final void _close(InputStream in)
     {
         if (in != null) {
@@ -766,6 +880,75 @@ public class FileBackedResponseContentImpl
     /**********************************************************************
      */
     
+    /**
+     * Channel used for reading a range of (uncompressed) file content in
+     * chunks, using positional reads.
+     */
+    protected class FileRangeChannel implements ReadableByteChannel
+    {
+        protected final long _end;
+
+        protected long _position;
+
+        protected boolean _open = true;
+
+        public FileRangeChannel(long offset, long length) {
+            _position = offset;
+            _end = offset + length;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException
+        {
+            if (!_open) {
+                throw new ClosedChannelException();
+            }
+            if (_position >= _end) {
+                return -1;
+            }
+            final int max = (int) Math.min(dst.remaining(), _end - _position);
+            if (max == 0) {
+                return 0;
+            }
+            final long fsWaitStart = (_diagnostics == null) ? 0L : _timeMaster.nanosForDiagnostics();
+            Integer count = _throttler.performFileRead(StoreOperationSource.REQUEST,
+                    _operationTime, _entry.getRaw(), _file,
+                    new FileOperationCallback<Integer>() {
+                @Override
+                public Integer perform(long operationTime, StorableKey key, Storable value, File externalFile)
+                    throws IOException
+                {
+                    final long start = (_diagnostics == null) ? 0L : _timeMaster.nanosForDiagnostics();
+                    ByteBuffer bb = dst.duplicate();
+                    bb.limit(bb.position() + max);
+                    int n = _fileInput.getChannel().read(bb, _position);
+                    if (n < 0) {
+                        throw new IOException("File '"+_file.getAbsolutePath()+"' too short: expected "
+                                +_end+" bytes, only got "+_position);
+                    }
+                    dst.position(bb.position());
+                    if (_diagnostics != null) {
+                        _diagnostics.addFileReadAccess(fsWaitStart, start, _timeMaster.nanosForDiagnostics(), n);
+                    }
+                    return n;
+                }
+            });
+            _position += count.intValue();
+            return count.intValue();
+        }
+
+        @Override
+        public boolean isOpen() { return _open; }
+
+        @Override
+        public void close() {
+            if (_open) {
+                _open = false;
+                _close(_fileInput);
+            }
+        }
+    }
+
     /**
      * {@link DataHandler} implementation we use to extract out optional
      * ranges, writing out content as it becomes available
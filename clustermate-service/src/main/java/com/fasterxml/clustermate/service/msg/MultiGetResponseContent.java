@@ -0,0 +1,204 @@
+package com.fasterxml.clustermate.service.msg;
+
+import java.io.*;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.util.BufferRecycler;
+import com.fasterxml.storemate.shared.util.WithBytesCallback;
+import com.fasterxml.storemate.store.FileOperationCallback;
+import com.fasterxml.storemate.store.Storable;
+import com.fasterxml.storemate.store.StoreOperationSource;
+import com.fasterxml.storemate.store.StoreOperationThrottler;
+import com.fasterxml.storemate.store.file.FileManager;
+
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+
+/**
+ * {@link StreamingResponseContent} implementation used for responses to
+ * multi-entry GET requests: writes metadata of each entry, followed
+ * by entry payload (as stored, that is, possibly compressed) unless
+ * only metadata was requested. See {@link MultiGetItem} for details
+ * on framing.
+ *<p>
+ * As with single-entry GETs, reads of external files are done via
+ * {@link StoreOperationThrottler}.
+ */
+public class MultiGetResponseContent
+    implements StreamingResponseContent
+{
+    private final static Logger LOG = LoggerFactory.getLogger(MultiGetResponseContent.class);
+
+    // will use 16k recyclable read buffers, same as with sync-pull
+    private final static int BUFFER_LENGTH = 16000;
+
+    protected final static BufferRecycler _readBuffers = new BufferRecycler(BUFFER_LENGTH);
+
+    private final StoreOperationThrottler _throttler;
+
+    /**
+     * Timestamp of the operation, passed to throttler
+     */
+    private final long _operationTime;
+
+    private final FileManager _fileManager;
+
+    /**
+     * Smile serializer to use for metadata entries
+     */
+    private final ObjectWriter _smileWriter;
+
+    private final List<MultiGetItem> _items;
+
+    /**
+     * Raw entries matching {@link #_items}; null for entries for which
+     * no content is to be written.
+     */
+    private final List<Storable> _entries;
+
+    public MultiGetResponseContent(StoreOperationThrottler throttler, long operationTime,
+            FileManager fileManager, ObjectWriter smileWriter,
+            List<MultiGetItem> items, List<Storable> entries)
+    {
+        _throttler = throttler;
+        _operationTime = operationTime;
+        _fileManager = fileManager;
+        _smileWriter = smileWriter;
+        _items = items;
+        _entries = entries;
+    }
+
+    @Override
+    public boolean hasFile() { return true; }
+
+    @Override
+    public boolean inline() { return false; }
+
+    @Override
+    public long getLength() {
+        return -1L;
+    }
+
+    @Override
+    public void writeContent(final OutputStream output) throws IOException
+    {
+        final int count = _items.size();
+        try {
+            for (int i = 0; i < count; ++i) {
+                MultiGetItem item = _items.get(i);
+                Storable raw = _entries.get(i);
+                if (raw == null) {
+                    _writeHeader(output, item);
+                } else if (raw.hasExternalData()) {
+                    _writeExternal(output, item, raw);
+                } else {
+                    _writeInlined(output, item, raw);
+                }
+            }
+            MultiGetItem.writeLength(output, MultiGetItem.LENGTH_EOF);
+            output.flush();
+        } catch (IOException e) {
+            LOG.error("I/O problem during writing of "+count+" multi-get entries: "+e.getMessage(), e);
+            throw e;
+        } catch (RuntimeException e) {
+            LOG.error("Internal error during writing of "+count+" multi-get entries: "+e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    private void _writeHeader(OutputStream output, MultiGetItem item) throws IOException
+    {
+        byte[] metadata = _smileWriter.writeValueAsBytes(item);
+        if (metadata.length > MultiGetItem.MAX_HEADER_LENGTH) { // sanity check; should never occur
+            throw new IOException("Internal error: too long header ("+metadata.length+") for entry '"
+                    +item.key+"'");
+        }
+        MultiGetItem.writeLength(output, metadata.length);
+        output.write(metadata);
+    }
+
+    private void _writeExternal(final OutputStream output, final MultiGetItem item, Storable raw)
+        throws IOException
+    {
+        final File f = raw.getExternalFile(_fileManager);
+        Boolean found = _throttler.performFileRead(StoreOperationSource.REQUEST,
+                _operationTime, raw, f,
+                new FileOperationCallback<Boolean>() {
+            @Override
+            public Boolean perform(long operationTime, StorableKey key, Storable value, File externalFile)
+                throws IOException
+            {
+                FileInputStream in;
+                try {
+                    in = new FileInputStream(externalFile);
+                } catch (FileNotFoundException e) {
+                    return Boolean.FALSE;
+                }
+                final long size = value.getStorageLength();
+                item.length = size;
+                _writeHeader(output, item);
+                _copyFile(externalFile, in, output, size);
+                return Boolean.TRUE;
+            }
+        });
+        if (!found.booleanValue()) {
+            // Similar to sync-pull, file may have been removed by cleanup; report as failure
+            item.status = 500;
+            item.length = 0L;
+            item.message = "Missing file for entry";
+            _writeHeader(output, item);
+        }
+    }
+
+    private void _writeInlined(final OutputStream output, MultiGetItem item, Storable raw)
+        throws IOException
+    {
+        item.length = raw.getInlineDataLength();
+        _writeHeader(output, item);
+        IOException e = raw.withInlinedData(new WithBytesCallback<IOException>() {
+            @Override
+            public IOException withBytes(byte[] b, int offset, int length) {
+                try {
+                    output.write(b, offset, length);
+                } catch (IOException e2) {
+                    return e2;
+                }
+                return null;
+            }
+        });
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private void _copyFile(File f, FileInputStream in, OutputStream out, final long size)
+        throws IOException
+    {
+        BufferRecycler.Holder bufferHolder = _readBuffers.getHolder();        
+        final byte[] buffer = bufferHolder.borrowBuffer(BUFFER_LENGTH);
+        long copied = 0;
+
+        try {
+            int count;
+            while (copied < size && (count = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+                copied += count;
+            }
+        } finally {
+            bufferHolder.returnBuffer(buffer);
+            try {
+                in.close();
+            } catch (IOException e) { }
+        }
+        // Can not recover at this point, since length was already written
+        if (copied != size) {
+            throw new IOException("Invalid File '"+f.getAbsolutePath()+"': should have copied "+size
+                    +" bytes, instead copied "+copied);
+        }
+    }
+}
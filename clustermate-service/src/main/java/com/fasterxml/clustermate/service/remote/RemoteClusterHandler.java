@@ -595,9 +595,10 @@ public class RemoteClusterHandler<K extends EntryKey, E extends StoredEntry<K>>
         // the initial sync list, so:
         if (header.isDeleted) {
             entryStore.softDelete(StoreOperationSource.SYNC, null, key, true, true);
+            _stuff.entryModified(key);
             return;
         }
-        StorableCreationResult result;
+        StorableCreationResult result = null;
         StorableCreationMetadata stdMetadata = new StorableCreationMetadata(header.compression,
                 header.checksum, header.checksumForCompressed);
         stdMetadata.uncompressedSize = header.size;
@@ -615,44 +616,55 @@ public class RemoteClusterHandler<K extends EntryKey, E extends StoredEntry<K>>
         ByteContainer customMetadata = _entryConverter.createMetadata(_stuff.currentTimeMillis(),
                 header.lastAccessMethod, header.minTTLSecs, header.maxTTLSecs);
 
-        // although not 100% required, we can simplify handling of smallest entries
-        if (expSize <= _stuff.getServiceConfig().storeConfig.maxInlinedStorageSize) { // inlineable
-            ByteContainer data;
+        _stuff.entryModifying(key);
+        try {
+            // although not 100% required, we can simplify handling of smallest entries
+            if (expSize <= _stuff.getServiceConfig().storeConfig.maxInlinedStorageSize) { // inlineable
+                ByteContainer data;
 
-            if (expSize == 0) {
-                data = ByteContainer.emptyContainer();
+                if (expSize == 0) {
+                    data = ByteContainer.emptyContainer();
+                } else {
+                    byte[] bytes = new byte[(int) expSize];
+                    int len = IOUtil.readFully(in, bytes);
+                    if (len < expSize) {
+                        throw new IOException("Unexpected end-of-input: got "+len+" bytes; needed "+expSize);
+                    }
+                    data = ByteContainer.simple(bytes);
+                }
+                // 19-Sep-2013, tatu: May need to upsert, when resolving conflicts
+                result = entryStore.upsertConditionally(StoreOperationSource.SYNC, null, key, data,
+                        stdMetadata, customMetadata, true,
+                        new ConflictOverwriteChecker(reqEntry.insertionTime));
             } else {
-                byte[] bytes = new byte[(int) expSize];
-                int len = IOUtil.readFully(in, bytes);
-                if (len < expSize) {
-                    throw new IOException("Unexpected end-of-input: got "+len+" bytes; needed "+expSize);
+                /* 21-Sep-2012, tatu: Important -- we must ensure that store only reads
+                 *   bytes that belong to the entry payload. The easiest way is by adding
+                 *   a wrapper stream that ensures this...
+                 */
+                BoundedInputStream bin = new BoundedInputStream(in, stdMetadata.storageSize, false);
+                // 19-Sep-2013, tatu: May need to upsert, when resolving conflicts
+                result = entryStore.upsertConditionally(StoreOperationSource.SYNC, null, key, bin,
+                        stdMetadata, customMetadata, true,
+                        new ConflictOverwriteChecker(reqEntry.insertionTime));
+
+                if (result.succeeded() && !bin.isCompletelyRead()) { // error or warning?
+                    Storable entry = result.getNewEntry();
+                    long ssize = (entry == null) ? -1L : entry.getStorageLength();
+                    ++probs.other;
+                    LOG.warn("Problems with sync-pull for '{}': read {} bytes, should have read {} more; entry storageSize: {}",
+                            new Object[] { header.key, bin.bytesRead(), bin.bytesLeft(), ssize });
                 }
-                data = ByteContainer.simple(bytes);
             }
-            // 19-Sep-2013, tatu: May need to upsert, when resolving conflicts
-            result = entryStore.upsertConditionally(StoreOperationSource.SYNC, null, key, data,
-                    stdMetadata, customMetadata, true,
-                    new ConflictOverwriteChecker(reqEntry.insertionTime));
-        } else {
-            /* 21-Sep-2012, tatu: Important -- we must ensure that store only reads
-             *   bytes that belong to the entry payload. The easiest way is by adding
-             *   a wrapper stream that ensures this...
-             */
-            BoundedInputStream bin = new BoundedInputStream(in, stdMetadata.storageSize, false);
-            // 19-Sep-2013, tatu: May need to upsert, when resolving conflicts
-            result = entryStore.upsertConditionally(StoreOperationSource.SYNC, null, key, bin,
-                    stdMetadata, customMetadata, true,
-                    new ConflictOverwriteChecker(reqEntry.insertionTime));
-
-            if (result.succeeded() && !bin.isCompletelyRead()) { // error or warning?
-                Storable entry = result.getNewEntry();
-                long ssize = (entry == null) ? -1L : entry.getStorageLength();
-                ++probs.other;
-                LOG.warn("Problems with sync-pull for '{}': read {} bytes, should have read {} more; entry storageSize: {}",
-                        new Object[] { header.key, bin.bytesRead(), bin.bytesLeft(), ssize });
+        } finally {
+            if (result == null || !result.succeeded()) {
+                _stuff.entryNotModified(key);
             }
         }
 
+        // entry may have replaced an existing one, in case of conflict resolution
+        if (result.succeeded()) {
+            _stuff.entryModified(key, result);
+        }
         // should we care whether this was redundant or not?
         if (!result.succeeded()) {
             if (probs.redundant++ == 0) {
@@ -692,6 +704,7 @@ public class RemoteClusterHandler<K extends EntryKey, E extends StoredEntry<K>>
                 ++count;
                 it.remove();
                 entryStore.softDelete(StoreOperationSource.SYNC, null, entry.key, true, true);
+                _stuff.entryModified(entry.key);
             }
         }
         return count;
@@ -9,6 +9,7 @@ import java.util.concurrent.locks.LockSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.clustermate.service.SharedServiceStuff;
 import com.fasterxml.clustermate.service.cfg.DeferredDeleteConfig;
 import com.fasterxml.clustermate.service.metrics.DeferQueueMetrics;
 import com.fasterxml.clustermate.service.metrics.ExternalOperationMetrics;
@@ -35,6 +36,12 @@ public class DeferredDeleter
 
     protected final StorableStore _entryStore;
 
+    /**
+     * Shared service objects, if available; used for invalidating in-memory
+     * caches when entries are deleted.
+     */
+    protected final SharedServiceStuff _stuff;
+
     protected final ArrayBlockingQueue<QueuedDeletion> _deletions;
 
     protected final DecayingAverageCalculator _averages;
@@ -67,6 +74,13 @@ public class DeferredDeleter
     public DeferredDeleter(StorableStore entryStore,
             DeferredDeleteConfig config)
     {
+        this(entryStore, config, null);
+    }
+
+    public DeferredDeleter(StorableStore entryStore,
+            DeferredDeleteConfig config, SharedServiceStuff stuff)
+    {
+        _stuff = stuff;
         _timeMaster = entryStore.getTimeMaster();
         
         _minDeferQLength = config.minQueueLength;
@@ -113,11 +127,17 @@ public class DeferredDeleter
     }
  
     public static DeferredDeleter nonDeferring(StorableStore entryStore)
+    {
+        return nonDeferring(entryStore, null);
+    }
+
+    public static DeferredDeleter nonDeferring(StorableStore entryStore,
+            SharedServiceStuff stuff)
     {
         DeferredDeleteConfig config = new DeferredDeleteConfig();
         config.minQueueLength = 0;
         config.maxQueueLength = 0;
-        return new DeferredDeleter(entryStore, config);
+        return new DeferredDeleter(entryStore, config, stuff);
     }
     
     @Override
@@ -306,6 +326,9 @@ public class DeferredDeleter
         }
         try {
             _entryStore.softDelete(StoreOperationSource.REQUEST, null, deletion.getKey(), true, true);
+            if (_stuff != null) {
+                _stuff.entryModified(deletion.getKey());
+            }
             deletion.setStatus(DeletionResult.forCompleted());
         } catch (Throwable t) {
             deletion.setFail(t);
@@ -0,0 +1,416 @@
+package com.fasterxml.clustermate.service.store;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.store.Storable;
+
+import com.fasterxml.clustermate.service.cfg.ContentCacheConfig;
+
+/**
+ * Size-bounded cache for content of frequently read entries, used for
+ * serving GET requests without store lookups or file access.
+ * Content is held in off-heap (direct) buffers: stored (possibly compressed)
+ * form always, and uncompressed form optionally.
+ *<p>
+ * Since traffic is usually skewed, with a small set of entries getting
+ * most of reads, admission is frequency-aware: access frequencies are
+ * tracked for all keys (cached or not) using a compact count-min sketch,
+ * and entries are only admitted if they have been requested before,
+ * and are more popular than least-recently used entries they would displace.
+ *<p>
+ * Entries are immutable, so invalidation is only needed when entries are
+ * deleted (or replaced). To avoid race conditions where content read before
+ * invalidation is added afterwards, callers must get a "stamp" before
+ * reading entry from store, and pass it when adding content: if any
+ * invalidations have occurred in-between (for the key, or another key that
+ * shares the same stamp slot), content is not added.
+ */
+public class EntryContentCache
+{
+    /**
+     * Estimated per-entry overhead, in bytes, used for memory accounting
+     */
+    protected final static int ENTRY_OVERHEAD = 200;
+
+    /**
+     * Number of slots for invalidation stamps; keys are mapped to slots
+     * by hash, so that invalidation of one key does not prevent addition
+     * of all other keys.
+     */
+    protected final static int STAMP_SLOTS = 1024;
+
+    /**
+     * Minimum number of times an entry needs to have been requested
+     * before it is considered for admission.
+     */
+    protected final static int MIN_FREQUENCY_TO_ADMIT = 2;
+
+    protected final long _maxMemory;
+
+    protected final int _maxEntryLength;
+
+    protected final boolean _cacheUncompressed;
+
+    /**
+     * Cached entries in LRU (access) order; access synchronized on this map.
+     */
+    protected final LinkedHashMap<StorableKey,Entry> _entries
+        = new LinkedHashMap<StorableKey,Entry>(64, 0.75f, true);
+
+    protected final Frequencies _frequencies;
+
+    protected long _memoryUsed;
+
+    /**
+     * Counters incremented for every invalidation of keys that map to
+     * the slot, used as stamps for detecting possibly stale content.
+     */
+    protected final AtomicLongArray _invalidationStamps = new AtomicLongArray(STAMP_SLOTS);
+
+    /*
+    /**********************************************************************
+    /* Statistics
+    /**********************************************************************
+     */
+
+    protected final AtomicLong _hits = new AtomicLong();
+    protected final AtomicLong _misses = new AtomicLong();
+    protected final AtomicLong _admissions = new AtomicLong();
+    protected final AtomicLong _rejections = new AtomicLong();
+    protected final AtomicLong _evictions = new AtomicLong();
+    protected final AtomicLong _invalidations = new AtomicLong();
+
+    /*
+    /**********************************************************************
+    /* Life-cycle
+    /**********************************************************************
+     */
+
+    public EntryContentCache(ContentCacheConfig config)
+    {
+        _maxMemory = config.maxMemory;
+        _maxEntryLength = config.maxEntryLength;
+        _cacheUncompressed = config.cacheUncompressed;
+        // assume average entry size of at least 4k, for sizing of frequency sketch
+        long maxEntries = Math.max(1024L, _maxMemory / 4096L);
+        _frequencies = new Frequencies((int) Math.min(maxEntries, 1L << 24));
+    }
+
+    /**
+     * Factory method that will construct cache instance if configuration
+     * enables it; or return null if not.
+     */
+    public static EntryContentCache construct(ContentCacheConfig config)
+    {
+        if (config == null || config.maxMemory <= 0L || config.maxEntryLength <= 0) {
+            return null;
+        }
+        return new EntryContentCache(config);
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API
+    /**********************************************************************
+     */
+
+    public int getMaxEntryLength() { return _maxEntryLength; }
+
+    public boolean cacheUncompressed() { return _cacheUncompressed; }
+
+    /**
+     * Method to call before reading an entry that may be added using
+     * {@link #put}.
+     */
+    public long stamp(StorableKey key) {
+        return _invalidationStamps.get(_stampSlot(key));
+    }
+
+    /**
+     * Method for finding cached content for given key, if any. Access
+     * is counted for purposes of admission control regardless of whether
+     * entry is found.
+     */
+    public Entry get(StorableKey key)
+    {
+        _frequencies.increment(key.hashCode());
+        Entry entry;
+        synchronized (_entries) {
+            entry = _entries.get(key);
+        }
+        if (entry == null) {
+            _misses.incrementAndGet();
+        } else {
+            _hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Method that may be called to check whether entry of given key and
+     * stored length could be admitted, before reading its content.
+     */
+    public boolean mayAdmit(StorableKey key, long storageLength)
+    {
+        if (storageLength > _maxEntryLength) {
+            return false;
+        }
+        return _frequencies.frequency(key.hashCode()) >= MIN_FREQUENCY_TO_ADMIT;
+    }
+
+    /**
+     * Method for trying to add given content in cache.
+     *
+     * @param stamp Stamp from {@link #stamp} gotten before entry was read
+     *
+     * @return True if entry was added; false if not
+     */
+    public boolean put(long stamp, Entry entry)
+    {
+        final StorableKey key = entry.getKey();
+        final long size = entry.memoryUsed();
+        if (size > _maxMemory) {
+            _rejections.incrementAndGet();
+            return false;
+        }
+        final int freq = _frequencies.frequency(key.hashCode());
+        synchronized (_entries) {
+            // must verify stamp while holding lock, as invalidations use it too
+            if (stamp != _invalidationStamps.get(_stampSlot(key))) {
+                _rejections.incrementAndGet();
+                return false;
+            }
+            Entry old = _entries.remove(key);
+            if (old != null) {
+                _memoryUsed -= old.memoryUsed();
+            }
+            // Need to make room? If so, candidate must be more popular than victims
+            if ((_memoryUsed + size) > _maxMemory) {
+                long toFree = _memoryUsed + size - _maxMemory;
+                for (Entry victim : _entries.values()) {
+                    if (_frequencies.frequency(victim.getKey().hashCode()) >= freq) {
+                        if (old != null) { // should not really happen but...
+                            _entries.put(key, old);
+                            _memoryUsed += old.memoryUsed();
+                        }
+                        _rejections.incrementAndGet();
+                        return false;
+                    }
+                    toFree -= victim.memoryUsed();
+                    if (toFree <= 0L) {
+                        break;
+                    }
+                }
+                Iterator<Entry> it = _entries.values().iterator();
+                while ((_memoryUsed + size) > _maxMemory && it.hasNext()) {
+                    Entry victim = it.next();
+                    it.remove();
+                    _memoryUsed -= victim.memoryUsed();
+                    _evictions.incrementAndGet();
+                }
+            }
+            _entries.put(key, entry);
+            _memoryUsed += size;
+        }
+        _admissions.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Method called when entry with given key is deleted, replaced or
+     * otherwise modified.
+     */
+    public void invalidate(StorableKey key)
+    {
+        synchronized (_entries) {
+            _invalidationStamps.incrementAndGet(_stampSlot(key));
+            Entry old = _entries.remove(key);
+            if (old != null) {
+                _memoryUsed -= old.memoryUsed();
+                _invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (_entries) {
+            for (int i = 0; i < STAMP_SLOTS; ++i) {
+                _invalidationStamps.incrementAndGet(i);
+            }
+            _entries.clear();
+            _memoryUsed = 0L;
+        }
+    }
+
+    protected int _stampSlot(StorableKey key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STAMP_SLOTS - 1);
+    }
+
+    /*
+    /**********************************************************************
+    /* Statistics access
+    /**********************************************************************
+     */
+
+    public int getEntryCount() {
+        synchronized (_entries) {
+            return _entries.size();
+        }
+    }
+
+    public long getMemoryUsed() {
+        synchronized (_entries) {
+            return _memoryUsed;
+        }
+    }
+
+    public long getHitCount() { return _hits.get(); }
+    public long getMissCount() { return _misses.get(); }
+    public long getAdmissionCount() { return _admissions.get(); }
+    public long getRejectionCount() { return _rejections.get(); }
+    public long getEvictionCount() { return _evictions.get(); }
+    public long getInvalidationCount() { return _invalidations.get(); }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Cached content of a single entry. Buffers are read-only; callers
+     * need to use {@link ByteBuffer#duplicate()} before changing positions.
+     */
+    public static class Entry
+    {
+        protected final StorableKey _key;
+
+        protected final Storable _raw;
+
+        protected final ByteBuffer _stored;
+
+        protected final ByteBuffer _uncompressed;
+
+        public Entry(StorableKey key, Storable raw, ByteBuffer stored, ByteBuffer uncompressed)
+        {
+            _key = key;
+            _raw = raw;
+            _stored = stored.asReadOnlyBuffer();
+            _uncompressed = (uncompressed == null) ? null : uncompressed.asReadOnlyBuffer();
+        }
+
+        /**
+         * Helper method for copying given content into a direct buffer.
+         */
+        public static ByteBuffer directCopy(byte[] data, int offset, int length)
+        {
+            ByteBuffer bb = ByteBuffer.allocateDirect(length);
+            bb.put(data, offset, length);
+            bb.flip();
+            return bb;
+        }
+
+        public StorableKey getKey() { return _key; }
+        public Storable getRaw() { return _raw; }
+
+        /**
+         * @return Content as stored, possibly compressed
+         */
+        public ByteBuffer getStoredContent() { return _stored.duplicate(); }
+
+        /**
+         * @return Uncompressed content, if entry was compressed and uncompressed
+         *   content was cached; null otherwise
+         */
+        public ByteBuffer getUncompressedContent() {
+            return (_uncompressed == null) ? null : _uncompressed.duplicate();
+        }
+
+        public long memoryUsed() {
+            long size = ENTRY_OVERHEAD + _stored.capacity();
+            if (_uncompressed != null) {
+                size += _uncompressed.capacity();
+            }
+            // inlined data is retained on-heap by Storable itself
+            if ((_raw != null) && !_raw.hasExternalData()) {
+                size += _raw.getStorageLength();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Simple count-min sketch, used for estimating access frequencies
+     * of keys. Counters saturate at 15, and are halved periodically to
+     * let popularity decay.
+     */
+    protected static class Frequencies
+    {
+        private final static int DEPTH = 4;
+
+        private final static int MAX_COUNT = 15;
+
+        private final static int[] SEEDS = new int[] {
+            0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F
+        };
+
+        private final byte[][] _counts;
+
+        private final int _mask;
+
+        private final int _resetAfter;
+
+        private int _additions;
+
+        public Frequencies(int expectedEntries)
+        {
+            int size = Integer.highestOneBit(Math.max(64, expectedEntries) - 1) << 1;
+            _counts = new byte[DEPTH][size];
+            _mask = size - 1;
+            _resetAfter = size * 10;
+        }
+
+        public synchronized void increment(int hash)
+        {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; ++i) {
+                int ix = _index(hash, i);
+                if (_counts[i][ix] < MAX_COUNT) {
+                    ++_counts[i][ix];
+                    added = true;
+                }
+            }
+            if (added && ++_additions >= _resetAfter) {
+                _additions = 0;
+                for (byte[] row : _counts) {
+                    for (int i = 0; i < row.length; ++i) {
+                        row[i] = (byte) (row[i] >> 1);
+                    }
+                }
+            }
+        }
+
+        public synchronized int frequency(int hash)
+        {
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; ++i) {
+                min = Math.min(min, _counts[i][_index(hash, i)]);
+            }
+            return min;
+        }
+
+        private int _index(int hash, int row)
+        {
+            int h = (hash ^ SEEDS[row]) * 0x01000193;
+            h ^= (h >>> 16);
+            return h & _mask;
+        }
+    }
+}
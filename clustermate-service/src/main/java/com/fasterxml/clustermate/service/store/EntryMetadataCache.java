@@ -0,0 +1,322 @@
+package com.fasterxml.clustermate.service.store;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.store.Storable;
+
+import com.fasterxml.clustermate.service.cfg.MetadataCacheConfig;
+
+/**
+ * Memory-bounded cache of entry metadata ({@link Storable} instances),
+ * used for serving GET, HEAD and info requests for recently accessed
+ * entries without store lookups. Absence of entries is also cached, for
+ * a short time, so that repeated requests for missing entries do not
+ * need to hit the store either.
+ *<p>
+ * Entries are split in segments (by key hash) that are synchronized
+ * separately, to reduce lock contention; each segment is evicted in
+ * LRU order.
+ *<p>
+ * Cached information needs to be invalidated whenever an entry is
+ * inserted, deleted or otherwise modified. To avoid race conditions where
+ * information read before invalidation is added afterwards, callers must
+ * get a "stamp" before reading entry from store, and pass it when adding
+ * information, similar to {@link EntryContentCache}.
+ */
+public class EntryMetadataCache
+{
+    /**
+     * Estimated per-entry overhead, in bytes, used for memory accounting;
+     * in addition to key and metadata/inlined data length
+     */
+    protected final static int ENTRY_OVERHEAD = 300;
+
+    protected final static int SEGMENT_COUNT = 16;
+
+    /**
+     * Number of slots for invalidation stamps; keys are mapped to slots
+     * by hash, so that invalidation of one key does not prevent addition
+     * of all other keys.
+     */
+    protected final static int STAMP_SLOTS = 4096;
+
+    protected final long _maxAgeMsecs;
+
+    protected final long _missingTTLMsecs;
+
+    protected final Segment[] _segments;
+
+    /**
+     * Counters incremented for every invalidation of keys that map to
+     * the slot, used as stamps for detecting possibly stale information.
+     */
+    protected final AtomicLongArray _invalidationStamps = new AtomicLongArray(STAMP_SLOTS);
+
+    /*
+    /**********************************************************************
+    /* Statistics
+    /**********************************************************************
+     */
+
+    protected final AtomicLong _hits = new AtomicLong();
+    protected final AtomicLong _missingHits = new AtomicLong();
+    protected final AtomicLong _misses = new AtomicLong();
+    protected final AtomicLong _evictions = new AtomicLong();
+    protected final AtomicLong _invalidations = new AtomicLong();
+
+    /*
+    /**********************************************************************
+    /* Life-cycle
+    /**********************************************************************
+     */
+
+    public EntryMetadataCache(MetadataCacheConfig config)
+    {
+        _maxAgeMsecs = config.maxAgeMsecs;
+        _missingTTLMsecs = config.missingTTLMsecs;
+        final long maxPerSegment = Math.max(1L, config.maxMemory / SEGMENT_COUNT);
+        _segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; ++i) {
+            _segments[i] = new Segment(maxPerSegment);
+        }
+    }
+
+    /**
+     * Factory method that will construct cache instance if configuration
+     * enables it; or return null if not.
+     */
+    public static EntryMetadataCache construct(MetadataCacheConfig config)
+    {
+        if (config == null || config.maxMemory <= 0L || config.maxAgeMsecs <= 0L) {
+            return null;
+        }
+        return new EntryMetadataCache(config);
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API
+    /**********************************************************************
+     */
+
+    /**
+     * Method to call before reading an entry that may be added using
+     * {@link #put}.
+     */
+    public long stamp(StorableKey key) {
+        return _invalidationStamps.get(_stampSlot(key));
+    }
+
+    /**
+     * Method for finding cached information for given key, if any.
+     *
+     * @param now Current time, used for checking expiration of cached information
+     *
+     * @return Cached information, if any and not expired: note that it may
+     *   indicate that there is no entry for the key (see {@link Entry#isMissing()});
+     *   or null if nothing is known about the key
+     */
+    public Entry get(StorableKey key, long now)
+    {
+        final Segment seg = _segment(key);
+        Entry entry;
+        synchronized (seg) {
+            entry = seg.get(key);
+            if ((entry != null) && (entry.getExpiration() <= now)) {
+                seg.remove(key);
+                seg.memoryUsed -= entry.memoryUsed();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            _misses.incrementAndGet();
+        } else if (entry.isMissing()) {
+            _missingHits.incrementAndGet();
+        } else {
+            _hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Method for trying to add result of a store lookup in cache.
+     *
+     * @param stamp Stamp from {@link #stamp} gotten before entry was read
+     * @param key Key of entry that was looked up
+     * @param raw Entry found, if any; null to indicate there was no entry
+     * @param now Current time, used for calculating expiration time
+     *
+     * @return True if information was added; false if not
+     */
+    public boolean put(long stamp, StorableKey key, Storable raw, long now)
+    {
+        final long ttl = (raw == null) ? _missingTTLMsecs : _maxAgeMsecs;
+        if (ttl <= 0L) {
+            return false;
+        }
+        final Entry entry = new Entry(raw, now + ttl, _memoryUsedFor(key, raw));
+        final Segment seg = _segment(key);
+        synchronized (seg) {
+            // must verify stamp while holding lock, as invalidations use it too
+            if (stamp != _invalidationStamps.get(_stampSlot(key))) {
+                return false;
+            }
+            if (entry.memoryUsed() > seg.maxMemory) {
+                return false;
+            }
+            Entry old = seg.put(key, entry);
+            if (old != null) {
+                seg.memoryUsed -= old.memoryUsed();
+            }
+            seg.memoryUsed += entry.memoryUsed();
+            if (seg.memoryUsed > seg.maxMemory) {
+                Iterator<Entry> it = seg.values().iterator();
+                while (seg.memoryUsed > seg.maxMemory && it.hasNext()) {
+                    Entry victim = it.next();
+                    it.remove();
+                    seg.memoryUsed -= victim.memoryUsed();
+                    _evictions.incrementAndGet();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method called when entry with given key is inserted, deleted or
+     * otherwise modified.
+     */
+    public void invalidate(StorableKey key)
+    {
+        final Segment seg = _segment(key);
+        synchronized (seg) {
+            _invalidationStamps.incrementAndGet(_stampSlot(key));
+            Entry old = seg.remove(key);
+            if (old != null) {
+                seg.memoryUsed -= old.memoryUsed();
+                _invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear()
+    {
+        for (Segment seg : _segments) {
+            synchronized (seg) {
+                seg.clear();
+                seg.memoryUsed = 0L;
+            }
+        }
+        // no need to lock all segments at once: stale entries added in-between are fine
+        for (int i = 0; i < STAMP_SLOTS; ++i) {
+            _invalidationStamps.incrementAndGet(i);
+        }
+    }
+
+    protected Segment _segment(StorableKey key) {
+        int h = key.hashCode();
+        return _segments[(h ^ (h >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    protected int _stampSlot(StorableKey key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 12)) & (STAMP_SLOTS - 1);
+    }
+
+    protected long _memoryUsedFor(StorableKey key, Storable raw)
+    {
+        long size = ENTRY_OVERHEAD + key.length();
+        if (raw != null) {
+            size += raw.getMetadataLength() + raw.getInlineDataLength();
+        }
+        return size;
+    }
+
+    /*
+    /**********************************************************************
+    /* Statistics access
+    /**********************************************************************
+     */
+
+    public int getEntryCount() {
+        int count = 0;
+        for (Segment seg : _segments) {
+            synchronized (seg) {
+                count += seg.size();
+            }
+        }
+        return count;
+    }
+
+    public long getMemoryUsed() {
+        long total = 0L;
+        for (Segment seg : _segments) {
+            synchronized (seg) {
+                total += seg.memoryUsed;
+            }
+        }
+        return total;
+    }
+
+    public long getHitCount() { return _hits.get(); }
+    public long getMissingHitCount() { return _missingHits.get(); }
+    public long getMissCount() { return _misses.get(); }
+    public long getEvictionCount() { return _evictions.get(); }
+    public long getInvalidationCount() { return _invalidations.get(); }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Cached result of an entry lookup.
+     */
+    public static class Entry
+    {
+        protected final Storable _raw;
+
+        protected final long _expiration;
+
+        protected final long _memoryUsed;
+
+        public Entry(Storable raw, long expiration, long memoryUsed)
+        {
+            _raw = raw;
+            _expiration = expiration;
+            _memoryUsed = memoryUsed;
+        }
+
+        /**
+         * @return Entry found, if any; null if there was no entry
+         */
+        public Storable getRaw() { return _raw; }
+
+        public boolean isMissing() { return (_raw == null); }
+
+        public long getExpiration() { return _expiration; }
+
+        public long memoryUsed() { return _memoryUsed; }
+    }
+
+    /**
+     * Individually synchronized part of the cache, in LRU (access) order.
+     */
+    @SuppressWarnings("serial")
+    protected static class Segment extends LinkedHashMap<StorableKey,Entry>
+    {
+        public final long maxMemory;
+
+        public long memoryUsed;
+
+        public Segment(long maxMemory) {
+            super(64, 0.75f, true);
+            this.maxMemory = maxMemory;
+        }
+    }
+}
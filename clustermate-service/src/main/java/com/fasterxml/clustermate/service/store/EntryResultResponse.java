@@ -0,0 +1,52 @@
+package com.fasterxml.clustermate.service.store;
+
+import com.fasterxml.clustermate.service.ServiceResponse;
+
+/**
+ * Minimal {@link ServiceResponse} implementation that is not bound to
+ * an actual HTTP response; used for collecting results of individual
+ * entries during multi-entry operations, using the same code paths
+ * as single-entry operations.
+ */
+class EntryResultResponse extends ServiceResponse
+{
+    protected int _status = 200;
+
+    @Override
+    public long getBytesWritten() { return 0L; }
+
+    @Override
+    public <RESP extends ServiceResponse> RESP set(int code, Object entity)
+    {
+        _status = code;
+        return setEntity(entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <RESP extends ServiceResponse> RESP setStatus(int code)
+    {
+        _status = code;
+        return (RESP) this;
+    }
+
+    @Override
+    public int getStatus() { return _status; }
+
+    // headers, content type and length are meaningless for individual entries
+
+    @Override
+    public EntryResultResponse addHeader(String key, String value) { return this; }
+
+    @Override
+    public EntryResultResponse addHeader(String key, int value) { return this; }
+
+    @Override
+    public EntryResultResponse addHeader(String key, long value) { return this; }
+
+    @Override
+    public EntryResultResponse setContentType(String contentType) { return this; }
+
+    @Override
+    public EntryResultResponse setContentLength(long length) { return this; }
+}
@@ -0,0 +1,163 @@
+package com.fasterxml.clustermate.service.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.ning.compress.lzf.LZFChunk;
+
+/**
+ * Index of blocks ("chunks") of an LZF-compressed file: for each block,
+ * offset of block in the file, and offset of its uncompressed content
+ * within uncompressed content of the whole file. Since LZF blocks are
+ * compressed independently, uncompression may start from any block;
+ * so the index allows serving ranges of content by seeking to the block
+ * that contains the first byte to return.
+ *<p>
+ * Index is built by reading block headers only, skipping block contents.
+ */
+public class LZFBlockIndex
+{
+    /**
+     * Offsets of blocks within compressed file
+     */
+    protected final long[] _compressedOffsets;
+
+    /**
+     * Offsets of uncompressed contents of blocks, within uncompressed
+     * content
+     */
+    protected final long[] _uncompressedOffsets;
+
+    /**
+     * Total length of uncompressed content
+     */
+    protected final long _uncompressedLength;
+
+    protected LZFBlockIndex(long[] compressedOffsets, long[] uncompressedOffsets,
+            long uncompressedLength)
+    {
+        _compressedOffsets = compressedOffsets;
+        _uncompressedOffsets = uncompressedOffsets;
+        _uncompressedLength = uncompressedLength;
+    }
+
+    /**
+     * Factory method for building index for LZF content of given length,
+     * read from given channel. Reads are done using absolute positions, so
+     * that position of the channel is not changed.
+     */
+    public static LZFBlockIndex build(FileChannel ch, long length) throws IOException
+    {
+        // 64k blocks are the norm; but let's not assume much
+        int capacity = (int) Math.min(1024L, 1L + (length >> 14));
+        long[] compOffsets = new long[capacity];
+        long[] uncompOffsets = new long[capacity];
+        int count = 0;
+
+        final ByteBuffer header = ByteBuffer.allocate(LZFChunk.MAX_HEADER_LEN);
+        long compOffset = 0L;
+        long uncompOffset = 0L;
+
+        while (compOffset < length) {
+            header.clear();
+            int headerLength = (int) Math.min(header.capacity(), length - compOffset);
+            header.limit(headerLength);
+            while (header.hasRemaining()) {
+                if (ch.read(header, compOffset + header.position()) < 0) {
+                    throw new IOException("Unexpected end-of-file at "+(compOffset + header.position())
+                            +" (expected length "+length+")");
+                }
+            }
+            if (headerLength < LZFChunk.HEADER_LEN_NOT_COMPRESSED
+                    || header.get(0) != LZFChunk.BYTE_Z || header.get(1) != LZFChunk.BYTE_V) {
+                throw new IOException("Corrupt LZF content: no valid block header at "+compOffset);
+            }
+            int dataLength = _uint16(header, 3);
+            int uncompLength;
+            int type = header.get(2);
+            if (type == LZFChunk.BLOCK_TYPE_NON_COMPRESSED) {
+                uncompLength = dataLength;
+                dataLength += LZFChunk.HEADER_LEN_NOT_COMPRESSED;
+            } else if (type == LZFChunk.BLOCK_TYPE_COMPRESSED
+                    && headerLength == LZFChunk.HEADER_LEN_COMPRESSED) {
+                uncompLength = _uint16(header, 5);
+                dataLength += LZFChunk.HEADER_LEN_COMPRESSED;
+            } else {
+                throw new IOException("Corrupt LZF content: invalid block header (type "+type+") at "+compOffset);
+            }
+            if (count == compOffsets.length) {
+                compOffsets = Arrays.copyOf(compOffsets, count + Math.max(16, count >> 1));
+                uncompOffsets = Arrays.copyOf(uncompOffsets, compOffsets.length);
+            }
+            compOffsets[count] = compOffset;
+            uncompOffsets[count] = uncompOffset;
+            ++count;
+            compOffset += dataLength;
+            uncompOffset += uncompLength;
+        }
+        if (compOffset != length) {
+            throw new IOException("Corrupt LZF content: last block extends past end-of-file (at "
+                    +compOffset+", length "+length+")");
+        }
+        return new LZFBlockIndex(Arrays.copyOf(compOffsets, count),
+                Arrays.copyOf(uncompOffsets, count), uncompOffset);
+    }
+
+    /*
+    /**********************************************************************
+    /* Accessors
+    /**********************************************************************
+     */
+
+    public int getBlockCount() {
+        return _compressedOffsets.length;
+    }
+
+    public long getUncompressedLength() {
+        return _uncompressedLength;
+    }
+
+    /**
+     * Method for finding index of the block that contains byte at given
+     * offset of uncompressed content.
+     *
+     * @return Index of block that contains given offset; or -1 if offset is
+     *    outside of content
+     */
+    public int findBlock(long uncompressedOffset)
+    {
+        if (uncompressedOffset < 0L || uncompressedOffset >= _uncompressedLength) {
+            return -1;
+        }
+        int ix = Arrays.binarySearch(_uncompressedOffsets, uncompressedOffset);
+        if (ix < 0) { // insertion point; we want preceding block
+            ix = -(ix + 1) - 1;
+        } else { // exact match; but empty blocks may share offset, want last one
+            while ((ix + 1) < _uncompressedOffsets.length
+                    && _uncompressedOffsets[ix + 1] == uncompressedOffset) {
+                ++ix;
+            }
+        }
+        return ix;
+    }
+
+    public long compressedOffset(int block) {
+        return _compressedOffsets[block];
+    }
+
+    public long uncompressedOffset(int block) {
+        return _uncompressedOffsets[block];
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    private final static int _uint16(ByteBuffer bb, int offset) {
+        return ((bb.get(offset) & 0xFF) << 8) | (bb.get(offset+1) & 0xFF);
+    }
+}
@@ -0,0 +1,143 @@
+package com.fasterxml.clustermate.service.store;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.store.Storable;
+
+import com.fasterxml.clustermate.service.cfg.BlockIndexConfig;
+
+/**
+ * Bounded cache of {@link LZFBlockIndex}es of recently accessed
+ * LZF-compressed files, evicted in LRU order. Since indexes are only
+ * used for files that are large, and each index is relatively small,
+ * cache is bounded by number of indexes, not by memory usage.
+ *<p>
+ * Since files of entries are never modified in place, cached indexes
+ * are only validated against basic metadata of the entry, to detect
+ * cases where an entry has been replaced; no explicit invalidation
+ * is needed.
+ */
+public class LZFBlockIndexCache
+{
+    protected final long _minFileLength;
+
+    protected final int _maxEntries;
+
+    protected final Map<StorableKey,Entry> _entries;
+
+    protected final AtomicLong _hits = new AtomicLong();
+
+    protected final AtomicLong _builds = new AtomicLong();
+
+    public LZFBlockIndexCache(BlockIndexConfig config)
+    {
+        _minFileLength = config.minFileLength;
+        _maxEntries = Math.max(0, config.maxCachedIndexes);
+        _entries = new LinkedHashMap<StorableKey,LZFBlockIndexCache.Entry>(16, 0.8f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StorableKey,LZFBlockIndexCache.Entry> eldest) {
+                return size() > _maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Factory method that will construct cache instance if configuration
+     * enables use of block indexes; or return null if not.
+     */
+    public static LZFBlockIndexCache construct(BlockIndexConfig config)
+    {
+        if (config == null || !config.enabled) {
+            return null;
+        }
+        return new LZFBlockIndexCache(config);
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API
+    /**********************************************************************
+     */
+
+    /**
+     * Method for checking whether block index should be used for given
+     * entry; that is, whether compressed file is big enough.
+     */
+    public boolean shouldUseFor(Storable raw) {
+        return raw.getStorageLength() >= _minFileLength;
+    }
+
+    /**
+     * Method for finding index for file of given entry, either from cache,
+     * or by reading it from given channel (and adding to cache).
+     */
+    public LZFBlockIndex findOrBuild(Storable raw, FileChannel ch) throws IOException
+    {
+        final StorableKey key = raw.getKey();
+        if (_maxEntries > 0) {
+            Entry entry;
+            synchronized (_entries) {
+                entry = _entries.get(key);
+            }
+            if ((entry != null) && entry.matches(raw)) {
+                _hits.incrementAndGet();
+                return entry.index;
+            }
+        }
+        LZFBlockIndex index = LZFBlockIndex.build(ch, raw.getStorageLength());
+        _builds.incrementAndGet();
+        if (_maxEntries > 0) {
+            synchronized (_entries) {
+                _entries.put(key, new Entry(raw, index));
+            }
+        }
+        return index;
+    }
+
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    public long getBuildCount() {
+        return _builds.get();
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    protected final static class Entry
+    {
+        protected final long _lastModified;
+
+        protected final long _storageLength;
+
+        protected final int _contentHash;
+
+        public final LZFBlockIndex index;
+
+        public Entry(Storable raw, LZFBlockIndex index)
+        {
+            _lastModified = raw.getLastModified();
+            _storageLength = raw.getStorageLength();
+            _contentHash = raw.getContentHash();
+            this.index = index;
+        }
+
+        public boolean matches(Storable raw)
+        {
+            return (raw.getLastModified() == _lastModified)
+                    && (raw.getStorageLength() == _storageLength)
+                    && (raw.getContentHash() == _contentHash);
+        }
+    }
+}
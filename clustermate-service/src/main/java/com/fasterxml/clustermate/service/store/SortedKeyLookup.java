@@ -0,0 +1,131 @@
+package com.fasterxml.clustermate.service.store;
+
+import java.io.IOException;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.store.Storable;
+import com.fasterxml.storemate.store.StorableStore;
+import com.fasterxml.storemate.store.StoreOperationSource;
+import com.fasterxml.storemate.store.backend.IterationAction;
+import com.fasterxml.storemate.store.backend.StorableIterationCallback;
+
+/**
+ * Helper class for looking up multiple entries at once, using key-ordered
+ * iteration instead of separate point lookups: requested keys are traversed
+ * in sorted order using a single cursor, as long as they are close to each
+ * other (that is, separated by at most {@link #_maxGap} other entries).
+ * Once a wider gap is encountered, remaining keys are looked up using
+ * regular point lookups, since starting a new iteration for each sparse
+ * key would cost more than a single lookup does.
+ */
+public class SortedKeyLookup
+{
+    /**
+     * By default, let's step over at most this many unrequested entries
+     * before switching to point lookups
+     */
+    public final static int DEFAULT_MAX_GAP = 8;
+
+    protected final StorableStore _store;
+
+    protected final int _maxGap;
+
+    public SortedKeyLookup(StorableStore store) {
+        this(store, DEFAULT_MAX_GAP);
+    }
+
+    public SortedKeyLookup(StorableStore store, int maxGap) {
+        _store = store;
+        _maxGap = maxGap;
+    }
+
+    /**
+     * Method for finding entries for given keys.
+     *
+     * @param sortedKeys Keys to find, sorted in ascending order, without duplicates
+     *
+     * @return Entries for keys, in same order; null for keys not found
+     */
+    public Storable[] findEntries(StoreOperationSource source, StorableKey[] sortedKeys)
+        throws IOException
+    {
+        final Storable[] result = new Storable[sortedKeys.length];
+        if (sortedKeys.length == 0) {
+            return result;
+        }
+        Cursor cursor = new Cursor(sortedKeys, result, _maxGap);
+        _store.iterateEntriesByKey(source, null, sortedKeys[0], cursor);
+        for (int ix = cursor.nextIndex(); ix < sortedKeys.length; ++ix) {
+            result[ix] = _store.findEntry(source, null, sortedKeys[ix]);
+        }
+        return result;
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    private final static class Cursor extends StorableIterationCallback
+    {
+        private final StorableKey[] _keys;
+        private final Storable[] _result;
+        private final int _maxGap;
+
+        /**
+         * Index of the first requested key not yet resolved
+         */
+        private int _index;
+
+        private int _gap;
+
+        private boolean _gapExceeded;
+
+        public Cursor(StorableKey[] keys, Storable[] result, int maxGap)
+        {
+            _keys = keys;
+            _result = result;
+            _maxGap = maxGap;
+        }
+
+        @Override
+        public IterationAction verifyKey(StorableKey key)
+        {
+            // any requested keys below current one do not exist
+            while (_index < _keys.length && _keys[_index].compareTo(key) < 0) {
+                ++_index;
+            }
+            if (_index == _keys.length) {
+                return IterationAction.TERMINATE_ITERATION;
+            }
+            if (_keys[_index].equals(key)) {
+                _gap = 0;
+                return IterationAction.PROCESS_ENTRY;
+            }
+            if (++_gap > _maxGap) {
+                _gapExceeded = true;
+                return IterationAction.TERMINATE_ITERATION;
+            }
+            return IterationAction.SKIP_ENTRY;
+        }
+
+        @Override
+        public IterationAction processEntry(Storable entry)
+        {
+            _result[_index++] = entry;
+            if (_index == _keys.length) {
+                return IterationAction.TERMINATE_ITERATION;
+            }
+            return IterationAction.PROCESS_ENTRY;
+        }
+
+        /**
+         * @return Index of the first key that still needs to be looked up
+         */
+        public int nextIndex() {
+            // if iteration ended without gap, all the remaining keys are past the last entry
+            return _gapExceeded ? _index : _keys.length;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.fasterxml.clustermate.service.store;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -9,11 +11,12 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.skife.config.TimeSpan;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.storemate.shared.*;
 import com.fasterxml.storemate.shared.compress.Compression;
-import com.fasterxml.storemate.shared.compress.Compressors;
 import com.fasterxml.storemate.shared.hash.HashConstants;
+import com.fasterxml.storemate.shared.util.IOUtil;
 import com.fasterxml.storemate.store.*;
 import com.fasterxml.storemate.store.backend.IterationAction;
 import com.fasterxml.storemate.store.backend.StorableIterationCallback;
@@ -21,14 +24,21 @@ import com.fasterxml.storemate.store.file.FileManager;
 import com.fasterxml.storemate.store.lastaccess.LastAccessUpdateMethod;
 import com.fasterxml.storemate.store.util.OperationDiagnostics;
 import com.fasterxml.clustermate.api.*;
+import com.fasterxml.clustermate.api.codec.CompressionCodec;
+import com.fasterxml.clustermate.api.codec.CompressionCodecs;
 import com.fasterxml.clustermate.api.msg.ListItem;
 import com.fasterxml.clustermate.api.msg.ListResponse;
+import com.fasterxml.clustermate.api.msg.MultiGetItem;
+import com.fasterxml.clustermate.api.msg.MultiGetRequest;
+import com.fasterxml.clustermate.api.msg.MultiPutItem;
+import com.fasterxml.clustermate.api.msg.MultiPutResponse;
 import com.fasterxml.clustermate.service.*;
 import com.fasterxml.clustermate.service.cfg.ServiceConfig;
 import com.fasterxml.clustermate.service.cluster.ClusterViewByServer;
 import com.fasterxml.clustermate.service.metrics.AllOperationMetrics;
 import com.fasterxml.clustermate.service.metrics.ExternalOperationMetrics;
 import com.fasterxml.clustermate.service.msg.*;
+import com.fasterxml.clustermate.service.util.ChecksumTrailerInputStream;
 import com.fasterxml.storemate.store.util.SimpleLogThrottler;
 
 /**
@@ -53,6 +63,11 @@ public abstract class StoreHandler<
      */
     private final static long MAX_LIST_TIME_MSECS = 5000L;
 
+    /**
+     * Number of slots in cache of formatted ETag values; must be power of two.
+     */
+    private final static int ETAG_CACHE_SIZE = 1024;
+
     private final static ListLimits DEFAULT_LIST_LIMITS =
             ListLimits.defaultLimits()
                 .withMaxEntries(MAX_MAX_ENTRIES)
@@ -68,6 +83,30 @@ public abstract class StoreHandler<
      */
     private final static int MAX_TO_DELETE_MAX = 20 * 1000;
     
+    /**
+     * Maximum number of entries that may be requested with a single
+     * multi-entry GET request.
+     */
+    private final static int MAX_MULTI_GET_ENTRIES = 1000;
+
+    /**
+     * Maximum number of entries that may be included in a single
+     * multi-entry PUT request.
+     */
+    private final static int MAX_MULTI_PUT_ENTRIES = 1000;
+
+    /**
+     * Maximum length of an individual entry included in a multi-entry
+     * PUT request: since entries are read in memory, need to limit.
+     */
+    protected final static int MAX_MULTI_PUT_ENTRY_LENGTH = 1024 * 1024;
+
+    /**
+     * Maximum total length of entries included in a multi-entry PUT
+     * request: all entries are read in memory before any is stored.
+     */
+    protected final static long MAX_MULTI_PUT_TOTAL_LENGTH = 16 * 1024 * 1024;
+
     private final static ListLimits DELETE_FIND_LIMITS = ListLimits.defaultLimits()
             .withIncludeTombstones(false)
             .withMaxEntries(MAX_TO_DELETE_DEFAULT)
@@ -114,6 +153,8 @@ public abstract class StoreHandler<
     
     protected final ObjectWriter _listSmileWriter;
 
+    protected final ObjectReader _multiPutItemReader;
+
     // Do we want these output? Not for production, at least...
     // TODO: Externalize
     private final static boolean LOG_DUP_PUTS = false;
@@ -132,7 +173,48 @@ public abstract class StoreHandler<
      * Does store use deferred (queued) deletions?
      */
     protected final DeferredDeleter _deferredDeleter;
-    
+
+    /*
+    /**********************************************************************
+    /* Helper objects, caching
+    /**********************************************************************
+     */
+
+    /**
+     * Optional cache for content of frequently read entries; null if
+     * not enabled.
+     */
+    protected final EntryContentCache _contentCache;
+
+    /**
+     * Optional cache for metadata of recently accessed entries, including
+     * missing ones; null if not enabled.
+     */
+    protected final EntryMetadataCache _metadataCache;
+
+    /**
+     * Shared service objects; needed for invalidating cached entries.
+     */
+    protected final SharedServiceStuff _stuff;
+
+    /**
+     * Codecs used for uncompressing stored content, as well as for
+     * negotiating compression of returned content.
+     */
+    protected final CompressionCodecs _compressionCodecs;
+
+    /**
+     * Optional cache of block indexes for large LZF-compressed files, used
+     * for range requests; null if block indexes are not enabled.
+     */
+    protected final LZFBlockIndexCache _blockIndexes;
+
+    /**
+     * Direct-mapped cache of formatted ETag values; races are benign, as
+     * entries are immutable.
+     */
+    protected final ETag[] _etags = new ETag[ETAG_CACHE_SIZE];
+
     /*
     /**********************************************************************
     /* Construction
@@ -152,6 +234,7 @@ public abstract class StoreHandler<
         _objectMapper = stuff.jsonMapper();
         _listJsonWriter = stuff.jsonWriter();
         _listSmileWriter = stuff.smileWriter();
+        _multiPutItemReader = stuff.smileReader(MultiPutItem.class);
 
         _serviceConfig = stuff.getServiceConfig();
 
@@ -162,6 +245,11 @@ public abstract class StoreHandler<
 
         // Are we to do deferred deletions?
         _deferredDeleter = constructDeleter(stuff, stores);
+        _contentCache = stuff.getContentCache();
+        _metadataCache = stuff.getMetadataCache();
+        _stuff = stuff;
+        _compressionCodecs = stuff.getCompressionCodecs();
+        _blockIndexes = LZFBlockIndexCache.construct(_serviceConfig.blockIndex);
     }
 
     /*
@@ -202,6 +290,8 @@ public abstract class StoreHandler<
 
     public Stores<K,E> getStores() { return _stores; }
 
+    public LZFBlockIndexCache getBlockIndexes() { return _blockIndexes; }
+
     /*
     /**********************************************************************
     /* Abstract and overridable methods for sub-classes
@@ -268,18 +358,37 @@ public abstract class StoreHandler<
             OperationDiagnostics diag)
         throws StoreException
     {
-        String rangeStr = request.getHeader(ClusterMateConstants.HTTP_HEADER_RANGE_FOR_REQUEST);
         ByteRange range;
         try {
             range = request.findByteRange();
         } catch (IllegalArgumentException e) {
-            return invalidRange(response, key, rangeStr, e.getMessage());
+            return invalidRange(response, key,
+                    request.getHeader(ClusterMateConstants.HTTP_HEADER_RANGE_FOR_REQUEST), e.getMessage());
         }
         String acceptableEnc = request.getHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT_COMPRESSION);
         Storable rawEntry;
-
+        // decoded lazily, and only once, since it is needed for only some requests
+        E entry = null;
+
+        // Hot entries may be found from content cache
+        EntryContentCache.Entry cached = null;
+        long cacheStamp = 0L;
+        if (_contentCache != null) {
+            final StorableKey rawKey = key.asStorableKey();
+            cacheStamp = _contentCache.stamp(rawKey);
+            cached = _contentCache.get(rawKey);
+            // expired entries are removed by cleanup tasks, so must check
+            if (cached != null) {
+                entry = _entryConverter.entryFromStorable(key, cached.getRaw());
+                if (entry.hasExceededMaxTTL(_timeMaster.currentTimeMillis())) {
+                    _contentCache.invalidate(rawKey);
+                    cached = null;
+                    entry = null;
+                }
+            }
+        }
         try {
-            rawEntry = findRawEntryForGet(key, diag);
+            rawEntry = (cached == null) ? findRawEntryForGet(key, diag) : cached.getRaw();
         } catch (IOException e) {
             return _storeError(response, key, e);
         }
@@ -299,7 +408,9 @@ public abstract class StoreHandler<
         }
 
         final long accessTime = _timeMaster.currentTimeMillis();
-        final E entry = _entryConverter.entryFromStorable(rawEntry);
+        if (entry == null) {
+            entry = _entryConverter.entryFromStorable(key, rawEntry);
+        }
 
         updateLastAccessedForGet(request, response, entry, accessTime);
         
@@ -317,12 +428,22 @@ public abstract class StoreHandler<
             // note: can not skip decompress if we have to give range...
             skipCompression = false;
         } else {
-            skipCompression = (comp != Compression.NONE) && comp.isAcceptable(acceptableEnc);
+            skipCompression = _compressionCodecs.isAcceptable(comp, acceptableEnc);
         }
         
         StreamingResponseContent output;
 
-        if (entry.hasExternalData()) { // need to stream from File
+        if ((cached == null) && (_contentCache != null) && !rawEntry.isDeleted()
+                && _contentCache.mayAdmit(rawEntry.getKey(), rawEntry.getStorageLength())) {
+            cached = _cacheContent(cacheStamp, rawEntry, accessTime);
+        }
+        if (cached != null) {
+            try {
+                output = _cachedContent(diag, cached, skipCompression ? null : comp, range);
+            } catch (IOException e) {
+                return internalGetError(response, e, key, "Failed to decompress cached data");
+            }
+        } else if (entry.hasExternalData()) { // need to stream from File
             File f = entry.getRaw().getExternalFile(_fileManager);
             // this is where we can expect to get "file not found exception".
             // NOTE: not optimal, since this is one I/O operation that is outside throttling;
@@ -330,7 +451,8 @@ public abstract class StoreHandler<
             // adding other response information
             try {
                 output = new FileBackedResponseContentImpl(diag, _timeMaster, _stores.getEntryStore(),
-                    accessTime, f, skipCompression ? null : comp, range, entry);
+                    _compressionCodecs, _blockIndexes, accessTime, f, skipCompression ? null : comp,
+                    range, entry);
             } catch (StoreException e) {
                 LOG.error("Problem trying to GET entry '"+key+"': "+e.getMessage());
                 return response.internalFileNotFound(new GetErrorResponse<K>(key, e.getMessage()));
@@ -339,7 +461,7 @@ public abstract class StoreHandler<
             ByteContainer inlined = entry.getRaw().getInlinedData();
             if (!skipCompression) {
                 try {
-                    inlined = Compressors.uncompress(inlined, comp, (int) entry.getRaw().getOriginalLength());
+                    inlined = _uncompress(inlined, comp, entry.getRaw().getOriginalLength());
                 } catch (IOException e) {
                     return internalGetError(response, e, key, "Failed to decompress inline data");
                 }
@@ -359,11 +481,7 @@ public abstract class StoreHandler<
         // Need to provide Etag, if content hash available
         int contentHash = rawEntry.getContentHash();
         if (contentHash != HashConstants.NO_CHECKSUM) {
-            StringBuilder sb = new StringBuilder();
-            sb.append('"');
-            sb.append(contentHash);
-            sb.append('"');
-            response = response.addHeader(ClusterMateConstants.HTTP_HEADER_ETAG, sb.toString());
+            response = response.addHeader(ClusterMateConstants.HTTP_HEADER_ETAG, _etagFor(contentHash));
         }
         // also need to let client know we left compression in there:
         if (skipCompression) {
@@ -372,31 +490,191 @@ public abstract class StoreHandler<
         return response;
     }
     
+    /**
+     * Helper method called to read content of given entry, to be added in
+     * the content cache.
+     *
+     * @return Cache entry with content, if content could be read; null if not
+     */
+    protected EntryContentCache.Entry _cacheContent(long cacheStamp, final Storable rawEntry,
+            long accessTime)
+    {
+        ByteBuffer stored;
+        try {
+            if (rawEntry.hasExternalData()) {
+                final File f = rawEntry.getExternalFile(_fileManager);
+                final StorableStore store = _stores.getEntryStore();
+                stored = store.getThrottler().performFileRead(StoreOperationSource.REQUEST,
+                        accessTime, rawEntry, f,
+                        new FileOperationCallback<ByteBuffer>() {
+                    @Override
+                    public ByteBuffer perform(long operationTime, StorableKey key, Storable value, File externalFile)
+                        throws IOException
+                    {
+                        return _readFileContent(externalFile, value.getStorageLength());
+                    }
+                });
+            } else {
+                byte[] data = rawEntry.getInlinedData().asBytes();
+                stored = EntryContentCache.Entry.directCopy(data, 0, data.length);
+            }
+            ByteBuffer uncompressed = null;
+            Compression comp = rawEntry.getCompression();
+            if (Compression.needsUncompress(comp) && _contentCache.cacheUncompressed()
+                    && rawEntry.getOriginalLength() <= _contentCache.getMaxEntryLength()) {
+                byte[] data = _uncompress(stored, comp, rawEntry.getOriginalLength()).asBytes();
+                uncompressed = EntryContentCache.Entry.directCopy(data, 0, data.length);
+            }
+            EntryContentCache.Entry entry = new EntryContentCache.Entry(rawEntry.getKey(), rawEntry,
+                    stored, uncompressed);
+            _contentCache.put(cacheStamp, entry);
+            return entry;
+        } catch (Exception e) {
+            // not fatal: request will be served without cache
+            LOG.warn("Failed to read content of entry '{}' for caching: {}", rawEntry.getKey(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Helper method for constructing response content for cached entry
+     *
+     * @param comp Compression of stored content to remove, if any; null
+     *    if stored content is to be returned as is.
+     */
+    protected StreamingResponseContent _cachedContent(OperationDiagnostics diag,
+            EntryContentCache.Entry cached, Compression comp, ByteRange range)
+        throws IOException
+    {
+        ByteBuffer content;
+        if (Compression.needsUncompress(comp)) {
+            content = cached.getUncompressedContent();
+            if (content == null) {
+                byte[] data = _uncompress(cached.getStoredContent(), comp,
+                        cached.getRaw().getOriginalLength()).asBytes();
+                content = ByteBuffer.wrap(data);
+            }
+        } else {
+            content = cached.getStoredContent();
+        }
+        return new BufferBackedResponseContent(diag, _timeMaster, content, range);
+    }
+
+    protected ByteContainer _uncompress(ByteBuffer compressed, Compression comp, long origLength)
+        throws IOException
+    {
+        byte[] data = new byte[compressed.remaining()];
+        compressed.duplicate().get(data);
+        return _uncompress(ByteContainer.simple(data), comp, origLength);
+    }
+
+    protected ByteContainer _uncompress(ByteContainer compressed, Compression comp, long origLength)
+        throws IOException
+    {
+        if (!Compression.needsUncompress(comp)) {
+            return compressed;
+        }
+        CompressionCodec codec = _compressionCodecs.find(comp);
+        if (codec == null) {
+            throw new IOException("No codec registered for compression type: "+comp);
+        }
+        return codec.uncompress(compressed, (int) origLength);
+    }
+
+    protected ByteBuffer _readFileContent(File f, long length) throws IOException
+    {
+        ByteBuffer bb = ByteBuffer.allocateDirect((int) length);
+        FileInputStream in = new FileInputStream(f);
+        try {
+            FileChannel ch = in.getChannel();
+            while (bb.hasRemaining()) {
+                if (ch.read(bb) < 0) {
+                    throw new IOException("Failed to read all "+length+" bytes from '"
+                            +f.getAbsolutePath()+"'; only got: "+bb.position());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        bb.flip();
+        return bb;
+    }
+
     protected boolean _notChanged(ServiceRequest request, Storable rawEntry)
     {
         // First: entry must have hash value to compare against
         int contentHash = rawEntry.getContentHash();
         if (contentHash != HashConstants.NO_CHECKSUM) {
-            String rangeStr = request.getHeader(ClusterMateConstants.HTTP_HEADER_ETAG_NO_MATCH);
-            if (rangeStr != null) {
-                rangeStr = rangeStr.trim();
-                if (rangeStr.length() > 2 && rangeStr.charAt(0) == '"') {
-                    int ix = rangeStr.lastIndexOf('"');
-                    if (ix > 0) {
-                        rangeStr = rangeStr.substring(1, ix);
-                        try {
-                            // Parse as Long to allow for both signed and unsigned representations
-                            // of 32-bit hash value
-                            long l = Long.parseLong(rangeStr);
-                            int i = (int) l;
-                            return (i == contentHash);
-                        } catch (IllegalArgumentException e) { }
-                    }
-                }
+            String etag = request.getHeader(ClusterMateConstants.HTTP_HEADER_ETAG_NO_MATCH);
+            if (etag != null) {
+                // Parsed as long to allow for both signed and unsigned representations
+                // of 32-bit hash value
+                long l = _parseETag(etag);
+                return (l != Long.MIN_VALUE) && ((int) l == contentHash);
             }
         }
         return false;
     }
+
+    /**
+     * Helper method for parsing numeric value of quoted ETag, without
+     * creating intermediate Strings.
+     *
+     * @return Value of ETag, if valid; <code>Long.MIN_VALUE</code> if not
+     */
+    protected static long _parseETag(String etag)
+    {
+        int start = 0;
+        int end = etag.length();
+        while (start < end && etag.charAt(start) <= ' ') {
+            ++start;
+        }
+        while (end > start && etag.charAt(end-1) <= ' ') {
+            --end;
+        }
+        if ((end - start) <= 2 || etag.charAt(start) != '"') {
+            return Long.MIN_VALUE;
+        }
+        end = etag.lastIndexOf('"', end-1);
+        int i = start+1;
+        boolean negative = false;
+        if (i < end) {
+            char c = etag.charAt(i);
+            if (c == '-' || c == '+') {
+                negative = (c == '-');
+                ++i;
+            }
+        }
+        // no digits, or too many to fit in a long?
+        if (i >= end || (end - i) > 18) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0L;
+        for (; i < end; ++i) {
+            char c = etag.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = (value * 10) + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Helper method for constructing quoted ETag value for given content hash;
+     * values are cached, to avoid reformatting values of entries that are
+     * requested repeatedly.
+     */
+    protected String _etagFor(int contentHash)
+    {
+        final int ix = contentHash & (ETAG_CACHE_SIZE - 1);
+        ETag etag = _etags[ix];
+        if ((etag == null) || (etag.hash != contentHash)) {
+            etag = new ETag(contentHash);
+            _etags[ix] = etag;
+        }
+        return etag.value;
+    }
     
     /*
     /**********************************************************************
@@ -435,7 +713,7 @@ public abstract class StoreHandler<
         }
 
         final long accessTime = _timeMaster.currentTimeMillis();
-        final E entry = _entryConverter.entryFromStorable(rawEntry);
+        final E entry = _entryConverter.entryFromStorable(key, rawEntry);
         // should this be recorded in OpStats?
         updateLastAccessedForHead(request, response, entry, accessTime);
         
@@ -446,8 +724,7 @@ public abstract class StoreHandler<
         // Would we return content as-is? (not compressed, or compressed using something
         // client accepts)
         String acceptableComp = request.getHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT_COMPRESSION);
-        if ((comp == Compression.NONE) ||
-                (acceptableComp != null && !acceptableComp.isEmpty() && comp.isAcceptable(acceptableComp))) {
+        if ((comp == Compression.NONE) || _compressionCodecs.isAcceptable(comp, acceptableComp)) {
             size = entry.getStorageLength();
         } else {
             size = entry.getActualUncompressedLength();
@@ -455,6 +732,85 @@ public abstract class StoreHandler<
         return response.ok().setContentLength(size);
     }
 
+    /*
+    /**********************************************************************
+    /* Content access, multiple entries
+    /**********************************************************************
+     */
+
+    /**
+     * End point for fetching contents (or just metadata) of multiple entries
+     * with a single request. Request body is a JSON-encoded {@link MultiGetRequest};
+     * response a sequence of framed entries, as described by {@link MultiGetItem}.
+     * Failure to access individual entries is reported per entry, and does not
+     * fail the whole request.
+     */
+    @SuppressWarnings("unchecked")
+    public <OUT extends ServiceResponse> OUT getEntries(ServiceRequest request, OUT response,
+            InputStream dataIn, OperationDiagnostics diag)
+        throws StoreException
+    {
+        MultiGetRequest requestEntity;
+        try {
+            requestEntity = _objectMapper.readValue(dataIn, MultiGetRequest.class);
+        } catch (Exception e) {
+            return (OUT) badRequest(response, "JSON parsing error: %s", e.getMessage());
+        }
+        final List<StorableKey> rawKeys = requestEntity.keys;
+        if (rawKeys == null || rawKeys.isEmpty()) {
+            return (OUT) badRequest(response, "Missing 'keys' for multi-entry GET");
+        }
+        if (rawKeys.size() > MAX_MULTI_GET_ENTRIES) {
+            return (OUT) badRequest(response, "Too many keys (%s) for multi-entry GET; max %s",
+                    rawKeys.size(), MAX_MULTI_GET_ENTRIES);
+        }
+        final boolean metadataOnly = requestEntity.metadataOnly;
+        final int count = rawKeys.size();
+        final long accessTime = _timeMaster.currentTimeMillis();
+        List<MultiGetItem> items = new ArrayList<MultiGetItem>(count);
+        List<Storable> entries = new ArrayList<Storable>(count);
+
+        for (StorableKey rawKey : rawKeys) {
+            K key = _keyConverter.rawToEntryKey(rawKey);
+            Storable rawEntry;
+            try {
+                rawEntry = metadataOnly ? findRawEntryForHead(key, diag) : findRawEntryForGet(key, diag);
+            } catch (IOException e) {
+                LOG.error("Problem trying to access entry '"+key+"' for multi-entry GET: "+e.getMessage());
+                items.add(new MultiGetItem(rawKey, 500, "Failed to access entry: "+e.getMessage()));
+                entries.add(null);
+                continue;
+            }
+            if (rawEntry == null) {
+                items.add(new MultiGetItem(rawKey, 404));
+                entries.add(null);
+                continue;
+            }
+            if (rawEntry.isDeleted()) {
+                items.add(new MultiGetItem(rawKey, _serviceConfig.cfgReportDeletedAsEmpty ? 204 : 404));
+                entries.add(null);
+                continue;
+            }
+            final E entry = _entryConverter.entryFromStorable(rawEntry);
+            if (metadataOnly) {
+                updateLastAccessedForHead(request, response, entry, accessTime);
+            } else {
+                updateLastAccessedForGet(request, response, entry, accessTime);
+            }
+            MultiGetItem item = new MultiGetItem(rawKey, 200);
+            item.compression = entry.getCompression();
+            item.contentLength = entry.getActualUncompressedLength();
+            item.contentHash = rawEntry.getContentHash();
+            items.add(item);
+            entries.add(metadataOnly ? null : rawEntry);
+        }
+        if (diag != null) {
+            diag.setItemCount(count);
+        }
+        return (OUT) response.ok(new MultiGetResponseContent(_stores.getEntryStore().getThrottler(),
+                accessTime, _fileManager, _listSmileWriter, items, entries));
+    }
+
     /*
     /**********************************************************************
     /* Content insertion (PUT)
@@ -489,6 +845,10 @@ public abstract class StoreHandler<
         final StorableCreationMetadata stdMetadata = new StorableCreationMetadata(inputCompression,
                 checksum, 0);
         if (inputCompression != null && inputCompression != Compression.NONE) {
+            if (_compressionCodecs.find(inputCompression) == null) {
+                return response.badRequest
+                        (PutResponse.badCompression(key, "Unsupported compression type "+inputCompression));
+            }
             String valueStr = request.getHeader(ClusterMateConstants.CUSTOM_HTTP_HEADER_UNCOMPRESSED_LENGTH);
             long uncompLen = -1L;
             if (valueStr != null) {
@@ -503,43 +863,75 @@ public abstract class StoreHandler<
             }
             stdMetadata.uncompressedSize = uncompLen;
         }
+        // Checksum may also follow content, if client did not know it up-front
+        if ("true".equals(request.getQueryParameter(ClusterMateConstants.QUERY_PARAM_CHECKSUM_TRAILER))) {
+            if (inputCompression != null && inputCompression != Compression.NONE) {
+                return response.badRequest
+                        (PutResponse.badArg(key, "Checksum trailer not allowed for compression type of "
+                                +inputCompression));
+            }
+            dataIn = new ChecksumTrailerInputStream(dataIn, _keyConverter.createStreamingContentHasher(),
+                    key.asStorableKey());
+        }
+        return _putEntry(request, response, key, dataIn, null, stdMetadata,
+                creationTime, minTTLSinceAccess, maxTTL, stats);
+    }
 
+    /**
+     * Shared implementation of single-entry PUT, used for both regular and
+     * multi-entry PUTs. Content is passed either as a stream ('dataIn') or,
+     * if already read in memory, as 'data'.
+     */
+    protected ServiceResponse _putEntry(ServiceRequest request, ServiceResponse response,
+            K key, InputStream dataIn, ByteContainer data,
+            StorableCreationMetadata stdMetadata, long creationTime,
+            TimeSpan minTTLSinceAccess, TimeSpan maxTTL,
+            OperationDiagnostics stats)
+    {
         // assumption here is that we may be passed hash code of orig content, but
         // not that of compressed (latter is easy to calculate on server anyway)
         ByteContainer customMetadata = constructPutMetadata(request, key, creationTime,
         		minTTLSinceAccess, maxTTL);
-        StorableCreationResult result;
+        StorableCreationResult result = null;
 
+        _stuff.entryModifying(key.asStorableKey());
         try {
+            final StorableStore store = _stores.getEntryStore();
             /* This gets quite convoluted but that's how it goes: if undelete (put with
              * exact same content) is allowed, we must use different method:
              */
             if (_serviceConfig.cfgAllowUndelete) {
-                result = _stores.getEntryStore().upsertConditionally(StoreOperationSource.REQUEST, stats,
-                        key.asStorableKey(),
-                        dataIn, stdMetadata, customMetadata, true,
-                        AllowUndeletingUpdates.instance);
-            } else {
-                result = _stores.getEntryStore().insert(StoreOperationSource.REQUEST, stats,
+                if (data == null) {
+                    result = store.upsertConditionally(StoreOperationSource.REQUEST, stats,
+                            key.asStorableKey(),
+                            dataIn, stdMetadata, customMetadata, true,
+                            AllowUndeletingUpdates.instance);
+                } else {
+                    result = store.upsertConditionally(StoreOperationSource.REQUEST, stats,
+                            key.asStorableKey(),
+                            data, stdMetadata, customMetadata, true,
+                            AllowUndeletingUpdates.instance);
+                }
+            } else if (data == null) {
+                result = store.insert(StoreOperationSource.REQUEST, stats,
                         key.asStorableKey(), dataIn, stdMetadata, customMetadata);
+            } else {
+                result = store.insert(StoreOperationSource.REQUEST, stats,
+                        key.asStorableKey(), data, stdMetadata, customMetadata);
             }
         } catch (StoreException.Input e) { // something client did wrong
-            switch (e.getProblem()) {
-            case BAD_COMPRESSION:
-                return response.badRequest
-                        (PutResponse.badCompression(key, "Bad Compression information passed: "+e.getMessage()));
-            case BAD_CHECKSUM:
-                return response.badRequest
-                        (PutResponse.badArg(key, "Bad Checksum information passed: "+e.getMessage()));
-            case BAD_LENGTH:
-                return response.badRequest
-                        (PutResponse.badArg(key, "Bad Length information passed: "+e.getMessage()));
-            }
-            return internalPutError(response, key,
-                    e, "Failed to PUT an entry: "+e.getMessage());
+            return _badPutInput(response, key, e);
         } catch (IOException e) {
+            // problems found when reading content (like bad checksum trailer) get wrapped
+            Throwable t = _peel(e);
+            if (t instanceof StoreException.Input) {
+                return _badPutInput(response, key, (StoreException.Input) t);
+            }
             return internalPutError(response, key,
             		e, "Failed to PUT an entry: "+e.getMessage());
+        } finally {
+            // may have replaced a tombstone, or cached information about missing entry
+            _stuff.entryModified(key.asStorableKey(), result);
         }
 
         // And then check whether it was a dup put; and if so, that checksums match
@@ -569,7 +961,126 @@ public abstract class StoreHandler<
         }
         return response.ok(PutResponse.ok(key, result.getNewEntry()));
     }
+
+    protected ServiceResponse _badPutInput(ServiceResponse response, K key,
+            StoreException.Input e)
+    {
+        switch (e.getProblem()) {
+        case BAD_COMPRESSION:
+            return response.badRequest
+                    (PutResponse.badCompression(key, "Bad Compression information passed: "+e.getMessage()));
+        case BAD_CHECKSUM:
+            return response.badRequest
+                    (PutResponse.badArg(key, "Bad Checksum information passed: "+e.getMessage()));
+        case BAD_LENGTH:
+            return response.badRequest
+                    (PutResponse.badArg(key, "Bad Length information passed: "+e.getMessage()));
+        }
+        return internalPutError(response, key,
+                e, "Failed to PUT an entry: "+e.getMessage());
+    }
     
+    /**
+     * End point for inserting multiple entries with a single request.
+     * Request body consists of framed entries, as described by
+     * {@link MultiPutItem}; and response is a JSON {@link MultiPutResponse},
+     * with one result per entry. Failure to store individual entries
+     * is reported per entry, and does not fail the whole request.
+     *<p>
+     * All entries are read and validated before any of them is stored,
+     * so that a malformed request fails as a whole without storing
+     * anything. Payloads are read in memory, so size of individual entries
+     * is limited to {@link #MAX_MULTI_PUT_ENTRY_LENGTH} bytes, and
+     * total size to {@link #MAX_MULTI_PUT_TOTAL_LENGTH} bytes.
+     */
+    @SuppressWarnings("unchecked")
+    public <OUT extends ServiceResponse> OUT putEntries(ServiceRequest request, OUT response,
+            InputStream dataIn, OperationDiagnostics diag)
+    {
+        List<MultiPutItem> items = new ArrayList<MultiPutItem>();
+        List<byte[]> payloads = new ArrayList<byte[]>();
+        long totalLength = 0L;
+
+        try {
+            int len;
+            while ((len = MultiGetItem.readLength(dataIn)) != MultiGetItem.LENGTH_EOF) {
+                if (items.size() == MAX_MULTI_PUT_ENTRIES) {
+                    return (OUT) badRequest(response, "Too many entries for multi-entry PUT; max %s",
+                            MAX_MULTI_PUT_ENTRIES);
+                }
+                byte[] header = new byte[len];
+                if (IOUtil.readFully(dataIn, header) < len) {
+                    return (OUT) badRequest(response, "Unexpected end-of-input for multi-entry PUT");
+                }
+                MultiPutItem item = _multiPutItemReader.readValue(header);
+                if (item.key == null) {
+                    return (OUT) badRequest(response, "Missing key for entry #%s of multi-entry PUT",
+                            items.size());
+                }
+                if (item.length < 0L || item.length > MAX_MULTI_PUT_ENTRY_LENGTH) {
+                    return (OUT) badRequest(response, "Invalid length (%s) for entry '%s' of multi-entry PUT; max %s",
+                            item.length, item.key, MAX_MULTI_PUT_ENTRY_LENGTH);
+                }
+                totalLength += item.length;
+                if (totalLength > MAX_MULTI_PUT_TOTAL_LENGTH) {
+                    return (OUT) badRequest(response, "Too much content for multi-entry PUT; max %s bytes",
+                            MAX_MULTI_PUT_TOTAL_LENGTH);
+                }
+                byte[] payload = new byte[(int) item.length];
+                if (IOUtil.readFully(dataIn, payload) < payload.length) {
+                    return (OUT) badRequest(response, "Unexpected end-of-input for multi-entry PUT");
+                }
+                items.add(item);
+                payloads.add(payload);
+            }
+        } catch (IOException e) {
+            return (OUT) badRequest(response, "Failed to read multi-entry PUT request: %s", e.getMessage());
+        }
+        // Only store once all entries have been successfully read
+        final int count = items.size();
+        MultiPutResponse result = new MultiPutResponse(new ArrayList<MultiPutResponse.Result>(count));
+        for (int i = 0; i < count; ++i) {
+            result.add(_putEntry(request, items.get(i), payloads.get(i)));
+            // allow payload to be GC'd as soon as possible
+            payloads.set(i, null);
+        }
+        if (diag != null) {
+            diag.setItemCount(count);
+        }
+        return (OUT) response.ok(result);
+    }
+
+    protected MultiPutResponse.Result _putEntry(ServiceRequest request, MultiPutItem item,
+            byte[] payload)
+    {
+        final long creationTime = _timeMaster.currentTimeMillis();
+        final K key = _keyConverter.rawToEntryKey(item.key);
+        Compression comp = item.compression;
+        final StorableCreationMetadata stdMetadata = new StorableCreationMetadata(comp,
+                item.contentHash, 0);
+        if (comp != null && comp != Compression.NONE) {
+            if (item.uncompressedLength <= 0L) {
+                return new MultiPutResponse.Result(item.key, 400,
+                        "Missing uncompressed length; required for compression type of "+comp);
+            }
+            stdMetadata.uncompressedSize = item.uncompressedLength;
+        }
+        TimeSpan minTTL = (item.minTTLSinceAccessSecs <= 0) ? null
+                : new TimeSpan(item.minTTLSinceAccessSecs, TimeUnit.SECONDS);
+        TimeSpan maxTTL = (item.maxTTLSecs <= 0) ? null
+                : new TimeSpan(item.maxTTLSecs, TimeUnit.SECONDS);
+        ServiceResponse entryResponse = _putEntry(request, new EntryResultResponse(), key,
+                null, ByteContainer.simple(payload), stdMetadata, creationTime, minTTL, maxTTL, null);
+        String msg = null;
+        if (entryResponse.isError()) {
+            Object ob = entryResponse.getEntity();
+            if (ob instanceof CRUDResponseBase<?>) {
+                msg = ((CRUDResponseBase<?>) ob).message;
+            }
+        }
+        return new MultiPutResponse.Result(item.key, entryResponse.getStatus(), msg);
+    }
+
     private String _verifyChecksums(Storable oldEntry, StorableCreationMetadata newEntry)
     {
         if (oldEntry.getContentHash() != newEntry.contentHash) { 
@@ -615,6 +1126,9 @@ public abstract class StoreHandler<
         } catch (Exception e) {
             LOG.error("Problem during DELETE scheduling: "+e.getMessage(), e);
             return response.internalError("Failure due to: "+e);
+        } finally {
+            // (deleter itself also invalidates, once deletion is actually done)
+            _stuff.entryModified(key.asStorableKey());
         }
 
         switch (result.getStatus()) {
@@ -709,6 +1223,7 @@ public abstract class StoreHandler<
                 try {
                     /*StorableDeletionResult result = */_stores.getEntryStore()
                         .softDelete(StoreOperationSource.REQUEST, stats, key, true, true);
+                    _stuff.entryModified(key);
                 } catch (IOException e) {
                     return _storeError(response, _keyConverter.rawToEntryKey(key), e);
                 }
@@ -1045,13 +1560,32 @@ public abstract class StoreHandler<
     
     /**
      * Overridable accessor methods used for entry GET, HEAD and info requests.
+     * If metadata cache is enabled, it is checked first; and results of
+     * store lookups (including missing entries) are added to it.
      */
     protected Storable findRawEntryForReads(StorableStore entryStore, K key,
             OperationDiagnostics diag)
         throws IOException, StoreException
     {
-        return entryStore.findEntry(StoreOperationSource.REQUEST,
-            diag, key.asStorableKey());
+        final StorableKey rawKey = key.asStorableKey();
+        if (_metadataCache == null) {
+            return entryStore.findEntry(StoreOperationSource.REQUEST, diag, rawKey);
+        }
+        long now = _timeMaster.currentTimeMillis();
+        EntryMetadataCache.Entry cached = _metadataCache.get(rawKey, now);
+        if (cached != null) {
+            Storable raw = cached.getRaw();
+            // expired entries are removed by cleanup tasks, so must check
+            if ((raw == null) || raw.isDeleted()
+                    || !_entryConverter.entryFromStorable(key, raw).hasExceededMaxTTL(now)) {
+                return raw;
+            }
+            _metadataCache.invalidate(rawKey);
+        }
+        final long stamp = _metadataCache.stamp(rawKey);
+        Storable raw = entryStore.findEntry(StoreOperationSource.REQUEST, diag, rawKey);
+        _metadataCache.put(stamp, rawKey, raw, now);
+        return raw;
     }
     
     /*
@@ -1247,6 +1781,20 @@ public abstract class StoreHandler<
     /**********************************************************************
      */
 
+    /**
+     * Immutable holder of content hash and matching quoted ETag value.
+     */
+    protected final static class ETag
+    {
+        public final int hash;
+        public final String value;
+
+        public ETag(int hash) {
+            this.hash = hash;
+            value = "\""+hash+"\"";
+        }
+    }
+
     protected static class FullListItemsCallback extends ListItemsCallback
     {
         public FullListItemsCallback(TimeMaster timeMaster, StoredEntryConverter<?,?,?> entryConverter,
@@ -0,0 +1,252 @@
+package com.fasterxml.clustermate.service.sync;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.fasterxml.clustermate.api.msg.ClusterStatusMessage;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.store.Storable;
+
+/**
+ * {@link SyncListEntryCollector} that encodes entries using compact binary
+ * format, used for Sync List responses if caller accepts
+ * {@link com.fasterxml.clustermate.api.ContentType#SYNC_LIST}.
+ * Format is:
+ *<pre>
+ *  version (1 byte)
+ *  entries:
+ *    suffixLength+1 (varint)
+ *    prefixLength (varint): bytes shared with key of the previous entry
+ *    suffix (bytes)
+ *    insertionTime - previous insertionTime (zigzag varlong)
+ *    size+1 (varlong): 0 for deleted entries
+ *    hash (4 bytes)
+ *  end marker (0)
+ *  lastSeenTimestamp (varlong)
+ *  clusterHash (8 bytes)
+ *  clientWait (varlong)
+ *  flags (1 byte): 0x01 for 'eoi'
+ *  length of cluster status (varint), cluster status as Smile
+ *</pre>
+ * All multi-byte fixed-length values are in big-endian order.
+ */
+public class BinarySyncList extends SyncListEntryCollector
+{
+    public final static int FORMAT_VERSION = 1;
+
+    protected final static int FLAG_EOI = 0x01;
+
+    protected final ByteArrayBuilder _buffer;
+
+    protected byte[] _prevKey = new byte[0];
+
+    protected long _prevTimestamp = 0L;
+
+    protected int _count;
+
+    public BinarySyncList() {
+        _buffer = new ByteArrayBuilder(1000);
+        _buffer.append(FORMAT_VERSION);
+    }
+
+    /*
+    /**********************************************************************
+    /* Encoding
+    /**********************************************************************
+     */
+
+    @Override
+    public void add(Storable raw)
+    {
+        final byte[] keyBytes = raw.getKey().asBytes();
+        final byte[] prev = _prevKey;
+        final int len = keyBytes.length;
+        final int max = Math.min(len, prev.length);
+        int prefix = 0;
+        while (prefix < max && keyBytes[prefix] == prev[prefix]) {
+            ++prefix;
+        }
+        _writeVInt(_buffer, len - prefix + 1);
+        _writeVInt(_buffer, prefix);
+        _buffer.write(keyBytes, prefix, len - prefix);
+        _prevKey = keyBytes;
+
+        final long timestamp = raw.getLastModified();
+        final long delta = timestamp - _prevTimestamp;
+        _writeVLong(_buffer, (delta << 1) ^ (delta >> 63));
+        _prevTimestamp = timestamp;
+
+        _writeVLong(_buffer, raw.isDeleted() ? 0L : (raw.getStorageLength() + 1L));
+        final int hash = raw.getContentHash();
+        _buffer.append(hash >> 24);
+        _buffer.append(hash >> 16);
+        _buffer.append(hash >> 8);
+        _buffer.append(hash);
+        ++_count;
+    }
+
+    @Override
+    public int size() {
+        return _count;
+    }
+
+    @Override
+    public <E extends StoredEntry<?>> SyncListResponse<E> buildResponse() {
+        SyncListResponse<E> resp = new SyncListResponse<E>();
+        resp.setBinaryEntries(this);
+        return resp;
+    }
+
+    /**
+     * Method called to complete encoding, once all entries have been added.
+     *
+     * @param clusterStatus Cluster status serialized as Smile, if any
+     *
+     * @return Encoded response
+     */
+    public byte[] finish(SyncListResponse<?> resp, byte[] clusterStatus)
+    {
+        final ByteArrayBuilder b = _buffer;
+        b.append(0);
+        _writeVLong(b, resp.lastSeenTimestamp);
+        final long hash = resp.clusterHash;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            b.append((int) (hash >> shift));
+        }
+        _writeVLong(b, resp.clientWait);
+        b.append(resp.eoi ? FLAG_EOI : 0);
+        if (clusterStatus == null) {
+            b.append(0);
+        } else {
+            _writeVInt(b, clusterStatus.length);
+            b.write(clusterStatus);
+        }
+        return b.toByteArray();
+    }
+
+    private static void _writeVInt(ByteArrayBuilder b, int value) {
+        _writeVLong(b, value & 0xFFFFFFFFL);
+    }
+
+    private static void _writeVLong(ByteArrayBuilder b, long value)
+    {
+        while ((value & ~0x7FL) != 0L) {
+            b.append((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        b.append((int) value);
+    }
+
+    /*
+    /**********************************************************************
+    /* Decoding
+    /**********************************************************************
+     */
+
+    /**
+     * Method for decoding a binary-encoded Sync List response.
+     *
+     * @param statusReader Reader for decoding {@link ClusterStatusMessage}
+     *   from Smile
+     */
+    public static SyncListResponse<?> decode(InputStream in, ObjectReader statusReader)
+        throws IOException
+    {
+        if (!(in instanceof BufferedInputStream)) {
+            in = new BufferedInputStream(in);
+        }
+        int version = in.read();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unrecognized binary Sync List format version: "+version);
+        }
+        ArrayList<SyncListResponseEntry> entries = new ArrayList<SyncListResponseEntry>();
+        byte[] key = new byte[0];
+        long timestamp = 0L;
+        int suffixLength;
+        while ((suffixLength = _readVInt(in) - 1) >= 0) {
+            final int prefix = _readVInt(in);
+            if (prefix > key.length) {
+                throw new IOException("Invalid key prefix length ("+prefix+") for entry #"+entries.size()
+                        +": previous key only "+key.length+" bytes");
+            }
+            byte[] newKey = new byte[prefix + suffixLength];
+            System.arraycopy(key, 0, newKey, 0, prefix);
+            _readFully(in, newKey, prefix, suffixLength);
+            key = newKey;
+            final long delta = _readVLong(in);
+            timestamp += (delta >>> 1) ^ -(delta & 1);
+
+            SyncListResponseEntry entry = new SyncListResponseEntry();
+            entry.key = new StorableKey(key);
+            entry.insertionTime = timestamp;
+            entry.size = _readVLong(in) - 1L;
+            entry.hash = (int) _readFixed(in, 4);
+            entries.add(entry);
+        }
+        SyncListResponse<StoredEntry<?>> resp = new SyncListResponse<StoredEntry<?>>();
+        resp.entries = entries;
+        resp.lastSeenTimestamp = _readVLong(in);
+        resp.clusterHash = _readFixed(in, 8);
+        resp.clientWait = _readVLong(in);
+        resp.eoi = (_readByte(in) & FLAG_EOI) != 0;
+        final int statusLength = _readVInt(in);
+        if (statusLength > 0) {
+            byte[] status = new byte[statusLength];
+            _readFully(in, status, 0, statusLength);
+            resp.clusterStatus = statusReader.readValue(status);
+        }
+        return resp;
+    }
+
+    private static int _readByte(InputStream in) throws IOException
+    {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end-of-input in binary Sync List");
+        }
+        return b;
+    }
+
+    private static long _readFixed(InputStream in, int bytes) throws IOException
+    {
+        long value = 0L;
+        for (int i = 0; i < bytes; ++i) {
+            value = (value << 8) | _readByte(in);
+        }
+        return value;
+    }
+
+    private static int _readVInt(InputStream in) throws IOException {
+        return (int) _readVLong(in);
+    }
+
+    private static long _readVLong(InputStream in) throws IOException
+    {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = _readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable-length number in binary Sync List");
+    }
+
+    private static void _readFully(InputStream in, byte[] buffer, int offset, int length)
+        throws IOException
+    {
+        while (length > 0) {
+            int count = in.read(buffer, offset, length);
+            if (count < 0) {
+                throw new EOFException("Unexpected end-of-input in binary Sync List");
+            }
+            offset += count;
+            length -= count;
+        }
+    }
+}
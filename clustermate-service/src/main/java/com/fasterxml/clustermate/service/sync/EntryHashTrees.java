@@ -0,0 +1,597 @@
+package com.fasterxml.clustermate.service.sync;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.TimeMaster;
+import com.fasterxml.storemate.store.Storable;
+import com.fasterxml.storemate.store.StorableCreationResult;
+import com.fasterxml.storemate.store.StorableStore;
+import com.fasterxml.storemate.store.StoreException;
+import com.fasterxml.storemate.store.StoreOperationSource;
+import com.fasterxml.storemate.store.backend.IterationAction;
+import com.fasterxml.storemate.store.backend.StorableIterationCallback;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.EntryKeyConverter;
+import com.fasterxml.clustermate.api.KeyHash;
+import com.fasterxml.clustermate.api.KeyRange;
+import com.fasterxml.clustermate.service.cfg.AntiEntropyConfig;
+
+/**
+ * Hash trees (Merkle trees) over entries of the local store, used for
+ * anti-entropy: finding differences between peers by exchanging tree
+ * levels, instead of listing all entries.
+ *<p>
+ * Trees have two levels below key range slots: each slot of the key
+ * space is divided into <code>2^leafBits</code> leaves, based on hash
+ * of the key; and hash of a leaf is calculated by XORing digests of all
+ * entries within it. Hash of a slot is then calculated over hashes of
+ * its leaves. Digest of an entry is calculated from its key and content
+ * hash, both of which are same for all copies; tombstones have the
+ * same digest as the entry they replace, so deletions do not change
+ * hashes (deletions are propagated by regular synchronization).
+ *<p>
+ * Since leaf hashes are XORs of digests, they can be updated incrementally
+ * as entries are created or replaced; but some changes (like removal of
+ * expired entries and tombstones) are only reflected by full rebuilds,
+ * which are done periodically in background.
+ *<p>
+ * In addition to hashes, keys of entries may be indexed by leaf (up to
+ * configured maximum number of keys), so that entries of differing leaves
+ * can be listed without scanning through all entries of the store.
+ */
+public class EntryHashTrees
+    implements com.fasterxml.storemate.shared.StartAndStoppable
+{
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    protected final EntryKeyConverter<EntryKey> _keyConverter;
+
+    protected final TimeMaster _timeMaster;
+
+    /**
+     * Number of slots in the key space
+     */
+    protected final int _slotCount;
+
+    protected final int _leafBits;
+
+    protected final long _rebuildIntervalMsecs;
+
+    protected final int _maxIndexedKeys;
+
+    /**
+     * Hashes of all leaves, indexed by global leaf index
+     * (see {@link #leafIndexFor}); null until built.
+     */
+    protected volatile AtomicLongArray _leaves;
+
+    /**
+     * Leaves being built by full scan, if rebuild is in progress; updates
+     * are applied to both these and current leaves
+     */
+    protected volatile AtomicLongArray _leavesInProgress;
+
+    /**
+     * Key of the last entry scanned during rebuild: updates to entries
+     * after it need not be applied to {@link #_leavesInProgress}, since
+     * scan will see them.
+     */
+    protected volatile StorableKey _lastScannedKey;
+
+    /**
+     * Lock used for making incremental updates of leaves atomic with
+     * respect to advancing {@link #_lastScannedKey} and replacing leaves
+     * with rebuilt ones: otherwise an update could be applied both by the
+     * scan and incrementally, or not at all.
+     */
+    protected final Object _rebuildLock = new Object();
+
+    /**
+     * Number of updates in progress (store operation started, but
+     * {@link #entryCreated} not yet called), by key. Since store is
+     * updated before hashes, scan may see either old or new version of
+     * such entries; so it needs to record digests it used for them.
+     *<p>
+     * Guarded by {@link #_rebuildLock}.
+     */
+    protected final Map<StorableKey,Integer> _updating = new HashMap<StorableKey,Integer>();
+
+    /**
+     * Digests that the scan used for entries that were being updated, for
+     * {@link #_leaves}: if an update for such entry completes, this digest
+     * (instead of digest of the previous version) is replaced.
+     *<p>
+     * Guarded by {@link #_rebuildLock}.
+     */
+    protected Map<StorableKey,Long> _scannedDigests = new HashMap<StorableKey,Long>();
+
+    /**
+     * Digests that the scan used for entries that were being updated, for
+     * {@link #_leavesInProgress}.
+     *<p>
+     * Guarded by {@link #_rebuildLock}.
+     */
+    protected Map<StorableKey,Long> _scannedDigestsInProgress;
+
+    /**
+     * Keys of entries, indexed by global leaf index; null if not built,
+     * or if there are more entries than the configured maximum.
+     */
+    protected volatile LeafKeyIndex _leafKeys;
+
+    /**
+     * Key index being built by full scan, if rebuild is in progress
+     */
+    protected volatile LeafKeyIndex _leafKeysInProgress;
+
+    /**
+     * Timer used for periodic rebuilds; constructed when rebuilding is
+     * scheduled.
+     */
+    protected ScheduledExecutorService _timer;
+
+    @SuppressWarnings("unchecked")
+    public EntryHashTrees(EntryKeyConverter<?> keyConverter, TimeMaster timeMaster,
+            int slotCount, AntiEntropyConfig config)
+    {
+        if (slotCount <= 0) {
+            throw new IllegalArgumentException("Invalid slotCount ("+slotCount+"): must be positive");
+        }
+        _keyConverter = (EntryKeyConverter<EntryKey>) keyConverter;
+        _timeMaster = timeMaster;
+        _slotCount = slotCount;
+        _leafBits = config.leafBits;
+        _rebuildIntervalMsecs = config.rebuildInterval.getMillis();
+        _maxIndexedKeys = config.maxIndexedKeys;
+    }
+
+    /*
+    /**********************************************************************
+    /* StartAndStoppable
+    /**********************************************************************
+     */
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void prepareForStop() { }
+
+    @Override
+    public synchronized void stop()
+    {
+        if (_timer != null) {
+            _timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Method called to schedule the initial build, as well as periodic
+     * rebuilds, of hash trees from contents of given store.
+     */
+    public synchronized void scheduleRebuilds(final StorableStore store)
+    {
+        if (_timer != null) {
+            return;
+        }
+        _timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "EntryHashTreeBuilder");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        _timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rebuild(store);
+                } catch (Exception e) {
+                    LOG.error("Failed to rebuild entry hash trees: ("+e.getClass().getName()+") "
+                            +e.getMessage(), e);
+                }
+            }
+        }, 0L, _rebuildIntervalMsecs, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API, accessors
+    /**********************************************************************
+     */
+
+    public int getLeafBits() {
+        return _leafBits;
+    }
+
+    public int getSlotCount() {
+        return _slotCount;
+    }
+
+    /**
+     * @return Total number of leaves; valid global leaf indexes are from 0
+     *   to one less than this number
+     */
+    public int getLeafCount() {
+        return _slotCount << _leafBits;
+    }
+
+    /**
+     * @return True if trees have been built and can be used for comparisons
+     */
+    public boolean isBuilt() {
+        return (_leaves != null);
+    }
+
+    /**
+     * Method for calculating hashes of slots within given key range, in order
+     * of slots in the range (starting with the first slot of range).
+     *
+     * @return Hashes of slots; or null if trees have not yet been built
+     */
+    public long[] slotHashes(KeyRange range)
+    {
+        final AtomicLongArray leaves = _leaves;
+        if (leaves == null) {
+            return null;
+        }
+        final int count = range.getLength();
+        long[] result = new long[count];
+        for (int i = 0; i < count; ++i) {
+            result[i] = _slotHash(leaves, (range.getStart() + i) % _slotCount);
+        }
+        return result;
+    }
+
+    /**
+     * Method for accessing hashes of leaves of given slot.
+     *
+     * @return Hashes of leaves; or null if trees have not yet been built
+     */
+    public long[] leafHashes(int slot)
+    {
+        final AtomicLongArray leaves = _leaves;
+        if (leaves == null) {
+            return null;
+        }
+        final int count = 1 << _leafBits;
+        final int offset = slot << _leafBits;
+        long[] result = new long[count];
+        for (int i = 0; i < count; ++i) {
+            result[i] = leaves.get(offset + i);
+        }
+        return result;
+    }
+
+    /**
+     * Method for calculating global leaf index (<code>slot * 2^leafBits + leaf</code>)
+     * for given key.
+     */
+    public int leafIndexFor(StorableKey rawKey) {
+        return leafIndexFor(rawKey, keyDigest(rawKey));
+    }
+
+    /**
+     * Method for finding keys of entries that belong to given leaves,
+     * using key index.
+     *
+     * @param leaves Global indexes of leaves to find keys for
+     * @param after If not null, only keys after this key are included
+     * @param maxCount Maximum number of keys to return
+     *
+     * @return Keys in ascending order (at most <code>maxCount</code>); or null
+     *   if keys are not indexed, in which case entries need to be scanned
+     */
+    public List<StorableKey> keysForLeaves(BitSet leaves, StorableKey after, int maxCount)
+    {
+        final LeafKeyIndex index = _leafKeys;
+        if (index == null) {
+            return null;
+        }
+        // keys of each leaf are sorted, so we only need first 'maxCount' of each
+        TreeSet<StorableKey> result = new TreeSet<StorableKey>();
+        for (int leaf = leaves.nextSetBit(0); leaf >= 0; leaf = leaves.nextSetBit(leaf+1)) {
+            NavigableSet<StorableKey> keys = index.keys(leaf);
+            if (keys == null) {
+                continue;
+            }
+            if (after != null) {
+                keys = keys.tailSet(after, false);
+            }
+            for (StorableKey key : keys) {
+                if (result.size() >= maxCount) {
+                    if (key.compareTo(result.last()) >= 0) {
+                        break;
+                    }
+                    result.pollLast();
+                }
+                result.add(key);
+            }
+        }
+        return new ArrayList<StorableKey>(result);
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API, updates
+    /**********************************************************************
+     */
+
+    /**
+     * Method that must be called before an entry may be created or replaced;
+     * and that must be followed by a call to {@link #entryCreated} once
+     * store operation has completed (or failed).
+     */
+    public void entryUpdating(StorableKey rawKey)
+    {
+        synchronized (_rebuildLock) {
+            Integer count = _updating.get(rawKey);
+            _updating.put(rawKey, (count == null) ? 1 : count.intValue() + 1);
+        }
+    }
+
+    /**
+     * Method called after an entry has been created or replaced (or
+     * operation announced with {@link #entryUpdating} failed), to
+     * update hashes incrementally.
+     *
+     * @param result Result of the operation; null if it failed
+     */
+    public void entryCreated(StorableKey rawKey, StorableCreationResult result)
+    {
+        final Storable curr = (result == null || !result.succeeded()) ? null : result.getNewEntry();
+        final long keyDigest = keyDigest(rawKey);
+        final int ix = leafIndexFor(rawKey, keyDigest);
+        long prevDigest = 0L;
+        long currDigest = 0L;
+        if (curr != null) {
+            final Storable prev = result.getPreviousEntry();
+            if (prev == null) { // new key; adding is idempotent so no need to check scan position
+                _indexKey(_leafKeys, ix, rawKey);
+                _indexKey(_leafKeysInProgress, ix, rawKey);
+            } else {
+                prevDigest = entryDigest(keyDigest, prev.getContentHash());
+            }
+            currDigest = entryDigest(keyDigest, curr.getContentHash());
+        }
+        synchronized (_rebuildLock) {
+            Integer count = _updating.remove(rawKey);
+            final boolean stillUpdating = (count != null) && (count.intValue() > 1);
+            if (stillUpdating) {
+                _updating.put(rawKey, count.intValue() - 1);
+            }
+            final boolean modified = (curr != null);
+            _update(_leaves, _scannedDigests, ix, rawKey,
+                    modified, prevDigest, currDigest, stillUpdating, true);
+            final StorableKey scanned = _lastScannedKey;
+            _update(_leavesInProgress, _scannedDigestsInProgress, ix, rawKey,
+                    modified, prevDigest, currDigest, stillUpdating,
+                    (scanned != null) && (rawKey.compareTo(scanned) <= 0));
+        }
+    }
+
+    /**
+     * Method for (re)building hashes by scanning through all entries of
+     * given store.
+     */
+    public void rebuild(StorableStore store) throws StoreException
+    {
+        final long start = _timeMaster.realSystemTimeMillis();
+        final AtomicLongArray leaves = new AtomicLongArray(getLeafCount());
+        final Map<StorableKey,Long> scannedDigests = new HashMap<StorableKey,Long>();
+        synchronized (_rebuildLock) {
+            _lastScannedKey = null;
+            _leavesInProgress = leaves;
+            _scannedDigestsInProgress = scannedDigests;
+        }
+        _leafKeysInProgress = (_maxIndexedKeys > 0) ? new LeafKeyIndex(getLeafCount()) : null;
+        final int[] count = new int[1];
+        try {
+            store.iterateEntriesByKey(StoreOperationSource.SYNC, null, null,
+                    new StorableIterationCallback() {
+                @Override
+                public IterationAction verifyKey(StorableKey key) {
+                    return IterationAction.PROCESS_ENTRY;
+                }
+
+                @Override
+                public IterationAction processEntry(Storable entry) {
+                    final StorableKey rawKey = entry.getKey();
+                    final long keyDigest = keyDigest(rawKey);
+                    final int ix = leafIndexFor(rawKey, keyDigest);
+                    final long digest = entryDigest(keyDigest, entry.getContentHash());
+                    // must apply digest before advancing marker, atomically
+                    synchronized (_rebuildLock) {
+                        _xor(leaves, ix, digest);
+                        _lastScannedKey = rawKey;
+                        // may or may not be the version update will report
+                        if (_updating.containsKey(rawKey)) {
+                            scannedDigests.put(rawKey, digest);
+                        }
+                    }
+                    _indexKey(_leafKeysInProgress, ix, rawKey);
+                    ++count[0];
+                    return IterationAction.PROCESS_ENTRY;
+                }
+            });
+            // must replace leaves atomically with respect to incremental updates
+            synchronized (_rebuildLock) {
+                _leaves = leaves;
+                _scannedDigests = scannedDigests;
+                _leavesInProgress = null;
+                _scannedDigestsInProgress = null;
+                _lastScannedKey = null;
+            }
+            _leafKeys = _leafKeysInProgress;
+        } finally {
+            synchronized (_rebuildLock) {
+                if (_leavesInProgress == leaves) { // failed
+                    _leavesInProgress = null;
+                    _scannedDigestsInProgress = null;
+                    _lastScannedKey = null;
+                }
+            }
+            _leafKeysInProgress = null;
+        }
+        LOG.info("Built entry hash trees over {} entries in {} msecs",
+                count[0], _timeMaster.realSystemTimeMillis() - start);
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    /**
+     * Helper method for applying a completed update to given leaves.
+     * Called while holding {@link #_rebuildLock}.
+     *
+     * @param scannedDigests Digests that the scan used for entries being
+     *    updated
+     * @param applyDelta Whether leaves include previous version of the entry
+     *    (if scan did not record a digest for it)
+     */
+    private void _update(AtomicLongArray leaves, Map<StorableKey,Long> scannedDigests,
+            int ix, StorableKey rawKey, boolean modified, long prevDigest, long currDigest,
+            boolean stillUpdating, boolean applyDelta)
+    {
+        if (leaves == null) {
+            return;
+        }
+        Long scanned = scannedDigests.remove(rawKey);
+        if (!modified) { // nothing to change; but digest may still be needed by other updates
+            if (scanned != null && stillUpdating) {
+                scannedDigests.put(rawKey, scanned);
+            }
+            return;
+        }
+        if (scanned != null) { // scan may have seen either version: replace whatever it used
+            _xor(leaves, ix, scanned.longValue() ^ currDigest);
+            if (stillUpdating) {
+                scannedDigests.put(rawKey, currDigest);
+            }
+        } else if (applyDelta) {
+            _xor(leaves, ix, prevDigest ^ currDigest);
+        }
+    }
+
+    protected int leafIndexFor(StorableKey rawKey, long keyDigest)
+    {
+        int hash = _keyConverter.routingHashFor(_keyConverter.rawToEntryKey(rawKey));
+        int slot = KeyHash.calcModulo(hash, _slotCount);
+        if (_leafBits == 0) {
+            return slot;
+        }
+        return (slot << _leafBits) | (int) (keyDigest >>> (64 - _leafBits));
+    }
+
+    protected long _slotHash(AtomicLongArray leaves, int slot)
+    {
+        final int offset = slot << _leafBits;
+        long hash = slot;
+        for (int i = 0, end = 1 << _leafBits; i < end; ++i) {
+            hash = _mix((hash * 31L) + leaves.get(offset + i));
+        }
+        return hash;
+    }
+
+    /**
+     * Helper method for calculating 64-bit digest of a key (FNV-1a).
+     */
+    protected static long keyDigest(StorableKey rawKey)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, len = rawKey.length(); i < len; ++i) {
+            hash ^= (rawKey.byteAt(i) & 0xFF);
+            hash *= 0x100000001b3L;
+        }
+        return _mix(hash);
+    }
+
+    protected static long entryDigest(long keyDigest, int contentHash) {
+        return _mix(keyDigest ^ ((contentHash & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L));
+    }
+
+    // Finalization step of MurmurHash3 (64-bit)
+    private static long _mix(long h)
+    {
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+    private void _indexKey(LeafKeyIndex index, int ix, StorableKey rawKey)
+    {
+        if (index != null && index.add(ix, rawKey) > _maxIndexedKeys) {
+            // too many keys to keep in memory: drop the index, need to scan instead
+            if (index == _leafKeys) {
+                _leafKeys = null;
+            }
+            if (index == _leafKeysInProgress) {
+                _leafKeysInProgress = null;
+            }
+        }
+    }
+
+    private static void _xor(AtomicLongArray leaves, int ix, long delta)
+    {
+        long old;
+        do {
+            old = leaves.get(ix);
+        } while (!leaves.compareAndSet(ix, old, old ^ delta));
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Sorted sets of keys for leaves, created lazily.
+     */
+    protected static class LeafKeyIndex
+    {
+        private final AtomicReferenceArray<ConcurrentSkipListSet<StorableKey>> _keys;
+
+        private final AtomicInteger _count = new AtomicInteger();
+
+        public LeafKeyIndex(int leafCount) {
+            _keys = new AtomicReferenceArray<ConcurrentSkipListSet<StorableKey>>(leafCount);
+        }
+
+        public NavigableSet<StorableKey> keys(int leaf) {
+            return _keys.get(leaf);
+        }
+
+        /**
+         * @return Total number of keys indexed after addition
+         */
+        public int add(int leaf, StorableKey key)
+        {
+            ConcurrentSkipListSet<StorableKey> keys = _keys.get(leaf);
+            if (keys == null) {
+                _keys.compareAndSet(leaf, null, new ConcurrentSkipListSet<StorableKey>());
+                keys = _keys.get(leaf);
+            }
+            if (keys.add(key)) {
+                return _count.incrementAndGet();
+            }
+            return _count.get();
+        }
+    }
+}
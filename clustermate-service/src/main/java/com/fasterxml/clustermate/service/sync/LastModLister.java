@@ -1,7 +1,5 @@
 package com.fasterxml.clustermate.service.sync;
 
-import java.util.ArrayList;
-
 import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.api.EntryKeyConverter;
 import com.fasterxml.clustermate.api.KeyRange;
@@ -17,7 +15,6 @@ class LastModLister<K extends EntryKey, E extends StoredEntry<K>>
     extends StorableLastModIterationCallback
 {
     private final TimeMaster _timeMaster;
-    private final StoredEntryConverter<K,E,?> _entryConverter;
 
     // // Limits
     
@@ -39,7 +36,7 @@ class LastModLister<K extends EntryKey, E extends StoredEntry<K>>
     
     private int _total = 0;
 
-    private final ArrayList<E> _result;
+    private final SyncListEntryCollector _result;
     
     // last timestamp traversed that was in legal timestamp range
     private long _lastSeenValidTimestamp;
@@ -52,10 +49,9 @@ class LastModLister<K extends EntryKey, E extends StoredEntry<K>>
     
     public LastModLister(TimeMaster timeMaster, StoredEntryConverter<K,E,?> entryConverter,
             KeyRange inRange, long since, long upTo, long processUntil, int maxCount,
-            ArrayList<E> result)
+            SyncListEntryCollector result)
     {
         _timeMaster = timeMaster;
-        _entryConverter = entryConverter;
         _keyConverter = entryConverter.keyConverter();
 
         _inRange = inRange;
@@ -111,8 +107,8 @@ class LastModLister<K extends EntryKey, E extends StoredEntry<K>>
     @Override
     public IterationAction processEntry(Storable storable)
     {
-        E entry = _entryConverter.entryFromStorable(key, storable);
-        _result.add(entry);
+        // no need to construct full entries: raw ones have all we need
+        _result.add(storable);
         /* One limitation, however; we MUST advance timer beyond initial
          * 'since' time. This may require including more than 'max' entries.
          */
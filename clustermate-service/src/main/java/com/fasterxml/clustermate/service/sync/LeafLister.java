@@ -0,0 +1,97 @@
+package com.fasterxml.clustermate.service.sync;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.clustermate.service.store.StoredEntryConverter;
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.TimeMaster;
+import com.fasterxml.storemate.store.Storable;
+import com.fasterxml.storemate.store.backend.IterationAction;
+import com.fasterxml.storemate.store.backend.StorableIterationCallback;
+
+/**
+ * Iteration callback used for listing entries that belong to specified
+ * leaves of {@link EntryHashTrees}.
+ */
+class LeafLister<K extends EntryKey, E extends StoredEntry<K>>
+    extends StorableIterationCallback
+{
+    private final TimeMaster _timeMaster;
+    private final StoredEntryConverter<K,E,?> _entryConverter;
+    private final EntryHashTrees _hashTrees;
+
+    // // Limits
+
+    private final BitSet _leaves;
+
+    private final long _processUntil;
+
+    private final int _maxCount;
+
+    // // Temporary values
+
+    private int _total = 0;
+
+    // // Result values
+
+    private final ArrayList<E> _result;
+
+    private StorableKey _lastSeen;
+
+    private boolean _terminated;
+
+    public LeafLister(TimeMaster timeMaster, StoredEntryConverter<K,E,?> entryConverter,
+            EntryHashTrees hashTrees, BitSet leaves, long processUntil, int maxCount,
+            ArrayList<E> result)
+    {
+        _timeMaster = timeMaster;
+        _entryConverter = entryConverter;
+        _hashTrees = hashTrees;
+        _leaves = leaves;
+        _processUntil = processUntil;
+        _maxCount = maxCount;
+        _result = result;
+    }
+
+    // Filtering can be done with just keys
+    @Override
+    public IterationAction verifyKey(StorableKey rawKey)
+    {
+        // check time limits every 64 entries processed
+        if ((++_total & 0x3F) == 0) {
+            if (_timeMaster.realSystemTimeMillis() > _processUntil) {
+                _terminated = true;
+                return IterationAction.TERMINATE_ITERATION;
+            }
+        }
+        _lastSeen = rawKey;
+        if (_leaves.get(_hashTrees.leafIndexFor(rawKey))) {
+            return IterationAction.PROCESS_ENTRY;
+        }
+        return IterationAction.SKIP_ENTRY;
+    }
+
+    @Override
+    public IterationAction processEntry(Storable storable)
+    {
+        _result.add(_entryConverter.entryFromStorable(storable));
+        if (_result.size() >= _maxCount) {
+            _terminated = true;
+            return IterationAction.TERMINATE_ITERATION;
+        }
+        return IterationAction.PROCESS_ENTRY;
+    }
+
+    public int getTotal() { return _total; }
+
+    /**
+     * @return Key of the last entry traversed, if iteration was terminated
+     *   before all entries were traversed; null if all were traversed
+     */
+    public StorableKey getLastSeen() {
+        return _terminated ? _lastSeen : null;
+    }
+}
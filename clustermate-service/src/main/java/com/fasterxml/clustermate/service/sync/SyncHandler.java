@@ -19,6 +19,7 @@ import com.fasterxml.clustermate.api.msg.ClusterStatusMessage;
 import com.fasterxml.clustermate.service.*;
 import com.fasterxml.clustermate.service.cluster.ClusterViewByServer;
 import com.fasterxml.clustermate.service.cluster.ClusterViewByServerUpdatable;
+import com.fasterxml.clustermate.service.msg.SimpleStreamingResponseContent;
 import com.fasterxml.clustermate.service.msg.StreamingEntityImpl;
 import com.fasterxml.clustermate.service.store.StoredEntry;
 import com.fasterxml.clustermate.service.store.StoredEntryConverter;
@@ -29,6 +30,7 @@ import com.fasterxml.clustermate.service.store.StoredEntryConverter;
  */
 public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
     extends HandlerBase
+    implements StartAndStoppable
 {
     /**
      * Since 'list sync' operation can potentially scan through sizable
@@ -68,6 +70,17 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
 
     protected final TimeMaster _timeMaster;
 
+    /**
+     * Registry of Sync List requests waiting for entries, if asynchronous
+     * long-polling is enabled; null if not.
+     */
+    protected final SyncListWaiters _waiters;
+
+    /**
+     * Hash trees used for anti-entropy, if enabled; null if not.
+     */
+    protected final EntryHashTrees _hashTrees;
+
     // // Helpers for JSON/Smile:
     
     protected final ObjectWriter _syncListJsonWriter;
@@ -80,6 +93,8 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
     
     protected final ObjectReader _jsonSyncPullReader;
 
+    protected final ObjectReader _jsonTreeListReader;
+
     /*
     /**********************************************************************
     /* Configuration
@@ -106,6 +121,17 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
      */
     protected final int _maxToListPerRequest;
 
+    /**
+     * Count limit for entries listed when using binary encoding; higher than
+     * {@link #_maxToListPerRequest} since encoded entries are more compact.
+     */
+    protected final int _maxToListPerBinaryRequest;
+
+    /**
+     * Number of entries to read ahead when writing sync-pull responses
+     */
+    protected final int _syncPullReadAhead;
+
     /*
     /**********************************************************************
     /* Life-cycle
@@ -131,14 +157,41 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
         _cfgSyncGracePeriodMsecs = stuff.getServiceConfig().cfgSyncGracePeriod.getMillis();
         _cfgMaxTimeToLiveMsecs = stuff.getServiceConfig().cfgMaxMaxTTL.getMillis();
         _cfgMaxLongPollTimeMsecs = stuff.getServiceConfig().cfgSyncMaxLongPollTime.getMillis();
+        _waiters = stuff.getServiceConfig().cfgSyncAsyncLongPoll ? stuff.getSyncListWaiters() : null;
+        _hashTrees = stuff.getEntryHashTrees();
         _syncListJsonWriter = stuff.jsonWriter().withDefaultPrettyPrinter();
         _syncListSmileWriter = stuff.smileWriter();
         _syncPullSmileWriter = stuff.smileWriter();
         _jsonSyncPullReader = stuff.jsonReader(SyncPullRequest.class);
+        _jsonTreeListReader = stuff.jsonReader(SyncTreeListRequest.class);
 
         // error responses always as JSON:
         _errorJsonWriter = stuff.jsonWriter();
         _maxToListPerRequest = maxToListPerRequest;
+        _maxToListPerBinaryRequest = stuff.getServiceConfig().cfgMaxEntriesPerBinarySyncList;
+        _syncPullReadAhead = stuff.getServiceConfig().syncPull.readAheadEntries;
+    }
+
+    @Override
+    public void start()
+    {
+        if (_hashTrees != null) {
+            _hashTrees.scheduleRebuilds(_stores.getEntryStore());
+        }
+    }
+
+    @Override
+    public void prepareForStop() { }
+
+    @Override
+    public void stop()
+    {
+        if (_waiters != null) {
+            _waiters.stop();
+        }
+        if (_hashTrees != null) {
+            _hashTrees.stop();
+        }
     }
 
     /*
@@ -154,6 +207,14 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
     public long getSyncGracePeriodMsecs() {
         return _cfgSyncGracePeriodMsecs;
     }
+
+    /**
+     * Accessor for checking whether Sync List requests may wait for entries
+     * asynchronously (see {@link #localListEntriesAsync}).
+     */
+    public boolean canListAsync() {
+        return (_waiters != null);
+    }
     
     /*
     /**********************************************************************
@@ -172,7 +233,7 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
             Long sinceL, OperationDiagnostics metadata)
         throws InterruptedException, StoreException
     {
-        return (OUT) _listEntries(request, response, sinceL, metadata, true);
+        return (OUT) _listEntries(request, response, sinceL, metadata, true, null);
     }
 
     /**
@@ -185,15 +246,48 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
             Long sinceL, OperationDiagnostics metadata)
         throws InterruptedException, StoreException
     {
-        return (OUT) _listEntries(request, response, sinceL, metadata, false);
+        return (OUT) _listEntries(request, response, sinceL, metadata, false, null);
     }
-    
+
+    /**
+     * Alternative to {@link #localListEntries} that does not block the calling
+     * thread if it needs to wait for entries to become available: instead,
+     * request is suspended using given context, and completed once entries
+     * are available or maximum long-poll time has passed.
+     * Must only be called if {@link #canListAsync()} returns true.
+     *
+     * @return Response, if it is available right away; null if request
+     *   was suspended and will be completed via <code>asyncContext</code>
+     */
+    @SuppressWarnings("unchecked")
+    public <OUT extends ServiceResponse> OUT localListEntriesAsync(ServiceRequest request, OUT response,
+            Long sinceL, OperationDiagnostics metadata, SyncListAsyncContext asyncContext)
+        throws InterruptedException, StoreException
+    {
+        return (OUT) _listEntries(request, response, sinceL, metadata, true, asyncContext);
+    }
+
+    /**
+     * Alternative to {@link #remoteListEntries} that does not block the calling
+     * thread if it needs to wait for entries; see {@link #localListEntriesAsync}
+     * for details.
+     */
+    @SuppressWarnings("unchecked")
+    public <OUT extends ServiceResponse> OUT remoteListEntriesAsync(ServiceRequest request, OUT response,
+            Long sinceL, OperationDiagnostics metadata, SyncListAsyncContext asyncContext)
+        throws InterruptedException, StoreException
+    {
+        return (OUT) _listEntries(request, response, sinceL, metadata, false, asyncContext);
+    }
+
     /**
      * @param isLocal Whether this call is from local cluster (end point) or not (remote)
+     * @param asyncContext If not null, context to use for waiting for entries
+     *   without blocking, in which case null is returned if request was suspended
      */
     protected ServiceResponse _listEntries(ServiceRequest request, ServiceResponse response,
             Long sinceL, OperationDiagnostics metadata,
-            boolean isLocal)
+            boolean isLocal, SyncListAsyncContext asyncContext)
         throws InterruptedException, StoreException
     {
         // simple validation first
@@ -227,7 +321,7 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
                 _cluster.checkMembership(caller, 0L, range);
             }
         }
-        boolean useSmile = _acceptSmileContentType(request);
+        final ContentType contentType = _listContentType(request);
         final long currentTime = _timeMaster.currentTimeMillis();
         long since = (sinceL == null) ? 0L : sinceL.longValue();
 
@@ -250,7 +344,16 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
         KeyRange localRange = localState.totalRange();
         if (localRange.overlapsWith(range)) {
             try {
-                resp = _listEntries(range, since, _maxToListPerRequest);
+                if (asyncContext == null) {
+                    resp = _listEntries(range, since, contentType);
+                } else {
+                    ListWaiter waiter = new ListWaiter(range, since, asyncContext,
+                            response, metadata, clusterHash, contentType);
+                    resp = _listEntries(range, since, contentType, 0, waiter);
+                    if (resp == null) { // suspended; will be completed by waiter
+                        return null;
+                    }
+                }
             } catch (StoreException e) {
                 return _storeError(response, e);
             }
@@ -259,6 +362,26 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
                     (caller == null) ? "UNKNOWN" : caller, range, localRange);
             resp = SyncListResponse.emptyResponse();
         }
+        return _listResponse(response, resp, metadata, clusterHash, contentType);
+    }
+
+    /**
+     * Helper method for determining which content type to use for Sync List
+     * response: compact binary encoding if caller accepts it; otherwise
+     * Smile or JSON.
+     */
+    protected ContentType _listContentType(ServiceRequest request)
+    {
+        String acceptHeader = request.getHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT);
+        if (ContentType.SYNC_LIST.isAccepted(acceptHeader)) {
+            return ContentType.SYNC_LIST;
+        }
+        return _acceptSmileContentType(request) ? ContentType.SMILE : ContentType.JSON;
+    }
+
+    protected ServiceResponse _listResponse(ServiceResponse response, SyncListResponse<E> resp,
+            OperationDiagnostics metadata, long clusterHash, ContentType contentType)
+    {
         if (metadata != null) {
             metadata = metadata.setItemCount(resp.size());
         }
@@ -268,11 +391,26 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
         ClusterStatusMessage clusterStatus = (clusterHash == 0L || clusterHash != currentHash) ?
                 _cluster.asMessage(false) : null;
         resp.setClusterStatus(clusterStatus);                
-        final ObjectWriter w = useSmile ? _syncListSmileWriter : _syncListJsonWriter;
-        final String contentType = useSmile ? ContentType.SMILE.toString() : ContentType.JSON.toString();
-        
+        if (contentType == ContentType.SYNC_LIST) {
+            BinarySyncList entries = resp.binaryEntries();
+            if (entries == null) { // only for empty responses
+                entries = new BinarySyncList();
+            }
+            byte[] data;
+            try {
+                data = entries.finish(resp, (clusterStatus == null) ? null
+                        : _syncListSmileWriter.writeValueAsBytes(clusterStatus));
+            } catch (IOException e) {
+                return response.internalError(new SyncListResponse<E>("Failed to encode Sync List: "+e.getMessage()))
+                        .setContentTypeJson();
+            }
+            return response.ok(new SimpleStreamingResponseContent(null, _timeMaster,
+                    ByteContainer.simple(data), null, data.length))
+                    .setContentType(contentType.toString());
+        }
+        final ObjectWriter w = (contentType == ContentType.SMILE) ? _syncListSmileWriter : _syncListJsonWriter;
         return response.ok(new StreamingEntityImpl(w, resp))
-                .setContentType(contentType);
+                .setContentType(contentType.toString());
     }
     
     /*
@@ -345,8 +483,161 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
                 metadata = metadata.setItemCount(entries.size());
             }
         } 
-        return response.ok(new SyncPullResponse<E>(_fileManager, _timeMaster.currentTimeMillis(),
-                _syncPullSmileWriter, entries));
+        // Binary entry headers only if caller can handle them; older ones can't
+        final boolean binary = ContentType.SYNC_PULL.isAccepted(request.getHeader(ClusterMateConstants.HTTP_HEADER_ACCEPT));
+        response = response.ok(new SyncPullResponse<E>(_fileManager, _timeMaster.currentTimeMillis(),
+                _syncPullSmileWriter, entries, binary, _syncPullReadAhead));
+        if (binary) {
+            response = response.setContentType(ContentType.SYNC_PULL.toString());
+        }
+        return response;
+    }
+
+    /*
+    /**********************************************************************
+    /* API, hash trees (anti-entropy)
+    /**********************************************************************
+     */
+
+    /**
+     * End point local cluster nodes use to access a level of hash trees
+     * over entries of specified key range: either hashes of all slots
+     * of the range (level 0), or hashes of leaves of a single slot
+     * (level 1, for range of length 1).
+     */
+    @SuppressWarnings("unchecked")
+    public <OUT extends ServiceResponse> OUT localHashTree(ServiceRequest request, OUT response,
+            OperationDiagnostics metadata)
+    {
+        if (_hashTrees == null) {
+            return (OUT) _treeBadRequest(response, "Anti-entropy not enabled");
+        }
+        Integer keyRangeStart = _findIntParam(request, ClusterMateConstants.QUERY_PARAM_KEYRANGE_START);
+        if (keyRangeStart == null) {
+            return (OUT) _treeBadRequest(response,
+                    "Missing query parameter '"+ClusterMateConstants.QUERY_PARAM_KEYRANGE_START+"'");
+        }
+        Integer keyRangeLength = _findIntParam(request, ClusterMateConstants.QUERY_PARAM_KEYRANGE_LENGTH);
+        if (keyRangeLength == null) {
+            return (OUT) _treeBadRequest(response,
+                    "Missing query parameter '"+ClusterMateConstants.QUERY_PARAM_KEYRANGE_LENGTH+"'");
+        }
+        Integer level = _findIntParam(request, ClusterMateConstants.QUERY_PARAM_TREE_LEVEL);
+        KeyRange range;
+        try {
+            range = _cluster.getKeySpace().range(keyRangeStart, keyRangeLength);
+        } catch (Exception e) {
+            return (OUT) _treeBadRequest(response,
+                    String.format("Invalid key-range definition (start '%s', end '%s'): %s",
+                            keyRangeStart, keyRangeLength, e.getMessage()));
+        }
+        long[] hashes;
+        if (level == null || level.intValue() == 0) {
+            hashes = _hashTrees.slotHashes(range);
+        } else if (level.intValue() == 1 && range.getLength() == 1) {
+            hashes = _hashTrees.leafHashes(range.getStart());
+        } else {
+            return (OUT) _treeBadRequest(response, "Invalid tree level ("+level+") for key range "+range);
+        }
+        if (hashes == null) {
+            return (OUT) response.serviceTimeout(new SyncTreeResponse("Hash trees not yet built"))
+                    .setContentTypeJson();
+        }
+        if (metadata != null) {
+            metadata = metadata.setItemCount(hashes.length);
+        }
+        return (OUT) _treeResponse(request, response,
+                new SyncTreeResponse(_hashTrees.getLeafBits(), hashes));
+    }
+
+    /**
+     * End point local cluster nodes use to list entries that belong to
+     * specified hash tree leaves; used for finding entries to pull for
+     * leaves found to differ during anti-entropy.
+     * Request payload must be JSON.
+     */
+    @SuppressWarnings("unchecked")
+    public <OUT extends ServiceResponse> OUT localListTreeEntries(ServiceRequest request, OUT response,
+            InputStream in, OperationDiagnostics metadata)
+        throws StoreException
+    {
+        if (_hashTrees == null) {
+            return (OUT) _treeBadRequest(response, "Anti-entropy not enabled");
+        }
+        SyncTreeListRequest requestEntity;
+        try {
+            requestEntity = _jsonTreeListReader.readValue(in);
+        } catch (Exception e) {
+            return (OUT) _treeBadRequest(response, "JSON parsing error: "+e.getMessage());
+        }
+        if (requestEntity.hasUnknownProperties()) {
+            LOG.warn("Unrecognized properties in SyncTreeListRequest: "+requestEntity.unknownProperties());
+        }
+        BitSet leaves = new BitSet();
+        if (requestEntity.leaves != null) {
+            final int leafCount = _hashTrees.getLeafCount();
+            for (int leaf : requestEntity.leaves) {
+                if (leaf < 0 || leaf >= leafCount) {
+                    return (OUT) _treeBadRequest(response, "Invalid leaf index ("+leaf
+                            +"): must be between 0 and "+(leafCount-1));
+                }
+                leaves.set(leaf);
+            }
+        }
+        final ArrayList<E> result = new ArrayList<E>();
+        StorableKey lastSeen = null;
+        if (!leaves.isEmpty()) {
+            final StorableStore store = _stores.getEntryStore();
+            try {
+                // Use key index if available; otherwise need to scan all keys
+                List<StorableKey> keys = _hashTrees.keysForLeaves(leaves, requestEntity.lastSeen,
+                        _maxToListPerRequest);
+                if (keys != null) {
+                    for (StorableKey key : keys) {
+                        Storable raw = store.findEntry(StoreOperationSource.SYNC, null, key);
+                        if (raw != null) { // may have been removed after being indexed
+                            result.add(_entryConverter.entryFromStorable(raw));
+                        }
+                    }
+                    if (keys.size() >= _maxToListPerRequest) {
+                        lastSeen = keys.get(keys.size()-1);
+                    }
+                } else {
+                    final long processUntil = _timeMaster.realSystemTimeMillis() + MAX_LIST_PROC_TIME_IN_MSECS;
+                    LeafLister<K,E> cb = new LeafLister<K,E>(_timeMaster, _entryConverter, _hashTrees,
+                            leaves, processUntil, _maxToListPerRequest, result);
+                    if (requestEntity.lastSeen == null) {
+                        store.iterateEntriesByKey(StoreOperationSource.SYNC, null, null, cb);
+                    } else {
+                        store.iterateEntriesAfterKey(StoreOperationSource.SYNC, null,
+                                requestEntity.lastSeen, cb);
+                    }
+                    lastSeen = cb.getLastSeen();
+                }
+            } catch (IOException e) { // StoreException, or I/O problem reading an entry
+                String msg = e.getClass().getSimpleName()+": "+e.getMessage();
+                LOG.error(msg, e);
+                return (OUT) response.serviceTimeout(new SyncTreeResponse(msg)).setContentTypeJson();
+            }
+        }
+        if (metadata != null) {
+            metadata = metadata.setItemCount(result.size());
+        }
+        return (OUT) _treeResponse(request, response, new SyncTreeListResponse<E>(result, lastSeen));
+    }
+
+    protected ServiceResponse _treeResponse(ServiceRequest request, ServiceResponse response,
+            Object entity)
+    {
+        final boolean useSmile = _acceptSmileContentType(request);
+        final ObjectWriter w = useSmile ? _syncListSmileWriter : _syncListJsonWriter;
+        final String contentType = useSmile ? ContentType.SMILE.toString() : ContentType.JSON.toString();
+        return response.ok(new StreamingEntityImpl(w, entity))
+                .setContentType(contentType);
+    }
+
+    protected ServiceResponse _treeBadRequest(ServiceResponse response, String msg) {
+        return response.badRequest(new SyncTreeResponse(msg)).setContentTypeJson();
     }
 
     /*
@@ -356,18 +647,43 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
      */
     
     protected SyncListResponse<E> _listEntries(final KeyRange inRange,
-            final long since, final int maxCount)
+            final long since, ContentType contentType)
+        throws InterruptedException, StoreException
+    {
+        return _listEntries(inRange, since, contentType, 0, null);
+    }
+
+    /**
+     * @param contentType Content type response will use: determines maximum
+     *   number of entries, and how entries are collected
+     * @param firstRound Round to start listing from: 0 to allow server-side
+     *   waiting, 1 to just list entries available
+     * @param waiter If not null, waiter to register for waiting for entries
+     *   instead of blocking the calling thread; if it is registered, null
+     *   is returned and the waiter will complete the request
+     */
+    protected SyncListResponse<E> _listEntries(final KeyRange inRange,
+            final long since, final ContentType contentType,
+            final int firstRound, final ListWaiter waiter)
         throws InterruptedException, StoreException
     {
         final StorableStore store = _stores.getEntryStore();
-        final ArrayList<E> result = new ArrayList<E>(Math.min(100, maxCount));
+        final int maxCount;
+        final SyncListEntryCollector result;
+        if (contentType == ContentType.SYNC_LIST) {
+            maxCount = _maxToListPerBinaryRequest;
+            result = new BinarySyncList();
+        } else {
+            maxCount = _maxToListPerRequest;
+            result = new SyncListEntryCollector.ListBacked(Math.min(100, maxCount));
+        }
         long lastSeenTimestamp = 0L;
         long clientWait = 0L; // we may instruct client to do bit of waiting before retry
         boolean eoi = false;
         
         // let's only allow single wait; hence two rounds
         long upTo0 = 0;
-        for (int round = 0; round < 2; ++round) {
+        for (int round = firstRound; round < 2; ++round) {
             upTo0 = _timeMaster.currentTimeMillis() - _cfgSyncGracePeriodMsecs;
 
             /* 19-Sep-2012, tatu: Alas, it is difficult to make this work with virtual time,
@@ -446,6 +762,19 @@ public class SyncHandler<K extends EntryKey, E extends StoredEntry<K>>
                 if (delay <= 0L) { // sanity check, should not occur
                     LOG.warn("No SYNCs to list, but calculated delay is {}, which is invalid (result = {}); ignoring",
                             delay, r);
+                } else if (waiter != null) {
+                    /* No thread is held while waiting, so we can wait for the full long-poll
+                     * time, unless entries become available sooner: either ones we already
+                     * saw, or ones inserted (or deleted) while waiting.
+                     */
+                    long dataWait = (r == IterationResult.TERMINATED_FOR_TIMESTAMP) ? delay : 0L;
+                    // must suspend first, as wake up may occur right after registration
+                    waiter.suspend();
+                    if (!_waiters.register(waiter, _cfgMaxLongPollTimeMsecs, dataWait, realStartTime)) {
+                        // not registered, due to shutdown: complete without waiting
+                        waiter.wakeUp();
+                    }
+                    return null;
                 } else {
 //LOG.warn("Server long-poll wait: {} msecs", delay);
                     Thread.sleep(Math.min(_cfgMaxLongPollTimeMsecs, delay));
@@ -476,7 +805,7 @@ targetTime, _timeMaster.currentTimeMillis());
                 }
             }
         }
-        SyncListResponse<E> resp = new SyncListResponse<E>(result);
+        SyncListResponse<E> resp = result.buildResponse();
         // one more twist; if no entries found, can sync up to 'upUntil' time...
         if (result.size() == 0 && upTo0 > lastSeenTimestamp) {
             lastSeenTimestamp = upTo0-1;
@@ -492,6 +821,71 @@ targetTime, _timeMaster.currentTimeMillis());
         return resp;
     }
     
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * {@link SyncListWaiters.Waiter} used for completing Sync List requests
+     * that have been waiting for entries.
+     */
+    protected class ListWaiter
+        extends SyncListWaiters.Waiter
+        implements Runnable
+    {
+        protected final long _since;
+
+        protected final SyncListAsyncContext _asyncContext;
+
+        protected final ServiceResponse _response;
+
+        protected final OperationDiagnostics _metadata;
+
+        protected final long _clusterHash;
+
+        protected final ContentType _contentType;
+
+        public ListWaiter(KeyRange range, long since, SyncListAsyncContext asyncContext,
+                ServiceResponse response, OperationDiagnostics metadata,
+                long clusterHash, ContentType contentType)
+        {
+            super(range);
+            _since = since;
+            _asyncContext = asyncContext;
+            _response = response;
+            _metadata = metadata;
+            _clusterHash = clusterHash;
+            _contentType = contentType;
+        }
+
+        public void suspend() {
+            _asyncContext.suspend();
+        }
+
+        @Override
+        protected void wakeUp() {
+            _asyncContext.resume(this);
+        }
+
+        @Override
+        public void run()
+        {
+            ServiceResponse response;
+            try {
+                SyncListResponse<E> resp = _listEntries(_range, _since, _contentType, 1, null);
+                response = _listResponse(_response, resp, _metadata, _clusterHash, _contentType);
+            } catch (StoreException e) {
+                response = _storeError(_response, e);
+            } catch (Exception e) {
+                LOG.error("Failed to complete Sync List request: "+e.getMessage(), e);
+                response = _response.internalError("Failed to complete Sync List request: "+e.getMessage());
+            }
+            _asyncContext.complete(response);
+        }
+    }
+
     /*
     /**********************************************************************
     /* Helper methods, other
@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.clustermate.api.*;
+import com.fasterxml.clustermate.api.msg.ClusterStatusMessage;
 import com.fasterxml.clustermate.service.SharedServiceStuff;
 import com.fasterxml.clustermate.service.cfg.ServiceConfig;
 import com.fasterxml.clustermate.service.cluster.ClusterViewByServerUpdatable;
@@ -30,6 +31,20 @@ public class SyncListAccessor
     public final static String ACCEPTED_CONTENT_TYPES
         = ContentType.SMILE.toString() + ", " + ContentType.JSON.toString();
 
+    /**
+     * Content types accepted for Sync List responses: compact binary encoding
+     * preferred, but older servers will respond with Smile.
+     */
+    public final static String SYNC_LIST_CONTENT_TYPES
+        = ContentType.SYNC_LIST.toString() + ", " + ACCEPTED_CONTENT_TYPES;
+
+    /**
+     * Content types accepted for Sync Pull responses: binary entry headers
+     * preferred, but older servers will use Smile.
+     */
+    public final static String SYNC_PULL_CONTENT_TYPES
+        = ContentType.SYNC_PULL.toString() + ", " + ACCEPTED_CONTENT_TYPES;
+
     protected final SharedServiceStuff _stuff;
 
     protected final RequestPathStrategy<?> _pathStrategy;
@@ -39,10 +54,18 @@ public class SyncListAccessor
     
     protected final ObjectReader _syncListReader;
 
+    protected final ObjectReader _clusterStatusReader;
+
     protected final ObjectReader _syncEntryReader;
     
     protected final ObjectWriter _syncPullRequestWriter;
 
+    protected final ObjectReader _syncTreeReader;
+
+    protected final ObjectReader _syncTreeListReader;
+
+    protected final ObjectWriter _syncTreeListRequestWriter;
+
     protected final AtomicBoolean _closed = new AtomicBoolean(false);
     
     public SyncListAccessor(SharedServiceStuff stuff)
@@ -50,8 +73,12 @@ public class SyncListAccessor
         _stuff = stuff;
         _pathStrategy = _stuff.getPathStrategy();
         _syncListReader = stuff.smileReader(SyncListResponse.class);
+        _clusterStatusReader = stuff.smileReader(ClusterStatusMessage.class);
         _syncEntryReader = stuff.smileReader(SyncPullEntry.class);
         _syncPullRequestWriter = stuff.jsonWriter(SyncPullRequest.class);
+        _syncTreeReader = stuff.smileReader(SyncTreeResponse.class);
+        _syncTreeListReader = stuff.smileReader(SyncTreeListResponse.class);
+        _syncTreeListRequestWriter = stuff.jsonWriter(SyncTreeListRequest.class);
 
 //      _asyncHttpClient = new AsyncHttpClient();
 // important: if not using pooled conn manager, must use local instance:
@@ -107,7 +134,7 @@ public class SyncListAccessor
         HttpURLConnection conn;
         try {
             conn = prepareGet(urlStr, timeout);
-            conn.setRequestProperty(HTTP_HEADER_ACCEPT, ACCEPTED_CONTENT_TYPES);
+            conn.setRequestProperty(HTTP_HEADER_ACCEPT, SYNC_LIST_CONTENT_TYPES);
             conn.connect();
         } catch (Exception e) {
             LOG.warn("{} request to {} failed on send with Exception ({}): {}",
@@ -120,11 +147,17 @@ public class SyncListAccessor
             int statusCode = conn.getResponseCode();
             if (IOUtil.isHTTPSuccess(statusCode)) {
                 InputStream in = conn.getInputStream();
+                final boolean binary = ContentType.SYNC_LIST.isAccepted(conn.getContentType());
                 SyncListResponse<?> resp;
                 try {
-                    resp = _syncListReader.readValue(in);
+                    if (binary) {
+                        resp = BinarySyncList.decode(in, _clusterStatusReader);
+                    } else {
+                        resp = _syncListReader.readValue(in);
+                    }
                 } catch (IOException e) {
-                    throw new IOException(type+" request returned by '"+urlStr+"', failed to parse Smile: "+e.getMessage());
+                    throw new IOException(type+" request returned by '"+urlStr+"', failed to parse "
+                            +(binary ? "binary Sync List" : "Smile")+": "+e.getMessage());
                 } finally {
                     try {
                         in.close();
@@ -176,6 +209,7 @@ public class SyncListAccessor
         OutputStream out = null;
         try {
             conn = preparePost(endpointURL, timeout, ContentType.JSON);
+            conn.setRequestProperty(HTTP_HEADER_ACCEPT, SYNC_PULL_CONTENT_TYPES);
             // since we do know length in advance, let's just do this:
             conn.setFixedLengthStreamingMode(reqLength);
             conn.connect();
@@ -212,6 +246,72 @@ public class SyncListAccessor
         return null;
     }
 
+    /**
+     * Method called to fetch a level of hash trees from a local peer,
+     * for anti-entropy.
+     *
+     * @param level Level of tree to fetch: 0 for slots of given range,
+     *   1 for leaves of a single slot (range of length 1)
+     *
+     * @return Response, if successful; null for failures
+     */
+    public SyncTreeResponse fetchHashTree(IpAndPort endpoint, KeyRange range, int level,
+            TimeSpan timeout)
+    {
+        JdkHttpClientPathBuilder pathBuilder = new JdkHttpClientPathBuilder(endpoint)
+            .addPathSegments(_stuff.getServiceConfig().servicePathRoot);
+        pathBuilder = _pathStrategy.appendSyncTreePath(pathBuilder);
+        pathBuilder = pathBuilder.addParameter(QUERY_PARAM_KEYRANGE_START, String.valueOf(range.getStart()));
+        pathBuilder = pathBuilder.addParameter(QUERY_PARAM_KEYRANGE_LENGTH, String.valueOf(range.getLength()));
+        pathBuilder = pathBuilder.addParameter(QUERY_PARAM_TREE_LEVEL, String.valueOf(level));
+        final String urlStr = pathBuilder.toString();
+        try {
+            HttpURLConnection conn = prepareGet(urlStr, timeout);
+            conn.setRequestProperty(HTTP_HEADER_ACCEPT, ACCEPTED_CONTENT_TYPES);
+            conn.connect();
+            return _readResponse(conn, urlStr, "fetchHashTree", _syncTreeReader);
+        } catch (Exception e) {
+            LOG.warn("fetchHashTree request to {} failed with Exception ({}): {}",
+                    new Object[] { urlStr, e.getClass().getName(), e.getMessage()});
+        }
+        return null;
+    }
+
+    /**
+     * Method called to list entries of specified hash tree leaves
+     * from a local peer, for anti-entropy.
+     *
+     * @return Response, if successful; null for failures
+     */
+    public SyncTreeListResponse<?> fetchTreeEntries(IpAndPort endpoint, SyncTreeListRequest request,
+            TimeSpan timeout)
+    {
+        JdkHttpClientPathBuilder pathBuilder = new JdkHttpClientPathBuilder(endpoint)
+            .addPathSegments(_stuff.getServiceConfig().servicePathRoot);
+        final String urlStr = _pathStrategy.appendSyncTreePath(pathBuilder).toString();
+        OutputStream out = null;
+        try {
+            byte[] reqPayload = _syncTreeListRequestWriter.writeValueAsBytes(request);
+            HttpURLConnection conn = preparePost(urlStr, timeout, ContentType.JSON);
+            conn.setRequestProperty(HTTP_HEADER_ACCEPT, ACCEPTED_CONTENT_TYPES);
+            conn.setFixedLengthStreamingMode(reqPayload.length);
+            conn.connect();
+            out = conn.getOutputStream();
+            out.write(reqPayload);
+            out.close();
+            out = null;
+            return _readResponse(conn, urlStr, "fetchTreeEntries", _syncTreeListReader);
+        } catch (Exception e) {
+            LOG.warn("fetchTreeEntries request to {} failed with Exception ({}): {}",
+                    new Object[] { urlStr, e.getClass().getName(), e.getMessage()});
+        } finally {
+            if (out != null) {
+                try { out.close(); } catch (IOException e) { }
+            }
+        }
+        return null;
+    }
+
     /**
      * Helper method used for sending simple status update message, usually
      * done when service starts up or shuts down.
@@ -287,9 +387,34 @@ public class SyncListAccessor
         return conn;
     }
 
+    protected <T> T _readResponse(HttpURLConnection conn, String urlStr, String type,
+            ObjectReader reader)
+        throws IOException
+    {
+        int statusCode = conn.getResponseCode();
+        if (!IOUtil.isHTTPSuccess(statusCode)) {
+            handleHTTPFailure(conn, urlStr, statusCode, type);
+            return null;
+        }
+        InputStream in = conn.getInputStream();
+        try {
+            return reader.readValue(in);
+        } catch (IOException e) {
+            throw new IOException(type+" request returned by '"+urlStr+"', failed to parse: "+e.getMessage());
+        } finally {
+            try {
+                in.close();
+            } catch (Exception e) { }
+        }
+    }
+
     // public as it's accessed from outside the package
     public SyncPullEntry decodePullEntry(byte[] data) throws IOException
     {
+        // binary headers are easy to distinguish from Smile, which starts with ':)'
+        if (SyncPullEntry.isBinary(data)) {
+            return SyncPullEntry.fromBinary(data);
+        }
         return _syncEntryReader.readValue(data);
     }
 
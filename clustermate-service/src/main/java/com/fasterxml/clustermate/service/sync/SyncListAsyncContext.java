@@ -0,0 +1,30 @@
+package com.fasterxml.clustermate.service.sync;
+
+import com.fasterxml.clustermate.service.ServiceResponse;
+
+/**
+ * Interface implemented by container-specific request handling code, to
+ * let {@link SyncHandler} wait for entries to list without blocking the
+ * request thread.
+ */
+public interface SyncListAsyncContext
+{
+    /**
+     * Method called on request thread when the response is not yet available,
+     * to suspend processing of the request.
+     */
+    public void suspend();
+
+    /**
+     * Method called when waiting is over, to run given task on a thread
+     * that is allowed to block (on I/O). Called from a timer thread, so
+     * implementations must not run task directly.
+     */
+    public void resume(Runnable task);
+
+    /**
+     * Method called by task passed to {@link #resume} once response is
+     * complete, to write it out and complete the request.
+     */
+    public void complete(ServiceResponse response);
+}
@@ -0,0 +1,53 @@
+package com.fasterxml.clustermate.service.sync;
+
+import java.util.ArrayList;
+
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.storemate.store.Storable;
+
+/**
+ * Abstraction used by Sync List processing for collecting entries to
+ * return, directly from raw store entries: either as a list of
+ * {@link SyncListResponseEntry} POJOs, or encoded in binary
+ * (see {@link BinarySyncList}).
+ */
+public abstract class SyncListEntryCollector
+{
+    public abstract void add(Storable raw);
+
+    public abstract int size();
+
+    /**
+     * Method for constructing response with collected entries
+     */
+    public abstract <E extends StoredEntry<?>> SyncListResponse<E> buildResponse();
+
+    /**
+     * Default implementation, used for JSON and Smile responses
+     */
+    public static class ListBacked extends SyncListEntryCollector
+    {
+        protected final ArrayList<SyncListResponseEntry> _entries;
+
+        public ListBacked(int initialSize) {
+            _entries = new ArrayList<SyncListResponseEntry>(initialSize);
+        }
+
+        @Override
+        public void add(Storable raw) {
+            _entries.add(SyncListResponseEntry.valueOf(raw.getKey(), raw));
+        }
+
+        @Override
+        public int size() {
+            return _entries.size();
+        }
+
+        @Override
+        public <E extends StoredEntry<?>> SyncListResponse<E> buildResponse() {
+            SyncListResponse<E> resp = new SyncListResponse<E>();
+            resp.entries = _entries;
+            return resp;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.fasterxml.clustermate.service.sync;
 
 import java.util.*;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import com.fasterxml.clustermate.api.msg.ClusterStatusMessage;
@@ -59,6 +60,12 @@ public class SyncListResponse<E extends StoredEntry<?>>
     public ClusterStatusMessage clusterStatus;
     
     public List<SyncListResponseEntry> entries;
+
+    /**
+     * Entries encoded in binary format, if caller requested it; if so,
+     * {@link #entries} is not used.
+     */
+    protected BinarySyncList _binaryEntries;
     
     public SyncListResponse() { }
     public SyncListResponse(String error) { message = error; }
@@ -87,9 +94,23 @@ public class SyncListResponse<E extends StoredEntry<?>>
     }
     
     public int size() {
+        if (_binaryEntries != null) {
+            return _binaryEntries.size();
+        }
         return (entries == null) ? 0 : entries.size();
     }
 
+    // use 'non-getter' name to avoid getting serialized
+    public BinarySyncList binaryEntries() {
+        return _binaryEntries;
+    }
+
+    @JsonIgnore
+    public SyncListResponse<E> setBinaryEntries(BinarySyncList b) {
+        _binaryEntries = b;
+        return this;
+    }
+
     public long lastSeen() {
         return lastSeenTimestamp;
     }
@@ -24,10 +24,14 @@ public class SyncListResponseEntry
     public int hash;
     
     static SyncListResponseEntry valueOf(StoredEntry<?> src)
+    {
+        return valueOf(src.getKey().asStorableKey(), src.getRaw());
+    }
+
+    static SyncListResponseEntry valueOf(StorableKey key, Storable raw)
     {
         SyncListResponseEntry e = new SyncListResponseEntry();
-        e.key = src.getKey().asStorableKey();
-        Storable raw = src.getRaw();
+        e.key = key;
         e.insertionTime = raw.getLastModified();
         e.size = raw.isDeleted() ? -1L : raw.getStorageLength();
         e.hash = raw.getContentHash();
@@ -0,0 +1,284 @@
+package com.fasterxml.clustermate.service.sync;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.storemate.shared.StartAndStoppable;
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.TimeMaster;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.api.EntryKeyConverter;
+import com.fasterxml.clustermate.api.KeyRange;
+
+/**
+ * Registry of "Sync List" requests that are waiting for entries to become
+ * available (long-polling), without holding on to a thread while doing so.
+ * Waiters are woken up when the maximum long-poll time passes; or, if
+ * an entry within their key range is inserted or deleted, once the sync
+ * grace period for that modification has passed (since entries are only
+ * listed after grace period).
+ *<p>
+ * Wake-ups are done using a single timer thread, so {@link Waiter#wakeUp}
+ * implementations must not block but rather dispatch actual processing
+ * to another thread.
+ */
+public class SyncListWaiters
+    implements StartAndStoppable
+{
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    protected final EntryKeyConverter<EntryKey> _keyConverter;
+
+    protected final TimeMaster _timeMaster;
+
+    protected final long _gracePeriodMsecs;
+
+    protected final Set<Waiter> _waiters = Collections.newSetFromMap(new ConcurrentHashMap<Waiter,Boolean>());
+
+    protected final AtomicBoolean _stopped = new AtomicBoolean(false);
+
+    /**
+     * Real system time of the latest entry modification, if any; used
+     * to catch modifications that occur between listing and registration
+     * of a waiter.
+     */
+    protected volatile long _lastModificationTime;
+
+    /**
+     * Timer used for wake-ups; constructed lazily when first needed.
+     */
+    protected ScheduledExecutorService _timer;
+
+    @SuppressWarnings("unchecked")
+    public SyncListWaiters(EntryKeyConverter<?> keyConverter, TimeMaster timeMaster,
+            long gracePeriodMsecs)
+    {
+        _keyConverter = (EntryKeyConverter<EntryKey>) keyConverter;
+        _timeMaster = timeMaster;
+        _gracePeriodMsecs = gracePeriodMsecs;
+    }
+
+    /*
+    /**********************************************************************
+    /* StartAndStoppable
+    /**********************************************************************
+     */
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void prepareForStop() { }
+
+    /**
+     * Stopping will wake up all remaining waiters, so that they may
+     * complete their requests.
+     */
+    @Override
+    public void stop()
+    {
+        if (!_stopped.compareAndSet(false, true)) {
+            return;
+        }
+        final ScheduledExecutorService timer;
+        synchronized (this) {
+            timer = _timer;
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        for (Waiter waiter : _waiters) {
+            _wakeUp(waiter);
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Public API
+    /**********************************************************************
+     */
+
+    /**
+     * Method for registering a waiter.
+     *
+     * @param waiter Waiter to register
+     * @param maxWaitMsecs Maximum time to wait before waking up
+     * @param dataWaitMsecs Time after which it is known that there will be entries
+     *   to list, if known (if not, 0L)
+     * @param listStartTime Real system time when listing that found nothing
+     *   was started: used to detect entries modified after it
+     *
+     * @return True if waiter was registered; false if not (due to system
+     *   being stopped), in which case caller should not wait
+     */
+    public boolean register(Waiter waiter, long maxWaitMsecs, long dataWaitMsecs,
+            long listStartTime)
+    {
+        if (_stopped.get()) {
+            return false;
+        }
+        final long now = _timeMaster.realSystemTimeMillis();
+        long wakeAt = now + maxWaitMsecs;
+        if (dataWaitMsecs > 0L) {
+            wakeAt = Math.min(wakeAt, now + dataWaitMsecs);
+        }
+        /* Must add waiter before checking modification time: otherwise a
+         * modification in between would neither be seen here, nor
+         * (re)schedule the waiter
+         */
+        _waiters.add(waiter);
+        // Modified after listing? If so, may need to wake up sooner
+        final long lastMod = _lastModificationTime;
+        if (lastMod >= listStartTime) {
+            wakeAt = Math.min(wakeAt, lastMod + _gracePeriodMsecs);
+        }
+        if (!_schedule(waiter, wakeAt)) {
+            _waiters.remove(waiter);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method to call when given entry has been inserted, updated or deleted.
+     */
+    public void entryModified(StorableKey rawKey)
+    {
+        final long now = _timeMaster.realSystemTimeMillis();
+        _lastModificationTime = now;
+        // fast path for common case of no waiters
+        if (_waiters.isEmpty()) {
+            return;
+        }
+        final int hash = _keyConverter.routingHashFor(_keyConverter.rawToEntryKey(rawKey));
+        final long wakeAt = now + _gracePeriodMsecs;
+        for (Waiter waiter : _waiters) {
+            if (waiter.getRange().contains(hash)) {
+                _schedule(waiter, wakeAt);
+            }
+        }
+    }
+
+    public int getWaiterCount() {
+        return _waiters.size();
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    /**
+     * Helper method for (re)scheduling wake up of given waiter, if given
+     * time is earlier than currently scheduled one.
+     */
+    protected boolean _schedule(final Waiter waiter, long wakeAt)
+    {
+        synchronized (waiter) {
+            if (waiter._woken) {
+                return true;
+            }
+            if (waiter._future != null) {
+                if (wakeAt >= waiter._wakeAt) {
+                    return true;
+                }
+                waiter._future.cancel(false);
+            }
+            waiter._wakeAt = wakeAt;
+            long delay = Math.max(0L, wakeAt - _timeMaster.realSystemTimeMillis());
+            try {
+                waiter._future = _timer().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        _wakeUp(waiter);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) { // stopped concurrently
+                waiter._future = null;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void _wakeUp(Waiter waiter)
+    {
+        synchronized (waiter) {
+            if (waiter._woken) {
+                return;
+            }
+            waiter._woken = true;
+            if (waiter._future != null) {
+                waiter._future.cancel(false);
+            }
+        }
+        _waiters.remove(waiter);
+        try {
+            waiter.wakeUp();
+        } catch (Exception e) {
+            LOG.warn("Failed to wake up Sync List waiter: {}", e.getMessage());
+        }
+    }
+
+    protected synchronized ScheduledExecutorService _timer()
+    {
+        if (_timer == null) {
+            _timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r);
+                    t.setName("SyncListWaiters");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            if (_stopped.get()) {
+                _timer.shutdown();
+            }
+        }
+        return _timer;
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Base class for objects that represent waiting Sync List requests.
+     */
+    public abstract static class Waiter
+    {
+        protected final KeyRange _range;
+
+        // // State, guarded by waiter instance itself
+
+        private long _wakeAt;
+
+        private ScheduledFuture<?> _future;
+
+        private boolean _woken;
+
+        protected Waiter(KeyRange range) {
+            _range = range;
+        }
+
+        public KeyRange getRange() {
+            return _range;
+        }
+
+        /**
+         * Method called (only once) when waiting is over, either because
+         * entries have become available, maximum wait time has passed, or
+         * the system is being stopped.
+         */
+        protected abstract void wakeUp();
+    }
+}
@@ -1,17 +1,37 @@
 package com.fasterxml.clustermate.service.sync;
 
+import java.io.IOException;
+
 import com.fasterxml.clustermate.service.store.StoredEntry;
 import com.fasterxml.storemate.shared.StorableKey;
 import com.fasterxml.storemate.shared.compress.Compression;
+import com.fasterxml.storemate.shared.util.WithBytesCallback;
 import com.fasterxml.storemate.store.Storable;
 import com.fasterxml.storemate.store.lastaccess.LastAccessUpdateMethod;
 
 /**
  * Helper class we use as an intermediary for per-entry metadata chunk
  * and raw metadata entry.
+ *<p>
+ * Entries are serialized either as Smile, or using fixed binary layout
+ * (see {@link #appendBinary}), if caller accepts
+ * {@link com.fasterxml.clustermate.api.ContentType#SYNC_PULL}.
  */
 public class SyncPullEntry
 {
+    /**
+     * Marker byte that binary-encoded entries start with: differs from
+     * the first byte of Smile header (':')
+     */
+    public final static byte BINARY_MARKER = (byte) 0x01;
+
+    /**
+     * Length of binary-encoded entry, excluding key
+     */
+    public final static int BINARY_FIXED_LENGTH = 46;
+
+    private final static int FLAG_DELETED = 0x01;
+
     // External key for accessing the entry
     public StorableKey key;
 
@@ -59,4 +79,115 @@ public class SyncPullEntry
     {
         return new SyncPullEntry(src, maxTTLSecs);
     }
+
+    /*
+    /**********************************************************************
+    /* Binary encoding
+    /**********************************************************************
+     */
+
+    /**
+     * @return Length of this entry when encoded using {@link #appendBinary}
+     */
+    public int binaryLength() {
+        return BINARY_FIXED_LENGTH + key.length();
+    }
+
+    /**
+     * Method for encoding this entry using compact fixed-length binary
+     * format, with all multi-byte values in big-endian order:
+     *<pre>
+     *  marker (1 byte), flags (1), compression index (1; -1 for none),
+     *  lastAccessMethod (1), creationTime (8), minTTLSecs (4), maxTTLSecs (4),
+     *  size (8), storageSize (8), checksum (4), checksumForCompressed (4),
+     *  key length (2), key
+     *</pre>
+     *
+     * @return Offset after encoded entry
+     */
+    public int appendBinary(final byte[] buffer, int offset)
+    {
+        buffer[offset++] = BINARY_MARKER;
+        buffer[offset++] = (byte) (isDeleted ? FLAG_DELETED : 0);
+        buffer[offset++] = (byte) ((compression == null) ? -1 : compression.asIndex());
+        buffer[offset++] = lastAccessMethod;
+        offset = _appendLong(buffer, offset, creationTime);
+        offset = _appendInt(buffer, offset, minTTLSecs);
+        offset = _appendInt(buffer, offset, maxTTLSecs);
+        offset = _appendLong(buffer, offset, size);
+        offset = _appendLong(buffer, offset, storageSize);
+        offset = _appendInt(buffer, offset, checksum);
+        offset = _appendInt(buffer, offset, checksumForCompressed);
+        final int keyLength = key.length();
+        buffer[offset++] = (byte) (keyLength >> 8);
+        buffer[offset++] = (byte) keyLength;
+        final int keyOffset = offset;
+        key.with(new WithBytesCallback<Void>() {
+            @Override
+            public Void withBytes(byte[] b, int off, int len) {
+                System.arraycopy(b, off, buffer, keyOffset, len);
+                return null;
+            }
+        });
+        return offset + keyLength;
+    }
+
+    /**
+     * @return True if given serialized entry uses binary encoding;
+     *   false if it is Smile
+     */
+    public static boolean isBinary(byte[] data) {
+        return (data.length > 0) && (data[0] == BINARY_MARKER);
+    }
+
+    public static SyncPullEntry fromBinary(byte[] data) throws IOException
+    {
+        if (data.length < BINARY_FIXED_LENGTH || data[0] != BINARY_MARKER) {
+            throw new IOException("Invalid binary sync-pull entry header ("+data.length+" bytes)");
+        }
+        SyncPullEntry entry = new SyncPullEntry();
+        entry.isDeleted = (data[1] & FLAG_DELETED) != 0;
+        entry.compression = (data[2] < 0) ? null : Compression.forIndex(data[2], true);
+        entry.lastAccessMethod = data[3];
+        entry.creationTime = _getLong(data, 4);
+        entry.minTTLSecs = _getInt(data, 12);
+        entry.maxTTLSecs = _getInt(data, 16);
+        entry.size = _getLong(data, 20);
+        entry.storageSize = _getLong(data, 28);
+        entry.checksum = _getInt(data, 36);
+        entry.checksumForCompressed = _getInt(data, 40);
+        final int keyLength = ((data[44] & 0xFF) << 8) | (data[45] & 0xFF);
+        if (BINARY_FIXED_LENGTH + keyLength != data.length) {
+            throw new IOException("Invalid binary sync-pull entry header: key length "+keyLength
+                    +" does not match header length "+data.length);
+        }
+        entry.key = new StorableKey(data, BINARY_FIXED_LENGTH, keyLength);
+        return entry;
+    }
+
+    private static int _appendInt(byte[] buffer, int offset, int value)
+    {
+        buffer[offset++] = (byte) (value >> 24);
+        buffer[offset++] = (byte) (value >> 16);
+        buffer[offset++] = (byte) (value >> 8);
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int _appendLong(byte[] buffer, int offset, long value)
+    {
+        offset = _appendInt(buffer, offset, (int) (value >> 32));
+        return _appendInt(buffer, offset, (int) value);
+    }
+
+    private static int _getInt(byte[] data, int offset)
+    {
+        return (data[offset] << 24) | ((data[offset+1] & 0xFF) << 16)
+                | ((data[offset+2] & 0xFF) << 8) | (data[offset+3] & 0xFF);
+    }
+
+    private static long _getLong(byte[] data, int offset)
+    {
+        return ((long) _getInt(data, offset) << 32) | (_getInt(data, offset+4) & 0xFFFFFFFFL);
+    }
 }
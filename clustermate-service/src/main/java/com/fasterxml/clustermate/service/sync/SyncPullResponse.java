@@ -2,6 +2,7 @@ package com.fasterxml.clustermate.service.sync;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +16,7 @@ import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.api.msg.ExtensibleType;
 import com.fasterxml.clustermate.service.msg.StreamingResponseContent;
 import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.clustermate.service.util.StatsCollectingOutputStream;
 
 /**
  * Helper class used for producing response for "sync pull" requests.
@@ -24,6 +26,15 @@ import com.fasterxml.clustermate.service.store.StoredEntry;
  * Instead of serializing a full structure, we serialize a sequence of
  * metadata-payload pairs; both of which are preceded by 4-byte length
  * indicators; and then a 0-length marker at the end.
+ * Metadata is either Smile-encoded {@link SyncPullEntry}, or, if caller
+ * accepts it, its fixed-length binary representation.
+ *<p>
+ * To keep disk and network busy at the same time, files of entries following
+ * the one being written may be opened, and beginning of their contents read,
+ * by background threads. Rest of file contents are transferred directly
+ * from the file channel if output allows it (see
+ * {@link StatsCollectingOutputStream#transferFrom}); otherwise copied using
+ * a large buffer.
  */
 public class SyncPullResponse<E extends StoredEntry<? extends EntryKey>>
     extends ExtensibleType
@@ -41,14 +52,43 @@ public class SyncPullResponse<E extends StoredEntry<? extends EntryKey>>
      */
     protected final static int MAX_ERRORS_PER_PULL = 3;
     
-    // will use 16k recyclable read buffers
-    private final static int BUFFER_LENGTH = 16000;
+    // will use recyclable buffers for building frames (length, header, inlined
+    // data); big enough for longest possible header and typical inlined entries
+    private final static int BUFFER_LENGTH = 40000;
+
+    /**
+     * Size of buffer used for copying rest of file contents, when output
+     * does not allow direct transfer from file.
+     */
+    private final static int COPY_BUFFER_LENGTH = 256000;
+
+    /**
+     * Maximum number of bytes of file contents read when opening a file
+     */
+    private final static int READ_AHEAD_BYTES = 32000;
+
+    /**
+     * Maximum number of threads used for reading ahead, over all concurrent
+     * sync-pull responses; if all are busy, files are opened by writing thread
+     */
+    private final static int MAX_READ_AHEAD_THREADS = 8;
 
     private final static Logger LOG = LoggerFactory.getLogger(SyncPullResponse.class);
 
     // and here's how recycling will work
     protected final static BufferRecycler _readBuffers = new BufferRecycler(BUFFER_LENGTH);
 
+    protected final static ExecutorService _readAheadExecutor = new ThreadPoolExecutor(0,
+            MAX_READ_AHEAD_THREADS, 30L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "SyncPullReadAhead");
+                    t.setDaemon(true);
+                    return t;
+                }
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+
     private final FileManager _fileManager;
 
     /**
@@ -61,16 +101,36 @@ public class SyncPullResponse<E extends StoredEntry<? extends EntryKey>>
      * Smile serializer to use for metadata entries
      */
     private final ObjectWriter _smileWriter;
+
+    /**
+     * Whether metadata entries are to be written using binary encoding
+     * instead of Smile
+     */
+    private final boolean _binaryHeaders;
+
+    /**
+     * Number of entries following the current one to read ahead
+     */
+    private final int _readAhead;
    
     private List<E> _entries;
     
     public SyncPullResponse(FileManager fileManager, long writeTime,
             ObjectWriter smileWriter, List<E> entries)
+    {
+        this(fileManager, writeTime, smileWriter, entries, false, 0);
+    }
+
+    public SyncPullResponse(FileManager fileManager, long writeTime,
+            ObjectWriter smileWriter, List<E> entries,
+            boolean binaryHeaders, int readAhead)
     {
         _fileManager = fileManager;
         _writeTime = writeTime;
         _smileWriter = smileWriter;
         _entries = entries;
+        _binaryHeaders = binaryHeaders;
+        _readAhead = Math.max(0, readAhead);
     }
 
     // kinda, since we copy contents from files
@@ -91,10 +151,15 @@ public class SyncPullResponse<E extends StoredEntry<? extends EntryKey>>
     {
         final int count = _entries.size();
         int warningsPrinted = 0;
+
+        BufferRecycler.Holder bufferHolder = _readBuffers.getHolder();        
+        final byte[] frame = bufferHolder.borrowBuffer(BUFFER_LENGTH);
+        final EntryFileOpener opener = new EntryFileOpener(output, count);
         
         try {
             for (int i = 0; i < count; ++i) {
                 E entry  = _entries.get(i);
+                opener.scheduleUpTo(i + _readAhead);
 
                 // Can entry actually be null? Seems unlikely, may occur since expiration
                 // and clean up threads are asynchronous; so let's allow it:
@@ -130,23 +195,22 @@ public class SyncPullResponse<E extends StoredEntry<? extends EntryKey>>
                 }
                     
                 SyncPullEntry header = SyncPullEntry.forEntry(entry, maxTTLSecs);
-                byte[] metadata = _smileWriter.writeValueAsBytes(header);
-                if (metadata.length > SyncHandler.MAX_HEADER_LENGTH) { // sanity check; never to occur...
+                final int frameLength = _buildFrame(header, frame);
+                if (frameLength < 0) { // sanity check; never to occur...
                     LOG.error("Internal error: too long header ({}) (entry key '{}'); must skip",
-                            metadata.length, entry.getKey());
+                            -frameLength, entry.getKey());
                     continue;
                 }
                 // first: if state is DELETED, may need special handling? Or just skip...
                 if (entry.isDeleted()) {
-                    _writeLength(output, metadata.length);
-                    output.write(metadata);
+                    output.write(frame, 0, frameLength);
                     continue;
                 }
                 String warning;
                 if (entry.hasExternalData()) {
-                    warning = _writeExternal(output, entry, metadata);
+                    warning = _writeExternal(output, opener, opener.open(i, entry), entry, frame, frameLength);
                 } else {
-                    warning = _writeInlined(output, entry, metadata);
+                    warning = _writeInlined(output, entry, frame, frameLength);
                 }
                 if (warning == null) { // ok, no problem
                     continue;
@@ -155,13 +219,6 @@ public class SyncPullResponse<E extends StoredEntry<? extends EntryKey>>
                 if (++warningsPrinted <= MAX_ERRORS_PER_PULL) {
                     if (warningsPrinted < MAX_ERRORS_PER_PULL) {
                         LOG.error("Failed to include pull entry {}/{}, reason: {}", i, count, warning);
-                        /*
-long age = System.currentTimeMillis() - entry.getLastModifiedTime();
-long ttl = 1000L * entry.getMaxTTLSecs();
-if (1 == warningsPrinted) LOG.error("AGE of failed entry (raw mod time "+entry.getLastModifiedTime()+"): "+TimeMaster.timeDesc(age)
-        +", max TTL "+TimeMaster.timeDesc(ttl));
-                        
-                        */
                     } else {
                         LOG.error("Failed to include pull entry {}/{}, reason: {} -- NOTE: max warnings ({}) reached, will suppress rest"
                                 , i, count, warning, MAX_ERRORS_PER_PULL);
@@ -178,42 +235,95 @@ if (1 == warningsPrinted) LOG.error("AGE of failed entry (raw mod time "+entry.g
         } catch (RuntimeException e) {
             LOG.error("Internal error during writing of "+count+" sync-pull entries: "+e.getMessage(), e);
             throw e;
+        } finally {
+            bufferHolder.returnBuffer(frame);
+            opener.close();
+        }
+    }
+
+    /**
+     * Helper method for writing length indicator and metadata in given buffer.
+     *
+     * @return Length of the frame, if successful; or negated length of metadata
+     *    if too long
+     */
+    private int _buildFrame(SyncPullEntry header, byte[] frame) throws IOException
+    {
+        int length;
+        if (_binaryHeaders) {
+            length = header.binaryLength();
+            if (length > SyncHandler.MAX_HEADER_LENGTH) {
+                return -length;
+            }
+            header.appendBinary(frame, 4);
+        } else {
+            byte[] metadata = _smileWriter.writeValueAsBytes(header);
+            length = metadata.length;
+            if (length > SyncHandler.MAX_HEADER_LENGTH) {
+                return -length;
+            }
+            System.arraycopy(metadata, 0, frame, 4, length);
         }
+        _putLength(frame, length);
+        return 4 + length;
     }
 
-    private String _writeExternal(final OutputStream output, E entry, byte[] metadata)
+    private String _writeExternal(final OutputStream output, EntryFileOpener opener,
+            OpenedFile file, E entry, byte[] frame, int frameLength)
         throws IOException
     {
-        File f = entry.getRaw().getExternalFile(_fileManager);
-        FileInputStream in;
-        try {
-            in = new FileInputStream(f);
-        } catch (FileNotFoundException e) {
+        if (file.in == null) {
             /* 15-Jan-2012, tatu: It is possible (rarely, but still) that cleanup process could
              *   delete data file before its metadata, and although sync list should try to
              *   suppress these, some may sneak. So let's take preventive action here so
              *   we won't have poison pills.
              */
             // We must still add something: "null" will have to do as indicator for missing entry
+            opener.release(file);
             _writeLength(output, 0);
-            return "Missing file '"+f.getAbsolutePath()+"'";
+            return "Missing file '"+file.file.getAbsolutePath()+"'";
+        }
+        final long size = entry.getStorageLength();
+        long copied = file.length;
+        try {
+            // small enough to send along with header?
+            if (frameLength + file.length <= frame.length) {
+                System.arraycopy(file.data, 0, frame, frameLength, file.length);
+                output.write(frame, 0, frameLength + file.length);
+            } else {
+                output.write(frame, 0, frameLength);
+                output.write(file.data, 0, file.length);
+            }
+            if (copied < size) {
+                copied += opener.copyRest(file, copied, size);
+            }
+        } finally {
+            opener.release(file);
+        }
+        // Sanity check...
+        if (copied != size) {
+            throw new IOException("Invalid File '"+file.file.getAbsolutePath()+"': should have copied "+size
+                    +" bytes, instead copied "+copied);
         }
-        _writeLength(output, metadata.length);
-        output.write(metadata);
-        _copyFile(f, in, output, entry.getStorageLength());
         return null;
     }
 
-    private String _writeInlined(final OutputStream output, E entry, byte[] metadata)
+    private String _writeInlined(final OutputStream output, E entry,
+            final byte[] frame, final int frameLength)
         throws IOException
     {
-        _writeLength(output, metadata.length);
-        output.write(metadata);
         IOException e = entry.getRaw().withInlinedData(new WithBytesCallback<IOException>() {
             @Override
             public IOException withBytes(byte[] b, int offset, int length) {
                 try {
-                    output.write(b, offset, length);
+                    // gather header and data into single write, if possible
+                    if (frameLength + length <= frame.length) {
+                        System.arraycopy(b, offset, frame, frameLength, length);
+                        output.write(frame, 0, frameLength + length);
+                    } else {
+                        output.write(frame, 0, frameLength);
+                        output.write(b, offset, length);
+                    }
                 } catch (IOException e2) {
                     return e2;
                 }
@@ -225,44 +335,22 @@ if (1 == warningsPrinted) LOG.error("AGE of failed entry (raw mod time "+entry.g
         }
         return null;
     }
-    
-    private void _copyFile(File f, FileInputStream in, OutputStream out, final long size)
-        throws IOException
-    {
-        BufferRecycler.Holder bufferHolder = _readBuffers.getHolder();        
-        final byte[] buffer = bufferHolder.borrowBuffer(BUFFER_LENGTH);
-
-        long copied = 0;
-
-        try {
-            int count;
-            while (copied < size && (count = in.read(buffer)) >= 0) {
-                out.write(buffer, 0, count);
-                copied += count;
-            }
-        } finally {
-            bufferHolder.returnBuffer(buffer);
-            try {
-                in.close();
-            } catch (IOException e) { }
-        }
-        // Sanity check...
-        if (copied != size) {
-            throw new IOException("Invalid File '"+f.getAbsolutePath()+"': should have copied "+size
-                    +" bytes, instead copied "+copied);
-        }
-    }
 
     private void _writeLength(OutputStream out, int length) throws IOException
     {
         final byte[] LENGTH_BUFFER = new byte[4];
-        LENGTH_BUFFER[0] = (byte) LENGTH_HEADER_BYTE;
-        LENGTH_BUFFER[1] = (byte) (length >> 8);
-        LENGTH_BUFFER[2] = (byte) length;
-        LENGTH_BUFFER[3] = (byte) LENGTH_TRAILER_BYTE;
+        _putLength(LENGTH_BUFFER, length);
         out.write(LENGTH_BUFFER, 0, 4);
     }
 
+    private static void _putLength(byte[] buffer, int length)
+    {
+        buffer[0] = LENGTH_HEADER_BYTE;
+        buffer[1] = (byte) (length >> 8);
+        buffer[2] = (byte) length;
+        buffer[3] = (byte) LENGTH_TRAILER_BYTE;
+    }
+
     /**
      * @return Length of header read, if valid, or negative value if not
      */
@@ -279,7 +367,212 @@ if (1 == warningsPrinted) LOG.error("AGE of failed entry (raw mod time "+entry.g
         if (buf[3] != LENGTH_TRAILER_BYTE) {
             throw new IOException("Invalid length end-marker: 0x"+Integer.toHexString(buf[5] & 0xFF));
         }
-        int value = ((buf[1] & 0xFF) << 8) + (buf[2] & 0xFF);
-        return (int) value;
+        return ((buf[1] & 0xFF) << 8) + (buf[2] & 0xFF);
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * Helper class that handles opening of files of external entries, and
+     * reading beginning of their contents; either in background, for entries
+     * following the current one, or when needed by writer.
+     * All methods are to be called by the writing thread.
+     */
+    private final class EntryFileOpener
+    {
+        private final OutputStream _output;
+
+        private final Future<OpenedFile>[] _pending;
+
+        private final ArrayDeque<byte[]> _spareBuffers = new ArrayDeque<byte[]>();
+
+        /**
+         * Buffer used for copying rest of file contents, if output does not
+         * allow direct transfer; allocated when first needed
+         */
+        private byte[] _copyBuffer;
+
+        /**
+         * Index of the first entry that has not yet been considered for
+         * reading ahead
+         */
+        private int _nextToSchedule = 1;
+
+        @SuppressWarnings("unchecked")
+        public EntryFileOpener(OutputStream output, int count) {
+            _output = output;
+            _pending = (Future<OpenedFile>[]) new Future<?>[count];
+        }
+
+        public void scheduleUpTo(int lastIndex)
+        {
+            final int end = Math.min(lastIndex+1, _pending.length);
+            for (; _nextToSchedule < end; ++_nextToSchedule) {
+                final E entry = _entries.get(_nextToSchedule);
+                if (entry != null && !entry.isDeleted() && entry.hasExternalData()) {
+                    final byte[] buffer = _borrowBuffer();
+                    _pending[_nextToSchedule] = _readAheadExecutor.submit(new Callable<OpenedFile>() {
+                        @Override
+                        public OpenedFile call() throws IOException {
+                            return _open(entry, buffer);
+                        }
+                    });
+                }
+            }
+        }
+
+        public OpenedFile open(int index, E entry) throws IOException
+        {
+            Future<OpenedFile> f = _pending[index];
+            if (f == null) {
+                return _open(entry, _borrowBuffer());
+            }
+            _pending[index] = null;
+            return _await(f);
+        }
+
+        /**
+         * Method for writing contents of given file after the part already read
+         * and written, up to given total size.
+         *
+         * @return Number of bytes copied
+         */
+        public long copyRest(OpenedFile file, long offset, long size) throws IOException
+        {
+            if (_output instanceof StatsCollectingOutputStream) {
+                StatsCollectingOutputStream statsOut = (StatsCollectingOutputStream) _output;
+                if (statsOut.canTransferFrom()) {
+                    return statsOut.transferFrom(file.in.getChannel(), offset, size - offset);
+                }
+            }
+            if (_copyBuffer == null) {
+                _copyBuffer = new byte[COPY_BUFFER_LENGTH];
+            }
+            final byte[] buffer = _copyBuffer;
+            long copied = 0L;
+            final long max = size - offset;
+            int count;
+            while (copied < max
+                    && (count = file.in.read(buffer, 0, (int) Math.min(buffer.length, max - copied))) > 0) {
+                _output.write(buffer, 0, count);
+                copied += count;
+            }
+            return copied;
+        }
+
+        /**
+         * Method called once contents of given file have been written
+         * (or file was found to be missing)
+         */
+        public void release(OpenedFile file) {
+            file.close();
+            _spareBuffers.add(file.data);
+        }
+
+        /**
+         * Method called once all entries are written (or writing failed),
+         * to close files that were opened but not written.
+         */
+        public void close()
+        {
+            for (int i = 0, end = _pending.length; i < end; ++i) {
+                Future<OpenedFile> f = _pending[i];
+                if (f != null) {
+                    _pending[i] = null;
+                    try {
+                        release(_await(f));
+                    } catch (IOException e) { }
+                }
+            }
+        }
+
+        private OpenedFile _open(E entry, byte[] buffer) throws IOException
+        {
+            File f = entry.getRaw().getExternalFile(_fileManager);
+            FileInputStream in;
+            try {
+                in = new FileInputStream(f);
+            } catch (FileNotFoundException e) {
+                return new OpenedFile(f, null, buffer, 0);
+            }
+            final int max = (int) Math.min(buffer.length, entry.getStorageLength());
+            int length = 0;
+            try {
+                int count;
+                while (length < max && (count = in.read(buffer, length, max-length)) > 0) {
+                    length += count;
+                }
+            } catch (IOException e) {
+                try {
+                    in.close();
+                } catch (IOException e2) { }
+                throw e;
+            }
+            return new OpenedFile(f, in, buffer, length);
+        }
+
+        private OpenedFile _await(Future<OpenedFile> f) throws IOException
+        {
+            try {
+                return f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for file to be read");
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (t instanceof IOException) {
+                    throw (IOException) t;
+                }
+                if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                }
+                throw new IOException(t);
+            }
+        }
+
+        private byte[] _borrowBuffer() {
+            byte[] buffer = _spareBuffers.poll();
+            return (buffer == null) ? new byte[READ_AHEAD_BYTES] : buffer;
+        }
+    }
+
+    /**
+     * Container for a file opened for writing, along with beginning of
+     * its contents
+     */
+    private final static class OpenedFile
+    {
+        public final File file;
+
+        /**
+         * Stream for reading file contents, positioned after {@link #data};
+         * null if file was missing
+         */
+        public final FileInputStream in;
+
+        public final byte[] data;
+
+        public final int length;
+
+        public OpenedFile(File file, FileInputStream in, byte[] data, int length)
+        {
+            this.file = file;
+            this.in = in;
+            this.data = data;
+            this.length = length;
+        }
+
+        public void close()
+        {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) { }
+            }
+        }
     }
 }
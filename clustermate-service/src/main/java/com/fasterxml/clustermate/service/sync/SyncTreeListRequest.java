@@ -0,0 +1,30 @@
+package com.fasterxml.clustermate.service.sync;
+
+import com.fasterxml.clustermate.api.msg.ExtensibleType;
+import com.fasterxml.storemate.shared.StorableKey;
+
+/**
+ * Simple value class used for requesting listing of entries in specified
+ * leaves of hash trees (see {@link EntryHashTrees}), found to differ
+ * during anti-entropy.
+ */
+public class SyncTreeListRequest extends ExtensibleType
+{
+    /**
+     * Global indexes of leaves to list entries of
+     */
+    public int[] leaves;
+
+    /**
+     * Key of the last entry listed by the previous request, if listing
+     * is continued; null for the first request.
+     */
+    public StorableKey lastSeen;
+
+    public SyncTreeListRequest() { }
+
+    public SyncTreeListRequest(int[] leaves, StorableKey lastSeen) {
+        this.leaves = leaves;
+        this.lastSeen = lastSeen;
+    }
+}
@@ -0,0 +1,50 @@
+package com.fasterxml.clustermate.service.sync;
+
+import java.util.*;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import com.fasterxml.clustermate.api.msg.ExtensibleType;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.storemate.shared.StorableKey;
+
+/**
+ * Response POJO used for listing entries of hash tree leaves, in response
+ * to {@link SyncTreeListRequest}. Entries are listed using same format
+ * as with regular Sync List responses.
+ *<p>
+ * NOTE: only used for writing; on reading side we will use a "raw"
+ * approach.
+ */
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class SyncTreeListResponse<E extends StoredEntry<?>>
+    extends ExtensibleType
+{
+    /**
+     * Error message, if any
+     */
+    public String message;
+
+    /**
+     * Key of the last entry traversed, if listing was not complete
+     * (due to time or count limits) and should be continued with another
+     * request; null if listing is complete.
+     */
+    public StorableKey lastSeen;
+
+    public List<SyncListResponseEntry> entries;
+
+    public SyncTreeListResponse() { }
+    public SyncTreeListResponse(String error) { message = error; }
+    public SyncTreeListResponse(List<E> rawEntries, StorableKey lastSeen) {
+        entries = new ArrayList<SyncListResponseEntry>(rawEntries.size());
+        for (StoredEntry<?> e : rawEntries) {
+            entries.add(SyncListResponseEntry.valueOf(e));
+        }
+        this.lastSeen = lastSeen;
+    }
+
+    public int size() {
+        return (entries == null) ? 0 : entries.size();
+    }
+}
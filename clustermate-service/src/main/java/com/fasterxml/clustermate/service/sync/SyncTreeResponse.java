@@ -0,0 +1,40 @@
+package com.fasterxml.clustermate.service.sync;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import com.fasterxml.clustermate.api.msg.ExtensibleType;
+
+/**
+ * Response POJO used by the hash tree (anti-entropy) end point, to return
+ * hashes of one level of hash tree (see {@link EntryHashTrees});
+ * used both for failures (for which {@link #message} is non-null) and
+ * successes (for which {@link #hashes} is non-null).
+ */
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class SyncTreeResponse
+    extends ExtensibleType
+{
+    /**
+     * Error message, if any
+     */
+    public String message;
+
+    /**
+     * Number of bits used for dividing key range slots into leaves;
+     * caller must use the same value for results to be comparable.
+     */
+    public int leafBits;
+
+    /**
+     * Hashes of requested tree level: either hashes of slots in the
+     * requested key range, in order; or hashes of leaves of a single slot.
+     */
+    public long[] hashes;
+
+    public SyncTreeResponse() { }
+    public SyncTreeResponse(String error) { message = error; }
+    public SyncTreeResponse(int leafBits, long[] hashes) {
+        this.leafBits = leafBits;
+        this.hashes = hashes;
+    }
+}
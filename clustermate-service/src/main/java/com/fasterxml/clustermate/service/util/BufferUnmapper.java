@@ -0,0 +1,90 @@
+package com.fasterxml.clustermate.service.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Helper class for explicitly releasing memory-mapped buffers, instead of
+ * waiting for them to be garbage collected. JDK does not expose a public
+ * API for this, so access is reflection-based: JDK 9+ via
+ * <code>sun.misc.Unsafe.invokeCleaner</code>, and older JDKs via
+ * buffer's <code>cleaner()</code> method.
+ */
+public final class BufferUnmapper
+{
+    /**
+     * Either <code>Unsafe</code> instance (JDK 9+), or null for
+     * per-buffer cleaner access (older JDKs)
+     */
+    private final static Object UNSAFE;
+
+    private final static Method INVOKE_CLEANER;
+
+    private final static boolean SUPPORTED;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        boolean supported = false;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field f = unsafeClass.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafe = f.get(null);
+            supported = true;
+        } catch (Throwable t) { // not JDK 9+; try older way
+            unsafe = null;
+            invokeCleaner = null;
+            try {
+                Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                supported = true;
+            } catch (Throwable t2) { }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        SUPPORTED = supported;
+    }
+
+    private BufferUnmapper() { }
+
+    /**
+     * @return True if mapped buffers can (most likely) be unmapped on this JVM
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Method for trying to unmap given buffer: buffer must not be accessed
+     * after this call.
+     *
+     * @return True if buffer was unmapped; false if not (in which case
+     *   it will be unmapped when garbage collected)
+     */
+    public static boolean unmap(MappedByteBuffer bb)
+    {
+        if (!SUPPORTED) {
+            return false;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, bb);
+            } else {
+                Method m = bb.getClass().getMethod("cleaner");
+                m.setAccessible(true);
+                Object cleaner = m.invoke(bb);
+                if (cleaner != null) {
+                    Method clean = cleaner.getClass().getMethod("clean");
+                    clean.setAccessible(true);
+                    clean.invoke(cleaner);
+                }
+            }
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+}
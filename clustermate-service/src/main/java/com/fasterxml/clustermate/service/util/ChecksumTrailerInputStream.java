@@ -0,0 +1,124 @@
+package com.fasterxml.clustermate.service.util;
+
+import java.io.*;
+
+import com.fasterxml.storemate.shared.StorableKey;
+import com.fasterxml.storemate.shared.hash.IncrementalHasher32;
+import com.fasterxml.storemate.store.StoreException;
+
+import com.fasterxml.clustermate.std.ChecksumUtil;
+
+/**
+ * Wrapper for request body that consists of content followed by a 4-byte
+ * (big-endian) checksum trailer, used when client could not calculate checksum
+ * before sending content. Only content is returned to the caller; checksum
+ * is calculated as content is read, and verified against trailer once end of
+ * input is reached. Mismatch is reported as an exception, so that reader
+ * (store) does not complete insertion of content.
+ */
+public class ChecksumTrailerInputStream extends InputStream
+{
+    protected final static int TRAILER_LENGTH = 4;
+
+    protected final InputStream _in;
+
+    protected final IncrementalHasher32 _hasher;
+
+    protected final StorableKey _key;
+
+    /**
+     * Last bytes read from the underlying stream, which may be the trailer.
+     */
+    protected final byte[] _tail = new byte[TRAILER_LENGTH];
+
+    protected int _tailLength;
+
+    protected boolean _verified;
+
+    protected byte[] _singleByte;
+
+    public ChecksumTrailerInputStream(InputStream in, IncrementalHasher32 hasher, StorableKey key)
+    {
+        _in = in;
+        _hasher = hasher;
+        _key = key;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    @Override
+    public boolean markSupported() { return false; }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (_singleByte == null) {
+            _singleByte = new byte[1];
+        }
+        int count = read(_singleByte, 0, 1);
+        return (count <= 0) ? -1 : (_singleByte[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (_verified) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        // must always keep the last 4 bytes, in case they are the trailer
+        while (_tailLength < TRAILER_LENGTH) {
+            int count = _in.read(_tail, _tailLength, TRAILER_LENGTH - _tailLength);
+            if (count < 0) {
+                throw new StoreException.Input(_key, StoreException.InputProblem.BAD_CHECKSUM,
+                        "Missing checksum trailer: content ended after "+_tailLength+" bytes");
+            }
+            _tailLength += count;
+        }
+        int count = _in.read(b, off, len);
+        if (count < 0) {
+            _verify();
+            return -1;
+        }
+        if (count >= TRAILER_LENGTH) {
+            // return previous tail followed by all but last 4 bytes read; latter become tail
+            byte[] last = new byte[TRAILER_LENGTH];
+            System.arraycopy(b, off+count-TRAILER_LENGTH, last, 0, TRAILER_LENGTH);
+            System.arraycopy(b, off, b, off+TRAILER_LENGTH, count-TRAILER_LENGTH);
+            System.arraycopy(_tail, 0, b, off, TRAILER_LENGTH);
+            System.arraycopy(last, 0, _tail, 0, TRAILER_LENGTH);
+        } else {
+            // return first 'count' bytes of tail, shift the rest and append bytes read
+            byte[] read = new byte[count];
+            System.arraycopy(b, off, read, 0, count);
+            System.arraycopy(_tail, 0, b, off, count);
+            System.arraycopy(_tail, count, _tail, 0, TRAILER_LENGTH - count);
+            System.arraycopy(read, 0, _tail, TRAILER_LENGTH - count, count);
+        }
+        _hasher.update(b, off, count);
+        return count;
+    }
+
+    protected void _verify() throws IOException
+    {
+        int exp = ((_tail[0] & 0xFF) << 24) | ((_tail[1] & 0xFF) << 16)
+                | ((_tail[2] & 0xFF) << 8) | (_tail[3] & 0xFF);
+        int act = ChecksumUtil.cleanChecksum(_hasher.calculateHash());
+        if (exp != act) {
+            throw new StoreException.Input(_key, StoreException.InputProblem.BAD_CHECKSUM,
+                    "Incorrect checksum (0x"+Integer.toHexString(act)+"), checksum trailer indicated 0x"
+                    +Integer.toHexString(exp));
+        }
+        _verified = true;
+    }
+}
@@ -1,17 +1,46 @@
 package com.fasterxml.clustermate.service.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
 
 public class StatsCollectingOutputStream extends OutputStream
 {
+    /**
+     * When content has to be explicitly mapped to be written to an
+     * output channel, we will map it in chunks of this size.
+     */
+    protected final static long MAX_MAPPED_CHUNK = 4L * 1024L * 1024L;
+
+    /**
+     * If mapped buffers can not be explicitly unmapped, content is instead
+     * copied using a buffer of this size.
+     */
+    protected final static int COPY_BUFFER_SIZE = 64000;
+
     protected final OutputStream _out;
 
+    /**
+     * Optional channel that can be used for writing output without
+     * copying it through a user-space buffer; usually exposed by container
+     * in an implementation-specific way.
+     */
+    protected final WritableByteChannel _channel;
+
     protected long _bytesWritten;
 
     protected boolean _closed;
 
     public StatsCollectingOutputStream(OutputStream out) {
+        this(out, null);
+    }
+
+    public StatsCollectingOutputStream(OutputStream out, WritableByteChannel channel) {
         _out = out;
+        _channel = channel;
     }
 
     public long getBytesWritten() {
@@ -52,6 +81,103 @@ public class StatsCollectingOutputStream extends OutputStream
         ++_bytesWritten;
     }
 
+    /*
+    /**********************************************************************
+    /* Zero-copy output
+    /**********************************************************************
+     */
+
+    /**
+     * @return True if content can be written using {@link #transferFrom}
+     */
+    public boolean canTransferFrom() {
+        return (_channel != null);
+    }
+
+    /**
+     * Method for writing specified section of given file, without copying
+     * it through user-space buffers: if output channel is one JDK can
+     * transfer to directly, {@link FileChannel#transferTo} is used; otherwise
+     * content is memory-mapped and passed as is.
+     * Caller must ensure that {@link #canTransferFrom()} returns true.
+     */
+    public long transferFrom(FileChannel src, long position, long count) throws IOException
+    {
+        _checkClosed();
+        // anything buffered must go out first
+        _out.flush();
+        long total = 0L;
+        if ((_channel instanceof FileChannel) || (_channel instanceof SelectableChannel)) {
+            while (total < count) {
+                long amount = src.transferTo(position + total, count - total, _channel);
+                if (amount <= 0L) {
+                    throw new IOException("Failed to transfer more than "+total+" bytes (of "+count+")");
+                }
+                total += amount;
+                _bytesWritten += amount;
+            }
+            return total;
+        }
+        // Can only map if we can also unmap; otherwise mappings would pile up until GC
+        if (!BufferUnmapper.isSupported()) {
+            ByteBuffer bb = ByteBuffer.allocate((int) Math.min(count, COPY_BUFFER_SIZE));
+            while (total < count) {
+                bb.clear();
+                bb.limit((int) Math.min(bb.capacity(), count - total));
+                int amount = src.read(bb, position + total);
+                if (amount <= 0) {
+                    throw new IOException("Failed to read more than "+total+" bytes (of "+count+")");
+                }
+                bb.flip();
+                total += _write(bb, total, count);
+            }
+            return total;
+        }
+        while (total < count) {
+            long chunk = Math.min(count - total, MAX_MAPPED_CHUNK);
+            MappedByteBuffer bb = src.map(FileChannel.MapMode.READ_ONLY, position + total, chunk);
+            try {
+                _write(bb, total, count);
+            } finally {
+                BufferUnmapper.unmap(bb);
+            }
+            total += chunk;
+        }
+        return total;
+    }
+
+    /**
+     * Method for writing contents of given buffer (from its position to limit)
+     * directly to the output channel.
+     * Caller must ensure that {@link #canTransferFrom()} returns true.
+     */
+    public long transferFrom(ByteBuffer src) throws IOException
+    {
+        _checkClosed();
+        _out.flush();
+        return _write(src, 0L, src.remaining());
+    }
+
+    /**
+     * Helper method for writing all remaining content of given buffer to
+     * the output channel.
+     *
+     * @param written Bytes written so far by the calling operation (for error messages)
+     * @param count Total bytes to write by the calling operation (for error messages)
+     */
+    protected int _write(ByteBuffer bb, long written, long count) throws IOException
+    {
+        int total = 0;
+        while (bb.hasRemaining()) {
+            int amount = _channel.write(bb);
+            if (amount <= 0) {
+                throw new IOException("Failed to write more than "+(written+total)+" bytes (of "+count+")");
+            }
+            total += amount;
+            _bytesWritten += amount;
+        }
+        return total;
+    }
 
     private final void _checkClosed() throws IOException {
         if (_closed) {
@@ -0,0 +1,38 @@
+package com.fasterxml.clustermate.service.msg;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import com.fasterxml.storemate.shared.ByteRange;
+
+import junit.framework.TestCase;
+
+public class TestChunkedResponseContent extends TestCase
+{
+    public void testBufferBackedChannel() throws Exception
+    {
+        byte[] data = new byte[5000];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        BufferBackedResponseContent content = new BufferBackedResponseContent(null, null,
+                ByteBuffer.wrap(data), new ByteRange(1000L, 2000L));
+        assertEquals(2000L, content.getLength());
+
+        ReadableByteChannel ch = content.openChannel();
+        ByteBuffer bb = ByteBuffer.allocate(1500);
+        assertEquals(1500, ch.read(bb));
+        bb.clear();
+        assertEquals(500, ch.read(bb));
+        bb.flip();
+        for (int i = 0; i < 500; ++i) {
+            assertEquals((byte) (2500 + i), bb.get());
+        }
+        assertEquals(-1, ch.read(bb));
+        ch.close();
+        assertFalse(ch.isOpen());
+
+        // and channels are independent of each other
+        assertEquals(1000, content.openChannel().read(ByteBuffer.allocate(1000)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.fasterxml.clustermate.service.store;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+import com.fasterxml.storemate.shared.StorableKey;
+
+import com.fasterxml.clustermate.service.cfg.ContentCacheConfig;
+
+public class TestEntryContentCache extends TestCase
+{
+    public void testDisabledByDefault()
+    {
+        assertNull(EntryContentCache.construct(new ContentCacheConfig()));
+        assertNotNull(EntryContentCache.construct(new ContentCacheConfig(1000L, 100, true)));
+    }
+
+    public void testAdmission()
+    {
+        EntryContentCache cache = new EntryContentCache(new ContentCacheConfig(10000L, 500, true));
+        StorableKey key = _key("a");
+
+        // first access: not yet popular enough
+        assertNull(cache.get(key));
+        assertFalse(cache.mayAdmit(key, 100L));
+        assertNull(cache.get(key));
+        assertTrue(cache.mayAdmit(key, 100L));
+        // but never if too big
+        assertFalse(cache.mayAdmit(key, 501L));
+
+        assertTrue(cache.put(cache.stamp(key), _entry(key, 100)));
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(300L, cache.getMemoryUsed());
+
+        EntryContentCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+        // callers get their own views
+        ByteBuffer bb = entry.getStoredContent();
+        assertEquals(100, bb.remaining());
+        bb.position(50);
+        assertEquals(100, entry.getStoredContent().remaining());
+        assertNull(entry.getUncompressedContent());
+    }
+
+    public void testStaleStamp()
+    {
+        EntryContentCache cache = new EntryContentCache(new ContentCacheConfig(10000L, 500, true));
+        StorableKey key = _key("a");
+        long stamp = cache.stamp(key);
+        // deleted while we were reading it: must not be added
+        cache.invalidate(key);
+        assertFalse(cache.put(stamp, _entry(key, 100)));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(1L, cache.getRejectionCount());
+
+        assertTrue(cache.put(cache.stamp(key), _entry(key, 100)));
+        cache.invalidate(key);
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0L, cache.getMemoryUsed());
+        assertEquals(1L, cache.getInvalidationCount());
+    }
+
+    public void testFrequencyAwareEviction()
+    {
+        // room for 3 entries of 100 bytes (plus overhead)
+        EntryContentCache cache = new EntryContentCache(new ContentCacheConfig(900L, 500, true));
+        final String[] IDS = new String[] { "a", "b", "c" };
+        for (int i = 0; i < 3; ++i) {
+            for (String id : IDS) {
+                cache.get(_key(id));
+            }
+        }
+        for (String id : IDS) {
+            StorableKey key = _key(id);
+            assertTrue(cache.put(cache.stamp(key), _entry(key, 100)));
+        }
+        assertEquals(3, cache.getEntryCount());
+
+        // less popular entry can not displace existing ones
+        StorableKey d = _key("d");
+        cache.get(d);
+        cache.get(d);
+        assertFalse(cache.put(cache.stamp(d), _entry(d, 100)));
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(0L, cache.getEvictionCount());
+
+        // but once it is more popular than least-recently used one, it gets in
+        for (int i = 0; i < 5; ++i) {
+            cache.get(d);
+        }
+        assertTrue(cache.put(cache.stamp(d), _entry(d, 100)));
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(1L, cache.getEvictionCount());
+        assertEquals(900L, cache.getMemoryUsed());
+        // and "a" was the least-recently used one
+        assertNull(cache.get(_key("a")));
+        assertNotNull(cache.get(_key("b")));
+
+        cache.clear();
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0L, cache.getMemoryUsed());
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods
+    /**********************************************************************
+     */
+
+    private StorableKey _key(String id) {
+        try {
+            return new StorableKey(id.getBytes("UTF-8"));
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private EntryContentCache.Entry _entry(StorableKey key, int len) {
+        byte[] data = new byte[len];
+        return new EntryContentCache.Entry(key, null,
+                EntryContentCache.Entry.directCopy(data, 0, len), null);
+    }
+}
@@ -0,0 +1,97 @@
+package com.fasterxml.clustermate.service.store;
+
+import junit.framework.TestCase;
+
+import com.fasterxml.storemate.shared.StorableKey;
+
+import com.fasterxml.clustermate.service.cfg.MetadataCacheConfig;
+
+public class TestEntryMetadataCache extends TestCase
+{
+    public void testDisabledByDefault()
+    {
+        assertNull(EntryMetadataCache.construct(new MetadataCacheConfig()));
+        assertNotNull(EntryMetadataCache.construct(new MetadataCacheConfig(10000L, 1000L, 100L)));
+    }
+
+    public void testMissingEntries()
+    {
+        EntryMetadataCache cache = new EntryMetadataCache(new MetadataCacheConfig(100000L, 1000L, 100L));
+        StorableKey key = _key("a");
+
+        assertNull(cache.get(key, 1000L));
+        assertTrue(cache.put(cache.stamp(key), key, null, 1000L));
+        EntryMetadataCache.Entry entry = cache.get(key, 1099L);
+        assertNotNull(entry);
+        assertTrue(entry.isMissing());
+        assertNull(entry.getRaw());
+        assertEquals(1L, cache.getMissingHitCount());
+
+        // but only remembered for a short while
+        assertNull(cache.get(key, 1100L));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0L, cache.getMemoryUsed());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    public void testNoNegativeCaching()
+    {
+        EntryMetadataCache cache = new EntryMetadataCache(new MetadataCacheConfig(100000L, 1000L, 0L));
+        StorableKey key = _key("a");
+        assertFalse(cache.put(cache.stamp(key), key, null, 1000L));
+        assertNull(cache.get(key, 1000L));
+    }
+
+    public void testInvalidation()
+    {
+        EntryMetadataCache cache = new EntryMetadataCache(new MetadataCacheConfig(100000L, 1000L, 100L));
+        StorableKey key = _key("a");
+        long stamp = cache.stamp(key);
+        // inserted while we were looking it up: must not be added
+        cache.invalidate(key);
+        assertFalse(cache.put(stamp, key, null, 1000L));
+        assertNull(cache.get(key, 1000L));
+
+        assertTrue(cache.put(cache.stamp(key), key, null, 1000L));
+        cache.invalidate(key);
+        assertNull(cache.get(key, 1000L));
+        assertEquals(1L, cache.getInvalidationCount());
+
+        assertTrue(cache.put(cache.stamp(key), key, null, 1000L));
+        cache.clear();
+        assertEquals(0, cache.getEntryCount());
+        assertFalse(cache.put(stamp, key, null, 1000L));
+    }
+
+    public void testEviction()
+    {
+        // 16 segments, each with room for a bit over 2 missing entries
+        final long perEntry = EntryMetadataCache.ENTRY_OVERHEAD + 5;
+        EntryMetadataCache cache = new EntryMetadataCache(new MetadataCacheConfig(
+                16L * (2L * perEntry + 10L), 1000L, 1000L));
+        for (int i = 0; i < 1000; ++i) {
+            StorableKey key = _key("k"+(100 + i));
+            assertTrue(cache.put(cache.stamp(key), key, null, 1000L));
+        }
+        assertTrue(cache.getEntryCount() <= 32);
+        assertTrue(cache.getMemoryUsed() <= 32L * perEntry);
+        assertEquals(1000L - cache.getEntryCount(), cache.getEvictionCount());
+        // most recently added ones should remain
+        StorableKey last = _key("k1099");
+        assertNotNull(cache.get(last, 1000L));
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper methods
+    /**********************************************************************
+     */
+
+    private StorableKey _key(String id) {
+        try {
+            return new StorableKey(id.getBytes("UTF-8"));
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
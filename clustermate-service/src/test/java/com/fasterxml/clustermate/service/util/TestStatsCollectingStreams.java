@@ -1,6 +1,11 @@
 package com.fasterxml.clustermate.service.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
@@ -42,4 +47,109 @@ public class TestStatsCollectingStreams extends TestCase
         assertEquals(21, bytes.size());
         assertEquals(21, stats.getBytesWritten());
     }
+
+    public void testTransferFrom() throws Exception
+    {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        File src = File.createTempFile("transfer", ".bin");
+        File dst = File.createTempFile("transfer", ".out");
+        FileOutputStream fout = new FileOutputStream(src);
+        fout.write(data);
+        fout.close();
+
+        FileInputStream in = new FileInputStream(src);
+        FileChannel ch = in.getChannel();
+        try {
+            // first, plain stream: can't transfer
+            assertFalse(new StatsCollectingOutputStream(new ByteArrayOutputStream()).canTransferFrom());
+
+            // then generic channel, which needs mapping
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            StatsCollectingOutputStream stats = new StatsCollectingOutputStream(bytes,
+                    Channels.newChannel(bytes));
+            assertTrue(stats.canTransferFrom());
+            stats.write(1);
+            assertEquals(50000L, stats.transferFrom(ch, 100L, 50000L));
+            assertEquals(50001L, stats.getBytesWritten());
+            byte[] exp = new byte[50001];
+            exp[0] = 1;
+            System.arraycopy(data, 100, exp, 1, 50000);
+            assertTrue(Arrays.equals(exp, bytes.toByteArray()));
+
+            // and finally one JDK can transfer to directly
+            fout = new FileOutputStream(dst);
+            stats = new StatsCollectingOutputStream(fout, fout.getChannel());
+            assertEquals(data.length, stats.transferFrom(ch, 0L, data.length));
+            stats.close();
+            assertEquals(data.length, stats.getBytesWritten());
+            assertEquals(data.length, dst.length());
+        } finally {
+            in.close();
+            src.delete();
+            dst.delete();
+        }
+    }
+
+    public void testTransferFromStalledChannel() throws Exception
+    {
+        File src = File.createTempFile("transfer", ".bin");
+        FileOutputStream fout = new FileOutputStream(src);
+        fout.write(new byte[1000]);
+        fout.close();
+
+        // channel that accepts 100 bytes, then nothing: must fail, not spin
+        WritableByteChannel stalled = new WritableByteChannel() {
+            int left = 100;
+
+            @Override
+            public int write(ByteBuffer bb) {
+                int count = Math.min(left, bb.remaining());
+                bb.position(bb.position() + count);
+                left -= count;
+                return count;
+            }
+
+            @Override public boolean isOpen() { return true; }
+            @Override public void close() { }
+        };
+        FileInputStream in = new FileInputStream(src);
+        try {
+            StatsCollectingOutputStream stats = new StatsCollectingOutputStream(
+                    new ByteArrayOutputStream(), stalled);
+            try {
+                stats.transferFrom(in.getChannel(), 0L, 1000L);
+                fail("Should not pass");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("Failed to write more than 100 bytes (of 1000)"));
+            }
+            assertEquals(100L, stats.getBytesWritten());
+            try {
+                stats.transferFrom(ByteBuffer.allocate(10));
+                fail("Should not pass");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("Failed to write more than 0 bytes (of 10)"));
+            }
+        } finally {
+            in.close();
+            src.delete();
+        }
+    }
+
+    public void testUnmap() throws Exception
+    {
+        // should be available on all JDKs we run on
+        assertTrue(BufferUnmapper.isSupported());
+        File src = File.createTempFile("transfer", ".bin");
+        RandomAccessFile raf = new RandomAccessFile(src, "rw");
+        try {
+            raf.setLength(1000L);
+            assertTrue(BufferUnmapper.unmap(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0L, 1000L)));
+        } finally {
+            raf.close();
+            src.delete();
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package com.fasterxml.clustermate.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adapter that exposes container-provided output stream as a
+ * {@link WritableByteChannel}, if container supports writing of
+ * {@link ByteBuffer}s directly (like Jetty 9 does): this allows writing of
+ * file-backed content without copying it through user-space buffers.
+ * Since Servlet API does not define such access, it is detected dynamically.
+ */
+public class ContainerOutputChannel implements WritableByteChannel
+{
+    /**
+     * Marker used to cache knowledge of stream types that do not
+     * support writing of ByteBuffers.
+     */
+    private final static Method NO_METHOD;
+    static {
+        try {
+            NO_METHOD = Object.class.getMethod("toString");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final static ConcurrentHashMap<Class<?>,Method> _writeMethods
+        = new ConcurrentHashMap<Class<?>,Method>();
+
+    protected final OutputStream _out;
+
+    protected final Method _writeMethod;
+
+    protected boolean _open = true;
+
+    protected ContainerOutputChannel(OutputStream out, Method writeMethod) {
+        _out = out;
+        _writeMethod = writeMethod;
+    }
+
+    /**
+     * Factory method that will construct a channel for given stream, if
+     * possible; or return null if not.
+     */
+    public static WritableByteChannel channelFor(OutputStream out)
+    {
+        if (out instanceof WritableByteChannel) {
+            return (WritableByteChannel) out;
+        }
+        final Class<?> cls = out.getClass();
+        Method m = _writeMethods.get(cls);
+        if (m == null) {
+            try {
+                m = cls.getMethod("write", ByteBuffer.class);
+                if (!Modifier.isPublic(m.getDeclaringClass().getModifiers())) {
+                    m = NO_METHOD;
+                }
+            } catch (Exception e) {
+                m = NO_METHOD;
+            }
+            _writeMethods.put(cls, m);
+        }
+        if (m == NO_METHOD) {
+            return null;
+        }
+        return new ContainerOutputChannel(out, m);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return _open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _open = false;
+        _out.close();
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        final int count = src.remaining();
+        try {
+            _writeMethod.invoke(_out, src);
+        } catch (InvocationTargetException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            throw new IOException("Failed to write content: "+t.getMessage(), t);
+        } catch (IllegalAccessException e) {
+            throw new IOException("Failed to write content: "+e.getMessage(), e);
+        }
+        // container is expected to consume all content; but let's verify
+        return count - src.remaining();
+    }
+}
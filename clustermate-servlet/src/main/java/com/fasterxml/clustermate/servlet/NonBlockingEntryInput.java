@@ -0,0 +1,237 @@
+package com.fasterxml.clustermate.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Helper object used for reading entry content using non-blocking
+ * (Servlet 3.1) input: content is read as it becomes available, and
+ * buffered in off-heap chunks; and once all of it has been read, passed
+ * to {@link Handler} for actual processing. This way no thread is blocked
+ * waiting for slow clients; but since all content is buffered, it should
+ * only be used for content of known, limited length.
+ */
+public class NonBlockingEntryInput
+    extends NonBlockingIOBase
+    implements ReadListener
+{
+    protected final static int CHUNK_LENGTH = 64000;
+
+    /**
+     * Interface for objects that process content once it has been read.
+     */
+    public interface Handler
+    {
+        /**
+         * Method called once all content has been read; handler is to
+         * process it and write the response.
+         */
+        public void contentRead(InputStream content) throws IOException;
+    }
+
+    protected final ServletInputStream _in;
+
+    protected final long _expectedLength;
+
+    protected final Handler _handler;
+
+    protected final List<ByteBuffer> _chunks = new ArrayList<ByteBuffer>();
+
+    protected final byte[] _readBuffer = new byte[16000];
+
+    protected long _length;
+
+    /**
+     * Flag set once content has been read, and is being processed
+     */
+    protected boolean _processing;
+
+    public NonBlockingEntryInput(AsyncContext async, ServletInputStream in,
+            long expectedLength, Handler handler, Runnable onCompletion)
+    {
+        super(async, onCompletion);
+        _in = in;
+        _expectedLength = expectedLength;
+        _handler = handler;
+    }
+
+    /**
+     * Method called to start reading; reads will be done by container
+     * threads, via {@link #onDataAvailable}.
+     */
+    public void start() {
+        _in.setReadListener(this);
+    }
+
+    /*
+    /**********************************************************************
+    /* ReadListener impl
+    /**********************************************************************
+     */
+
+    @Override
+    public void onDataAvailable() throws IOException
+    {
+        try {
+            // container may still call us after failure or timeout
+            while (!_isCompleted() && _in.isReady()) {
+                int count = _in.read(_readBuffer);
+                if (count < 0) {
+                    break;
+                }
+                _append(count);
+            }
+        } catch (IOException e) {
+            _complete(e);
+        }
+    }
+
+    @Override
+    public void onAllDataRead() throws IOException
+    {
+        if (_isCompleted()) {
+            return;
+        }
+        if (_length != _expectedLength) {
+            _complete(new IOException("Content length mismatch: expected "+_expectedLength
+                    +" bytes, got "+_length));
+            return;
+        }
+        _processing = true;
+        try {
+            _handler.contentRead(new ChunkInputStream(_chunks, _length));
+            _complete(null);
+        } catch (Exception e) {
+            _complete(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        _complete(t);
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    protected void _append(int count) throws IOException
+    {
+        if ((_length + count) > _expectedLength) {
+            throw new IOException("Content longer than expected "+_expectedLength+" bytes");
+        }
+        int offset = 0;
+        while (offset < count) {
+            ByteBuffer chunk = _chunks.isEmpty() ? null : _chunks.get(_chunks.size()-1);
+            if (chunk == null || !chunk.hasRemaining()) {
+                chunk = ByteBuffer.allocateDirect((int) Math.min(CHUNK_LENGTH, _expectedLength - _length));
+                _chunks.add(chunk);
+            }
+            int amount = Math.min(count - offset, chunk.remaining());
+            chunk.put(_readBuffer, offset, amount);
+            offset += amount;
+            _length += amount;
+        }
+    }
+
+    @Override
+    protected void _release(Throwable problem)
+    {
+        // (handler may still be reading content, if processing timed out)
+        if (!_processing) {
+            _chunks.clear();
+        }
+        if (problem != null) {
+            LOG.warn("Failed non-blocking {} of entry content: {}",
+                    _processing ? "processing" : "read", problem.getMessage());
+            int status;
+            if (_processing) {
+                status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            } else if (problem instanceof TimeoutException) {
+                status = HttpServletResponse.SC_REQUEST_TIMEOUT;
+            } else {
+                status = HttpServletResponse.SC_BAD_REQUEST;
+            }
+            _setErrorStatus(status);
+        }
+    }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * {@link InputStream} that exposes content of buffered chunks.
+     */
+    protected static class ChunkInputStream extends InputStream
+    {
+        protected final List<ByteBuffer> _chunks;
+
+        protected int _chunkIndex;
+
+        protected ByteBuffer _current;
+
+        protected long _left;
+
+        public ChunkInputStream(List<ByteBuffer> chunks, long length)
+        {
+            _chunks = chunks;
+            _left = length;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, _left);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if (!_ensureContent()) {
+                return -1;
+            }
+            --_left;
+            return _current.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) throws IOException
+        {
+            if (len == 0) {
+                return 0;
+            }
+            if (!_ensureContent()) {
+                return -1;
+            }
+            int count = Math.min(len, _current.remaining());
+            _current.get(buffer, offset, count);
+            _left -= count;
+            return count;
+        }
+
+        private boolean _ensureContent()
+        {
+            while (_current == null || !_current.hasRemaining()) {
+                if (_chunkIndex >= _chunks.size()) {
+                    return false;
+                }
+                _current = _chunks.get(_chunkIndex++).duplicate();
+                _current.flip();
+            }
+            return true;
+        }
+    }
+}
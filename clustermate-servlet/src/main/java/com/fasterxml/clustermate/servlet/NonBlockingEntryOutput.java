@@ -0,0 +1,127 @@
+package com.fasterxml.clustermate.servlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Helper object used for writing entry content using non-blocking
+ * (Servlet 3.1) output: content is read from the source channel one
+ * chunk at a time, and only when the connection is ready to accept
+ * more output, so that no thread is blocked waiting for slow clients.
+ */
+public class NonBlockingEntryOutput
+    extends NonBlockingIOBase
+    implements WriteListener
+{
+    /**
+     * Content shorter than this is written using blocking output, since
+     * it will usually fit in send buffers anyway.
+     */
+    public final static int MIN_LENGTH = 64000;
+
+    protected final static int CHUNK_LENGTH = 64000;
+
+    protected final ServletOutputStream _out;
+
+    protected final ReadableByteChannel _content;
+
+    protected final byte[] _chunk;
+
+    /**
+     * Buffer that wraps {@link #_chunk}, containing content read but
+     * not yet written.
+     */
+    protected final ByteBuffer _pending;
+
+    protected long _bytesWritten;
+
+    public NonBlockingEntryOutput(AsyncContext async, ServletOutputStream out,
+            ReadableByteChannel content, Runnable onCompletion)
+    {
+        super(async, onCompletion);
+        _out = out;
+        _content = content;
+        _chunk = new byte[CHUNK_LENGTH];
+        _pending = ByteBuffer.wrap(_chunk);
+        _pending.limit(0);
+    }
+
+    /**
+     * Method called to start writing; writes will be done by container
+     * threads, via {@link #onWritePossible}.
+     */
+    public void start() {
+        _out.setWriteListener(this);
+    }
+
+    public long getBytesWritten() {
+        return _bytesWritten;
+    }
+
+    /*
+    /**********************************************************************
+    /* WriteListener impl
+    /**********************************************************************
+     */
+
+    @Override
+    public void onWritePossible() throws IOException
+    {
+        try {
+            while (_out.isReady()) {
+                if (!_pending.hasRemaining()) {
+                    _pending.clear();
+                    int count = _content.read(_pending);
+                    _pending.flip();
+                    if (count < 0) {
+                        _complete(null);
+                        return;
+                    }
+                }
+                int count = _pending.remaining();
+                _out.write(_chunk, _pending.position(), count);
+                _pending.position(_pending.limit());
+                _bytesWritten += count;
+            }
+        } catch (IOException e) {
+            _complete(e);
+        } catch (RuntimeException e) {
+            _complete(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        _complete(t);
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    @Override
+    protected void _release(Throwable problem)
+    {
+        try {
+            _content.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close content channel: {}", e.getMessage());
+        }
+        if (problem != null) {
+            LOG.warn("Failed non-blocking write of entry content, after {} bytes: {}",
+                    _bytesWritten, problem.getMessage());
+            _setErrorStatus((problem instanceof TimeoutException)
+                    ? HttpServletResponse.SC_GATEWAY_TIMEOUT
+                    : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+}
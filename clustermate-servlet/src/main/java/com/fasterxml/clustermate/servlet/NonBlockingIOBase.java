@@ -0,0 +1,122 @@
+package com.fasterxml.clustermate.servlet;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class for helper objects that handle reading or writing of
+ * entry content using non-blocking (Servlet 3.1) I/O. Takes care of
+ * completing the asynchronous request exactly once, regardless of whether
+ * processing succeeds, fails or times out.
+ */
+public abstract class NonBlockingIOBase
+    implements AsyncListener
+{
+    protected final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    protected final AsyncContext _async;
+
+    /**
+     * Optional callback to call once request has been completed
+     */
+    protected final Runnable _onCompletion;
+
+    private final AtomicBoolean _completed = new AtomicBoolean(false);
+
+    protected NonBlockingIOBase(AsyncContext async, Runnable onCompletion)
+    {
+        _async = async;
+        _onCompletion = onCompletion;
+        async.addListener(this);
+    }
+
+    /*
+    /**********************************************************************
+    /* AsyncListener impl
+    /**********************************************************************
+     */
+
+    @Override
+    public void onStartAsync(AsyncEvent event) { }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        _complete(null);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        _complete(new TimeoutException("Non-blocking I/O timed out"));
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        _complete(event.getThrowable());
+    }
+
+    /*
+    /**********************************************************************
+    /* Internal methods
+    /**********************************************************************
+     */
+
+    /**
+     * Method called to complete processing, whether it succeeded or not.
+     * Only the first call has any effect.
+     *
+     * @param problem Cause of failure, if any; null if successful
+     */
+    protected void _complete(Throwable problem)
+    {
+        if (!_completed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            _release(problem);
+        } finally {
+            try {
+                _async.complete();
+            } catch (IllegalStateException e) { // container already completed it
+                ;
+            } finally {
+                if (_onCompletion != null) {
+                    _onCompletion.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True if processing has been completed (successfully or not),
+     *   in which case no more content should be read or written
+     */
+    protected boolean _isCompleted() {
+        return _completed.get();
+    }
+
+    /**
+     * Method called once processing is completed, to release any
+     * resources and, on failure, indicate the problem.
+     */
+    protected abstract void _release(Throwable problem);
+
+    /**
+     * Helper method for indicating failure with given status code, unless
+     * response has already been committed.
+     */
+    protected void _setErrorStatus(int statusCode)
+    {
+        HttpServletResponse response = (HttpServletResponse) _async.getResponse();
+        if (!response.isCommitted()) {
+            response.setStatus(statusCode);
+        }
+    }
+}
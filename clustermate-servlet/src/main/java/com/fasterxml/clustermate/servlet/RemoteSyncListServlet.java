@@ -9,6 +9,7 @@ import com.fasterxml.clustermate.service.metrics.AllOperationMetrics;
 import com.fasterxml.clustermate.service.metrics.ExternalOperationMetrics;
 import com.fasterxml.clustermate.service.store.StoredEntry;
 import com.fasterxml.clustermate.service.sync.SyncHandler;
+import com.fasterxml.clustermate.service.sync.SyncListAsyncContext;
 import com.fasterxml.storemate.store.util.OperationDiagnostics;
 
 /**
@@ -37,4 +38,11 @@ public class RemoteSyncListServlet<K extends EntryKey, E extends StoredEntry<K>>
             long since, OperationDiagnostics stats) throws IOException, InterruptedException {
         return _syncHandler.remoteListEntries(request, response, since, stats);
     }
+
+    @Override
+    protected ServletServiceResponse listEntriesAsync(ServletServiceRequest request,
+            ServletServiceResponse response, long since, OperationDiagnostics stats,
+            SyncListAsyncContext asyncContext) throws IOException, InterruptedException {
+        return _syncHandler.remoteListEntriesAsync(request, response, since, stats, asyncContext);
+    }
 }
@@ -68,6 +68,16 @@ public class ServletServiceRequest extends ServiceRequest
     /**********************************************************************
      */
 
+    /**
+     * Method that may be called if request content has been read before
+     * processing (for example, using non-blocking input), to make it
+     * accessible via {@link #getNativeInputStream}. Must be called before
+     * content is accessed for processing.
+     */
+    public void setBufferedContent(InputStream content) {
+        _nativeStream = content;
+    }
+
     /**
      * Accessor for getting underlying {@link HttpServletRequest}
      */
@@ -1,11 +1,15 @@
 package com.fasterxml.clustermate.servlet;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.*;
 
 import com.fasterxml.clustermate.api.ClusterMateConstants;
 import com.fasterxml.clustermate.service.ServiceResponse;
+import com.fasterxml.clustermate.service.msg.ChunkedResponseContent;
 import com.fasterxml.clustermate.service.util.StatsCollectingOutputStream;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
@@ -57,6 +61,45 @@ public class ServletServiceResponse extends ServiceResponse
         }
     }
 
+    /**
+     * Method that may be called instead of {@link #writeOut} to write
+     * streaming content using non-blocking output, if both content and
+     * container support it.
+     *
+     * @param request Request for which response is written
+     * @param timeoutMsecs Maximum time allowed for writing content
+     * @param onCompletion Callback to call once writing has completed
+     *    (successfully or not)
+     *
+     * @return True if non-blocking write was started, in which case given
+     *   callback will be called once it completes; false if not, in which
+     *   case caller needs to call {@link #writeOut} instead
+     */
+    public boolean writeOutNonBlocking(HttpServletRequest request, long timeoutMsecs,
+            Runnable onCompletion)
+        throws IOException
+    {
+        if (!(_streamingContent instanceof ChunkedResponseContent)
+                || !request.isAsyncSupported()) {
+            return false;
+        }
+        long len = _streamingContent.getLength();
+        // small content is best written as is
+        if (len < NonBlockingEntryOutput.MIN_LENGTH) {
+            return false;
+        }
+        ReadableByteChannel content = ((ChunkedResponseContent) _streamingContent).openChannel();
+        if (content == null) {
+            return false;
+        }
+        setContentLength(len);
+        AsyncContext async = request.startAsync();
+        async.setTimeout(timeoutMsecs);
+        new NonBlockingEntryOutput(async, _response.getOutputStream(), content, onCompletion)
+            .start();
+        return true;
+    }
+
     public void writeText(String msg) throws IOException
     {
         writeRaw(msg.getBytes("UTF-8"));
@@ -72,7 +115,8 @@ public class ServletServiceResponse extends ServiceResponse
     }
 
     private StatsCollectingOutputStream _constructOutput() throws IOException {
-        return new StatsCollectingOutputStream(_response.getOutputStream());
+        OutputStream out = _response.getOutputStream();
+        return new StatsCollectingOutputStream(out, ContainerOutputChannel.channelFor(out));
     }
     
     /*
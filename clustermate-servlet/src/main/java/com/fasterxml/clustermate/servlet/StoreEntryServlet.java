@@ -1,6 +1,11 @@
 package com.fasterxml.clustermate.servlet;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
 
 import com.codahale.metrics.Timer.Context;
 
@@ -8,8 +13,10 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 
 import com.fasterxml.storemate.store.util.OperationDiagnostics;
 
+import com.fasterxml.clustermate.api.ClusterMateConstants;
 import com.fasterxml.clustermate.api.EntryKey;
 import com.fasterxml.clustermate.api.EntryKeyConverter;
+import com.fasterxml.clustermate.service.ServiceResponse;
 import com.fasterxml.clustermate.service.SharedServiceStuff;
 import com.fasterxml.clustermate.service.cfg.ServiceConfig;
 import com.fasterxml.clustermate.service.cluster.ClusterViewByServer;
@@ -41,6 +48,22 @@ public class StoreEntryServlet<K extends EntryKey, E extends StoredEntry<K>>
 
     protected final EntryKeyConverter<K> _keyConverter;
 
+    /*
+    /**********************************************************************
+    /* Configuration
+    /**********************************************************************
+     */
+
+    /**
+     * Whether non-blocking I/O is to be used for GET and PUT content,
+     * when container supports it.
+     */
+    protected final boolean _cfgNonBlockingIO;
+
+    protected final long _cfgNonBlockingMaxPutLength;
+
+    protected final long _cfgNonBlockingTimeoutMsecs;
+
     /*
     /**********************************************************************
     /* Metrics info
@@ -52,6 +75,13 @@ public class StoreEntryServlet<K extends EntryKey, E extends StoredEntry<K>>
     protected final OperationMetrics _putMetrics;
 
     protected final OperationMetrics _deleteMetrics;
+
+    /**
+     * Number of entry requests currently being processed; reported to clients
+     * as load hint (unlike metrics, tracked regardless of whether metrics
+     * are enabled).
+     */
+    protected final AtomicInteger _activeRequests;
     
     /*
     /**********************************************************************
@@ -74,7 +104,11 @@ public class StoreEntryServlet<K extends EntryKey, E extends StoredEntry<K>>
         _storeHandler = storeHandler;
         _jsonWriter = stuff.jsonWriter();
         _keyConverter = stuff.getKeyConverter();
+        _activeRequests = new AtomicInteger(0);
         ServiceConfig serviceConfig = stuff.getServiceConfig();
+        _cfgNonBlockingIO = serviceConfig.cfgNonBlockingEntryIO;
+        _cfgNonBlockingMaxPutLength = serviceConfig.cfgNonBlockingMaxPutLength;
+        _cfgNonBlockingTimeoutMsecs = serviceConfig.cfgNonBlockingIOTimeout.getMillis();
         if (serviceConfig.metricsEnabled) {
             _getMetrics = OperationMetrics.forEntityOperation(serviceConfig, "entryGet");
             _putMetrics = OperationMetrics.forEntityOperation(serviceConfig, "entryPut");
@@ -94,6 +128,10 @@ public class StoreEntryServlet<K extends EntryKey, E extends StoredEntry<K>>
         _storeHandler = base._storeHandler;
         _jsonWriter = base._jsonWriter;
         _keyConverter = base._keyConverter;
+        _activeRequests = base._activeRequests;
+        _cfgNonBlockingIO = base._cfgNonBlockingIO;
+        _cfgNonBlockingMaxPutLength = base._cfgNonBlockingMaxPutLength;
+        _cfgNonBlockingTimeoutMsecs = base._cfgNonBlockingTimeoutMsecs;
         if (copyMetrics) {
             _getMetrics = base._getMetrics;
             _putMetrics = base._putMetrics;
@@ -151,15 +189,27 @@ public class StoreEntryServlet<K extends EntryKey, E extends StoredEntry<K>>
     {
         final OperationMetrics metrics = _getMetrics;
         Context timer = (metrics == null) ? null : metrics.start();
+        _activeRequests.incrementAndGet();
+        boolean nonBlocking = false;
         try {
             K key = _findKey(request, response);
             if (key != null) { // null means trouble; response has all we need
                 response = _handleGet(request, response, stats, key);
             }
-            response.writeOut(_jsonWriter);
+            if (_cfgNonBlockingIO) {
+                nonBlocking = response.writeOutNonBlocking(request.getNativeRequest(),
+                        _cfgNonBlockingTimeoutMsecs, _requestCompletion(metrics, timer, stats));
+            }
+            if (!nonBlocking) {
+                response.writeOut(_jsonWriter);
+            }
         } finally {
-            if (metrics != null) {
-                 metrics.finish(timer, stats);
+            // with non-blocking output, completion callback takes care of these
+            if (!nonBlocking) {
+                _activeRequests.decrementAndGet();
+                if (metrics != null) {
+                     metrics.finish(timer, stats);
+                }
             }
         }
     }
@@ -168,37 +218,104 @@ public class StoreEntryServlet<K extends EntryKey, E extends StoredEntry<K>>
     public void handleHead(ServletServiceRequest request, ServletServiceResponse response,
             OperationDiagnostics stats) throws IOException
     {
-        K key = _findKey(request, response);
-        if (key != null) {
-            response = _handleHead(request, response, stats, key);
+        _activeRequests.incrementAndGet();
+        try {
+            K key = _findKey(request, response);
+            if (key != null) {
+                response = _handleHead(request, response, stats, key);
+            }
+            // note: should be enough to just add headers; no content to write
+        } finally {
+            _activeRequests.decrementAndGet();
         }
-        // note: should be enough to just add headers; no content to write
     }
 
-    // We'll allow POST as an alias to PUT
+    // We'll allow POST as an alias to PUT, except for multi-entry operations
     @Override // NOTE: final since it should be aliased, not overridden
     public final void handlePost(ServletServiceRequest request, ServletServiceResponse response,
             OperationDiagnostics stats) throws IOException
     {
-        handlePut(request, response, stats);
+        String multi = request.getQueryParameter(ClusterMateConstants.QUERY_PARAM_MULTI);
+        if (ClusterMateConstants.MULTI_OP_GET.equals(multi)) {
+            handleMultiGet(request, response, stats);
+        } else if (ClusterMateConstants.MULTI_OP_PUT.equals(multi)) {
+            handleMultiPut(request, response, stats);
+        } else {
+            handlePut(request, response, stats);
+        }
+    }
+
+    /**
+     * Handler for multi-entry GET requests, sent as POSTs with key list
+     * as request body.
+     */
+    public void handleMultiGet(ServletServiceRequest request, ServletServiceResponse response,
+            OperationDiagnostics stats) throws IOException
+    {
+        _activeRequests.incrementAndGet();
+        try {
+            response = _storeHandler.getEntries(request, response,
+                    request.getInputStream(), stats);
+            _addStdHeaders(response);
+            response.writeOut(_jsonWriter);
+        } finally {
+            _activeRequests.decrementAndGet();
+        }
     }
     
+    /**
+     * Handler for multi-entry PUT requests, sent as POSTs with framed
+     * entries as request body.
+     */
+    public void handleMultiPut(ServletServiceRequest request, ServletServiceResponse response,
+            OperationDiagnostics stats) throws IOException
+    {
+        final OperationMetrics metrics = _putMetrics;
+        Context timer = (metrics == null) ? null : metrics.start();
+        _activeRequests.incrementAndGet();
+        try {
+            response = _storeHandler.putEntries(request, response,
+                    request.getInputStream(), stats);
+            _addStdHeaders(response);
+            response.writeOut(_jsonWriter);
+        } finally {
+            _activeRequests.decrementAndGet();
+            if (metrics != null) {
+                 metrics.finish(timer, stats);
+            }
+        }
+    }
+
     @Override
     public void handlePut(ServletServiceRequest request, ServletServiceResponse response,
             OperationDiagnostics stats) throws IOException
     {
         final OperationMetrics metrics = _putMetrics;
         Context timer = (metrics == null) ? null : metrics.start();
+        _activeRequests.incrementAndGet();
+        boolean nonBlocking = false;
 
         try {
             K key = _findKey(request, response);
             if (key != null) {
-                response = _handlePut(request, response, stats, key);
+                if (_cfgNonBlockingIO) {
+                    nonBlocking = _startNonBlockingPut(request, response, stats, key,
+                            _requestCompletion(metrics, timer, stats));
+                }
+                if (!nonBlocking) {
+                    response = _handlePut(request, response, stats, key);
+                }
+            }
+            if (!nonBlocking) {
+                response.writeOut(_jsonWriter);
             }
-            response.writeOut(_jsonWriter);
         } finally {
-            if (metrics != null) {
-                 metrics.finish(timer, stats);
+            // with non-blocking input, completion callback takes care of these
+            if (!nonBlocking) {
+                _activeRequests.decrementAndGet();
+                if (metrics != null) {
+                     metrics.finish(timer, stats);
+                }
             }
         }
     }
@@ -209,6 +326,7 @@ public class StoreEntryServlet<K extends EntryKey, E extends StoredEntry<K>>
     {
         final OperationMetrics metrics = _deleteMetrics;
         Context timer = (metrics == null) ? null : metrics.start();
+        _activeRequests.incrementAndGet();
 
         try {
             K key = _findKey(request, response);
@@ -217,12 +335,78 @@ public class StoreEntryServlet<K extends EntryKey, E extends StoredEntry<K>>
             }
             response.writeOut(_jsonWriter);
         } finally {
+            _activeRequests.decrementAndGet();
             if (metrics != null) {
                 metrics.finish(timer, stats);
             }
         }
     }
 
+    @Override
+    protected ServiceResponse _addStdHeaders(ServiceResponse response)
+    {
+        response = super._addStdHeaders(response);
+        return response.addHeader(ClusterMateConstants.CUSTOM_HTTP_HEADER_LOAD_HINT,
+                _activeRequests.get());
+    }
+
+    /*
+    /**********************************************************************
+    /* Non-blocking I/O support
+    /**********************************************************************
+     */
+
+    /**
+     * Helper method for starting non-blocking reading of PUT content, if
+     * container supports it and content is of known and acceptable length.
+     * Content is fully read in memory before calling
+     * {@link #_handlePut} to process it.
+     *
+     * @return True if non-blocking read was started; false if request is
+     *   to be handled using blocking input
+     */
+    protected boolean _startNonBlockingPut(final ServletServiceRequest request,
+            final ServletServiceResponse response, final OperationDiagnostics stats, final K key,
+            Runnable onCompletion)
+        throws IOException
+    {
+        final HttpServletRequest nativeReq = request.getNativeRequest();
+        final long length = nativeReq.getContentLengthLong();
+        if (!nativeReq.isAsyncSupported()
+                || (length <= 0L) || (length > _cfgNonBlockingMaxPutLength)) {
+            return false;
+        }
+        AsyncContext async = nativeReq.startAsync();
+        async.setTimeout(_cfgNonBlockingTimeoutMsecs);
+        new NonBlockingEntryInput(async, nativeReq.getInputStream(), length,
+                new NonBlockingEntryInput.Handler() {
+            @Override
+            public void contentRead(InputStream content) throws IOException {
+                request.setBufferedContent(content);
+                _handlePut(request, response, stats, key).writeOut(_jsonWriter);
+            }
+        }, onCompletion).start();
+        return true;
+    }
+
+    /**
+     * Helper method for constructing callback to call when a request
+     * handled using non-blocking I/O completes.
+     */
+    protected Runnable _requestCompletion(final OperationMetrics metrics, final Context timer,
+            final OperationDiagnostics stats)
+    {
+        return new Runnable() {
+            @Override
+            public void run() {
+                _activeRequests.decrementAndGet();
+                if (metrics != null) {
+                    metrics.finish(timer, stats);
+                }
+            }
+        };
+    }
+
     /*
     /**********************************************************************
     /* Handlers for actual operations, overridable
@@ -9,6 +9,7 @@ import com.fasterxml.clustermate.service.metrics.AllOperationMetrics;
 import com.fasterxml.clustermate.service.metrics.ExternalOperationMetrics;
 import com.fasterxml.clustermate.service.store.StoredEntry;
 import com.fasterxml.clustermate.service.sync.SyncHandler;
+import com.fasterxml.clustermate.service.sync.SyncListAsyncContext;
 import com.fasterxml.storemate.store.util.OperationDiagnostics;
 
 public class SyncListServlet<K extends EntryKey, E extends StoredEntry<K>>
@@ -33,4 +34,11 @@ public class SyncListServlet<K extends EntryKey, E extends StoredEntry<K>>
             long since, OperationDiagnostics stats) throws IOException, InterruptedException {
         return _syncHandler.localListEntries(request, response, since, stats);
     }
+
+    @Override
+    protected ServletServiceResponse listEntriesAsync(ServletServiceRequest request,
+            ServletServiceResponse response, long since, OperationDiagnostics stats,
+            SyncListAsyncContext asyncContext) throws IOException, InterruptedException {
+        return _syncHandler.localListEntriesAsync(request, response, since, stats, asyncContext);
+    }
 }
@@ -3,9 +3,14 @@ package com.fasterxml.clustermate.servlet;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import com.codahale.metrics.Timer.Context;
 import com.fasterxml.clustermate.api.ClusterMateConstants;
 import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.service.ServiceResponse;
 import com.fasterxml.clustermate.service.SharedServiceStuff;
 import com.fasterxml.clustermate.service.cfg.ServiceConfig;
 import com.fasterxml.clustermate.service.cluster.ClusterViewByServer;
@@ -13,6 +18,7 @@ import com.fasterxml.clustermate.service.metrics.AllOperationMetrics;
 import com.fasterxml.clustermate.service.metrics.OperationMetrics;
 import com.fasterxml.clustermate.service.store.StoredEntry;
 import com.fasterxml.clustermate.service.sync.SyncHandler;
+import com.fasterxml.clustermate.service.sync.SyncListAsyncContext;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.storemate.store.util.OperationDiagnostics;
 
@@ -21,6 +27,12 @@ abstract class SyncListServletBase<K extends EntryKey, E extends StoredEntry<K>>
 {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * When waiting asynchronously, container should not time out request
+     * before long-poll time has passed; so let's add some slack.
+     */
+    protected final static long ASYNC_TIMEOUT_SLACK_MSECS = 30000L;
+
     protected final SyncHandler<K,E> _syncHandler;
 
     // may need JSON writer for errors:
@@ -32,6 +44,8 @@ abstract class SyncListServletBase<K extends EntryKey, E extends StoredEntry<K>>
 
     protected final String _loggedMethodName;
 
+    protected final long _asyncTimeoutMsecs;
+
     public SyncListServletBase(SharedServiceStuff stuff, ClusterViewByServer clusterView,
             SyncHandler<K,E> h, String metricsName, String loggedMethodName)
     {
@@ -41,6 +55,7 @@ abstract class SyncListServletBase<K extends EntryKey, E extends StoredEntry<K>>
         _jsonWriter = stuff.jsonWriter();
         _loggedMethodName = "_syncHandler."+loggedMethodName;
         final ServiceConfig serviceConfig = stuff.getServiceConfig();
+        _asyncTimeoutMsecs = serviceConfig.cfgSyncMaxLongPollTime.getMillis() + ASYNC_TIMEOUT_SLACK_MSECS;
         if (serviceConfig.metricsEnabled) {
             _listMetrics = OperationMetrics.forListingOperation(serviceConfig, metricsName);
         } else {
@@ -64,6 +79,7 @@ abstract class SyncListServletBase<K extends EntryKey, E extends StoredEntry<K>>
         final OperationMetrics metrics = _listMetrics;
         Context timer = (metrics == null) ? null : metrics.start();
         String str = request.getQueryParameter(ClusterMateConstants.QUERY_PARAM_SINCE);
+        boolean suspended = false;
         try {
             if (str == null) {
                 response = _syncHandler.missingArgument(response, ClusterMateConstants.QUERY_PARAM_SINCE);
@@ -76,7 +92,17 @@ abstract class SyncListServletBase<K extends EntryKey, E extends StoredEntry<K>>
                     response = _syncHandler.invalidArgument(response, ClusterMateConstants.QUERY_PARAM_SINCE, str);
                 } else {
                     try {
-                        response = listEntries(request, response, since, stats);
+                        if (_syncHandler.canListAsync() && request.getNativeRequest().isAsyncSupported()) {
+                            ServletServiceResponse resp = listEntriesAsync(request, response, since, stats,
+                                    new AsyncListContext(request.getNativeRequest(), metrics, timer, stats));
+                            if (resp == null) { // suspended; context will complete request
+                                suspended = true;
+                                return;
+                            }
+                            response = resp;
+                        } else {
+                            response = listEntries(request, response, since, stats);
+                        }
                     } catch (IllegalStateException e) {
                         // Swallow during shutdown
                         if (!_terminated.get()) {
@@ -97,7 +123,7 @@ abstract class SyncListServletBase<K extends EntryKey, E extends StoredEntry<K>>
             }
             response.writeOut(_jsonWriter);
         } finally {
-            if (metrics != null) {
+            if (metrics != null && !suspended) {
                 metrics.finish(timer, stats);
            }
         }
@@ -106,6 +132,14 @@ abstract class SyncListServletBase<K extends EntryKey, E extends StoredEntry<K>>
     protected abstract ServletServiceResponse listEntries(ServletServiceRequest request,
             ServletServiceResponse response,
             long since, OperationDiagnostics stats) throws IOException, InterruptedException;
+
+    /**
+     * @return Response to write, if available right away; null if request was
+     *   suspended to wait for entries
+     */
+    protected abstract ServletServiceResponse listEntriesAsync(ServletServiceRequest request,
+            ServletServiceResponse response, long since, OperationDiagnostics stats,
+            SyncListAsyncContext asyncContext) throws IOException, InterruptedException;
     
     protected void reportUnexpectedInterruptForListEntries() throws IOException
     {
@@ -115,4 +149,91 @@ abstract class SyncListServletBase<K extends EntryKey, E extends StoredEntry<K>>
          */
         throw new IOException(_loggedMethodName+" interrupted, system not yet shut down: probably harmless");
     }
+
+    /*
+    /**********************************************************************
+    /* Helper classes
+    /**********************************************************************
+     */
+
+    /**
+     * {@link SyncListAsyncContext} implementation that uses Servlet 3.0
+     * {@link AsyncContext} for suspending requests.
+     */
+    protected class AsyncListContext implements SyncListAsyncContext
+    {
+        protected final HttpServletRequest _request;
+
+        protected final OperationMetrics _metrics;
+
+        protected final Context _timer;
+
+        protected final OperationDiagnostics _stats;
+
+        protected AsyncContext _async;
+
+        public AsyncListContext(HttpServletRequest request,
+                OperationMetrics metrics, Context timer, OperationDiagnostics stats)
+        {
+            _request = request;
+            _metrics = metrics;
+            _timer = timer;
+            _stats = stats;
+        }
+
+        @Override
+        public void suspend() {
+            _async = _request.startAsync();
+            _async.setTimeout(_asyncTimeoutMsecs);
+        }
+
+        @Override
+        public void resume(Runnable task) {
+            try {
+                _async.start(task);
+            } catch (IllegalStateException e) { // may occur during shutdown
+                /* Can not run the task here, since we are on the shared timer
+                 * thread; but can complete request with (body-less) error
+                 * without blocking.
+                 */
+                if (!_terminated.get()) {
+                    LOG.warn("Failed to resume "+_loggedMethodName+": "+e.getMessage());
+                }
+                try {
+                    new ServletServiceResponse((HttpServletResponse) _async.getResponse())
+                        .serverOverload();
+                    _async.complete();
+                } catch (IllegalStateException e2) { // container already completed it
+                    ;
+                } finally {
+                    if (_metrics != null) {
+                        _metrics.finish(_timer, _stats);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void complete(ServiceResponse response)
+        {
+            ServletServiceResponse resp = (ServletServiceResponse) response;
+            try {
+                _addStdHeaders(resp);
+                resp.writeOut(_jsonWriter);
+            } catch (Exception e) {
+                if (!_terminated.get()) {
+                    LOG.warn("Failed to write response for "+_loggedMethodName+": "+e.getMessage());
+                }
+            } finally {
+                try {
+                    _async.complete();
+                } catch (IllegalStateException e) { // container already completed it
+                    ;
+                }
+                if (_metrics != null) {
+                    _metrics.finish(_timer, _stats);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.fasterxml.clustermate.servlet;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.storemate.store.util.OperationDiagnostics;
+
+import com.fasterxml.clustermate.api.EntryKey;
+import com.fasterxml.clustermate.service.SharedServiceStuff;
+import com.fasterxml.clustermate.service.cluster.ClusterViewByServer;
+import com.fasterxml.clustermate.service.store.StoredEntry;
+import com.fasterxml.clustermate.service.sync.SyncHandler;
+
+/**
+ * Servlet that handles hash tree (anti-entropy) requests by peer nodes
+ * of the same (local) cluster: GET for accessing levels of hash trees,
+ * POST for listing entries of specified leaves.
+ */
+@SuppressWarnings("serial")
+public class SyncTreeServlet<K extends EntryKey, E extends StoredEntry<K>>
+    extends ServletBase
+{
+    protected final SyncHandler<K,E> _syncHandler;
+
+    // may need JSON writer for errors:
+    protected final ObjectWriter _jsonWriter;
+
+    public SyncTreeServlet(SharedServiceStuff stuff, ClusterViewByServer clusterView,
+            SyncHandler<K,E> h)
+    {
+        // null -> use servlet path base as-is
+        super(stuff, clusterView, null);
+        _syncHandler = h;
+        _jsonWriter = stuff.jsonWriter();
+    }
+
+    @Override
+    public void handleGet(ServletServiceRequest request, ServletServiceResponse response,
+            OperationDiagnostics metadata) throws IOException
+    {
+        response = _syncHandler.localHashTree(request, response, metadata);
+        _addStdHeaders(response);
+        response.writeOut(_jsonWriter);
+    }
+
+    @Override
+    public void handlePost(ServletServiceRequest request, ServletServiceResponse response,
+            OperationDiagnostics metadata) throws IOException
+    {
+        response = _syncHandler.localListTreeEntries(request, response,
+                request.getInputStream(), metadata);
+        _addStdHeaders(response);
+        response.writeOut(_jsonWriter);
+    }
+}